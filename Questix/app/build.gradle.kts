@@ -14,7 +14,8 @@ android {
         versionCode = 1
         versionName = "1.0"
 
-        testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+        // Instrumentacioni testovi rade nad Firebase emulatorom (firebase emulators:start)
+        testInstrumentationRunner = "com.kulenina.questix.EmulatorTestRunner"
     }
 
     buildTypes {
@@ -63,6 +64,10 @@ dependencies {
     // MPAndroidChart for charts
     implementation("com.github.PhilJay:MPAndroidChart:v3.1.0")
 
+    // Generated IMapper implementations for models (@GenerateMapper)
+    compileOnly(project(":mapper-processor"))
+    annotationProcessor(project(":mapper-processor"))
+
     testImplementation(libs.junit)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
@@ -18,4 +18,7 @@
 
 # If you keep the line number information, uncomment this to
 # hide the original source file name.
-#-renamesourcefileattribute SourceFile
\ No newline at end of file
+#-renamesourcefileattribute SourceFile
+
+# Generated mappers are looked up by name in Mappers.get()
+-keep class com.kulenina.questix.model.*_Mapper { <init>(); }
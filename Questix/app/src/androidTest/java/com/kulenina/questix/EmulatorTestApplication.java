@@ -0,0 +1,22 @@
+package com.kulenina.questix;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreSettings;
+import com.google.firebase.firestore.MemoryCacheSettings;
+
+/**
+ * Aplikacija za instrumentacione testove: Firestore i Auth idu na lokalni Firebase emulator
+ * (firebase emulators:start iz korena projekta, portovi iz firebase.json).
+ */
+public class EmulatorTestApplication extends QuestixApplication {
+    @Override
+    protected void configureFirestore(FirebaseFirestore firestore) {
+        firestore.useEmulator(EmulatorTestSupport.HOST, EmulatorTestSupport.FIRESTORE_PORT);
+        // Samo memorijski keš, da rezultati ne zavise od prethodnog pokretanja testova
+        firestore.setFirestoreSettings(new FirebaseFirestoreSettings.Builder()
+                .setLocalCacheSettings(MemoryCacheSettings.newBuilder().build())
+                .build());
+        FirebaseAuth.getInstance().useEmulator(EmulatorTestSupport.HOST, EmulatorTestSupport.AUTH_PORT);
+    }
+}
@@ -0,0 +1,17 @@
+package com.kulenina.questix;
+
+import android.app.Application;
+import android.content.Context;
+import androidx.test.runner.AndroidJUnitRunner;
+
+/**
+ * Pokreće instrumentacione testove nad EmulatorTestApplication, tako da nijedan test
+ * ne može da upiše podatke u pravu Firestore bazu.
+ */
+public class EmulatorTestRunner extends AndroidJUnitRunner {
+    @Override
+    public Application newApplication(ClassLoader classLoader, String className, Context context)
+            throws ClassNotFoundException, IllegalAccessException, InstantiationException {
+        return super.newApplication(classLoader, EmulatorTestApplication.class.getName(), context);
+    }
+}
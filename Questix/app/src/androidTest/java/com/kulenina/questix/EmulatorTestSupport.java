@@ -0,0 +1,33 @@
+package com.kulenina.questix;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Zajedničke pomoćne metode za testove nad Firebase emulatorom.
+ * Emulator se ne briše između testova, pa svaki test radi nad svojim ID-jevima (newId).
+ */
+public final class EmulatorTestSupport {
+    // 10.0.2.2 je adresa računara domaćina iz Android emulatora
+    public static final String HOST = "10.0.2.2";
+    public static final int FIRESTORE_PORT = 8080;
+    public static final int AUTH_PORT = 9099;
+
+    private static final long TIMEOUT_SECONDS = 60;
+
+    private EmulatorTestSupport() {
+    }
+
+    public static String newId(String prefix) {
+        return prefix + "-" + UUID.randomUUID();
+    }
+
+    /**
+     * Čeka rezultat Task-a (testovi se izvršavaju van glavne niti).
+     */
+    public static <T> T await(Task<T> task) throws Exception {
+        return Tasks.await(task, TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+}
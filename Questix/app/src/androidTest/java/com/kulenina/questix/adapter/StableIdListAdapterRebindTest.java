@@ -0,0 +1,156 @@
+package com.kulenina.questix.adapter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Instrumentation;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Broj vezivanja redova kada se u listi od 500 stavki promeni jedan red:
+ * StableIdListAdapter ponovo vezuje samo taj red, a notifyDataSetChanged sve vidljive.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StableIdListAdapterRebindTest {
+
+    private static final int ITEMS = 500;
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+    private static final int ROW_HEIGHT = 120;
+
+    private final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+
+    private RecyclerView recyclerView;
+    private RowAdapter adapter;
+
+    @Before
+    public void setUp() throws Exception {
+        instrumentation.runOnMainSync(() -> {
+            recyclerView = new RecyclerView(instrumentation.getTargetContext());
+            recyclerView.setLayoutManager(new LinearLayoutManager(instrumentation.getTargetContext()));
+            recyclerView.setItemAnimator(null);
+            adapter = new RowAdapter();
+            recyclerView.setAdapter(adapter);
+        });
+        submitAndLayout(rows("v0", 0));
+    }
+
+    @Test
+    public void oneChangedRow_rebindsOnlyThatRow() throws Exception {
+        int visibleRows = HEIGHT / ROW_HEIGHT;
+
+        List<Row> changed = rows("v0", 0);
+        changed.set(3, new Row("row-3", "v1"));
+        instrumentation.runOnMainSync(adapter::resetBindCount);
+        submitAndLayout(changed);
+        int diffBinds = adapter.getBindCount();
+
+        instrumentation.runOnMainSync(() -> {
+            adapter.resetBindCount();
+            adapter.notifyDataSetChanged();
+            layout();
+        });
+        int fullBinds = adapter.getBindCount();
+
+        System.out.println("StableIdListAdapter rebinds for one changed row in " + ITEMS
+                + " items: diff=" + diffBinds + ", notifyDataSetChanged=" + fullBinds);
+        assertEquals(1, diffBinds);
+        assertTrue(fullBinds >= visibleRows);
+    }
+
+    @Test
+    public void stableIds_onlyKeepCurrentKeys() throws Exception {
+        for (int round = 1; round <= 5; round++) {
+            submitAndLayout(rows("v" + round, round * ITEMS));
+        }
+
+        int[] count = new int[1];
+        instrumentation.runOnMainSync(() -> count[0] = adapter.getStableIdCount());
+        assertTrue("Stable ids kept: " + count[0], count[0] <= ITEMS);
+    }
+
+    private void submitAndLayout(List<Row> rows) throws InterruptedException {
+        CountDownLatch committed = new CountDownLatch(1);
+        instrumentation.runOnMainSync(() -> adapter.submitList(rows, committed::countDown));
+        assertTrue(committed.await(10, TimeUnit.SECONDS));
+        instrumentation.runOnMainSync(this::layout);
+    }
+
+    private void layout() {
+        recyclerView.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    private static List<Row> rows(String value, int firstKey) {
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < ITEMS; i++) {
+            rows.add(new Row("row-" + (firstKey + i), value));
+        }
+        return rows;
+    }
+
+    private static final class Row {
+        final String key;
+        final String value;
+
+        Row(String key, String value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private static final class RowAdapter extends StableIdListAdapter<Row, RowViewHolder> {
+
+        RowAdapter() {
+            super(new KeyedDiffCallback<Row>() {
+                @Override
+                public String getKey(@NonNull Row item) {
+                    return item.key;
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull Row oldItem, @NonNull Row newItem) {
+                    return oldItem.value.equals(newItem.value);
+                }
+            });
+        }
+
+        @NonNull
+        @Override
+        public RowViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            TextView view = new TextView(parent.getContext());
+            view.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ROW_HEIGHT));
+            return new RowViewHolder(view);
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull RowViewHolder holder, int position) {
+            Row row = getItem(position);
+            holder.text.setText(row.key + " " + row.value);
+        }
+    }
+
+    private static final class RowViewHolder extends RecyclerView.ViewHolder {
+        final TextView text;
+
+        RowViewHolder(TextView text) {
+            super(text);
+            this.text = text;
+        }
+    }
+}
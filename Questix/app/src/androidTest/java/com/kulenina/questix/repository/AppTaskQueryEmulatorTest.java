@@ -0,0 +1,124 @@
+package com.kulenina.questix.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+import com.kulenina.questix.EmulatorTestSupport;
+import com.kulenina.questix.mapper.IMapper;
+import com.kulenina.questix.mapper.Mappers;
+import com.kulenina.questix.model.AppTask;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Upiti zadataka po korisniku na Firestore emulatoru: količina pročitanih podataka
+ * ne sme da zavisi od broja zadataka drugih korisnika.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AppTaskQueryEmulatorTest {
+
+    private static final int OWN_TASKS = 20;
+    private static final int OTHER_USERS = 10;
+    private static final int TASKS_PER_OTHER_USER = 50;
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final AppTaskRepository repository = new AppTaskRepository();
+    private final IMapper<AppTask> mapper = Mappers.get(AppTask.class);
+
+    private String userId;
+    private long now;
+
+    @Before
+    public void setUp() throws Exception {
+        userId = EmulatorTestSupport.newId("user");
+        now = System.currentTimeMillis();
+        seedTasks(userId, OWN_TASKS);
+    }
+
+    @Test
+    public void userScopedQueries_readTheSameData_whenOtherUsersTasksGrow() throws Exception {
+        Map<String, Long> before = measureQueries();
+
+        for (int i = 0; i < OTHER_USERS; i++) {
+            seedTasks(EmulatorTestSupport.newId("other"), TASKS_PER_OTHER_USER);
+        }
+        Map<String, Long> after = measureQueries();
+
+        System.out.println("Bytes per query, before: " + before + ", after: " + after);
+        for (long bytes : before.values()) {
+            assertTrue(bytes > 0);
+        }
+        assertEquals(before, after);
+    }
+
+    @Test
+    public void readAll_grows_withOtherUsersTasks() throws Exception {
+        long before = bytesOf(EmulatorTestSupport.await(repository.readAll()));
+
+        seedTasks(EmulatorTestSupport.newId("other"), TASKS_PER_OTHER_USER);
+        long after = bytesOf(EmulatorTestSupport.await(repository.readAll()));
+
+        System.out.println("readAll bytes, before: " + before + ", after: " + after);
+        assertTrue(after > before);
+    }
+
+    /**
+     * Bajtovi koje vraća svaki upit koji koristi AppTaskService (getTaskOccurrencesByDateRange,
+     * getTasksForList, checkAndMarkMissedTasks). Korisnik nije sinhronizovan u LocalTaskStore,
+     * pa svi upiti idu na emulator.
+     */
+    private Map<String, Long> measureQueries() throws Exception {
+        Map<String, Long> bytes = new LinkedHashMap<>();
+        bytes.put("findAllByUser", bytesOf(EmulatorTestSupport.await(
+                repository.findAllByUser(userId))));
+        bytes.put("findOneTimeByUserInRange", bytesOf(EmulatorTestSupport.await(
+                repository.findOneTimeByUserInRange(userId, now - 7 * DAY_MILLIS, now + 7 * DAY_MILLIS))));
+        bytes.put("findRecurringByUserStartingBefore", bytesOf(EmulatorTestSupport.await(
+                repository.findRecurringByUserStartingBefore(userId, now + 7 * DAY_MILLIS))));
+        bytes.put("findByUserAndStatuses", bytesOf(EmulatorTestSupport.await(
+                repository.findByUserAndStatuses(userId, AppTask.STATUS_ACTIVE, AppTask.STATUS_PAUSED))));
+        bytes.put("findByUserAndStatusesBefore", bytesOf(EmulatorTestSupport.await(
+                repository.findByUserAndStatusesBefore(userId, now, AppTask.STATUS_ACTIVE, AppTask.STATUS_PAUSED))));
+        return bytes;
+    }
+
+    private long bytesOf(List<AppTask> tasks) {
+        long bytes = 0;
+        for (AppTask task : tasks) {
+            bytes += mapper.toMap(task).toString().getBytes(StandardCharsets.UTF_8).length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Zadaci drugih korisnika su u istom vremenskom opsegu i sa istim statusima,
+     * tako da ih od zadataka korisnika razlikuje samo userId.
+     */
+    private void seedTasks(String ownerId, int count) throws Exception {
+        WriteBatch batch = FirebaseFirestore.getInstance().batch();
+        for (int i = 0; i < count; i++) {
+            long executionTime = now + (i % 10 - 5) * DAY_MILLIS;
+            boolean recurring = i % 4 == 0;
+            AppTask task = new AppTask(ownerId, "category", "#FF0000", "Task " + i, "Opis zadatka " + i,
+                    executionTime, recurring, recurring ? 1 : null, recurring ? AppTask.UNIT_DAY : null,
+                    executionTime, recurring ? executionTime + 30 * DAY_MILLIS : executionTime,
+                    "Easy", 1, "Normal", 1);
+            if (i % 3 == 0) {
+                task.status = AppTask.STATUS_DONE;
+            } else if (recurring && i % 8 == 0) {
+                task.status = AppTask.STATUS_PAUSED;
+            }
+            batch.set(repository.getDocumentReference(task.getId()), mapper.toMap(task));
+        }
+        EmulatorTestSupport.await(batch.commit());
+    }
+}
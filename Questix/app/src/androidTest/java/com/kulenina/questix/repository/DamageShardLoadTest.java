@@ -0,0 +1,76 @@
+package com.kulenina.questix.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+import com.kulenina.questix.EmulatorTestSupport;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Upisi štete u sekundi na Firestore emulatoru u zavisnosti od broja šardova.
+ * Emulator ne ograničava broj upisa u jedan dokument kao produkcija, pa se sudaranje upisa
+ * u isti dokument izaziva transakcijama (čitanje pa upis šarda).
+ */
+@RunWith(AndroidJUnit4.class)
+public class DamageShardLoadTest {
+
+    private static final int WRITES = 60;
+
+    private final FirebaseFirestore db = FirebaseFirestore.getInstance();
+    private final AllianceRepository allianceRepository = new AllianceRepository();
+
+    @Test
+    public void writesPerSecond_growWithShardCount() throws Exception {
+        double oneShard = measureWritesPerSecond(1);
+        double allShards = measureWritesPerSecond(AllianceRepository.DAMAGE_SHARDS);
+
+        System.out.println(String.format("Damage writes/s with 1 shard: %.1f, with %d shards: %.1f",
+                oneShard, AllianceRepository.DAMAGE_SHARDS, allShards));
+        assertTrue(allShards > oneShard);
+    }
+
+    /**
+     * @return Uspešno upisane štete u sekundi; zbir šardova mora biti tačno jednak broju uspešnih upisa.
+     */
+    private double measureWritesPerSecond(int shards) throws Exception {
+        String allianceId = EmulatorTestSupport.newId("alliance");
+        WriteBatch batch = db.batch();
+        allianceRepository.resetDamageShards(batch, allianceId);
+        EmulatorTestSupport.await(batch.commit());
+
+        List<Task<Void>> writes = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < WRITES; i++) {
+            DocumentReference shard = allianceRepository.getRandomDamageShard(allianceId, shards);
+            writes.add(db.runTransaction(transaction -> {
+                Long damage = transaction.get(shard).getLong("damage");
+                Map<String, Object> data = new HashMap<>();
+                data.put("damage", (damage != null ? damage : 0) + 1);
+                transaction.set(shard, data);
+                return null;
+            }));
+        }
+        EmulatorTestSupport.await(Tasks.whenAllComplete(writes));
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        int committed = 0;
+        for (Task<Void> write : writes) {
+            if (write.isSuccessful()) {
+                committed++;
+            }
+        }
+        assertEquals(committed, (int) EmulatorTestSupport.await(allianceRepository.getTotalDamage(allianceId)));
+        return committed / seconds;
+    }
+}
@@ -0,0 +1,85 @@
+package com.kulenina.questix.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.kulenina.questix.EmulatorTestSupport;
+import com.kulenina.questix.model.AppTask;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Lokalna baza: puna sinhronizacija uvek uzima kopiju sa servera, a inkrementalni upis
+ * ne prepisuje noviji lokalni zapis.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LocalTaskStoreTest {
+
+    private LocalTaskStore store;
+    private String userId;
+
+    @Before
+    public void setUp() {
+        store = LocalTaskStore.getInstance();
+        assertNotNull(store);
+        userId = EmulatorTestSupport.newId("user");
+    }
+
+    @Test
+    public void replaceAllForUser_overwritesNewerLocalRow() throws Exception {
+        AppTask local = task("Local edit", 2_000L);
+        EmulatorTestSupport.await(store.upsert(local));
+
+        // Server ima stariji updatedAt (drugi sat ili odbijen lokalni upis)
+        AppTask server = task("Server copy", 1_000L);
+        server.id = local.id;
+        server.setOccurrenceStatus(5_000L, AppTask.STATUS_DONE);
+        server.updatedAt = 1_000L;
+        EmulatorTestSupport.await(store.replaceAllForUser(userId, Collections.singletonList(server), 1_000L));
+
+        List<AppTask> tasks = EmulatorTestSupport.await(store.findAllByUser(userId));
+        assertEquals(1, tasks.size());
+        assertEquals("Server copy", tasks.get(0).name);
+        assertEquals(1_000L, tasks.get(0).updatedAt);
+        assertEquals(AppTask.STATUS_DONE, tasks.get(0).getOccurrenceStatus(5_000L));
+    }
+
+    @Test
+    public void upsertAll_keepsNewerLocalRow() throws Exception {
+        AppTask local = task("Local edit", 2_000L);
+        EmulatorTestSupport.await(store.upsert(local));
+
+        AppTask older = task("Older copy", 1_000L);
+        older.id = local.id;
+        assertEquals(Integer.valueOf(0), EmulatorTestSupport.await(store.upsertAll(Collections.singletonList(older))));
+
+        List<AppTask> tasks = EmulatorTestSupport.await(store.findAllByUser(userId));
+        assertEquals("Local edit", tasks.get(0).name);
+    }
+
+    @Test
+    public void replace_restoresServerCopy() throws Exception {
+        AppTask local = task("Rejected edit", 2_000L);
+        local.setOccurrenceStatus(5_000L, AppTask.STATUS_DONE);
+        EmulatorTestSupport.await(store.upsert(local));
+
+        AppTask server = task("Server copy", 1_000L);
+        server.id = local.id;
+        EmulatorTestSupport.await(store.replace(server));
+
+        AppTask restored = EmulatorTestSupport.await(store.findAllByUser(userId)).get(0);
+        assertEquals("Server copy", restored.name);
+        assertEquals(null, restored.getOccurrenceStatus(5_000L));
+    }
+
+    private AppTask task(String name, long updatedAt) {
+        AppTask task = new AppTask(userId, "category", "#FF0000", name, "", 10_000L,
+                true, 1, AppTask.UNIT_DAY, 10_000L, 100_000_000L, "Easy", 1, "Normal", 1);
+        task.updatedAt = updatedAt;
+        return task;
+    }
+}
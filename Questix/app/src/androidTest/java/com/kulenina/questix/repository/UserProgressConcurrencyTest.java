@@ -0,0 +1,106 @@
+package com.kulenina.questix.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.kulenina.questix.EmulatorTestSupport;
+import com.kulenina.questix.mapper.Mappers;
+import com.kulenina.questix.model.User;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Istovremene dodele XP-a i trošenje novčića nad istim korisnikom na Firestore emulatoru:
+ * updateProgress i spendCoins menjaju samo svoja polja (FieldValue.increment), pa se nijedna
+ * potvrđena izmena ne gubi. Poređenja radi, upis celog korisnika posle čitanja gubi izmene.
+ */
+@RunWith(AndroidJUnit4.class)
+public class UserProgressConcurrencyTest {
+
+    private static final int AWARDS = 12;
+    private static final int SPENDS = 6;
+    private static final int XP_PER_AWARD = 5;
+    private static final int COINS_PER_SPEND = 10;
+    private static final int START_COINS = 1000;
+
+    private final FirebaseFirestore db = FirebaseFirestore.getInstance();
+    private final UserRepository userRepository = new UserRepository();
+
+    private String userId;
+
+    @Before
+    public void setUp() throws Exception {
+        userId = EmulatorTestSupport.newId("user");
+        User user = new User(userId, "avatar", userId, userId + "@example.com", 1, 0, 0, START_COINS, 0);
+        EmulatorTestSupport.await(userRepository.getDocumentReference(userId).set(Mappers.get(User.class).toMap(user)));
+    }
+
+    @Test
+    public void parallelAwardsAndSpends_loseNoXpOrCoins() throws Exception {
+        List<Task<Void>> awards = new ArrayList<>();
+        List<Task<Void>> spends = new ArrayList<>();
+        for (int i = 0; i < AWARDS; i++) {
+            awards.add(db.runTransaction(transaction -> {
+                User user = userRepository.read(transaction, userId);
+                userRepository.updateProgress(transaction, user, XP_PER_AWARD, false);
+                return null;
+            }));
+            if (i < SPENDS) {
+                spends.add(db.runTransaction(transaction -> {
+                    userRepository.spendCoins(transaction, userId, COINS_PER_SPEND);
+                    return null;
+                }));
+            }
+        }
+        List<Task<Void>> all = new ArrayList<>(awards);
+        all.addAll(spends);
+        EmulatorTestSupport.await(Tasks.whenAllComplete(all));
+
+        int committedAwards = countSuccessful(awards);
+        int committedSpends = countSuccessful(spends);
+        User user = EmulatorTestSupport.await(userRepository.read(userId));
+
+        System.out.println("Parallel user updates: " + committedAwards + "/" + AWARDS + " awards and "
+                + committedSpends + "/" + SPENDS + " spends committed, xp=" + user.xp + ", coins=" + user.coins);
+        // Transakcija koja posle ponavljanja ne uspe ne menja ništa; svaka potvrđena se računa tačno jednom
+        assertTrue(committedAwards > 0);
+        assertEquals(committedAwards * XP_PER_AWARD, (int) user.xp);
+        assertEquals(START_COINS - committedSpends * COINS_PER_SPEND, (int) user.coins);
+    }
+
+    @Test
+    public void readThenWriteWholeUser_losesAwards() throws Exception {
+        // Svi klijenti pročitaju isto stanje, pa svaki upiše xp + XP_PER_AWARD preko celog dokumenta
+        List<User> copies = new ArrayList<>();
+        for (int i = 0; i < AWARDS; i++) {
+            copies.add(EmulatorTestSupport.await(userRepository.read(userId)));
+        }
+        List<Task<Void>> writes = new ArrayList<>();
+        for (User copy : copies) {
+            copy.xp += XP_PER_AWARD;
+            writes.add(userRepository.update(copy));
+        }
+        EmulatorTestSupport.await(Tasks.whenAll(writes));
+
+        User user = EmulatorTestSupport.await(userRepository.read(userId));
+        System.out.println("Read-then-write xp after " + AWARDS + " awards: " + user.xp);
+        assertEquals(XP_PER_AWARD, (int) user.xp);
+    }
+
+    private static int countSuccessful(List<Task<Void>> tasks) {
+        int successful = 0;
+        for (Task<Void> task : tasks) {
+            if (task.isSuccessful()) {
+                successful++;
+            }
+        }
+        return successful;
+    }
+}
@@ -0,0 +1,164 @@
+package com.kulenina.questix.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+import com.kulenina.questix.EmulatorTestSupport;
+import com.kulenina.questix.mapper.Mappers;
+import com.kulenina.questix.model.Alliance;
+import com.kulenina.questix.model.MissionProgress;
+import com.kulenina.questix.model.User;
+import com.kulenina.questix.repository.AllianceRepository;
+import com.kulenina.questix.repository.MissionProgressRepository;
+import com.kulenina.questix.repository.UserRepository;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Finalizacija misije na Firestore emulatoru kada je pokreće više klijenata istovremeno
+ * ili kada se nastavlja prekinuta finalizacija: svaki član je nagrađen najviše jednom.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MissionFinalizationEmulatorTest {
+
+    private static final int MEMBERS = 8;
+    private static final int TRIGGERS = 5;
+
+    private final FirebaseFirestore db = FirebaseFirestore.getInstance();
+    private final AllianceRepository allianceRepository = new AllianceRepository();
+    private final MissionProgressRepository missionProgressRepository = new MissionProgressRepository();
+    private final UserRepository userRepository = new UserRepository();
+
+    @Test
+    public void concurrentTriggers_rewardEachMemberOnce() throws Exception {
+        List<String> members = newMembers();
+        String allianceId = seedDefeatedMission(members, members, Alliance.MISSION_ACTIVE, 0);
+
+        long claimsBefore = AllianceMissionService.getFinalizationCount();
+        List<Task<Void>> triggers = new ArrayList<>();
+        for (int i = 0; i < TRIGGERS; i++) {
+            // Svaki okidač kao poseban klijent (poraz bosa, ulazak u fragment...)
+            triggers.add(new AllianceMissionService().checkAndFinalizeMission(allianceId));
+        }
+        EmulatorTestSupport.await(Tasks.whenAllComplete(triggers));
+
+        assertEquals(1, AllianceMissionService.getFinalizationCount() - claimsBefore);
+        assertRewardedOnce(members, members);
+        assertFinalized(allianceId);
+    }
+
+    @Test
+    public void expiredLease_rewardsOnlyMembersNotYetFinalized() throws Exception {
+        List<String> members = newMembers();
+        // Prvi klijent je nagradio prvu polovinu i prekinut je; zakup je odavno istekao
+        List<String> remaining = members.subList(MEMBERS / 2, MEMBERS);
+        String allianceId = seedDefeatedMission(members, remaining, Alliance.MISSION_FINALIZING, 1);
+
+        List<Task<Void>> triggers = new ArrayList<>();
+        for (int i = 0; i < TRIGGERS; i++) {
+            triggers.add(new AllianceMissionService().checkAndFinalizeMission(allianceId));
+        }
+        EmulatorTestSupport.await(Tasks.whenAllComplete(triggers));
+
+        assertRewardedOnce(members, remaining);
+        assertFinalized(allianceId);
+    }
+
+    @Test
+    public void activeLease_isNotTakenOver() throws Exception {
+        List<String> members = newMembers();
+        String allianceId = seedDefeatedMission(members, members, Alliance.MISSION_ACTIVE, 0);
+        // Finalizaciju je upravo preuzeo drugi klijent (vreme servera)
+        long claimedAt = EmulatorTestSupport.await(allianceRepository.getServerTime(allianceId));
+        EmulatorTestSupport.await(allianceRepository.getDocumentReference(allianceId).update(
+                "missionState", Alliance.MISSION_FINALIZING,
+                "finalizationClaimedAt", claimedAt,
+                "missionSucceeded", true));
+
+        EmulatorTestSupport.await(new AllianceMissionService().checkAndFinalizeMission(allianceId));
+
+        assertRewardedOnce(members, new ArrayList<>());
+        Alliance alliance = EmulatorTestSupport.await(allianceRepository.read(allianceId));
+        assertTrue(alliance.holdsFinalizationClaim(claimedAt));
+        assertEquals(MEMBERS, EmulatorTestSupport.await(
+                missionProgressRepository.getAllProgressesByAllianceId(allianceId)).size());
+    }
+
+    private void assertRewardedOnce(List<String> members, List<String> rewarded) throws Exception {
+        int coins = -1;
+        for (String userId : members) {
+            User user = EmulatorTestSupport.await(userRepository.read(userId));
+            int expectedBadges = rewarded.contains(userId) ? 1 : 0;
+            assertEquals("Badges of " + userId, expectedBadges, (int) user.badgesCount);
+            if (expectedBadges == 1) {
+                // Svi nagrađeni članovi dobijaju isti iznos, tačno jednom
+                assertTrue(user.coins > 0);
+                if (coins >= 0) {
+                    assertEquals(coins, (int) user.coins);
+                }
+                coins = user.coins;
+            } else {
+                assertEquals(0, (int) user.coins);
+            }
+        }
+    }
+
+    private void assertFinalized(String allianceId) throws Exception {
+        Alliance alliance = EmulatorTestSupport.await(allianceRepository.read(allianceId));
+        assertEquals(Alliance.MISSION_FINALIZED, alliance.missionState);
+        assertEquals(0, EmulatorTestSupport.await(missionProgressRepository.getAllProgressesByAllianceId(allianceId)).size());
+    }
+
+    private static List<String> newMembers() {
+        List<String> members = new ArrayList<>();
+        for (int i = 0; i < MEMBERS; i++) {
+            members.add(EmulatorTestSupport.newId("member"));
+        }
+        return members;
+    }
+
+    /**
+     * Savez sa poraženim bosom; napredak (sa doprinosom) postoji samo za withProgress.
+     */
+    private String seedDefeatedMission(List<String> members, List<String> withProgress, String missionState,
+                                       long finalizationClaimedAt) throws Exception {
+        String allianceId = EmulatorTestSupport.newId("alliance");
+        long now = System.currentTimeMillis();
+        Alliance alliance = new Alliance(allianceId, "Finalization", members.get(0));
+        for (String userId : members) {
+            alliance.addMember(userId);
+        }
+        alliance.setMissionActive(true);
+        alliance.missionState = missionState;
+        alliance.setBossMaxHp(MEMBERS * 100);
+        alliance.setBossCurrentHp(MEMBERS * 100);
+        alliance.setMissionStartedAt(now - TimeUnit.DAYS.toMillis(1));
+        alliance.bossDefeatedAt = now;
+        alliance.finalizationClaimedAt = finalizationClaimedAt;
+        alliance.missionSucceeded = Alliance.MISSION_FINALIZING.equals(missionState);
+
+        WriteBatch batch = db.batch();
+        batch.set(allianceRepository.getDocumentReference(allianceId), Mappers.get(Alliance.class).toMap(alliance));
+        allianceRepository.resetDamageShards(batch, allianceId);
+        for (String userId : members) {
+            User user = new User(userId, "avatar", userId, userId + "@example.com", 1, 0, 0, 0, 0);
+            batch.set(userRepository.getDocumentReference(userId), Mappers.get(User.class).toMap(user));
+        }
+        for (String userId : withProgress) {
+            MissionProgress progress = new MissionProgress(allianceId, userId);
+            progress.totalHpContribution = 10;
+            batch.set(missionProgressRepository.getDocumentReference(progress.getId()),
+                    Mappers.get(MissionProgress.class).toMap(progress));
+        }
+        EmulatorTestSupport.await(batch.commit());
+        return allianceId;
+    }
+}
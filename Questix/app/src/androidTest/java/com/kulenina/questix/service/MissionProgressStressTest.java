@@ -0,0 +1,160 @@
+package com.kulenina.questix.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+import com.kulenina.questix.EmulatorTestSupport;
+import com.kulenina.questix.mapper.Mappers;
+import com.kulenina.questix.model.Alliance;
+import com.kulenina.questix.model.MissionProgress;
+import com.kulenina.questix.repository.AllianceRepository;
+import com.kulenina.questix.repository.MissionProgressRepository;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * 30 članova istovremeno napreduje u misiji na Firestore emulatoru: ponavljanja transakcija
+ * kada svaka akcija ima svoju transakciju (ranije) i kada se akcije člana skupe u jednu (MissionProgressBuffer).
+ */
+@RunWith(AndroidJUnit4.class)
+public class MissionProgressStressTest {
+
+    private static final int MEMBERS = 30;
+    private static final int ACTIONS_PER_MEMBER = 4;
+    private static final String ACTION = "HEAVY_TASK"; // 4 HP, kvota 6
+    private static final int HP_PER_ACTION = 4;
+
+    private final FirebaseFirestore db = FirebaseFirestore.getInstance();
+    private final AllianceRepository allianceRepository = new AllianceRepository();
+    private final MissionProgressRepository missionProgressRepository = new MissionProgressRepository();
+    private final AllianceMissionService service = new AllianceMissionService();
+
+    @Test
+    public void coalescedActions_retryLessThanOneTransactionPerAction() throws Exception {
+        List<String> members = newMembers();
+
+        // Ranije: jedna transakcija po akciji, pa se transakcije istog člana sudaraju na njegovom napretku
+        String perActionAlliance = seedMission(members);
+        long retriesBefore = AllianceMissionService.getProgressTransactionRetries();
+        List<Task<List<Boolean>>> perAction = new ArrayList<>();
+        for (String userId : members) {
+            for (int i = 0; i < ACTIONS_PER_MEMBER; i++) {
+                perAction.add(service.applyProgressActions(UUID.randomUUID().toString(), perActionAlliance, userId,
+                        Collections.singletonList(new MissionProgressBuffer.PendingAction(ACTION, "2025-05-01"))));
+            }
+        }
+        EmulatorTestSupport.await(Tasks.whenAllComplete(perAction));
+        long perActionRetries = AllianceMissionService.getProgressTransactionRetries() - retriesBefore;
+        int perActionFailures = 0;
+        for (Task<List<Boolean>> task : perAction) {
+            if (!task.isSuccessful()) {
+                perActionFailures++;
+            }
+        }
+
+        // Sada: akcije člana iz istog prozora idu u jednu transakciju
+        String bufferedAlliance = seedMission(members);
+        retriesBefore = AllianceMissionService.getProgressTransactionRetries();
+        long transactionsBefore = AllianceMissionService.getProgressTransactionCount();
+        List<Task<Boolean>> buffered = new ArrayList<>();
+        for (String userId : members) {
+            for (int i = 0; i < ACTIONS_PER_MEMBER; i++) {
+                buffered.add(service.updateMissionProgress(bufferedAlliance, userId, ACTION));
+            }
+        }
+        List<Boolean> damaged = EmulatorTestSupport.await(Tasks.whenAllSuccess(buffered));
+        long bufferedRetries = AllianceMissionService.getProgressTransactionRetries() - retriesBefore;
+        long bufferedTransactions = AllianceMissionService.getProgressTransactionCount() - transactionsBefore;
+
+        System.out.println("Mission progress with " + MEMBERS + " members x " + ACTIONS_PER_MEMBER
+                + " actions: per-action retries=" + perActionRetries + " (failed " + perActionFailures + "), "
+                + "buffered retries=" + bufferedRetries + " in " + bufferedTransactions + " transactions");
+
+        assertEquals(Collections.nCopies(MEMBERS * ACTIONS_PER_MEMBER, true), damaged);
+        assertEquals(MEMBERS * ACTIONS_PER_MEMBER * HP_PER_ACTION,
+                (int) EmulatorTestSupport.await(allianceRepository.getTotalDamage(bufferedAlliance)));
+        assertTrue(bufferedTransactions < MEMBERS * ACTIONS_PER_MEMBER);
+        assertTrue(bufferedRetries <= perActionRetries);
+    }
+
+    @Test
+    public void replayedFlush_isAppliedOnce() throws Exception {
+        List<String> members = newMembers();
+        String allianceId = seedMission(members);
+        String flushId = UUID.randomUUID().toString();
+        List<MissionProgressBuffer.PendingAction> actions =
+                Collections.singletonList(new MissionProgressBuffer.PendingAction(ACTION, "2025-05-01"));
+
+        // Ista grupa poslata ponovo posle ponovnog pokretanja (restore) se preskače
+        assertEquals(Collections.singletonList(true),
+                EmulatorTestSupport.await(service.applyProgressActions(flushId, allianceId, members.get(0), actions)));
+        assertEquals(Collections.singletonList(false),
+                EmulatorTestSupport.await(service.applyProgressActions(flushId, allianceId, members.get(0), actions)));
+
+        assertEquals(HP_PER_ACTION, (int) EmulatorTestSupport.await(allianceRepository.getTotalDamage(allianceId)));
+    }
+
+    @Test
+    public void bossDefeatChecks_areCoalescedPerInterval() throws Exception {
+        List<String> members = newMembers();
+        String allianceId = seedMission(members);
+
+        long checksBefore = AllianceMissionService.getBossDefeatCheckCount();
+        List<Task<Boolean>> actions = new ArrayList<>();
+        for (String userId : members) {
+            actions.add(service.updateMissionProgress(allianceId, userId, ACTION));
+        }
+        EmulatorTestSupport.await(Tasks.whenAllSuccess(actions));
+        // Provera zakazana poslednjim upisom se izvršava na kraju intervala
+        Thread.sleep(AllianceMissionService.BOSS_CHECK_INTERVAL_MS * 2);
+        long checks = AllianceMissionService.getBossDefeatCheckCount() - checksBefore;
+
+        System.out.println("Boss defeat checks (each reads all damage shards) for " + MEMBERS + " flushes: " + checks);
+        assertTrue(checks >= 1);
+        assertTrue(checks < MEMBERS);
+    }
+
+    private static List<String> newMembers() {
+        List<String> members = new ArrayList<>();
+        for (int i = 0; i < MEMBERS; i++) {
+            members.add(EmulatorTestSupport.newId("member"));
+        }
+        return members;
+    }
+
+    /**
+     * Savez sa aktivnom misijom, praznim šardovima i napretkom za svakog člana.
+     */
+    private String seedMission(List<String> members) throws Exception {
+        String allianceId = EmulatorTestSupport.newId("alliance");
+        Alliance alliance = new Alliance(allianceId, "Stress", members.get(0));
+        for (String userId : members) {
+            alliance.addMember(userId);
+        }
+        alliance.setMissionActive(true);
+        alliance.missionState = Alliance.MISSION_ACTIVE;
+        alliance.setBossMaxHp(MEMBERS * 100);
+        alliance.setBossCurrentHp(MEMBERS * 100);
+        alliance.setMissionStartedAt(System.currentTimeMillis());
+
+        WriteBatch batch = db.batch();
+        batch.set(allianceRepository.getDocumentReference(allianceId), Mappers.get(Alliance.class).toMap(alliance));
+        allianceRepository.resetDamageShards(batch, allianceId);
+        for (String userId : members) {
+            MissionProgress progress = new MissionProgress(allianceId, userId);
+            batch.set(missionProgressRepository.getDocumentReference(progress.getId()),
+                    Mappers.get(MissionProgress.class).toMap(progress));
+        }
+        EmulatorTestSupport.await(batch.commit());
+        return allianceId;
+    }
+}
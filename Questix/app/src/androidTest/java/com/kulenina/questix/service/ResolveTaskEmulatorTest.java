@@ -0,0 +1,61 @@
+package com.kulenina.questix.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.Source;
+import com.kulenina.questix.EmulatorTestSupport;
+import com.kulenina.questix.mapper.Mappers;
+import com.kulenina.questix.model.AppTask;
+import com.kulenina.questix.repository.AppTaskRepository;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * resolveTask na Firestore emulatoru za zadatak stariji od 3 dana: status "undone" se upisuje
+ * u transakciji, a poziv se zatim završava greškom.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ResolveTaskEmulatorTest {
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final AppTaskRepository taskRepository = new AppTaskRepository();
+
+    private String userId;
+
+    @Before
+    public void setUp() throws Exception {
+        FirebaseAuth auth = FirebaseAuth.getInstance();
+        if (auth.getCurrentUser() == null) {
+            EmulatorTestSupport.await(auth.signInAnonymously());
+        }
+        userId = auth.getCurrentUser().getUid();
+    }
+
+    @Test
+    public void tooOldTask_isMarkedUndone_thenFails() throws Exception {
+        long executionTime = System.currentTimeMillis() - 4 * DAY_MILLIS;
+        AppTask task = new AppTask(userId, "category", "#FF0000", "Old task", "", executionTime,
+                false, null, null, executionTime, executionTime, "Hard", 7, "Extremely Important", 10);
+        EmulatorTestSupport.await(taskRepository.getDocumentReference(task.getId())
+                .set(Mappers.get(AppTask.class).toMap(task)));
+
+        try {
+            EmulatorTestSupport.await(new AppTaskService().resolveTask(task.getId(), AppTask.STATUS_DONE));
+            fail("resolveTask must fail for a task older than 3 days");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().getMessage(), e.getCause().getMessage().contains("too old"));
+        }
+
+        AppTask stored = Mappers.get(AppTask.class).fromMap(EmulatorTestSupport.await(
+                taskRepository.getDocumentReference(task.getId()).get(Source.SERVER)).getData());
+        assertEquals(AppTask.STATUS_UNDONE, stored.status);
+    }
+}
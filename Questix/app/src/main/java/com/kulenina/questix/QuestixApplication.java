@@ -1,16 +1,46 @@
 package com.kulenina.questix;
 
 import android.app.Application;
+import android.content.pm.ApplicationInfo;
 import com.google.firebase.FirebaseApp;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreSettings;
+import com.google.firebase.firestore.PersistentCacheSettings;
+import com.kulenina.questix.repository.BattleCheckpointStore;
+import com.kulenina.questix.repository.LocalTaskStore;
+import com.kulenina.questix.repository.MissionActionStore;
+import com.kulenina.questix.service.AllianceMissionService;
 import com.kulenina.questix.service.NotificationSenderService;
+import com.kulenina.questix.util.MainThreadMonitor;
 
 public class QuestixApplication extends Application {
     @Override
     public void onCreate() {
         super.onCreate();
+        // Merenje zauzetosti glavne niti po ekranu, samo u debug build-u
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            MainThreadMonitor.install();
+        }
         FirebaseApp.initializeApp(this);
 
+        configureFirestore(FirebaseFirestore.getInstance());
+        LocalTaskStore.init(this);
+        BattleCheckpointStore.init(this);
+        MissionActionStore.init(this);
+        // Akcije misije koje nisu stigle da se upišu pre prethodnog zatvaranja
+        new AllianceMissionService().resumePendingProgress();
+
         NotificationSenderService notificationService = new NotificationSenderService();
         notificationService.initializeFcmToken();
     }
+
+    /**
+     * Podešavanja moraju biti postavljena pre prvog korišćenja Firestore-a.
+     * Instrumentacioni testovi ovde preusmeravaju aplikaciju na lokalni emulator.
+     */
+    protected void configureFirestore(FirebaseFirestore firestore) {
+        firestore.setFirestoreSettings(new FirebaseFirestoreSettings.Builder()
+                .setLocalCacheSettings(PersistentCacheSettings.newBuilder().build())
+                .build());
+    }
 }
@@ -43,6 +43,7 @@ import com.kulenina.questix.fragment.ShopFragment;
 import com.kulenina.questix.fragment.EquipmentInventoryFragment;
 import com.kulenina.questix.fragment.BossBattleFragment;
 import com.kulenina.questix.fragment.UserStatisticsFragment;
+import com.kulenina.questix.repository.UserRepository;
 
 public class MainActivity extends AppCompatActivity {
 	private AuthService authService = new AuthService();
@@ -90,6 +91,7 @@ public class MainActivity extends AppCompatActivity {
 			return;
 		}
 
+		new UserRepository().ensureOwnUsernameLower(authService.getCurrentUser().getUid());
 		showUserProfile();
 	}
 
@@ -9,14 +9,29 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.kulenina.questix.R;
 import com.kulenina.questix.databinding.ItemAllianceInvitationBinding;
+import com.kulenina.questix.mapper.IMapper;
+import com.kulenina.questix.mapper.Mappers;
 import com.kulenina.questix.model.AllianceInvitation;
 
 import java.util.ArrayList;
 import java.util.List;
 
-public class AllianceInvitationAdapter extends RecyclerView.Adapter<AllianceInvitationAdapter.InvitationViewHolder> {
-    
-    private List<AllianceInvitation> invitations;
+public class AllianceInvitationAdapter extends StableIdListAdapter<AllianceInvitation, AllianceInvitationAdapter.InvitationViewHolder> {
+
+    private static final KeyedDiffCallback<AllianceInvitation> DIFF_CALLBACK = new KeyedDiffCallback<AllianceInvitation>() {
+        private final IMapper<AllianceInvitation> mapper = Mappers.get(AllianceInvitation.class);
+
+        @Override
+        public String getKey(@NonNull AllianceInvitation item) {
+            return item.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull AllianceInvitation oldItem, @NonNull AllianceInvitation newItem) {
+            return sameFields(mapper, oldItem, newItem);
+        }
+    };
+
     private OnInvitationActionListener listener;
 
     public interface OnInvitationActionListener {
@@ -25,7 +40,7 @@ public class AllianceInvitationAdapter extends RecyclerView.Adapter<AllianceInvi
     }
 
     public AllianceInvitationAdapter(OnInvitationActionListener listener) {
-        this.invitations = new ArrayList<>();
+        super(DIFF_CALLBACK);
         this.listener = listener;
     }
 
@@ -43,30 +58,20 @@ public class AllianceInvitationAdapter extends RecyclerView.Adapter<AllianceInvi
 
     @Override
     public void onBindViewHolder(@NonNull InvitationViewHolder holder, int position) {
-        AllianceInvitation invitation = invitations.get(position);
+        AllianceInvitation invitation = getItem(position);
         holder.binding.setInvitation(invitation);
         holder.binding.setListener(listener);
         holder.binding.executePendingBindings();
     }
 
-    @Override
-    public int getItemCount() {
-        return invitations.size();
-    }
-
     public void updateInvitations(List<AllianceInvitation> newInvitations) {
-        this.invitations.clear();
-        if (newInvitations != null) {
-            this.invitations.addAll(newInvitations);
-        }
-        notifyDataSetChanged();
+        submitList(newInvitations != null ? new ArrayList<>(newInvitations) : new ArrayList<>());
     }
 
     public void removeInvitation(AllianceInvitation invitation) {
-        int position = invitations.indexOf(invitation);
-        if (position != -1) {
-            invitations.remove(position);
-            notifyItemRemoved(position);
+        List<AllianceInvitation> invitations = new ArrayList<>(getCurrentList());
+        if (invitations.remove(invitation)) {
+            submitList(invitations);
         }
     }
 
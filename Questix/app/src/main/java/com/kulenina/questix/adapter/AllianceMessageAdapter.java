@@ -9,32 +9,52 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.kulenina.questix.R;
+import com.kulenina.questix.mapper.IMapper;
+import com.kulenina.questix.mapper.Mappers;
 import com.kulenina.questix.model.AllianceMessage;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
-public class AllianceMessageAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+public class AllianceMessageAdapter extends StableIdListAdapter<AllianceMessage, RecyclerView.ViewHolder> {
 
     private static final int VIEW_TYPE_USER_MESSAGE = 1;
     private static final int VIEW_TYPE_OTHER_MESSAGE = 2;
 
-    private List<AllianceMessage> messages;
+    private static final KeyedDiffCallback<AllianceMessage> DIFF_CALLBACK = new KeyedDiffCallback<AllianceMessage>() {
+        private final IMapper<AllianceMessage> mapper = Mappers.get(AllianceMessage.class);
+
+        @Override
+        public String getKey(@NonNull AllianceMessage item) {
+            return item.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull AllianceMessage oldItem, @NonNull AllianceMessage newItem) {
+            return sameFields(mapper, oldItem, newItem);
+        }
+    };
+
     private String currentUserId;
     private SimpleDateFormat timeFormat;
+    // Poslednja predata lista i ID-evi poruka u njoj (lista adaptera se menja tek posle diff-a)
+    private List<AllianceMessage> messages = new ArrayList<>();
+    private final Set<String> messageIds = new HashSet<>();
 
     public AllianceMessageAdapter(String currentUserId) {
-        this.messages = new ArrayList<>();
+        super(DIFF_CALLBACK);
         this.currentUserId = currentUserId;
         this.timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
     }
 
     @Override
     public int getItemViewType(int position) {
-        AllianceMessage message = messages.get(position);
+        AllianceMessage message = getItem(position);
         if (message.senderId.equals(currentUserId)) {
             return VIEW_TYPE_USER_MESSAGE;
         } else {
@@ -58,7 +78,7 @@ public class AllianceMessageAdapter extends RecyclerView.Adapter<RecyclerView.Vi
 
     @Override
     public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
-        AllianceMessage message = messages.get(position);
+        AllianceMessage message = getItem(position);
 
         if (holder instanceof UserMessageViewHolder) {
             ((UserMessageViewHolder) holder).bind(message);
@@ -67,19 +87,69 @@ public class AllianceMessageAdapter extends RecyclerView.Adapter<RecyclerView.Vi
         }
     }
 
-    @Override
-    public int getItemCount() {
-        return messages.size();
+    public void updateMessages(List<AllianceMessage> newMessages) {
+        updateMessages(newMessages, null);
     }
 
-    public void updateMessages(List<AllianceMessage> newMessages) {
-        this.messages = newMessages;
-        notifyDataSetChanged();
+    /**
+     * @param onCommitted Poziva se kada je nova lista prikazana (npr. za skrolovanje na poslednju poruku).
+     */
+    public void updateMessages(List<AllianceMessage> newMessages, Runnable onCommitted) {
+        messages = new ArrayList<>();
+        messageIds.clear();
+        addNew(newMessages, messages);
+        submitList(messages, onCommitted);
+    }
+
+    /**
+     * Dodaje novije poruke na kraj; postojeći redovi se ne vezuju ponovo.
+     * @return Broj stvarno dodatih poruka (već prikazane se preskaču).
+     */
+    public int appendMessages(List<AllianceMessage> newerMessages, Runnable onCommitted) {
+        List<AllianceMessage> updated = new ArrayList<>(messages);
+        int added = addNew(newerMessages, updated);
+        if (added > 0) {
+            messages = updated;
+            submitList(messages, onCommitted);
+        }
+        return added;
+    }
+
+    /**
+     * Dodaje starije poruke (stranu učitanu pri skrolovanju nagore) na početak.
+     */
+    public int prependMessages(List<AllianceMessage> olderMessages) {
+        List<AllianceMessage> older = new ArrayList<>();
+        int added = addNew(olderMessages, older);
+        if (added > 0) {
+            older.addAll(messages);
+            messages = older;
+            submitList(messages);
+        }
+        return added;
     }
 
     public void addMessage(AllianceMessage message) {
-        this.messages.add(message);
-        notifyItemInserted(messages.size() - 1);
+        List<AllianceMessage> single = new ArrayList<>();
+        single.add(message);
+        appendMessages(single, null);
+    }
+
+    public int getMessageCount() {
+        return messages.size();
+    }
+
+    private int addNew(List<AllianceMessage> source, List<AllianceMessage> target) {
+        int added = 0;
+        if (source != null) {
+            for (AllianceMessage message : source) {
+                if (messageIds.add(message.getId())) {
+                    target.add(message);
+                    added++;
+                }
+            }
+        }
+        return added;
     }
 
     class UserMessageViewHolder extends RecyclerView.ViewHolder {
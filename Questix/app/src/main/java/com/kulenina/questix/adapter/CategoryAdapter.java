@@ -7,13 +7,28 @@ import androidx.databinding.DataBindingUtil;
 import androidx.recyclerview.widget.RecyclerView;
 import com.kulenina.questix.R;
 import com.kulenina.questix.databinding.ItemCategoryBinding;
+import com.kulenina.questix.mapper.IMapper;
+import com.kulenina.questix.mapper.Mappers;
 import com.kulenina.questix.model.Category;
 import java.util.ArrayList;
 import java.util.List;
 
-public class CategoryAdapter extends RecyclerView.Adapter<CategoryAdapter.CategoryViewHolder> {
+public class CategoryAdapter extends StableIdListAdapter<Category, CategoryAdapter.CategoryViewHolder> {
+
+    private static final KeyedDiffCallback<Category> DIFF_CALLBACK = new KeyedDiffCallback<Category>() {
+        private final IMapper<Category> mapper = Mappers.get(Category.class);
+
+        @Override
+        public String getKey(@NonNull Category item) {
+            return item.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Category oldItem, @NonNull Category newItem) {
+            return sameFields(mapper, oldItem, newItem);
+        }
+    };
 
-    private List<Category> categories;
     private final CategoryActionListener listener;
 
     public interface CategoryActionListener {
@@ -22,7 +37,7 @@ public class CategoryAdapter extends RecyclerView.Adapter<CategoryAdapter.Catego
     }
 
     public CategoryAdapter(CategoryActionListener listener) {
-        this.categories = new ArrayList<>();
+        super(DIFF_CALLBACK);
         this.listener = listener;
     }
 
@@ -40,7 +55,7 @@ public class CategoryAdapter extends RecyclerView.Adapter<CategoryAdapter.Catego
 
     @Override
     public void onBindViewHolder(@NonNull CategoryViewHolder holder, int position) {
-        Category category = categories.get(position);
+        Category category = getItem(position);
 
         holder.binding.setCategory(category);
         holder.binding.setListener(listener);
@@ -48,17 +63,8 @@ public class CategoryAdapter extends RecyclerView.Adapter<CategoryAdapter.Catego
         holder.binding.executePendingBindings();
     }
 
-    @Override
-    public int getItemCount() {
-        return categories.size();
-    }
-
     public void setCategories(List<Category> newCategories) {
-        this.categories.clear();
-        if (newCategories != null) {
-            this.categories.addAll(newCategories);
-        }
-        notifyDataSetChanged();
+        submitList(newCategories != null ? new ArrayList<>(newCategories) : new ArrayList<>());
     }
 
     public static class CategoryViewHolder extends RecyclerView.ViewHolder {
@@ -11,6 +11,8 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.kulenina.questix.R;
+import com.kulenina.questix.mapper.IMapper;
+import com.kulenina.questix.mapper.Mappers;
 import com.kulenina.questix.model.Clothing;
 import com.kulenina.questix.model.Equipment;
 import com.kulenina.questix.model.Potion;
@@ -19,8 +21,21 @@ import com.kulenina.questix.model.Weapon;
 import java.util.ArrayList;
 import java.util.List;
 
-public class EquipmentInventoryAdapter extends RecyclerView.Adapter<EquipmentInventoryAdapter.EquipmentViewHolder> {
-    private List<Equipment> equipmentList = new ArrayList<>();
+public class EquipmentInventoryAdapter extends StableIdListAdapter<Equipment, EquipmentInventoryAdapter.EquipmentViewHolder> {
+    static final KeyedDiffCallback<Equipment> DIFF_CALLBACK = new KeyedDiffCallback<Equipment>() {
+        private final IMapper<Equipment> mapper = Mappers.get(Equipment.class);
+
+        @Override
+        public String getKey(@NonNull Equipment item) {
+            return item.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Equipment oldItem, @NonNull Equipment newItem) {
+            return sameFields(mapper, oldItem, newItem);
+        }
+    };
+
     private OnEquipmentActivationListener listener;
 
     public interface OnEquipmentActivationListener {
@@ -28,16 +43,16 @@ public class EquipmentInventoryAdapter extends RecyclerView.Adapter<EquipmentInv
     }
 
     public EquipmentInventoryAdapter(OnEquipmentActivationListener listener) {
+        super(DIFF_CALLBACK);
         this.listener = listener;
     }
 
     public void setEquipmentList(List<Equipment> equipmentList) {
-        this.equipmentList = equipmentList;
-        notifyDataSetChanged();
+        submitList(equipmentList != null ? new ArrayList<>(equipmentList) : new ArrayList<>());
     }
 
     public List<Equipment> getEquipmentList() {
-        return equipmentList;
+        return getCurrentList();
     }
 
     @NonNull
@@ -50,15 +65,10 @@ public class EquipmentInventoryAdapter extends RecyclerView.Adapter<EquipmentInv
 
     @Override
     public void onBindViewHolder(@NonNull EquipmentViewHolder holder, int position) {
-        Equipment equipment = equipmentList.get(position);
+        Equipment equipment = getItem(position);
         holder.bind(equipment);
     }
 
-    @Override
-    public int getItemCount() {
-        return equipmentList.size();
-    }
-
     class EquipmentViewHolder extends RecyclerView.ViewHolder {
         private CheckBox checkBoxActivate;
         private ImageView imageViewIcon;
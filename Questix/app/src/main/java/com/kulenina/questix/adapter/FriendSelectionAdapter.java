@@ -11,12 +11,12 @@ import com.kulenina.questix.R;
 import com.kulenina.questix.databinding.ItemFriendSelectionBinding;
 import com.kulenina.questix.viewmodel.UserViewModel;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-public class FriendSelectionAdapter extends RecyclerView.Adapter<FriendSelectionAdapter.FriendSelectionViewHolder> {
-    private List<UserViewModel> friendViewModels;
+public class FriendSelectionAdapter extends StableIdListAdapter<UserViewModel, FriendSelectionAdapter.FriendSelectionViewHolder> {
     private Set<String> selectedFriendIds;
     private OnFriendSelectionChangeListener listener;
 
@@ -25,9 +25,14 @@ public class FriendSelectionAdapter extends RecyclerView.Adapter<FriendSelection
     }
 
     public FriendSelectionAdapter(List<UserViewModel> friendViewModels, OnFriendSelectionChangeListener listener) {
-        this.friendViewModels = friendViewModels;
+        super(UserAdapter.DIFF_CALLBACK);
         this.listener = listener;
         this.selectedFriendIds = new HashSet<>();
+        updateFriends(friendViewModels);
+    }
+
+    public void updateFriends(List<UserViewModel> newFriendViewModels) {
+        submitList(newFriendViewModels != null ? new ArrayList<>(newFriendViewModels) : new ArrayList<>());
     }
 
     @NonNull
@@ -42,22 +47,18 @@ public class FriendSelectionAdapter extends RecyclerView.Adapter<FriendSelection
 
     @Override
     public void onBindViewHolder(@NonNull FriendSelectionViewHolder holder, int position) {
-        UserViewModel userViewModel = friendViewModels.get(position);
+        UserViewModel userViewModel = getItem(position);
         holder.bind(userViewModel, selectedFriendIds.contains(userViewModel.getUser().getId()));
     }
 
-    @Override
-    public int getItemCount() {
-        return friendViewModels.size();
-    }
-
     public Set<String> getSelectedFriendIds() {
         return new HashSet<>(selectedFriendIds);
     }
 
     public void clearSelection() {
         selectedFriendIds.clear();
-        notifyDataSetChanged();
+        // Menja se samo stanje izbora, a ne lista
+        notifyItemRangeChanged(0, getItemCount());
         if (listener != null) {
             listener.onSelectionChanged(selectedFriendIds);
         }
@@ -0,0 +1,39 @@
+package com.kulenina.questix.adapter;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import com.kulenina.questix.mapper.IMapper;
+import java.util.Objects;
+
+/**
+ * DiffUtil callback koji stavke poredi po ključu (ID-u modela).
+ * Isti ključ se koristi i za stabilne ID-jeve u StableIdListAdapter.
+ */
+public abstract class KeyedDiffCallback<T> extends DiffUtil.ItemCallback<T> {
+
+    /**
+     * @return Jedinstven ključ stavke u listi (najčešće IIdentifiable.getId()), ili null ako ga nema.
+     */
+    public abstract String getKey(@NonNull T item);
+
+    @Override
+    public boolean areItemsTheSame(@NonNull T oldItem, @NonNull T newItem) {
+        String oldKey = getKey(oldItem);
+        if (oldKey == null) {
+            return oldItem == newItem;
+        }
+        return oldKey.equals(getKey(newItem));
+    }
+
+    /**
+     * Poredi sva polja dva modela preko mapera (isti podaci koji se upisuju u Firestore).
+     * Poziva se na pozadinskoj niti, pa cena mapiranja ne utiče na glavnu nit.
+     */
+    protected static <M> boolean sameFields(IMapper<M> mapper, @NonNull M oldItem, @NonNull M newItem) {
+        if (oldItem == newItem) {
+            return true;
+        }
+        return oldItem.getClass() == newItem.getClass()
+                && Objects.equals(mapper.toMap(oldItem), mapper.toMap(newItem));
+    }
+}
@@ -7,6 +7,8 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.kulenina.questix.databinding.ItemMemberProgressBinding;
+import com.kulenina.questix.mapper.IMapper;
+import com.kulenina.questix.mapper.Mappers;
 import com.kulenina.questix.model.MissionProgress;
 import com.kulenina.questix.model.User;
 
@@ -14,32 +16,66 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
-public class MemberProgressAdapter extends RecyclerView.Adapter<MemberProgressAdapter.MemberProgressViewHolder> {
+public class MemberProgressAdapter extends StableIdListAdapter<MissionProgress, MemberProgressAdapter.MemberProgressViewHolder> {
 
+    private static final KeyedDiffCallback<MissionProgress> DIFF_CALLBACK = new KeyedDiffCallback<MissionProgress>() {
+        private final IMapper<MissionProgress> mapper = Mappers.get(MissionProgress.class);
+
+        @Override
+        public String getKey(@NonNull MissionProgress item) {
+            return item.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull MissionProgress oldItem, @NonNull MissionProgress newItem) {
+            return sameFields(mapper, oldItem, newItem);
+        }
+    };
+
+    // Poslednja predata lista (trenutna lista adaptera se menja tek kada se razlike izračunaju)
     private List<MissionProgress> memberProgressList = new ArrayList<>();
     private Map<String, User> memberMap = new HashMap<>();
     private String currentUserId;
 
+    public MemberProgressAdapter() {
+        super(DIFF_CALLBACK);
+    }
+
     public void setData(List<MissionProgress> progressList, List<User> members, String currentUserId) {
-        System.out.println("DEBUG: MemberProgressAdapter.setData() called with " + 
-                (progressList != null ? progressList.size() : 0) + " progress items and " + 
-                (members != null ? members.size() : 0) + " members");
-        
-        this.memberProgressList = progressList != null ? progressList : new ArrayList<>();
+        this.memberProgressList = progressList != null ? new ArrayList<>(progressList) : new ArrayList<>();
+        boolean namesChanged = !Objects.equals(this.currentUserId, currentUserId);
         this.currentUserId = currentUserId;
         
         // Create a map for quick user lookup
-        this.memberMap.clear();
+        Map<String, User> newMemberMap = new HashMap<>();
         if (members != null) {
             for (User member : members) {
-                memberMap.put(member.getId(), member);
-                System.out.println("DEBUG: Added member to map: " + member.username + " (ID: " + member.getId() + ")");
+                newMemberMap.put(member.getId(), member);
             }
         }
-        
-        System.out.println("DEBUG: Notifying adapter of data change, item count: " + getItemCount());
-        notifyDataSetChanged();
+        namesChanged |= !sameUsernames(memberMap, newMemberMap);
+        this.memberMap = newMemberMap;
+
+        if (namesChanged) {
+            // Imena članova nisu deo MissionProgress-a, pa se postojeći redovi osvežavaju ručno
+            submitList(memberProgressList, () -> notifyItemRangeChanged(0, getItemCount()));
+        } else {
+            submitList(memberProgressList);
+        }
+    }
+
+    private static boolean sameUsernames(Map<String, User> oldMap, Map<String, User> newMap) {
+        if (!oldMap.keySet().equals(newMap.keySet())) {
+            return false;
+        }
+        for (Map.Entry<String, User> entry : newMap.entrySet()) {
+            if (!Objects.equals(entry.getValue().username, oldMap.get(entry.getKey()).username)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @NonNull
@@ -52,7 +88,7 @@ public class MemberProgressAdapter extends RecyclerView.Adapter<MemberProgressAd
 
     @Override
     public void onBindViewHolder(@NonNull MemberProgressViewHolder holder, int position) {
-        MissionProgress progress = memberProgressList.get(position);
+        MissionProgress progress = getItem(position);
         User member = memberMap.get(progress.userId);
         
         String memberName = member != null ? member.username : "Unknown Member";
@@ -61,11 +97,6 @@ public class MemberProgressAdapter extends RecyclerView.Adapter<MemberProgressAd
         holder.bind(progress, memberName, isCurrentUser);
     }
 
-    @Override
-    public int getItemCount() {
-        return memberProgressList.size();
-    }
-    
     public List<MissionProgress> getAllProgress() {
         return new ArrayList<>(memberProgressList);
     }
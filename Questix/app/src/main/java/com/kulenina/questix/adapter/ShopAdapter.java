@@ -17,8 +17,7 @@ import com.kulenina.questix.model.BossBattle;
 import java.util.ArrayList;
 import java.util.List;
 
-public class ShopAdapter extends RecyclerView.Adapter<ShopAdapter.ShopViewHolder> {
-    private List<Equipment> shopItems = new ArrayList<>();
+public class ShopAdapter extends StableIdListAdapter<Equipment, ShopAdapter.ShopViewHolder> {
     private int bossLevel = 1; // Default boss level
     private OnShopItemClickListener listener;
 
@@ -27,17 +26,20 @@ public class ShopAdapter extends RecyclerView.Adapter<ShopAdapter.ShopViewHolder
     }
 
     public ShopAdapter(OnShopItemClickListener listener) {
+        super(EquipmentInventoryAdapter.DIFF_CALLBACK);
         this.listener = listener;
     }
 
     public void setShopItems(List<Equipment> shopItems) {
-        this.shopItems = shopItems;
-        notifyDataSetChanged();
+        submitList(shopItems != null ? new ArrayList<>(shopItems) : new ArrayList<>());
     }
 
     public void setBossLevel(int bossLevel) {
+        if (this.bossLevel == bossLevel) {
+            return;
+        }
         this.bossLevel = bossLevel;
-        notifyDataSetChanged(); // Refresh prices when boss level changes
+        notifyItemRangeChanged(0, getItemCount()); // Refresh prices when boss level changes
     }
 
     @NonNull
@@ -50,16 +52,11 @@ public class ShopAdapter extends RecyclerView.Adapter<ShopAdapter.ShopViewHolder
 
     @Override
     public void onBindViewHolder(@NonNull ShopViewHolder holder, int position) {
-        Equipment equipment = shopItems.get(position);
+        Equipment equipment = getItem(position);
         int basePriceFromBossLevel = BossBattle.calculateCoinsReward(bossLevel);
         holder.bind(equipment, basePriceFromBossLevel);
     }
 
-    @Override
-    public int getItemCount() {
-        return shopItems.size();
-    }
-
     class ShopViewHolder extends RecyclerView.ViewHolder {
         private ImageView imageViewIcon;
         private TextView textViewName;
@@ -0,0 +1,98 @@
+package com.kulenina.questix.adapter;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * ListAdapter sa stabilnim ID-jevima: razlike između stare i nove liste se računaju
+ * na pozadinskoj niti, a ponovo se vezuju samo redovi koji su se stvarno promenili.
+ * Lista se menja isključivo preko submitList() sa novom instancom liste.
+ */
+public abstract class StableIdListAdapter<T, VH extends RecyclerView.ViewHolder> extends ListAdapter<T, VH> {
+
+    // Jedna pozadinska nit za računanje razlika svih lista
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final KeyedDiffCallback<T> diffCallback;
+    // Ključ stavke -> stabilan long ID (koristi se samo na glavnoj niti).
+    // Sadrži samo ključeve iz trenutne liste; ID-jevi se ne koriste ponovo.
+    private final Map<String, Long> stableIds = new HashMap<>();
+    private long nextStableId;
+    // Broj vezivanja redova od poslednjeg resetBindCount(), za merenje posla pri izmenama liste
+    private int bindCount;
+
+    protected StableIdListAdapter(KeyedDiffCallback<T> diffCallback) {
+        super(new AsyncDifferConfig.Builder<>(diffCallback)
+                .setBackgroundThreadExecutor(DIFF_EXECUTOR)
+                .build());
+        this.diffCallback = diffCallback;
+        setHasStableIds(true);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        String key = keyOf(getItem(position));
+        Long id = stableIds.get(key);
+        if (id == null) {
+            id = nextStableId++;
+            stableIds.put(key, id);
+        }
+        return id;
+    }
+
+    @Override
+    public void onCurrentListChanged(@NonNull List<T> previousList, @NonNull List<T> currentList) {
+        super.onCurrentListChanged(previousList, currentList);
+        // Ključevi uklonjenih stavki se brišu, da mapa ne raste sa svakom novom listom
+        Set<String> currentKeys = new HashSet<>();
+        for (T item : currentList) {
+            currentKeys.add(keyOf(item));
+        }
+        stableIds.keySet().retainAll(currentKeys);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull VH holder, int position, @NonNull List<Object> payloads) {
+        bindCount++;
+        super.onBindViewHolder(holder, position, payloads);
+    }
+
+    /**
+     * @return Broj vezivanja redova od poslednjeg resetBindCount().
+     */
+    public int getBindCount() {
+        return bindCount;
+    }
+
+    public void resetBindCount() {
+        bindCount = 0;
+    }
+
+    int getStableIdCount() {
+        return stableIds.size();
+    }
+
+    private String keyOf(T item) {
+        String key = diffCallback.getKey(item);
+        return key != null ? key : "@" + System.identityHashCode(item);
+    }
+
+    /**
+     * Ponovo vezuje red sa datom stavkom (za stavke izmenjene na mestu, bez nove liste).
+     */
+    public void refreshItem(T item) {
+        int position = getCurrentList().indexOf(item);
+        if (position != -1) {
+            notifyItemChanged(position);
+        }
+    }
+}
@@ -8,14 +8,35 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 import com.kulenina.questix.R;
 import com.kulenina.questix.databinding.TaskListItemBinding;
+import com.kulenina.questix.mapper.IMapper;
+import com.kulenina.questix.mapper.Mappers;
 import com.kulenina.questix.model.AppTask;
+import com.kulenina.questix.model.TaskOccurrence;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 
-public class TaskListAdapter extends RecyclerView.Adapter<TaskListAdapter.TaskViewHolder> {
+public class TaskListAdapter extends StableIdListAdapter<TaskOccurrence, TaskListAdapter.TaskViewHolder> {
+
+    private static final KeyedDiffCallback<TaskOccurrence> DIFF_CALLBACK = new KeyedDiffCallback<TaskOccurrence>() {
+        private final IMapper<AppTask> taskMapper = Mappers.get(AppTask.class);
+
+        @Override
+        public String getKey(@NonNull TaskOccurrence item) {
+            // ID ponavljanja (ORIGINAL_ID_executionTime) za ponavljajuće zadatke
+            return item.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull TaskOccurrence oldItem, @NonNull TaskOccurrence newItem) {
+            return oldItem.executionTime == newItem.executionTime
+                    && Objects.equals(oldItem.status, newItem.status)
+                    && sameFields(taskMapper, oldItem.task, newItem.task);
+        }
+    };
 
-    private List<AppTask> taskList;
     private final SimpleDateFormat dateFormat = new SimpleDateFormat("dd. MMM yyyy. - HH:mm", Locale.getDefault());
     private final TaskActionListener listener;
 
@@ -28,12 +49,12 @@ public class TaskListAdapter extends RecyclerView.Adapter<TaskListAdapter.TaskVi
     }
 
     public TaskListAdapter(TaskActionListener listener) {
+        super(DIFF_CALLBACK);
         this.listener = listener;
     }
 
-    public void setTasks(List<AppTask> tasks) {
-        this.taskList = tasks;
-        notifyDataSetChanged();
+    public void setTasks(List<TaskOccurrence> tasks) {
+        submitList(tasks != null ? new ArrayList<>(tasks) : null);
     }
 
     @NonNull
@@ -46,12 +67,7 @@ public class TaskListAdapter extends RecyclerView.Adapter<TaskListAdapter.TaskVi
 
     @Override
     public void onBindViewHolder(@NonNull TaskViewHolder holder, int position) {
-        holder.bind(taskList.get(position));
-    }
-
-    @Override
-    public int getItemCount() {
-        return taskList != null ? taskList.size() : 0;
+        holder.bind(getItem(position));
     }
 
     class TaskViewHolder extends RecyclerView.ViewHolder {
@@ -62,9 +78,10 @@ public class TaskListAdapter extends RecyclerView.Adapter<TaskListAdapter.TaskVi
             this.binding = binding;
         }
 
-        public void bind(AppTask task) {
+        public void bind(TaskOccurrence occurrence) {
+            AppTask task = occurrence.task;
             binding.tvTaskName.setText(task.name);
-            binding.tvExecutionTime.setText(dateFormat.format(task.executionTime));
+            binding.tvExecutionTime.setText(dateFormat.format(occurrence.executionTime));
 
             String recurrenceInfo = task.isRecurring ?
                     String.format("(%d %s)", task.repetitionInterval, task.repetitionUnit) : "Non-recurring";
@@ -78,7 +95,7 @@ public class TaskListAdapter extends RecyclerView.Adapter<TaskListAdapter.TaskVi
             }
 
             // Vizuelno označavanje završenih zadataka
-            if (task.isDone()) {
+            if (occurrence.isDone()) {
                 // Završeni zadaci - sivkasta boja i disabled dugmad
                 binding.tvTaskName.setTextColor(itemView.getContext().getResources().getColor(R.color.colorTextSecondary));
                 binding.tvExecutionTime.setTextColor(itemView.getContext().getResources().getColor(R.color.colorTextSecondary));
@@ -92,7 +109,7 @@ public class TaskListAdapter extends RecyclerView.Adapter<TaskListAdapter.TaskVi
                 binding.btnComplete.setAlpha(0.3f);
                 binding.btnCancel.setAlpha(0.3f);
 
-            } else if (task.isUndone()) {
+            } else if (occurrence.isUndone()) {
                 // Undone zadaci - sivkasta boja i disabled dugmad
                 binding.tvTaskName.setTextColor(itemView.getContext().getResources().getColor(R.color.colorTextSecondary));
                 binding.tvExecutionTime.setTextColor(itemView.getContext().getResources().getColor(R.color.colorTextSecondary));
@@ -106,7 +123,7 @@ public class TaskListAdapter extends RecyclerView.Adapter<TaskListAdapter.TaskVi
                 binding.btnComplete.setAlpha(0.3f);
                 binding.btnCancel.setAlpha(0.3f);
 
-            } else if (task.isFinished()) {
+            } else if (occurrence.isFinished()) {
                 // Canceled/Missed zadaci - sivkasta boja i disabled dugmad
                 binding.tvTaskName.setTextColor(itemView.getContext().getResources().getColor(R.color.colorTextSecondary));
                 binding.tvExecutionTime.setTextColor(itemView.getContext().getResources().getColor(R.color.colorTextSecondary));
@@ -140,8 +157,8 @@ public class TaskListAdapter extends RecyclerView.Adapter<TaskListAdapter.TaskVi
             binding.btnResume.setVisibility(View.GONE);
 
             // Show pause/resume buttons for recurring tasks
-            if (task.isRecurring && !task.isFinished()) {
-                if (task.isPaused()) {
+            if (task.isRecurring && !occurrence.isFinished()) {
+                if (occurrence.isPaused()) {
                     // Show resume button for paused recurring tasks
                     binding.btnResume.setVisibility(View.VISIBLE);
                     binding.btnResume.setEnabled(true);
@@ -155,11 +172,12 @@ public class TaskListAdapter extends RecyclerView.Adapter<TaskListAdapter.TaskVi
             }
 
             // Listeneri
-            binding.btnComplete.setOnClickListener(v -> listener.onTaskComplete(task.id));
-            binding.btnCancel.setOnClickListener(v -> listener.onTaskCancel(task.id));
-            binding.btnPause.setOnClickListener(v -> listener.onTaskPause(task.id));
-            binding.btnResume.setOnClickListener(v -> listener.onTaskResume(task.id));
-            binding.getRoot().setOnClickListener(v -> listener.onTaskClick(task.id));
+            String occurrenceId = occurrence.getId();
+            binding.btnComplete.setOnClickListener(v -> listener.onTaskComplete(occurrenceId));
+            binding.btnCancel.setOnClickListener(v -> listener.onTaskCancel(occurrenceId));
+            binding.btnPause.setOnClickListener(v -> listener.onTaskPause(occurrenceId));
+            binding.btnResume.setOnClickListener(v -> listener.onTaskResume(occurrenceId));
+            binding.getRoot().setOnClickListener(v -> listener.onTaskClick(occurrenceId));
         }
     }
 }
\ No newline at end of file
@@ -9,12 +9,33 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.kulenina.questix.R;
 import com.kulenina.questix.databinding.ItemUserBinding;
+import com.kulenina.questix.mapper.IMapper;
+import com.kulenina.questix.mapper.Mappers;
 import com.kulenina.questix.model.User;
 import com.kulenina.questix.viewmodel.UserViewModel;
 
+import java.util.ArrayList;
 import java.util.List;
 
-public class UserAdapter extends RecyclerView.Adapter<UserAdapter.UserViewHolder> {
+public class UserAdapter extends StableIdListAdapter<UserViewModel, UserAdapter.UserViewHolder> {
+    static final KeyedDiffCallback<UserViewModel> DIFF_CALLBACK = new KeyedDiffCallback<UserViewModel>() {
+        private final IMapper<User> mapper = Mappers.get(User.class);
+
+        @Override
+        public String getKey(@NonNull UserViewModel item) {
+            return item.getUser() != null ? item.getUser().getId() : null;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull UserViewModel oldItem, @NonNull UserViewModel newItem) {
+            if (oldItem.getUser() == null || newItem.getUser() == null) {
+                return oldItem == newItem;
+            }
+            return sameFields(mapper, oldItem.getUser(), newItem.getUser());
+        }
+    };
+
+    // Poslednja predata lista (trenutna lista adaptera se menja tek kada se razlike izračunaju)
     private List<UserViewModel> userViewModels;
     private OnUserClickListener listener;
 
@@ -23,8 +44,9 @@ public class UserAdapter extends RecyclerView.Adapter<UserAdapter.UserViewHolder
     }
 
     public UserAdapter(List<UserViewModel> userViewModels, OnUserClickListener listener) {
-        this.userViewModels = userViewModels;
+        super(DIFF_CALLBACK);
         this.listener = listener;
+        updateUserList(userViewModels);
     }
 
     @NonNull
@@ -39,18 +61,21 @@ public class UserAdapter extends RecyclerView.Adapter<UserAdapter.UserViewHolder
 
     @Override
     public void onBindViewHolder(@NonNull UserViewHolder holder, int position) {
-        UserViewModel userViewModel = userViewModels.get(position);
+        UserViewModel userViewModel = getItem(position);
         holder.bind(userViewModel, listener);
     }
 
-    @Override
-    public int getItemCount() {
-        return userViewModels.size();
+    public void updateUserList(List<UserViewModel> newUserViewModels) {
+        updateUserList(newUserViewModels, null);
     }
 
-    public void updateUserList(List<UserViewModel> newUserViewModels) {
-        this.userViewModels = newUserViewModels;
-        notifyDataSetChanged();
+    /**
+     * @param onCommitted Poziva se kada je nova lista primenjena na RecyclerView.
+     */
+    public void updateUserList(List<UserViewModel> newUserViewModels, Runnable onCommitted) {
+        // Kopija, jer pozivaoci menjaju istu listu i ponovo je prosleđuju
+        this.userViewModels = newUserViewModels != null ? new ArrayList<>(newUserViewModels) : new ArrayList<>();
+        submitList(this.userViewModels, onCommitted);
     }
 
     public List<UserViewModel> getUserList() {
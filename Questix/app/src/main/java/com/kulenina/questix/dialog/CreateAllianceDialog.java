@@ -132,7 +132,7 @@ public class CreateAllianceDialog extends DialogFragment implements FriendSelect
                         friendViewModels.add(userViewModel);
                     }
 
-                    friendAdapter.notifyDataSetChanged();
+                    friendAdapter.updateFriends(friendViewModels);
                     recyclerViewFriends.setVisibility(View.VISIBLE);
                     updateSelectedCount();
                 }
@@ -18,12 +18,15 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.ListenerRegistration;
 import com.kulenina.questix.R;
 import com.kulenina.questix.activity.MainActivity;
 import com.kulenina.questix.databinding.FragmentAllianceListBinding;
 import com.kulenina.questix.adapter.AllianceMessageAdapter;
 import com.kulenina.questix.model.Alliance;
 import com.kulenina.questix.model.AllianceMessage;
+import com.kulenina.questix.repository.AllianceMessageRepository;
 import com.kulenina.questix.service.AllianceMissionService;
 import com.kulenina.questix.service.AllianceService;
 import com.kulenina.questix.service.AuthService;
@@ -33,6 +36,8 @@ import androidx.navigation.fragment.NavHostFragment; // Potrebno za navigaciju
 import java.util.List;
 
 public class AllianceListFragment extends Fragment implements CreateAllianceDialog.OnAllianceCreatedListener {
+    private static final int OLDER_MESSAGES_THRESHOLD = 5;
+
     private FragmentAllianceListBinding binding;
     private AllianceService allianceService;
     private AllianceMissionService missionService;
@@ -44,6 +49,11 @@ public class AllianceListFragment extends Fragment implements CreateAllianceDial
     private AllianceMessageAdapter messageAdapter;
     private RecyclerView messagesRecyclerView;
     private EditText messageEditText;
+    private ListenerRegistration messageListener;
+    private String chatAllianceId;
+    private DocumentSnapshot olderMessagesCursor;
+    private boolean hasOlderMessages;
+    private boolean isLoadingOlderMessages;
 
     @Nullable
     @Override
@@ -84,6 +94,16 @@ public class AllianceListFragment extends Fragment implements CreateAllianceDial
 
         messagesRecyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
         messagesRecyclerView.setAdapter(messageAdapter);
+        messagesRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+                // Starije poruke se učitavaju kada se korisnik približi vrhu liste
+                if (dy < 0 && layoutManager != null && layoutManager.findFirstVisibleItemPosition() <= OLDER_MESSAGES_THRESHOLD) {
+                    loadOlderMessages();
+                }
+            }
+        });
 
         binding.buttonSendMessage.setOnClickListener(v -> sendMessage());
     }
@@ -148,6 +168,9 @@ public class AllianceListFragment extends Fragment implements CreateAllianceDial
             binding.layoutAllianceInfo.setVisibility(View.GONE);
             binding.layoutAllianceChat.setVisibility(View.GONE);
             binding.layoutNoAlliance.setVisibility(View.VISIBLE);
+
+            stopListeningToMessages();
+            messageAdapter.updateMessages(null);
         }
     }
 
@@ -190,31 +213,137 @@ public class AllianceListFragment extends Fragment implements CreateAllianceDial
     }
 
 
+    /**
+     * Otvara čet saveza: učitava poslednju stranu poruka i zatim sluša samo nove poruke.
+     * Ponovni poziv za isti savez ne radi ništa (listener je već aktivan).
+     */
     private void loadAllianceMessages() {
-        if (currentAlliance != null) {
-            allianceService.getAllianceMessages(currentAlliance.id)
-                .addOnSuccessListener(messages -> {
-                    messageAdapter.updateMessages(messages);
-                    if (!messages.isEmpty()) {
-                        messagesRecyclerView.scrollToPosition(messages.size() - 1);
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    String errorMessage = "Error loading messages";
-                    if (e.getMessage() != null) {
-                        if (e.getMessage().contains("FAILED_PRECONDITION")) {
-                            errorMessage = "Database configuration issue. Please try again later.";
-                        } else if (e.getMessage().contains("PERMISSION_DENIED")) {
-                            errorMessage = "You don't have permission to view these messages.";
-                        } else if (e.getMessage().contains("UNAVAILABLE")) {
-                            errorMessage = "Server is temporarily unavailable. Please try again.";
-                        } else {
-                            errorMessage = "Error loading messages: " + e.getMessage();
+        if (currentAlliance == null) {
+            return;
+        }
+        String allianceId = currentAlliance.id;
+        if (allianceId.equals(chatAllianceId)) {
+            return;
+        }
+
+        stopListeningToMessages();
+        chatAllianceId = allianceId;
+        olderMessagesCursor = null;
+        hasOlderMessages = false;
+        isLoadingOlderMessages = true;
+
+        allianceService.getLatestMessages(allianceId)
+            .addOnSuccessListener(page -> {
+                isLoadingOlderMessages = false;
+                if (!isAdded() || !allianceId.equals(chatAllianceId)) {
+                    return;
+                }
+
+                olderMessagesCursor = page.oldestDocument;
+                hasOlderMessages = page.hasOlder;
+                messageAdapter.updateMessages(page.messages, this::scrollToLastMessage);
+
+                messageListener = allianceService.listenToNewMessages(allianceId, page.newestDocument,
+                    new AllianceMessageRepository.NewMessagesListener() {
+                        @Override
+                        public void onNewMessages(List<AllianceMessage> messages) {
+                            showNewMessages(messages);
+                        }
+
+                        @Override
+                        public void onError(String message) {
+                            // Firestore zatvara listener posle greške; sledeći poziv ga ponovo otvara
+                            if (allianceId.equals(chatAllianceId)) {
+                                chatAllianceId = null;
+                            }
+                            if (isAdded()) {
+                                Toast.makeText(getContext(), "Chat updates stopped: " + message, Toast.LENGTH_SHORT).show();
+                            }
                         }
+                    });
+            })
+            .addOnFailureListener(e -> {
+                isLoadingOlderMessages = false;
+                // Sledeći poziv pokušava ponovo
+                chatAllianceId = null;
+                String errorMessage = "Error loading messages";
+                if (e.getMessage() != null) {
+                    if (e.getMessage().contains("FAILED_PRECONDITION")) {
+                        errorMessage = "Database configuration issue. Please try again later.";
+                    } else if (e.getMessage().contains("PERMISSION_DENIED")) {
+                        errorMessage = "You don't have permission to view these messages.";
+                    } else if (e.getMessage().contains("UNAVAILABLE")) {
+                        errorMessage = "Server is temporarily unavailable. Please try again.";
+                    } else {
+                        errorMessage = "Error loading messages: " + e.getMessage();
                     }
-                    Toast.makeText(getContext(), errorMessage, Toast.LENGTH_SHORT).show();
-                });
+                }
+                Toast.makeText(getContext(), errorMessage, Toast.LENGTH_SHORT).show();
+            });
+    }
+
+    private void loadOlderMessages() {
+        if (chatAllianceId == null || isLoadingOlderMessages || !hasOlderMessages || olderMessagesCursor == null) {
+            return;
         }
+
+        String allianceId = chatAllianceId;
+        isLoadingOlderMessages = true;
+        allianceService.getOlderMessages(allianceId, olderMessagesCursor)
+            .addOnSuccessListener(page -> {
+                isLoadingOlderMessages = false;
+                if (!isAdded() || !allianceId.equals(chatAllianceId)) {
+                    return;
+                }
+                olderMessagesCursor = page.oldestDocument;
+                hasOlderMessages = page.hasOlder;
+                messageAdapter.prependMessages(page.messages);
+            })
+            .addOnFailureListener(e -> {
+                isLoadingOlderMessages = false;
+                Toast.makeText(getContext(), "Error loading older messages: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            });
+    }
+
+    private void showNewMessages(List<AllianceMessage> messages) {
+        if (!isAdded()) {
+            return;
+        }
+
+        LinearLayoutManager layoutManager = (LinearLayoutManager) messagesRecyclerView.getLayoutManager();
+        boolean atBottom = layoutManager == null
+            || layoutManager.findLastVisibleItemPosition() >= messageAdapter.getMessageCount() - 1;
+        boolean sentByMe = false;
+        for (AllianceMessage message : messages) {
+            if (currentUserId.equals(message.senderId)) {
+                sentByMe = true;
+            }
+        }
+
+        // Skroluje se samo ako je korisnik već na dnu ili je sam poslao poruku
+        boolean scroll = atBottom || sentByMe;
+        messageAdapter.appendMessages(messages, scroll ? this::scrollToLastMessage : null);
+    }
+
+    private void scrollToLastMessage() {
+        int count = messageAdapter.getItemCount();
+        if (count > 0) {
+            messagesRecyclerView.scrollToPosition(count - 1);
+        }
+    }
+
+    private void stopListeningToMessages() {
+        if (messageListener != null) {
+            messageListener.remove();
+            messageListener = null;
+        }
+        chatAllianceId = null;
+    }
+
+    @Override
+    public void onDestroyView() {
+        stopListeningToMessages();
+        super.onDestroyView();
     }
 
     private void sendMessage() {
@@ -231,7 +360,7 @@ public class AllianceListFragment extends Fragment implements CreateAllianceDial
 
         allianceService.sendMessage(currentAlliance.id, currentUserId, messageText)
             .addOnSuccessListener(messageId -> {
-                loadAllianceMessages();
+                // Nova poruka stiže preko listenera
             })
             .addOnFailureListener(e -> {
                 Toast.makeText(getContext(), "Error sending message: " + e.getMessage(), Toast.LENGTH_SHORT).show();
@@ -20,6 +20,7 @@ import com.kulenina.questix.databinding.FragmentAllianceMissionBinding;
 import com.kulenina.questix.model.Alliance;
 import com.kulenina.questix.model.MissionProgress;
 import com.kulenina.questix.model.User;
+import com.kulenina.questix.repository.AllianceRepository;
 import com.kulenina.questix.service.AllianceMissionService;
 import com.kulenina.questix.service.AllianceMissionService.AllianceMissionListener;
 import com.kulenina.questix.service.AllianceService;
@@ -37,6 +38,10 @@ public class AllianceMissionFragment extends Fragment {
     private String allianceId;
     private String currentUserId;
     private ListenerRegistration allianceListenerRegistration;
+    private ListenerRegistration damageListenerRegistration;
+    // Poslednje stanje saveza i zbir štete iz šardova; HP bosa se računa iz oba
+    private Alliance currentAlliance;
+    private int bossDamage;
     private MemberProgressAdapter memberProgressAdapter;
     private List<User> allianceMembers = new ArrayList<>();
 
@@ -86,6 +91,7 @@ public class AllianceMissionFragment extends Fragment {
                 .addOnCompleteListener(task -> {
                     // Bez obzira na ishod, pokušavamo da prikažemo stanje
                     startRealtimeListener();
+                    startDamageListener();
                     loadUserProgress();
                     loadAllMembersProgress();
                 });
@@ -107,6 +113,7 @@ public class AllianceMissionFragment extends Fragment {
                             }
                         } else {
                             // Misija je aktivna, ažuriraj UI
+                            currentAlliance = alliance;
                             updateBossUI(alliance);
                             startTimer(alliance.getMissionStartedAt());
                             
@@ -124,6 +131,33 @@ public class AllianceMissionFragment extends Fragment {
         );
     }
 
+    private void startDamageListener() {
+        // Šteta članova se upisuje u šardove, a ne u dokument saveza
+        damageListenerRegistration = missionService.getBossDamageListener(
+                allianceId,
+                new AllianceRepository.BossDamageListener() {
+                    @Override
+                    public void onDamageChanged(int totalDamage) {
+                        if (binding == null || totalDamage == bossDamage) {
+                            return;
+                        }
+                        bossDamage = totalDamage;
+                        if (currentAlliance != null && currentAlliance.isMissionActive()) {
+                            updateBossUI(currentAlliance);
+                            loadAllMembersProgress();
+                        }
+                    }
+
+                    @Override
+                    public void onError(String message) {
+                        if (isAdded()) {
+                            Toast.makeText(getContext(), "Boss damage updates stopped: " + message, Toast.LENGTH_SHORT).show();
+                        }
+                    }
+                }
+        );
+    }
+
     private void loadAllMembersProgress() {
         System.out.println("DEBUG: loadAllMembersProgress() called for allianceId: " + allianceId);
         
@@ -227,7 +261,7 @@ public class AllianceMissionFragment extends Fragment {
         }
 
         // Prikaz HP-a bosa
-        int currentHp = alliance.getBossCurrentHp();
+        int currentHp = alliance.getBossHpAfterDamage(bossDamage);
         int maxHp = alliance.getBossMaxHp();
         int progressPercent = (maxHp > 0) ? (int) (((double) currentHp / maxHp) * 100) : 0;
 
@@ -350,6 +384,9 @@ public class AllianceMissionFragment extends Fragment {
         if (allianceListenerRegistration != null) {
             allianceListenerRegistration.remove();
         }
+        if (damageListenerRegistration != null) {
+            damageListenerRegistration.remove();
+        }
         stopTimer();
         binding = null;
     }
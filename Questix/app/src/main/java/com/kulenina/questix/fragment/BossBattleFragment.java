@@ -27,7 +27,6 @@ import com.kulenina.questix.dialog.ActiveEquipmentDialog;
 import com.kulenina.questix.dialog.BattleResultDialog;
 import com.kulenina.questix.model.*;
 import com.kulenina.questix.service.*;
-import com.kulenina.questix.repository.UserRepository;
 import com.kulenina.questix.util.ShakeDetector;
 
 import java.util.List;
@@ -38,12 +37,15 @@ public class BossBattleFragment extends Fragment {
     private BossBattleService bossBattleService;
     private EquipmentService equipmentService;
     private AuthService authService;
-    private UserRepository userRepository;
     private LevelProgressionService levelProgressionService;
 
+    // Bitka se vodi lokalno; ishod se upisuje jednom, na kraju (BossBattleService.finishSession)
+    private BattleSession battleSession;
     private BossBattle currentBossBattle;
     private User currentUser;
     private List<Equipment> activeEquipment;
+    // Bonusi opreme; napad se računa samo iz ovih vrednosti
+    private CombatStats combatStats;
 
     // Shake detection
     private SensorManager sensorManager;
@@ -71,7 +73,6 @@ public class BossBattleFragment extends Fragment {
         bossBattleService = new BossBattleService();
         equipmentService = new EquipmentService();
         authService = new AuthService();
-        userRepository = new UserRepository();
         levelProgressionService = new LevelProgressionService();
     }
 
@@ -116,27 +117,9 @@ public class BossBattleFragment extends Fragment {
             return;
         }
 
-        userRepository.read(userId)
-            .addOnSuccessListener(user -> {
-                currentUser = user;
-                if (user != null) {
-                    updateUserPowerDisplay();
-                    loadBossBattle();
-                } else {
-                    hideLoading();
-                }
-            })
-            .addOnFailureListener(e -> {
-                hideLoading();
-                Toast.makeText(getContext(), "Failed to load user data: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-            });
-    }
-
-    private void loadBossBattle() {
-        bossBattleService.getCurrentBossBattle()
-            .addOnSuccessListener(bossBattle -> {
-                currentBossBattle = bossBattle;
-                updateBossDisplay();
+        bossBattleService.startSession()
+            .addOnSuccessListener(session -> {
+                setBattleSession(session);
                 loadActiveEquipment();
             })
             .addOnFailureListener(e -> {
@@ -145,6 +128,16 @@ public class BossBattleFragment extends Fragment {
             });
     }
 
+    private void setBattleSession(BattleSession session) {
+        battleSession = session;
+        currentUser = session.getUser();
+        combatStats = session.getCombatStats();
+        // Prikaz radi nad kopijom, da izmene prikaza ne promene bitku koju sesija upisuje
+        currentBossBattle = session.copyBossBattle();
+        updateUserPowerDisplay();
+        updateBossDisplay();
+    }
+
     private void loadActiveEquipment() {
         String userId = authService.getCurrentUser() != null ? authService.getCurrentUser().getUid() : null;
         if (userId == null) {
@@ -179,7 +172,10 @@ public class BossBattleFragment extends Fragment {
         binding.tvAttacksRemaining.setText(String.format(Locale.getDefault(), "%d/5",
             currentBossBattle.getAttacksRemaining()));
 
-        int hitChance = (int) (currentBossBattle.getSuccessRate() * 100);
+        double successRate = combatStats != null
+            ? combatStats.getHitChance(currentBossBattle.getSuccessRate())
+            : currentBossBattle.getSuccessRate();
+        int hitChance = (int) Math.round(successRate * 100);
         binding.tvHitChance.setText(hitChance + "%");
 
         binding.btnAttack.setEnabled(!currentBossBattle.isBattleFinished());
@@ -237,7 +233,9 @@ public class BossBattleFragment extends Fragment {
     private void updateUserPowerDisplay() {
         if (currentUser == null) return;
 
-        int powerPoints = currentUser.powerPoints != null ? currentUser.powerPoints : 0;
+        int powerPoints = combatStats != null
+            ? combatStats.getPowerPoints()
+            : (currentUser.powerPoints != null ? currentUser.powerPoints : 0);
         binding.tvUserPower.setText(powerPoints + " PP");
 
         int maxDisplayPP = 200;
@@ -256,20 +254,19 @@ public class BossBattleFragment extends Fragment {
     }
 
     private void performAttack() {
-        if (currentBossBattle == null || currentBossBattle.isBattleFinished()) {
+        if (battleSession == null || battleSession.isFinished() || currentBossBattle.isBattleFinished()) {
             return;
         }
 
-        binding.btnAttack.setEnabled(false);
-
-        bossBattleService.performAttack(currentBossBattle)
-            .addOnSuccessListener(battleResult -> {
-                handleBattleResult(battleResult);
-            })
-            .addOnFailureListener(e -> {
-                Toast.makeText(getContext(), "Attack failed: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                binding.btnAttack.setEnabled(true);
-            });
+        // Lokalni obračun, bez čekanja na mrežu
+        BossBattleService.BattleResult battleResult;
+        try {
+            battleResult = battleSession.attack();
+        } catch (RuntimeException e) {
+            Toast.makeText(getContext(), "Attack failed: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            return;
+        }
+        handleBattleResult(battleResult);
     }
 
     private void handleBattleResult(BossBattleService.BattleResult battleResult) {
@@ -287,11 +284,8 @@ public class BossBattleFragment extends Fragment {
         currentBossBattle.setAttacksRemaining(battleResult.attacksRemaining);
         updateBossDisplay();
 
-        if (battleResult.bossDefeated) {
-            awardRewards(battleResult);
-        }
-
         if(battleResult.battleFinished) {
+            saveBattleResult();
             Log.d("BossBattle", "Showing battle result dialog");
             showBattleResult(battleResult);
         } else {
@@ -311,19 +305,18 @@ public class BossBattleFragment extends Fragment {
         }, 500);
     }
 
-    private void awardRewards(BossBattleService.BattleResult battleResult) {
-        bossBattleService.awardBattleRewards(battleResult)
+    private void saveBattleResult() {
+        bossBattleService.finishSession(battleSession)
             .addOnFailureListener(e -> {
-                Toast.makeText(getContext(), "Failed to award rewards: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                // Ishod ostaje u lokalnom snimku i upisuje se pri sledećem ulasku u bitku
+                Toast.makeText(getContext(), "Failed to save battle result: " + e.getMessage(), Toast.LENGTH_SHORT).show();
             });
     }
 
     private void continueBattle() {
-        bossBattleService.getCurrentBossBattle()
-            .addOnSuccessListener(bossBattle -> {
-                currentBossBattle = bossBattle;
-                updateBossDisplay();
-            })
+        // startSession sačeka upis ishoda koji je u toku
+        bossBattleService.startSession()
+            .addOnSuccessListener(this::setBattleSession)
             .addOnFailureListener(e -> {
                 Toast.makeText(getContext(), "Failed to reload boss battle: " + e.getMessage(), Toast.LENGTH_SHORT).show();
                 if (getActivity() != null) {
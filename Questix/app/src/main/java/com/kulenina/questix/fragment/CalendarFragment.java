@@ -18,15 +18,16 @@ import com.kulenina.questix.R;
 import com.kulenina.questix.databinding.FragmentCalendarBinding;
 import com.kulenina.questix.adapter.TaskListAdapter;
 import com.kulenina.questix.viewmodel.AppTaskViewModel;
+import com.kulenina.questix.util.MainThreadMonitor;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
-import java.util.concurrent.TimeUnit;
 import java.text.SimpleDateFormat;
 import com.kulenina.questix.fragment.TaskDetailFragment;
 
 public class CalendarFragment extends Fragment implements TaskListAdapter.TaskActionListener {
 
+    private static final String SCREEN_NAME = "Calendar";
     private FragmentCalendarBinding binding;
     private AppTaskViewModel appTaskViewModel;
     private TaskListAdapter adapter;
@@ -42,6 +43,7 @@ public class CalendarFragment extends Fragment implements TaskListAdapter.TaskAc
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
+        MainThreadMonitor.beginScreen(SCREEN_NAME);
 
         //navController = Navigation.findNavController(view);
         appTaskViewModel = new ViewModelProvider(requireActivity()).get(AppTaskViewModel.class);
@@ -75,6 +77,7 @@ public class CalendarFragment extends Fragment implements TaskListAdapter.TaskAc
     private void setupObservers() {
         // ViewModel mora obezbediti LiveData za zadatke na odabrani datum
         appTaskViewModel.getTasksForSelectedDate().observe(getViewLifecycleOwner(), tasks -> {
+            MainThreadMonitor.endScreen(SCREEN_NAME);
             if (tasks == null || tasks.isEmpty()) {
                 binding.tvEmptyStateCalendar.setVisibility(View.VISIBLE);
                 adapter.setTasks(null);
@@ -97,12 +100,8 @@ public class CalendarFragment extends Fragment implements TaskListAdapter.TaskAc
      * @param dateInMillis Milisekunde odabranog datuma (na početku dana).
      */
     private void loadTasksForSelectedDate(long dateInMillis) {
-        // Dobijamo kraj dana (23:59:59.999) za pretragu
-        long dateEndInMillis = dateInMillis + TimeUnit.DAYS.toMillis(1) - 1;
-
-        // Pozivamo ViewModel. Ova metoda u VM mora da izračuna ponavljanja
-        // i vrati listu AppTask objekata koji padaju u taj dan.
-        appTaskViewModel.loadTaskOccurrencesByDateRange(dateInMillis, dateEndInMillis);
+        // ViewModel vraća dan iz keša meseca; baza se čita samo za mesec koji još nije učitan
+        appTaskViewModel.loadTasksForCalendarDay(dateInMillis);
 
         // Ažuriranje teksta iznad liste
         SimpleDateFormat dateFormat = new SimpleDateFormat("EE, dd. MMM yyyy.", Locale.getDefault());
@@ -119,9 +118,7 @@ public class CalendarFragment extends Fragment implements TaskListAdapter.TaskAc
                     if (task.isSuccessful()) {
                         Toast.makeText(requireContext(), "Zadatak završen!", Toast.LENGTH_SHORT).show();
 
-                        // Ponovo učitavamo zadatke za trenutno odabrani datum
-                        long selectedDate = binding.calendarView.getDate();
-                        loadTasksForSelectedDate(selectedDate);
+                        // ViewModel osvežava dane ovog zadatka i ponovo prikazuje odabrani datum
 
                     } else {
                         Toast.makeText(requireContext(), "Greška: " + task.getException().getMessage(), Toast.LENGTH_LONG).show();
@@ -136,9 +133,7 @@ public class CalendarFragment extends Fragment implements TaskListAdapter.TaskAc
                 .addOnCompleteListener(task -> {
                     if (task.isSuccessful()) {
                         Toast.makeText(requireContext(), "Zadatak otkazan!", Toast.LENGTH_SHORT).show();
-                        // Ponovo učitavamo zadatke za trenutno odabrani datum
-                        long selectedDate = binding.calendarView.getDate();
-                        loadTasksForSelectedDate(selectedDate);
+                        // ViewModel osvežava dane ovog zadatka i ponovo prikazuje odabrani datum
                     } else {
                         Toast.makeText(requireContext(), "Greška: " + task.getException().getMessage(), Toast.LENGTH_LONG).show();
                     }
@@ -152,9 +147,7 @@ public class CalendarFragment extends Fragment implements TaskListAdapter.TaskAc
                 .addOnCompleteListener(task -> {
                     if (task.isSuccessful()) {
                         Toast.makeText(requireContext(), "Ponavljajući zadatak pauziran!", Toast.LENGTH_SHORT).show();
-                        // Ponovo učitavamo zadatke za trenutno odabrani datum
-                        long selectedDate = binding.calendarView.getDate();
-                        loadTasksForSelectedDate(selectedDate);
+                        // ViewModel osvežava dane ovog zadatka i ponovo prikazuje odabrani datum
                     } else {
                         Toast.makeText(requireContext(), "Greška: " + task.getException().getMessage(), Toast.LENGTH_LONG).show();
                     }
@@ -168,9 +161,7 @@ public class CalendarFragment extends Fragment implements TaskListAdapter.TaskAc
                 .addOnCompleteListener(task -> {
                     if (task.isSuccessful()) {
                         Toast.makeText(requireContext(), "Ponavljajući zadatak nastavljen!", Toast.LENGTH_SHORT).show();
-                        // Ponovo učitavamo zadatke za trenutno odabrani datum
-                        long selectedDate = binding.calendarView.getDate();
-                        loadTasksForSelectedDate(selectedDate);
+                        // ViewModel osvežava dane ovog zadatka i ponovo prikazuje odabrani datum
                     } else {
                         Toast.makeText(requireContext(), "Greška: " + task.getException().getMessage(), Toast.LENGTH_LONG).show();
                     }
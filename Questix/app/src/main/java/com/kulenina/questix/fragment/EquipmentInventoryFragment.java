@@ -139,7 +139,7 @@ public class EquipmentInventoryFragment extends Fragment implements EquipmentInv
                     binding.progressBar.setVisibility(View.GONE);
                     if (success) {
                         equipment.setActive(true);
-                        adapter.notifyDataSetChanged();
+                        adapter.refreshItem(equipment);
                     } else {
                         Toast.makeText(getContext(), "Failed to activate equipment", Toast.LENGTH_SHORT).show();
                         loadEquipment();
@@ -156,7 +156,7 @@ public class EquipmentInventoryFragment extends Fragment implements EquipmentInv
                     binding.progressBar.setVisibility(View.GONE);
                     if (success) {
                         equipment.setActive(false);
-                        adapter.notifyDataSetChanged();
+                        adapter.refreshItem(equipment);
                     } else {
                         Toast.makeText(getContext(), "Failed to deactivate equipment", Toast.LENGTH_SHORT).show();
                         loadEquipment();
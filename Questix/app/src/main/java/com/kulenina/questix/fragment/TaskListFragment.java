@@ -16,21 +16,24 @@ import com.kulenina.questix.R;
 import com.kulenina.questix.activity.MainActivity;
 import com.kulenina.questix.databinding.FragmentTaskListBinding;
 import com.kulenina.questix.model.AppTask;
+import com.kulenina.questix.model.TaskOccurrence;
 import com.kulenina.questix.viewmodel.AppTaskViewModel;
 import com.kulenina.questix.adapter.TaskListAdapter;
+import com.kulenina.questix.util.MainThreadMonitor;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class TaskListFragment extends Fragment implements TaskListAdapter.TaskActionListener {
 
+    private static final String SCREEN_NAME = "TaskList";
     private FragmentTaskListBinding binding;
     private AppTaskViewModel appTaskViewModel;
     private TaskListAdapter adapter;
     //private NavController navController;
     
     // Filtering variables
-    private List<AppTask> allTasks = new ArrayList<>();
+    private List<TaskOccurrence> allTasks = new ArrayList<>();
     private String currentFilter = "ALL"; // ALL, RECURRING, NON_RECURRING
 
     @Override
@@ -43,6 +46,7 @@ public class TaskListFragment extends Fragment implements TaskListAdapter.TaskAc
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
+        MainThreadMonitor.beginScreen(SCREEN_NAME);
 
         appTaskViewModel = new ViewModelProvider(requireActivity()).get(AppTaskViewModel.class);
 
@@ -52,14 +56,8 @@ public class TaskListFragment extends Fragment implements TaskListAdapter.TaskAc
 
         appTaskViewModel.loadTasksForList();
         
-        // Proveri i označi stare zadatke kao "undone"
-        appTaskViewModel.checkMissedTasks()
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful()) {
-                        // Ponovo učitaj listu nakon provere
-                        appTaskViewModel.loadTasksForList();
-                    }
-                });
+        // Proveri i označi stare zadatke kao "undone" (lista se osvežava preko listenera)
+        appTaskViewModel.checkMissedTasks();
     }
 
     private void setupRecyclerView() {
@@ -103,13 +101,13 @@ public class TaskListFragment extends Fragment implements TaskListAdapter.TaskAc
     }
     
     private void applyFilter() {
-        List<AppTask> filteredTasks = new ArrayList<>();
+        List<TaskOccurrence> filteredTasks = new ArrayList<>();
         
         // First filter: Show active tasks (including those within 3-day grace period)
-        List<AppTask> activeTasks = new ArrayList<>();
+        List<TaskOccurrence> activeTasks = new ArrayList<>();
         long now = System.currentTimeMillis();
         
-        for (AppTask task : allTasks) {
+        for (TaskOccurrence task : allTasks) {
             // Include tasks that are active (including those within 3-day grace period)
             if (task.isActive()) {
                 activeTasks.add(task);
@@ -122,15 +120,15 @@ public class TaskListFragment extends Fragment implements TaskListAdapter.TaskAc
                 filteredTasks = new ArrayList<>(activeTasks);
                 break;
             case "RECURRING":
-                for (AppTask task : activeTasks) {
-                    if (task.isRecurring) {
+                for (TaskOccurrence task : activeTasks) {
+                    if (task.isRecurring()) {
                         filteredTasks.add(task);
                     }
                 }
                 break;
             case "NON_RECURRING":
-                for (AppTask task : activeTasks) {
-                    if (!task.isRecurring) {
+                for (TaskOccurrence task : activeTasks) {
+                    if (!task.isRecurring()) {
                         filteredTasks.add(task);
                     }
                 }
@@ -151,6 +149,7 @@ public class TaskListFragment extends Fragment implements TaskListAdapter.TaskAc
     private void setupObservers() {
         appTaskViewModel.getTasksForList().observe(getViewLifecycleOwner(), tasks -> {
             binding.progressBar.setVisibility(View.GONE);
+            MainThreadMonitor.endScreen(SCREEN_NAME);
 
             // Store all tasks for filtering
             allTasks = tasks != null ? new ArrayList<>(tasks) : new ArrayList<>();
@@ -176,8 +175,6 @@ public class TaskListFragment extends Fragment implements TaskListAdapter.TaskAc
                 .addOnCompleteListener(task -> {
                     if (task.isSuccessful()) {
                         Toast.makeText(requireContext(), "Task completed! XP awarded.", Toast.LENGTH_SHORT).show();
-                        // Potrebno je ponovo učitati listu da bi se ažurirala
-                        appTaskViewModel.loadTasksForList();
                     } else {
                         Toast.makeText(requireContext(), "Error: " + task.getException().getMessage(), Toast.LENGTH_LONG).show();
                     }
@@ -191,7 +188,6 @@ public class TaskListFragment extends Fragment implements TaskListAdapter.TaskAc
                 .addOnCompleteListener(task -> {
                     if (task.isSuccessful()) {
                         Toast.makeText(requireContext(), "Task canceled.", Toast.LENGTH_SHORT).show();
-                        appTaskViewModel.loadTasksForList();
                     } else {
                         Toast.makeText(requireContext(), "Error: " + task.getException().getMessage(), Toast.LENGTH_LONG).show();
                     }
@@ -206,7 +202,6 @@ public class TaskListFragment extends Fragment implements TaskListAdapter.TaskAc
                 .addOnCompleteListener(task -> {
                     if (task.isSuccessful()) {
                         Toast.makeText(requireContext(), "Recurring task paused.", Toast.LENGTH_SHORT).show();
-                        appTaskViewModel.loadTasksForList();
                     } else {
                         Toast.makeText(requireContext(), "Error: " + task.getException().getMessage(), Toast.LENGTH_LONG).show();
                     }
@@ -220,7 +215,6 @@ public class TaskListFragment extends Fragment implements TaskListAdapter.TaskAc
                 .addOnCompleteListener(task -> {
                     if (task.isSuccessful()) {
                         Toast.makeText(requireContext(), "Recurring task resumed.", Toast.LENGTH_SHORT).show();
-                        appTaskViewModel.loadTasksForList();
                     } else {
                         Toast.makeText(requireContext(), "Error: " + task.getException().getMessage(), Toast.LENGTH_LONG).show();
                     }
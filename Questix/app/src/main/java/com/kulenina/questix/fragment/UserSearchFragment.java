@@ -1,7 +1,13 @@
 package com.kulenina.questix.fragment;
 
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.Editable;
 import android.text.TextUtils;
+import android.text.TextWatcher;
+import android.view.Choreographer;
 import android.view.KeyEvent;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -15,7 +21,9 @@ import androidx.annotation.Nullable;
 import androidx.databinding.DataBindingUtil;
 import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
+import com.google.android.gms.tasks.CancellationTokenSource;
 import com.google.android.material.button.MaterialButtonToggleGroup;
 
 import com.google.firebase.auth.FirebaseAuth;
@@ -23,6 +31,7 @@ import com.kulenina.questix.R;
 import com.kulenina.questix.databinding.FragmentUserSearchBinding;
 import com.kulenina.questix.model.User;
 import com.kulenina.questix.service.FriendshipService;
+import com.kulenina.questix.service.UserSearchService;
 import com.kulenina.questix.adapter.UserAdapter;
 import com.kulenina.questix.viewmodel.UserViewModel;
 import com.kulenina.questix.service.AuthService;
@@ -31,15 +40,27 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class UserSearchFragment extends Fragment implements UserAdapter.OnUserClickListener {
+    // Koliko redova pre kraja liste se učitava sledeća strana rezultata
+    private static final int LOAD_MORE_THRESHOLD = 5;
+    // Pauza u kucanju posle koje se pokreće pretraga
+    private static final long SEARCH_DEBOUNCE_MS = 300;
+
     private FragmentUserSearchBinding binding;
     private UserAdapter userAdapter;
     private FriendshipService friendshipService;
+    private UserSearchService userSearchService;
     private AuthService authService;
     private String currentUserId;
-    private List<UserViewModel> allUserViewModels = new ArrayList<>();
     private List<UserViewModel> friendsViewModels = new ArrayList<>();
     private boolean isShowingFriends = true;
     private String currentSearchQuery = "";
+    private boolean searchHasMore = false;
+    private boolean isLoadingMore = false;
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private final Runnable debouncedSearch = () ->
+        searchUsers(binding.editTextSearch.getText().toString().trim(), lastInputAt);
+    private CancellationTokenSource searchCancellation;
+    private long lastInputAt;
 
     @Nullable
     @Override
@@ -53,6 +74,7 @@ public class UserSearchFragment extends Fragment implements UserAdapter.OnUserCl
         super.onViewCreated(view, savedInstanceState);
 
         friendshipService = new FriendshipService();
+        userSearchService = new UserSearchService();
         authService = new AuthService();
         currentUserId = authService.getCurrentUser().getUid();
 
@@ -66,6 +88,16 @@ public class UserSearchFragment extends Fragment implements UserAdapter.OnUserCl
         userAdapter = new UserAdapter(friendsViewModels, this);
         binding.recyclerViewUsers.setLayoutManager(new LinearLayoutManager(getContext()));
         binding.recyclerViewUsers.setAdapter(userAdapter);
+        binding.recyclerViewUsers.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+                if (dy > 0 && layoutManager != null
+                        && layoutManager.findLastVisibleItemPosition() >= userAdapter.getItemCount() - LOAD_MORE_THRESHOLD) {
+                    loadMoreSearchResults();
+                }
+            }
+        });
     }
 
     private void setupToggleButtons() {
@@ -99,10 +131,37 @@ public class UserSearchFragment extends Fragment implements UserAdapter.OnUserCl
                 return false;
             }
         });
+
+        binding.editTextSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                if (isShowingFriends) {
+                    return;
+                }
+                lastInputAt = SystemClock.uptimeMillis();
+                searchHandler.removeCallbacks(debouncedSearch);
+                searchHandler.postDelayed(debouncedSearch, SEARCH_DEBOUNCE_MS);
+            }
+        });
+    }
+
+    @Override
+    public void onDestroyView() {
+        searchHandler.removeCallbacks(debouncedSearch);
+        cancelSearch();
+        super.onDestroyView();
     }
 
     private void switchToFriendsMode() {
         isShowingFriends = true;
+        searchHandler.removeCallbacks(debouncedSearch);
+        cancelSearch();
         binding.textViewTitle.setText("My Friends");
         binding.layoutSearch.setVisibility(View.GONE);
         userAdapter.updateUserList(friendsViewModels);
@@ -114,6 +173,7 @@ public class UserSearchFragment extends Fragment implements UserAdapter.OnUserCl
         binding.textViewTitle.setText("Search Users");
         binding.layoutSearch.setVisibility(View.VISIBLE);
         currentSearchQuery = "";
+        searchHasMore = false;
         binding.editTextSearch.setText("");
         userAdapter.updateUserList(new ArrayList<>());
         updateUI();
@@ -121,14 +181,14 @@ public class UserSearchFragment extends Fragment implements UserAdapter.OnUserCl
 
     private void performSearch() {
         String query = binding.editTextSearch.getText().toString().trim();
-        currentSearchQuery = query;
 
         if (TextUtils.isEmpty(query)) {
+            searchHandler.removeCallbacks(debouncedSearch);
             Toast.makeText(getContext(), "Please enter a search term", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        searchUsers(query);
+        searchUsers(query, SystemClock.uptimeMillis());
     }
 
     private void loadUsers() {
@@ -175,57 +235,88 @@ public class UserSearchFragment extends Fragment implements UserAdapter.OnUserCl
             });
     }
 
-    private void searchUsers(String query) {
+    /**
+     * Pokreće pretragu za upit; prethodna pretraga koja još traje se otkazuje.
+     * @param inputAt Trenutak unosa (SystemClock.uptimeMillis) od koga se meri vreme do prikaza.
+     */
+    private void searchUsers(String query, long inputAt) {
+        searchHandler.removeCallbacks(debouncedSearch);
+        cancelSearch();
+        currentSearchQuery = query;
+        searchHasMore = false;
+        isLoadingMore = false;
+
+        if (TextUtils.isEmpty(query)) {
+            binding.progressBar.setVisibility(View.GONE);
+            userAdapter.updateUserList(new ArrayList<>());
+            updateUI();
+            return;
+        }
+
         binding.progressBar.setVisibility(View.VISIBLE);
         binding.textViewNoUsers.setVisibility(View.GONE);
 
-        loadAllUsers();
+        searchCancellation = new CancellationTokenSource();
+        userSearchService.search(query, currentUserId, searchCancellation.getToken())
+            .addOnSuccessListener(result -> showSearchResult(result, inputAt))
+            .addOnFailureListener(this::showSearchError);
     }
 
-    private void loadAllUsers() {
-        friendshipService.getAllUsers()
-            .addOnSuccessListener(users -> {
-                allUserViewModels.clear();
-                List<UserViewModel> filteredUsers = new ArrayList<>();
+    private void loadMoreSearchResults() {
+        if (isShowingFriends || isLoadingMore || !searchHasMore || TextUtils.isEmpty(currentSearchQuery)
+                || searchCancellation == null) {
+            return;
+        }
 
-                for (User user : users) {
-                    if (user.id != null && !user.id.equals(currentUserId)) {
-                        UserViewModel userViewModel = new UserViewModel();
-                        userViewModel.setUser(user);
-                        allUserViewModels.add(userViewModel);
-
-                        if (!isShowingFriends && !TextUtils.isEmpty(currentSearchQuery)) {
-                            String username = userViewModel.getUsername().toLowerCase();
-                            String title = userViewModel.getTitle().toLowerCase();
-                            String query = currentSearchQuery.toLowerCase();
-
-                            if (username.contains(query) || title.contains(query)) {
-                                filteredUsers.add(userViewModel);
-                            }
-                        } else if (!isShowingFriends) {
-                            filteredUsers.add(userViewModel);
-                        }
-                    }
-                }
+        isLoadingMore = true;
+        userSearchService.loadMore(currentSearchQuery, currentUserId, searchCancellation.getToken())
+            .addOnSuccessListener(result -> showSearchResult(result, -1))
+            .addOnFailureListener(this::showSearchError);
+    }
 
-                binding.progressBar.setVisibility(View.GONE);
+    private void cancelSearch() {
+        if (searchCancellation != null) {
+            searchCancellation.cancel();
+            searchCancellation = null;
+        }
+    }
 
-                if (!isShowingFriends) {
-                    userAdapter.updateUserList(filteredUsers);
-                }
-                updateUI();
-            })
-            .addOnFailureListener(e -> {
-                binding.progressBar.setVisibility(View.GONE);
-                binding.textViewNoUsers.setVisibility(View.VISIBLE);
-                binding.textViewNoUsers.setText("Error loading users: " + e.getMessage());
-                Toast.makeText(getContext(), "Failed to load users", Toast.LENGTH_SHORT).show();
-            });
+    private void showSearchResult(UserSearchService.SearchResult result, long inputAt) {
+        isLoadingMore = false;
+        // Odgovor na stariji upit se ignoriše
+        if (!isAdded() || isShowingFriends
+                || !result.query.equals(User.normalizeUsername(currentSearchQuery))) {
+            return;
+        }
+
+        List<UserViewModel> searchResults = new ArrayList<>(result.users.size());
+        for (User user : result.users) {
+            UserViewModel userViewModel = new UserViewModel();
+            userViewModel.setUser(user);
+            searchResults.add(userViewModel);
+        }
+        searchHasMore = result.hasMore;
+
+        binding.progressBar.setVisibility(View.GONE);
+        // Razlike računa adapter van glavne niti; vreme se beleži u prvom frejmu posle prikaza
+        userAdapter.updateUserList(searchResults, inputAt < 0 ? null : () ->
+            Choreographer.getInstance().postFrameCallback(frameTimeNanos ->
+                UserSearchService.getSearchLatency().record(SystemClock.uptimeMillis() - inputAt)));
+        updateUI();
     }
 
-    private void updateUI() {
-        userAdapter.notifyDataSetChanged();
+    private void showSearchError(Exception e) {
+        isLoadingMore = false;
+        if (!isAdded()) {
+            return;
+        }
+        binding.progressBar.setVisibility(View.GONE);
+        binding.textViewNoUsers.setVisibility(View.VISIBLE);
+        binding.textViewNoUsers.setText("Error loading users: " + e.getMessage());
+        Toast.makeText(getContext(), "Failed to load users", Toast.LENGTH_SHORT).show();
+    }
 
+    private void updateUI() {
         List<UserViewModel> currentList = isShowingFriends ? friendsViewModels :
             (userAdapter.getUserList() != null ? userAdapter.getUserList() : new ArrayList<>());
 
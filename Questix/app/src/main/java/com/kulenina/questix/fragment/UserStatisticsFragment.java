@@ -34,6 +34,7 @@ import com.kulenina.questix.R;
 import com.kulenina.questix.databinding.FragmentUserStatisticsBinding;
 import com.kulenina.questix.model.StatisticsData;
 import com.kulenina.questix.service.UserStatisticsService;
+import com.kulenina.questix.util.MainThreadMonitor;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -41,6 +42,7 @@ import java.util.Map;
 
 public class UserStatisticsFragment extends Fragment {
 
+    private static final String SCREEN_NAME = "Statistics";
     private FragmentUserStatisticsBinding binding;
     private UserStatisticsService statisticsService;
 
@@ -69,6 +71,7 @@ public class UserStatisticsFragment extends Fragment {
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
+        MainThreadMonitor.beginScreen(SCREEN_NAME);
         setupCharts();
         loadStatistics();
     }
@@ -159,6 +162,7 @@ public class UserStatisticsFragment extends Fragment {
     }
 
     private void displayStatistics(StatisticsData stats) {
+        MainThreadMonitor.endScreen(SCREEN_NAME);
         // Display text statistics
         binding.tvActiveDays.setText(getString(R.string.consecutive_days, stats.activeDaysCount));
         binding.tvCompletedCount.setText(String.valueOf(stats.totalCompletedTasks));
@@ -1,15 +1,38 @@
 package com.kulenina.questix.mapper;
 
 import com.kulenina.questix.model.IIdentifiable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Mapper<T> implements IMapper<T> {
+    // Metapodaci o poljima se računaju jednom po klasi i dele između svih Mapper instanci
+    private static final Map<Class<?>, ClassMetadata> metadataCache = new ConcurrentHashMap<>();
+
     private final Class<T> clazz;
+    private final boolean useMethodHandles;
 
     public Mapper(Class<T> clazz) {
+        this(clazz, false);
+    }
+
+    /**
+     * @param useMethodHandles Ako je true, polja se čitaju i upisuju preko MethodHandle-a
+     *                         umesto preko Field.get/set (gde je to moguće).
+     */
+    public Mapper(Class<T> clazz, boolean useMethodHandles) {
         this.clazz = clazz;
+        this.useMethodHandles = useMethodHandles;
     }
 
     @Override
@@ -18,30 +41,15 @@ public class Mapper<T> implements IMapper<T> {
             return null;
         }
 
+        ClassMetadata metadata = metadataFor(object.getClass());
         Map<String, Object> map = new HashMap<>();
 
         try {
-            Class<?> currentClass = object.getClass();
-
-            while (currentClass != null && currentClass != Object.class) {
-                Field[] fields = currentClass.getDeclaredFields();
-
-                for (Field field : fields) {
-                    field.setAccessible(true);
-
-                    Object value = field.get(object);
-                    String fieldName = field.getName();
-
-                    // Only add if not already present (child class fields take precedence)
-                    // and if it's not the id field
-                    if (!"id".equals(fieldName) && !map.containsKey(fieldName)) {
-                        map.put(fieldName, value);
-                    }
-                }
-
-                currentClass = currentClass.getSuperclass();
+            // Polja potklase imaju prednost, a id polje se ne upisuje
+            for (FieldAccessor accessor : metadata.writeFields) {
+                map.put(accessor.name, accessor.get(object, useMethodHandles));
             }
-        } catch (IllegalAccessException e) {
+        } catch (Throwable e) {
             throw new RuntimeException("Failed to convert object to map", e);
         }
 
@@ -59,111 +67,235 @@ public class Mapper<T> implements IMapper<T> {
             return null;
         }
 
+        ClassMetadata metadata = metadataFor(clazz);
+
         try {
-            T object = clazz.getDeclaredConstructor().newInstance();
+            T object = clazz.cast(metadata.newInstance());
 
-            Class<?> currentClass = clazz;
-            while (currentClass != null && currentClass != Object.class) {
-                Field[] fields = currentClass.getDeclaredFields();
+            for (FieldAccessor accessor : metadata.readFields) {
+                Object value = map.get(accessor.name);
 
-                for (Field field : fields) {
-                    String fieldName = field.getName();
-                    Object value = map.get(fieldName);
+                if (value != null) {
+                    accessor.set(object, accessor.convert(value), useMethodHandles);
+                }
+            }
 
+            if (id != null) {
+                if (metadata.idField != null) {
+                    metadata.idField.set(object, id);
+                } else if (object instanceof IIdentifiable) {
+                    throw new RuntimeException("Class " + clazz.getSimpleName() +
+                        " implements IIdentifiable but doesn't have an 'id' field in its hierarchy");
+                }
+            }
+
+            return object;
+        } catch (Throwable e) {
+            throw new RuntimeException("Failed to convert map to object", e);
+        }
+    }
+
+    private static ClassMetadata metadataFor(Class<?> type) {
+        ClassMetadata metadata = metadataCache.get(type);
+        if (metadata == null) {
+            metadata = new ClassMetadata(type);
+            ClassMetadata existing = metadataCache.putIfAbsent(type, metadata);
+            if (existing != null) {
+                metadata = existing;
+            }
+        }
+        return metadata;
+    }
+
+    /**
+     * Tabela pristupa poljima jedne klase: razrešena polja (već setAccessible),
+     * konverteri po tipu polja i id polje.
+     */
+    private static final class ClassMetadata {
+        private final Class<?> type;
+        // Polja za toMap: od klase ka roditeljima, jedinstvena imena, bez "id"
+        private final FieldAccessor[] writeFields;
+        // Polja za fromMap: sva polja u hijerarhiji, od klase ka roditeljima
+        private final FieldAccessor[] readFields;
+        private final Field idField;
+        private volatile Constructor<?> constructor;
+
+        ClassMetadata(Class<?> type) {
+            this.type = type;
+
+            List<FieldAccessor> write = new ArrayList<>();
+            List<FieldAccessor> read = new ArrayList<>();
+            Set<String> seenNames = new HashSet<>();
+            Field id = null;
+
+            Class<?> currentClass = type;
+            while (currentClass != null && currentClass != Object.class) {
+                for (Field field : currentClass.getDeclaredFields()) {
+                    // Kao u MapperProcessor-u: statička, transient i sintetička polja nisu deo dokumenta
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                        continue;
+                    }
                     field.setAccessible(true);
 
-                    if (value != null) {
-                        Object convertedValue = convertValue(value, field.getType());
-                        field.set(object, convertedValue);
+                    FieldAccessor accessor = new FieldAccessor(field);
+                    read.add(accessor);
+
+                    String fieldName = field.getName();
+                    if (!"id".equals(fieldName) && seenNames.add(fieldName)) {
+                        write.add(accessor);
+                    }
+                    if (id == null && "id".equals(fieldName)) {
+                        id = field;
                     }
                 }
 
                 currentClass = currentClass.getSuperclass();
             }
 
-            if (id != null) {
-                Class<?> searchClass = clazz;
-                boolean idSet = false;
+            this.writeFields = write.toArray(new FieldAccessor[0]);
+            this.readFields = read.toArray(new FieldAccessor[0]);
+            this.idField = id;
+        }
 
-                while (searchClass != null && searchClass != Object.class && !idSet) {
-                    try {
-                        Field idField = searchClass.getDeclaredField("id");
-                        idField.setAccessible(true);
-                        idField.set(object, id);
-                        idSet = true;
-                    } catch (NoSuchFieldException e) {
-                        searchClass = searchClass.getSuperclass();
-                    }
-                }
+        Object newInstance() throws ReflectiveOperationException {
+            Constructor<?> c = constructor;
+            if (c == null) {
+                c = type.getDeclaredConstructor();
+                constructor = c;
+            }
+            return c.newInstance();
+        }
+    }
 
-                if (!idSet && object instanceof IIdentifiable) {
-                    throw new RuntimeException("Class " + clazz.getSimpleName() +
-                        " implements IIdentifiable but doesn't have an 'id' field in its hierarchy");
+    private interface Converter {
+        Object convert(Object value);
+    }
+
+    private static final class FieldAccessor {
+        private final Field field;
+        private final String name;
+        private final Class<?> type;
+        private final Converter converter;
+        // (Object)Object i (Object, Object)void, za invokeExact bez prilagođavanja tipova pri pozivu
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        FieldAccessor(Field field) {
+            this.field = field;
+            this.name = field.getName();
+            this.type = field.getType();
+            this.converter = converterFor(type);
+
+            MethodHandle get = null;
+            MethodHandle set = null;
+            if (!Modifier.isFinal(field.getModifiers())) {
+                try {
+                    MethodHandles.Lookup lookup = MethodHandles.lookup();
+                    get = lookup.unreflectGetter(field)
+                            .asType(MethodType.methodType(Object.class, Object.class));
+                    set = lookup.unreflectSetter(field)
+                            .asType(MethodType.methodType(void.class, Object.class, Object.class));
+                } catch (IllegalAccessException | RuntimeException e) {
+                    // Ostaje pristup preko Field.get/set
+                    get = null;
+                    set = null;
                 }
             }
+            this.getter = get;
+            this.setter = set;
+        }
 
-            return object;
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to convert map to object", e);
+        Object get(Object target, boolean useMethodHandles) throws Throwable {
+            if (useMethodHandles && getter != null) {
+                return (Object) getter.invokeExact(target);
+            }
+            return field.get(target);
         }
-    }
 
-    private Object convertValue(Object value, Class<?> targetType) {
-        if (value == null) {
-            return null;
+        void set(Object target, Object value, boolean useMethodHandles) throws Throwable {
+            if (useMethodHandles && setter != null) {
+                setter.invokeExact(target, value);
+                return;
+            }
+            field.set(target, value);
         }
 
-        if (targetType.isAssignableFrom(value.getClass())) {
-            return value;
+        Object convert(Object value) {
+            if (type.isAssignableFrom(value.getClass())) {
+                return value;
+            }
+            return converter.convert(value);
         }
+    }
 
+    /**
+     * Bira konverziju jednom po tipu polja; vrednost koja se ne može konvertovati
+     * vraća se nepromenjena (kao i ranije u convertValue).
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Converter converterFor(Class<?> targetType) {
         if (targetType.isEnum()) {
-            if (value instanceof String) {
-                try {
-                    @SuppressWarnings("unchecked")
-                    Class<? extends Enum> enumType = (Class<? extends Enum>) targetType;
-                    return Enum.valueOf(enumType, (String) value);
-                } catch (IllegalArgumentException e) {
-                    return null;
+            Class<? extends Enum> enumType = (Class<? extends Enum>) targetType;
+            return value -> {
+                if (value instanceof String) {
+                    try {
+                        return Enum.valueOf(enumType, (String) value);
+                    } catch (IllegalArgumentException e) {
+                        return null;
+                    }
                 }
-            }
-            return value;
+                return value;
+            };
         }
 
         if (targetType == String.class) {
-            return value.toString();
+            return Object::toString;
         } else if (targetType == Integer.class || targetType == int.class) {
-            if (value instanceof Number) {
-                return ((Number) value).intValue();
-            } else if (value instanceof String) {
-                return Integer.parseInt((String) value);
-            }
+            return value -> {
+                if (value instanceof Number) {
+                    return ((Number) value).intValue();
+                } else if (value instanceof String) {
+                    return Integer.parseInt((String) value);
+                }
+                return value;
+            };
         } else if (targetType == Long.class || targetType == long.class) {
-            if (value instanceof Number) {
-                return ((Number) value).longValue();
-            } else if (value instanceof String) {
-                return Long.parseLong((String) value);
-            }
+            return value -> {
+                if (value instanceof Number) {
+                    return ((Number) value).longValue();
+                } else if (value instanceof String) {
+                    return Long.parseLong((String) value);
+                }
+                return value;
+            };
         } else if (targetType == Double.class || targetType == double.class) {
-            if (value instanceof Number) {
-                return ((Number) value).doubleValue();
-            } else if (value instanceof String) {
-                return Double.parseDouble((String) value);
-            }
+            return value -> {
+                if (value instanceof Number) {
+                    return ((Number) value).doubleValue();
+                } else if (value instanceof String) {
+                    return Double.parseDouble((String) value);
+                }
+                return value;
+            };
         } else if (targetType == Float.class || targetType == float.class) {
-            if (value instanceof Number) {
-                return ((Number) value).floatValue();
-            } else if (value instanceof String) {
-                return Float.parseFloat((String) value);
-            }
+            return value -> {
+                if (value instanceof Number) {
+                    return ((Number) value).floatValue();
+                } else if (value instanceof String) {
+                    return Float.parseFloat((String) value);
+                }
+                return value;
+            };
         } else if (targetType == Boolean.class || targetType == boolean.class) {
-            if (value instanceof Boolean) {
+            return value -> {
+                if (value instanceof String) {
+                    return Boolean.parseBoolean((String) value);
+                }
                 return value;
-            } else if (value instanceof String) {
-                return Boolean.parseBoolean((String) value);
-            }
+            };
         }
 
-        return value;
+        return value -> value;
     }
 }
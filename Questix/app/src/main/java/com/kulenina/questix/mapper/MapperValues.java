@@ -0,0 +1,90 @@
+package com.kulenina.questix.mapper;
+
+/**
+ * Konverzije vrednosti iz Firestore mape u tipove polja modela.
+ * Koriste ih generisani maperi (@GenerateMapper); pravila su ista kao u Mapper.convertValue.
+ */
+public final class MapperValues {
+
+    private MapperValues() {
+    }
+
+    public static String asString(Object value) {
+        return value.toString();
+    }
+
+    public static Integer asInteger(Object value) {
+        if (value instanceof Integer) {
+            return (Integer) value;
+        } else if (value instanceof Number) {
+            return ((Number) value).intValue();
+        } else if (value instanceof String) {
+            return Integer.parseInt((String) value);
+        }
+        throw unsupported(value, Integer.class);
+    }
+
+    public static Long asLong(Object value) {
+        if (value instanceof Long) {
+            return (Long) value;
+        } else if (value instanceof Number) {
+            return ((Number) value).longValue();
+        } else if (value instanceof String) {
+            return Long.parseLong((String) value);
+        }
+        throw unsupported(value, Long.class);
+    }
+
+    public static Double asDouble(Object value) {
+        if (value instanceof Double) {
+            return (Double) value;
+        } else if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else if (value instanceof String) {
+            return Double.parseDouble((String) value);
+        }
+        throw unsupported(value, Double.class);
+    }
+
+    public static Float asFloat(Object value) {
+        if (value instanceof Float) {
+            return (Float) value;
+        } else if (value instanceof Number) {
+            return ((Number) value).floatValue();
+        } else if (value instanceof String) {
+            return Float.parseFloat((String) value);
+        }
+        throw unsupported(value, Float.class);
+    }
+
+    public static Boolean asBoolean(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        } else if (value instanceof String) {
+            return Boolean.parseBoolean((String) value);
+        }
+        throw unsupported(value, Boolean.class);
+    }
+
+    /**
+     * Nepoznato ime konstante daje null, kao u refleksivnom Mapper-u.
+     */
+    public static <E extends Enum<E>> E asEnum(Class<E> enumType, Object value) {
+        if (enumType.isInstance(value)) {
+            return enumType.cast(value);
+        }
+        if (value instanceof String) {
+            try {
+                return Enum.valueOf(enumType, (String) value);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        throw unsupported(value, enumType);
+    }
+
+    private static IllegalArgumentException unsupported(Object value, Class<?> targetType) {
+        return new IllegalArgumentException("Cannot convert " + value.getClass().getName() +
+            " to " + targetType.getName());
+    }
+}
@@ -0,0 +1,41 @@
+package com.kulenina.questix.mapper;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Vraća maper za model klasu: generisani ImeKlase_Mapper ako postoji (@GenerateMapper),
+ * a u suprotnom refleksivni Mapper kao rezervnu varijantu.
+ */
+public final class Mappers {
+    private static final String GENERATED_SUFFIX = "_Mapper";
+    private static final Map<Class<?>, IMapper<?>> cache = new ConcurrentHashMap<>();
+    // Refleksivni maperi pristupaju poljima preko MethodHandle-a umesto Field.get/set
+    private static volatile boolean useMethodHandles;
+
+    private Mappers() {
+    }
+
+    /**
+     * Uključuje MethodHandle pristup poljima za refleksivne mapere (modeli bez @GenerateMapper).
+     * Već napravljeni maperi se odbacuju, pa važi za sve naredne pozive get().
+     */
+    public static void setUseMethodHandles(boolean enabled) {
+        useMethodHandles = enabled;
+        cache.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> IMapper<T> get(Class<T> clazz) {
+        return (IMapper<T>) cache.computeIfAbsent(clazz, Mappers::create);
+    }
+
+    private static IMapper<?> create(Class<?> clazz) {
+        try {
+            Class<?> generated = Class.forName(clazz.getName() + GENERATED_SUFFIX, true, clazz.getClassLoader());
+            return (IMapper<?>) generated.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            return new Mapper<>(clazz, useMethodHandles);
+        }
+    }
+}
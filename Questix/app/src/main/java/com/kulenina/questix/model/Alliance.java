@@ -1,19 +1,32 @@
 package com.kulenina.questix.model;
 
+import com.kulenina.questix.mapper.GenerateMapper;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
+@GenerateMapper
 public class Alliance implements IIdentifiable, Serializable {
+    // Stanja finalizacije misije: ACTIVE -> FINALIZING -> FINALIZED
+    public static final String MISSION_ACTIVE = "ACTIVE";
+    public static final String MISSION_FINALIZING = "FINALIZING";
+    public static final String MISSION_FINALIZED = "FINALIZED";
+
     public String id;
     public String name;
     public String leaderId; // Creator's user ID
     public List<String> memberIds; // All member user IDs (including leader)
     public boolean isMissionActive = false; // Whether a mission is currently running
 
+    // HP bosa bez štete iz šardova (AllianceRepository.DAMAGE_SHARDS); stvarni HP daje getBossHpAfterDamage
     public int bossCurrentHp = 0;
     public int bossMaxHp = 0;
     public long missionStartedAt = 0;
+    public long bossDefeatedAt = 0; // postavlja se jednom, kada prvi klijent primeti poraz bosa
+
+    public String missionState; // null pre prve misije
+    public long finalizationClaimedAt = 0; // kada je klijent preuzeo finalizaciju (FINALIZING)
+    public boolean missionSucceeded = false; // ishod misije, beleži se pri preuzimanju finalizacije
 
     public long createdAt;
     public long updatedAt;
@@ -95,6 +108,13 @@ public class Alliance implements IIdentifiable, Serializable {
         this.updatedAt = System.currentTimeMillis();
     }
 
+    /**
+     * @param totalDamage Zbir štete iz svih šardova saveza.
+     */
+    public int getBossHpAfterDamage(int totalDamage) {
+        return Math.max(0, bossCurrentHp - totalDamage);
+    }
+
     public int getBossMaxHp() {
         return bossMaxHp;
     }
@@ -115,6 +135,42 @@ public class Alliance implements IIdentifiable, Serializable {
         return isMissionActive;
     }
 
+    /**
+     * Da li misiju sme da preuzme klijent za finalizaciju: aktivna je (misije pokrenute pre
+     * uvođenja stanja nemaju missionState), ili je FINALIZING a preuzimanje je starije od leaseMs
+     * (klijent koji ju je preuzeo nije završio).
+     */
+    public boolean canClaimFinalization(long now, long leaseMs) {
+        if (!isMissionActive) {
+            return false;
+        }
+        if (missionState == null || MISSION_ACTIVE.equals(missionState)) {
+            return true;
+        }
+        return MISSION_FINALIZING.equals(missionState) && now - finalizationClaimedAt >= leaseMs;
+    }
+
+    public boolean isFinalizing() {
+        return isMissionActive && MISSION_FINALIZING.equals(missionState);
+    }
+
+    /**
+     * Da li misija još nije finalizovana (aktivna ili FINALIZING), bez obzira na zakup.
+     * Zakup se proverava tek u transakciji preuzimanja, sa vremenom servera.
+     */
+    public boolean awaitsFinalization() {
+        return isMissionActive && (missionState == null || MISSION_ACTIVE.equals(missionState)
+                || MISSION_FINALIZING.equals(missionState));
+    }
+
+    /**
+     * Da li finalizaciju i dalje drži klijent koji ju je preuzeo u trenutku claimedAt
+     * (drugi klijent je nije preuzeo posle isteka zakupa).
+     */
+    public boolean holdsFinalizationClaim(long claimedAt) {
+        return isFinalizing() && finalizationClaimedAt == claimedAt;
+    }
+
     public void setId(String id) {
         this.id = id;
     }
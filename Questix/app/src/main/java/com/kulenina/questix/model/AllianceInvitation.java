@@ -1,7 +1,9 @@
 package com.kulenina.questix.model;
 
+import com.kulenina.questix.mapper.GenerateMapper;
 import java.io.Serializable;
 
+@GenerateMapper
 public class AllianceInvitation implements IIdentifiable, Serializable {
     public String id;
     public String allianceId;
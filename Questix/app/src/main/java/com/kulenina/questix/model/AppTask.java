@@ -1,8 +1,12 @@
 package com.kulenina.questix.model;
 
+import com.kulenina.questix.mapper.GenerateMapper;
 import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 
+@GenerateMapper
 public class AppTask implements IIdentifiable, Serializable {
     public String id;
     public String name;
@@ -31,6 +35,9 @@ public class AppTask implements IIdentifiable, Serializable {
     public String status;
     public long completedAt; // Timestamp when marked as done/missed/canceled
 
+    // Statusi pojedinačnih ponavljanja (vreme ponavljanja kao String -> status), samo za ponavljajuće zadatke
+    public Map<String, String> occurrenceStatuses;
+
     public long createdAt;
     public long updatedAt;
 
@@ -98,6 +105,24 @@ public class AppTask implements IIdentifiable, Serializable {
         }
     }
 
+    /**
+     * Status zapamćen za konkretno ponavljanje, ili null ako ponavljanje nije razrešeno.
+     */
+    public String getOccurrenceStatus(long occurrenceTime) {
+        return occurrenceStatuses != null ? occurrenceStatuses.get(String.valueOf(occurrenceTime)) : null;
+    }
+
+    /**
+     * Razrešava jedno ponavljanje bez menjanja statusa celog niza.
+     */
+    public void setOccurrenceStatus(long occurrenceTime, String status) {
+        if (occurrenceStatuses == null) {
+            occurrenceStatuses = new HashMap<>();
+        }
+        occurrenceStatuses.put(String.valueOf(occurrenceTime), status);
+        this.updatedAt = System.currentTimeMillis();
+    }
+
     public boolean isActive() {
         return STATUS_ACTIVE.equals(status) || STATUS_PAUSED.equals(status);
     }
@@ -1,7 +1,9 @@
 package com.kulenina.questix.model;
 
+import com.kulenina.questix.mapper.GenerateMapper;
 import java.io.Serializable;
 
+@GenerateMapper
 public class BossBattle implements IIdentifiable, Serializable {
     public String id;
     public String userId;
@@ -13,6 +15,7 @@ public class BossBattle implements IIdentifiable, Serializable {
     public int coinsReward;
     public double equipmentDropChance = 0.2;
     public double successRate;
+    public long revision; // uvećava se pri svakom upisu završene bitke (BattleSession)
 
     public BossBattle() {
         this.attacksRemaining = 5;
@@ -120,6 +123,13 @@ public class BossBattle implements IIdentifiable, Serializable {
     }
 
     public boolean attack(int userPowerPoints) {
+        return attack(userPowerPoints, successRate);
+    }
+
+    /**
+     * @param hitChance Verovatnoća pogotka sa bonusima opreme (CombatStats.getHitChance).
+     */
+    public boolean attack(int userPowerPoints, double hitChance) {
         if (attacksRemaining <= 0 || isDefeated) {
             return false;
         }
@@ -127,7 +137,7 @@ public class BossBattle implements IIdentifiable, Serializable {
         attacksRemaining--;
 
         double random = Math.random();
-        boolean hits = random < successRate;
+        boolean hits = random < hitChance;
 
         if (hits) {
             setCurrentHp(currentHp - userPowerPoints);
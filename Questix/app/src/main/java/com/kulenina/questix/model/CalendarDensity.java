@@ -0,0 +1,135 @@
+package com.kulenina.questix.model;
+
+import java.util.Arrays;
+import java.util.Calendar;
+
+/**
+ * Broj ponavljanja zadataka po danu i po statusu za niz uzastopnih dana.
+ * Brojevi su u jednom int[] (dan * STATUS_COUNT + status), bez objekta po danu,
+ * pa se i cela godina računa i čita jeftino (npr. za označavanje dana u kalendaru).
+ * Ne čuva se u Firestore-u.
+ */
+public class CalendarDensity {
+    public static final int ACTIVE = 0;
+    public static final int PAUSED = 1;
+    public static final int DONE = 2;
+    public static final int CANCELED = 3;
+    public static final int MISSED = 4;
+    public static final int UNDONE = 5;
+    public static final int STATUS_COUNT = 6;
+
+    // Početak svakog dana i, na kraju, početak dana posle poslednjeg (dani nisu uvek 24h)
+    private final long[] dayStarts;
+    private final int[] counts;
+
+    private CalendarDensity(long[] dayStarts) {
+        this.dayStarts = dayStarts;
+        this.counts = new int[(dayStarts.length - 1) * STATUS_COUNT];
+    }
+
+    /**
+     * Prazni brojači za sve dane od dana u kom je fromTime do dana u kom je toTime.
+     */
+    public static CalendarDensity forRange(long fromTime, long toTime) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(fromTime);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+
+        long[] dayStarts = new long[32];
+        int size = 0;
+        do {
+            if (size == dayStarts.length) {
+                dayStarts = Arrays.copyOf(dayStarts, size * 2);
+            }
+            dayStarts[size++] = calendar.getTimeInMillis();
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        } while (dayStarts[size - 1] <= toTime);
+
+        return new CalendarDensity(Arrays.copyOf(dayStarts, size));
+    }
+
+    public int getDayCount() {
+        return dayStarts.length - 1;
+    }
+
+    public long getDayStart(int day) {
+        return dayStarts[day];
+    }
+
+    public long getRangeStart() {
+        return dayStarts[0];
+    }
+
+    /**
+     * Kraj poslednjeg dana (uključivo).
+     */
+    public long getRangeEnd() {
+        return dayStarts[dayStarts.length - 1] - 1;
+    }
+
+    /**
+     * @return Redni broj dana u kom je time, ili -1 ako je van opsega.
+     */
+    public int indexOfDay(long time) {
+        if (time < dayStarts[0] || time >= dayStarts[dayStarts.length - 1]) {
+            return -1;
+        }
+        int index = Arrays.binarySearch(dayStarts, time);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * Dodaje jedno ponavljanje; vremena van opsega i nepoznati statusi se preskaču.
+     */
+    public void add(long time, String status) {
+        int day = indexOfDay(time);
+        int slot = statusSlot(status);
+        if (day >= 0 && slot >= 0) {
+            counts[day * STATUS_COUNT + slot]++;
+        }
+    }
+
+    public int getCount(int day, int status) {
+        return counts[day * STATUS_COUNT + status];
+    }
+
+    public int getTotal(int day) {
+        int total = 0;
+        for (int status = 0; status < STATUS_COUNT; status++) {
+            total += counts[day * STATUS_COUNT + status];
+        }
+        return total;
+    }
+
+    /**
+     * Svi brojači (dan * STATUS_COUNT + status). Niz se ne kopira i ne sme se menjati.
+     */
+    public int[] getCounts() {
+        return counts;
+    }
+
+    public static int statusSlot(String status) {
+        if (status == null) {
+            return -1;
+        }
+        switch (status) {
+            case AppTask.STATUS_ACTIVE:
+                return ACTIVE;
+            case AppTask.STATUS_PAUSED:
+                return PAUSED;
+            case AppTask.STATUS_DONE:
+                return DONE;
+            case AppTask.STATUS_CANCELED:
+                return CANCELED;
+            case AppTask.STATUS_MISSED:
+                return MISSED;
+            case AppTask.STATUS_UNDONE:
+                return UNDONE;
+            default:
+                return -1;
+        }
+    }
+}
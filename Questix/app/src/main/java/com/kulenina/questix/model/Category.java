@@ -1,8 +1,10 @@
 package com.kulenina.questix.model;
 
+import com.kulenina.questix.mapper.GenerateMapper;
 import java.io.Serializable;
 import java.util.UUID;
 
+@GenerateMapper
 public class Category implements IIdentifiable, Serializable {
     public String id;
     public String name;
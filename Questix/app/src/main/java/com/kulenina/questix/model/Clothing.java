@@ -1,5 +1,8 @@
 package com.kulenina.questix.model;
 
+import com.kulenina.questix.mapper.GenerateMapper;
+
+@GenerateMapper
 public class Clothing extends Equipment {
     public ClothingType clothingType;
     public int effectValue;
@@ -0,0 +1,86 @@
+package com.kulenina.questix.model;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Zbir efekata aktivne opreme za borbu sa bosom. Računa se jednom, kada se oprema aktivira,
+ * istekne ili nadogradi, a napad samo čita gotove vrednosti.
+ * Ne čuva se u Firestore-u.
+ */
+public class CombatStats implements Serializable {
+    public final int basePowerPoints;
+    public final double powerBonusPercent; // napici, rukavice, mač
+    public final double hitChanceBonusPercent; // štit
+    public final double coinBonusPercent; // luk
+    public final double extraAttackChancePercent; // čizme
+
+    public CombatStats(int basePowerPoints, double powerBonusPercent, double hitChanceBonusPercent,
+                       double coinBonusPercent, double extraAttackChancePercent) {
+        this.basePowerPoints = basePowerPoints;
+        this.powerBonusPercent = powerBonusPercent;
+        this.hitChanceBonusPercent = hitChanceBonusPercent;
+        this.coinBonusPercent = coinBonusPercent;
+        this.extraAttackChancePercent = extraAttackChancePercent;
+    }
+
+    /**
+     * Bonusi aktivne, neistekle opreme (bez osnovnih PP korisnika).
+     */
+    public static CombatStats fromEquipment(List<Equipment> equipment) {
+        double power = 0;
+        double hitChance = 0;
+        double coins = 0;
+        double extraAttack = 0;
+
+        for (Equipment item : equipment) {
+            if (!item.isActive() || item.isExpired()) {
+                continue;
+            }
+            if (item instanceof Potion) {
+                power += ((Potion) item).getEffectValue();
+            } else if (item instanceof Clothing) {
+                Clothing clothing = (Clothing) item;
+                switch (clothing.getClothingType()) {
+                    case GLOVES:
+                        power += clothing.getEffectValue();
+                        break;
+                    case SHIELD:
+                        hitChance += clothing.getEffectValue();
+                        break;
+                    case BOOTS:
+                        extraAttack += clothing.getEffectValue();
+                        break;
+                }
+            } else if (item instanceof Weapon) {
+                Weapon weapon = (Weapon) item;
+                if (weapon.getWeaponType() == Weapon.WeaponType.SWORD) {
+                    power += weapon.getEffectValue();
+                } else if (weapon.getWeaponType() == Weapon.WeaponType.BOW) {
+                    coins += weapon.getEffectValue();
+                }
+            }
+        }
+        return new CombatStats(0, power, hitChance, coins, Math.min(100, extraAttack));
+    }
+
+    public CombatStats withBasePowerPoints(int basePowerPoints) {
+        return new CombatStats(basePowerPoints, powerBonusPercent, hitChanceBonusPercent,
+                coinBonusPercent, extraAttackChancePercent);
+    }
+
+    public int getPowerPoints() {
+        return (int) Math.round(basePowerPoints * (1 + powerBonusPercent / 100.0));
+    }
+
+    /**
+     * @param baseSuccessRate Osnovna verovatnoća pogotka bitke (0..1).
+     */
+    public double getHitChance(double baseSuccessRate) {
+        return Math.max(0.0, Math.min(1.0, baseSuccessRate + hitChanceBonusPercent / 100.0));
+    }
+
+    public int applyCoinBonus(int coins) {
+        return (int) Math.round(coins * (1 + coinBonusPercent / 100.0));
+    }
+}
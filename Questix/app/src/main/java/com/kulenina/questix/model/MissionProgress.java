@@ -1,11 +1,15 @@
 package com.kulenina.questix.model;
 
+import com.kulenina.questix.mapper.GenerateMapper;
 import com.google.firebase.firestore.Exclude;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
+@GenerateMapper
 public class MissionProgress implements IIdentifiable, Serializable {
+    // Koliko poslednjih primenjenih grupa akcija se pamti (grupa se ponavlja samo posle ponovnog pokretanja)
+    private static final int MAX_APPLIED_FLUSHES = 20;
 
     public String id; // missionId_userId
     public String allianceId;
@@ -23,10 +27,14 @@ public class MissionProgress implements IIdentifiable, Serializable {
 
     public int totalHpContribution = 0; // Ukupno smanjenje HP bosa od strane ovog korisnika
 
+    // flushId poslednjih primenjenih grupa akcija, da se ponovo poslata grupa ne primeni dvaput
+    public List<String> appliedFlushIds;
+
     public long createdAt;
 
     public MissionProgress() {
         this.messageDays = new ArrayList<>();
+        this.appliedFlushIds = new ArrayList<>();
         this.createdAt = System.currentTimeMillis();
     }
 
@@ -54,4 +62,19 @@ public class MissionProgress implements IIdentifiable, Serializable {
         }
         return messageDays;
     }
+
+    @Exclude
+    public boolean hasAppliedFlush(String flushId) {
+        return appliedFlushIds != null && appliedFlushIds.contains(flushId);
+    }
+
+    public void addAppliedFlush(String flushId) {
+        if (appliedFlushIds == null) {
+            appliedFlushIds = new ArrayList<>();
+        }
+        appliedFlushIds.add(flushId);
+        while (appliedFlushIds.size() > MAX_APPLIED_FLUSHES) {
+            appliedFlushIds.remove(0);
+        }
+    }
 }
\ No newline at end of file
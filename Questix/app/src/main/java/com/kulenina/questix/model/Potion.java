@@ -1,5 +1,8 @@
 package com.kulenina.questix.model;
 
+import com.kulenina.questix.mapper.GenerateMapper;
+
+@GenerateMapper
 public class Potion extends Equipment {
     public PotionType potionType;
     public int effectValue;
@@ -1,7 +1,9 @@
 package com.kulenina.questix.model;
 
+import com.kulenina.questix.mapper.GenerateMapper;
 import java.io.Serializable;
 
+@GenerateMapper
 public class QuotaState implements IIdentifiable, Serializable {
     public String id; // Koristimo fiksni ID tipa "daily_user_ID" ili "monthly_user_ID"
     public String userId;
@@ -31,4 +33,29 @@ public class QuotaState implements IIdentifiable, Serializable {
     public String getId() {
         return id;
     }
+
+    /**
+     * Broj zadataka sa dodeljenim XP za tip kvote ("VE_N", "E_I", "H_EI", "EH", "S").
+     */
+    public int getCount(String quotaType) {
+        switch (quotaType) {
+            case "VE_N": return veryEasyNormalCount;
+            case "E_I": return easyImportantCount;
+            case "H_EI": return hardExtremelyImportantCount;
+            case "EH": return extremelyHardCount;
+            case "S": return specialCount;
+            default: throw new IllegalArgumentException("Invalid quota type: " + quotaType);
+        }
+    }
+
+    public void increment(String quotaType) {
+        switch (quotaType) {
+            case "VE_N": veryEasyNormalCount++; break;
+            case "E_I": easyImportantCount++; break;
+            case "H_EI": hardExtremelyImportantCount++; break;
+            case "EH": extremelyHardCount++; break;
+            case "S": specialCount++; break;
+            default: throw new IllegalArgumentException("Invalid quota type: " + quotaType);
+        }
+    }
 }
\ No newline at end of file
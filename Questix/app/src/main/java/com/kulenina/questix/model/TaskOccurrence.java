@@ -0,0 +1,69 @@
+package com.kulenina.questix.model;
+
+/**
+ * Jedno izvršenje zadatka za prikaz u listi i kalendaru.
+ * Ne kopira polja zadatka, već referencira originalni AppTask i čuva samo
+ * vreme izvršenja i status ovog ponavljanja.
+ */
+public class TaskOccurrence implements IIdentifiable {
+    public final AppTask task;
+    public final long executionTime;
+    public final String status;
+
+    public TaskOccurrence(AppTask task, long executionTime, String status) {
+        this.task = task;
+        this.executionTime = executionTime;
+        this.status = status;
+    }
+
+    /**
+     * Izvršenje jednokratnog zadatka (ili prvo izvršenje ponavljajućeg).
+     */
+    public static TaskOccurrence of(AppTask task) {
+        return new TaskOccurrence(task, task.executionTime, task.status);
+    }
+
+    /**
+     * ID originalnog zadatka za prvo izvršenje, a "ORIGINAL_ID_executionTime" za ostala ponavljanja.
+     */
+    @Override
+    public String getId() {
+        if (executionTime == task.executionTime) {
+            return task.id;
+        }
+        return task.id + "_" + executionTime;
+    }
+
+    public AppTask getTask() {
+        return task;
+    }
+
+    public boolean isRecurring() {
+        return task.isRecurring;
+    }
+
+    public boolean isActive() {
+        return AppTask.STATUS_ACTIVE.equals(status) || AppTask.STATUS_PAUSED.equals(status);
+    }
+
+    public boolean isPaused() {
+        return AppTask.STATUS_PAUSED.equals(status);
+    }
+
+    public boolean isCanceled() {
+        return AppTask.STATUS_CANCELED.equals(status);
+    }
+
+    public boolean isUndone() {
+        return AppTask.STATUS_UNDONE.equals(status);
+    }
+
+    public boolean isDone() {
+        return AppTask.STATUS_DONE.equals(status);
+    }
+
+    public boolean isFinished() {
+        return AppTask.STATUS_DONE.equals(status) || AppTask.STATUS_MISSED.equals(status) ||
+               AppTask.STATUS_CANCELED.equals(status) || AppTask.STATUS_UNDONE.equals(status);
+    }
+}
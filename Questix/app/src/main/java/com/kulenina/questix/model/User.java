@@ -1,13 +1,17 @@
 package com.kulenina.questix.model;
 
+import com.kulenina.questix.mapper.GenerateMapper;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
+@GenerateMapper
 public class User implements IIdentifiable, Serializable {
 	public String id;
 	public String avatar;
 	public String username;
+	public String usernameLower; // normalizovano korisničko ime za prefiks pretragu
 	public String email;
 	public Integer level;
 	public Integer powerPoints;
@@ -51,6 +55,13 @@ public class User implements IIdentifiable, Serializable {
 		return id;
 	}
 
+	/**
+	 * Oblik korisničkog imena koji se čuva u usernameLower i po kome se pretražuje.
+	 */
+	public static String normalizeUsername(String username) {
+		return username != null ? username.trim().toLowerCase(Locale.ROOT) : null;
+	}
+
 	public void addFriend(String friendId) {
 		if (friends == null) {
 			friends = new ArrayList<>();
@@ -0,0 +1,255 @@
+package com.kulenina.questix.model;
+
+import com.kulenina.questix.mapper.GenerateMapper;
+import java.io.Serializable;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Zbirna statistika korisnika (jedan dokument po korisniku, ID = userId).
+ * Ažurira se pri kreiranju, rešavanju i propuštanju zadataka, tako da ekran statistike
+ * ne mora da čita sve zadatke. Vrednosti u mapama su Long jer ih Firestore tako vraća.
+ *
+ * Niz dana (streak) broji dane sa bar jednim urađenim zadatkom. Kao i ranije (računanje iz svih
+ * zadataka), dan bez zadataka ne prekida niz; prekida ga dan sa propuštenim (undone/missed)
+ * zadatkom na kome nije urađen nijedan zadatak.
+ */
+@GenerateMapper
+public class UserStatistics implements IIdentifiable, Serializable {
+
+    // Koliko dana unazad se čuva dnevni XP (i duže, za dane trenutnog niza)
+    public static final int DAILY_XP_DAYS = 30;
+
+    public String id;
+    public String userId;
+
+    public long createdCount;
+    public long completedCount;
+    public long missedCount; // missed + undone (na ekranu "Missed / Undone")
+    public long canceledCount;
+    public long specialStartedCount;
+    public long specialCompletedCount;
+
+    public Map<String, Long> completedByCategory; // categoryId -> broj urađenih
+    public Map<String, Long> completedByDifficulty; // težina -> broj urađenih
+    public Map<String, Long> xpByDifficulty; // težina -> zbir XP-a urađenih
+    public Map<String, Long> dailyXp; // "yyyy-MM-dd" -> XP urađenih tog dana (dani sa urađenim zadatkom)
+    public Map<String, Long> missedDays; // "yyyy-MM-dd" dana kada je zadatak trebalo uraditi -> broj propuštenih
+
+    public long activeDaysCount;
+    public String lastActiveDay; // "yyyy-MM-dd" poslednjeg dana sa urađenim zadatkom
+    public String streakStartDay; // "yyyy-MM-dd" prvog dana trenutnog niza, null ako niza nema
+    public long currentStreak; // broj dana sa urađenim zadatkom od streakStartDay do lastActiveDay
+    public long longestStreak;
+
+    public long updatedAt;
+
+    public UserStatistics() {
+        this.completedByCategory = new HashMap<>();
+        this.completedByDifficulty = new HashMap<>();
+        this.xpByDifficulty = new HashMap<>();
+        this.dailyXp = new HashMap<>();
+        this.missedDays = new HashMap<>();
+    }
+
+    public UserStatistics(String userId) {
+        this();
+        this.id = userId;
+        this.userId = userId;
+    }
+
+    /**
+     * Pravi statistiku iz svih zadataka korisnika (backfill).
+     * Urađeni zadaci se obrađuju po redosledu završetka da bi niz dana bio tačan.
+     */
+    public static UserStatistics fromTasks(String userId, List<AppTask> tasks, long now) {
+        UserStatistics stats = new UserStatistics(userId);
+
+        List<AppTask> ordered = new ArrayList<>(tasks);
+        ordered.sort((a, b) -> Long.compare(a.completedAt, b.completedAt));
+
+        for (AppTask task : ordered) {
+            stats.recordCreated(task);
+            if (AppTask.STATUS_DONE.equals(task.status)) {
+                stats.recordCompleted(task, task.completedAt > 0 ? task.completedAt : task.executionTime);
+            } else if (AppTask.STATUS_MISSED.equals(task.status) || AppTask.STATUS_UNDONE.equals(task.status)) {
+                stats.recordMissed(task.executionTime);
+            } else if (AppTask.STATUS_CANCELED.equals(task.status)) {
+                stats.recordCanceled();
+            }
+        }
+
+        stats.pruneDailyXp(now);
+        stats.updatedAt = now;
+        return stats;
+    }
+
+    public void recordCreated(AppTask task) {
+        createdCount++;
+        if ("Special".equals(task.importance)) {
+            specialStartedCount++;
+        }
+    }
+
+    /**
+     * Jednokratni zadatak je obrisan pre nego što je rešen.
+     */
+    public void recordDeleted(AppTask task) {
+        createdCount = Math.max(0, createdCount - 1);
+        if ("Special".equals(task.importance)) {
+            specialStartedCount = Math.max(0, specialStartedCount - 1);
+        }
+    }
+
+    public void recordCompleted(AppTask task, long completedAt) {
+        completedCount++;
+        if ("Special".equals(task.importance)) {
+            specialCompletedCount++;
+        }
+        increment(completedByCategory, task.categoryId != null ? task.categoryId : "", 1);
+        if (task.difficulty != null) {
+            increment(completedByDifficulty, task.difficulty, 1);
+            increment(xpByDifficulty, task.difficulty, task.totalXpValue);
+        }
+
+        String day = dayKey(completedAt);
+        increment(dailyXp, day, task.totalXpValue);
+
+        normalizeStreak();
+        if (lastActiveDay == null || day.compareTo(lastActiveDay) > 0) {
+            activeDaysCount++;
+            lastActiveDay = day;
+            // Dani bez urađenih zadataka između ne prekidaju niz; propuštanja proverava normalizeStreak
+            if (streakStartDay == null) {
+                streakStartDay = day;
+                currentStreak = 1;
+            } else {
+                currentStreak++;
+            }
+        }
+        normalizeStreak();
+        longestStreak = Math.max(longestStreak, currentStreak);
+    }
+
+    /**
+     * Propušten (undone/missed) zadatak prekida niz dana sa urađenim zadacima, ali samo od dana
+     * kada je trebalo da bude urađen: propuštanje upisano sa zakašnjenjem ne briše dane posle njega.
+     * @param missedAt Vreme kada je zadatak trebalo uraditi.
+     */
+    public void recordMissed(long missedAt) {
+        missedCount++;
+        increment(missedDays, dayKey(missedAt), 1);
+        normalizeStreak();
+    }
+
+    /**
+     * Usklađuje niz dana sa propuštanjima u missedDays (koja sweep upisuje uvećanjem, bez čitanja).
+     * Propuštanje prekida niz samo na danu bez urađenog zadatka: niz tada počinje prvim aktivnim
+     * danom posle njega, a propuštanje posle poslednjeg aktivnog dana ga poništava.
+     * Aktivni dani niza su u dailyXp (pruneDailyXp ih ne briše). Propuštanja koja više ne mogu
+     * da utiču na niz se brišu.
+     */
+    public void normalizeStreak() {
+        if (missedDays == null) {
+            missedDays = new HashMap<>();
+        }
+        if (lastActiveDay == null) {
+            streakStartDay = null;
+            currentStreak = 0;
+            return;
+        }
+        if (streakStartDay == null && currentStreak > 0) {
+            // Dokument iz vremena pre streakStartDay (tada je svaki dan niza bio aktivan)
+            streakStartDay = addDays(lastActiveDay, (int) -(currentStreak - 1));
+        }
+
+        if (streakStartDay != null) {
+            String latestMiss = null;
+            for (String missedDay : missedDays.keySet()) {
+                if (missedDay.compareTo(streakStartDay) >= 0 && !dailyXp.containsKey(missedDay)
+                        && (latestMiss == null || missedDay.compareTo(latestMiss) > 0)) {
+                    latestMiss = missedDay;
+                }
+            }
+            if (latestMiss != null) {
+                streakStartDay = null;
+                currentStreak = 0;
+                for (String activeDay : dailyXp.keySet()) {
+                    if (activeDay.compareTo(latestMiss) > 0 && activeDay.compareTo(lastActiveDay) <= 0) {
+                        currentStreak++;
+                        if (streakStartDay == null || activeDay.compareTo(streakStartDay) < 0) {
+                            streakStartDay = activeDay;
+                        }
+                    }
+                }
+            }
+        } else {
+            currentStreak = 0;
+        }
+
+        String oldestKept = streakStartDay != null ? streakStartDay : addDays(lastActiveDay, 1);
+        missedDays.keySet().removeIf(missedDay -> missedDay.compareTo(oldestKept) < 0);
+    }
+
+    public void recordCanceled() {
+        canceledCount++;
+    }
+
+    /**
+     * Uklanja dnevni XP stariji od DAILY_XP_DAYS dana, da dokument ostane mali.
+     * Dani trenutnog niza se zadržavaju, jer normalizeStreak po njima broji niz.
+     */
+    public void pruneDailyXp(long now) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(now);
+        calendar.add(Calendar.DAY_OF_MONTH, -DAILY_XP_DAYS);
+        String oldestKept = dayKey(calendar.getTimeInMillis());
+        if (streakStartDay != null && streakStartDay.compareTo(oldestKept) < 0) {
+            oldestKept = streakStartDay;
+        }
+
+        Iterator<String> days = dailyXp.keySet().iterator();
+        while (days.hasNext()) {
+            // "yyyy-MM-dd" ključevi se porede leksikografski
+            if (days.next().compareTo(oldestKept) < 0) {
+                days.remove();
+            }
+        }
+    }
+
+    public static String dayKey(long timestamp) {
+        return new SimpleDateFormat("yyyy-MM-dd", Locale.US).format(new Date(timestamp));
+    }
+
+    private static Calendar parseDay(String day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(Integer.parseInt(day.substring(0, 4)),
+                Integer.parseInt(day.substring(5, 7)) - 1,
+                Integer.parseInt(day.substring(8, 10)));
+        return calendar;
+    }
+
+    private static String addDays(String day, int days) {
+        Calendar calendar = parseDay(day);
+        calendar.add(Calendar.DAY_OF_MONTH, days);
+        return dayKey(calendar.getTimeInMillis());
+    }
+
+    private static void increment(Map<String, Long> map, String key, long amount) {
+        Long current = map.get(key);
+        map.put(key, (current != null ? current : 0L) + amount);
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+}
@@ -1,5 +1,8 @@
 package com.kulenina.questix.model;
 
+import com.kulenina.questix.mapper.GenerateMapper;
+
+@GenerateMapper
 public class Weapon extends Equipment {
     public WeaponType weaponType;
     public double effectValue;
@@ -1,9 +1,16 @@
 package com.kulenina.questix.repository;
 
 import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
 import com.kulenina.questix.model.AllianceMessage;
+import com.kulenina.questix.util.AppExecutors;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class AllianceMessageRepository extends Repository<AllianceMessage> {
@@ -12,15 +19,95 @@ public class AllianceMessageRepository extends Repository<AllianceMessage> {
         super("alliance_messages", AllianceMessage.class);
     }
 
-    public Task<List<AllianceMessage>> getMessagesByAllianceId(String allianceId) {
-        return getCollectionReference()
+    /**
+     * Jedna strana poruka, od starije ka novijoj.
+     * oldestDocument je kursor za sledeću (stariju) stranu, newestDocument početak za listener.
+     */
+    public static class MessagePage {
+        public final List<AllianceMessage> messages;
+        public final DocumentSnapshot oldestDocument;
+        public final DocumentSnapshot newestDocument;
+        public final boolean hasOlder;
+
+        public MessagePage(List<AllianceMessage> messages, DocumentSnapshot oldestDocument,
+                           DocumentSnapshot newestDocument, boolean hasOlder) {
+            this.messages = messages;
+            this.oldestDocument = oldestDocument;
+            this.newestDocument = newestDocument;
+            this.hasOlder = hasOlder;
+        }
+    }
+
+    public interface NewMessagesListener {
+        void onNewMessages(List<AllianceMessage> messages);
+        void onError(String message);
+    }
+
+    /**
+     * Najnovijih pageSize poruka saveza.
+     */
+    public Task<MessagePage> getLatestMessages(String allianceId, int pageSize) {
+        return getMessagesBefore(allianceId, null, pageSize);
+    }
+
+    /**
+     * pageSize poruka starijih od kursora (server ih sortira po timestamp-u, opadajuće).
+     * @param before Najstarija već učitana poruka ili null za najnovije poruke.
+     */
+    public Task<MessagePage> getMessagesBefore(String allianceId, DocumentSnapshot before, int pageSize) {
+        Query query = getCollectionReference()
             .whereEqualTo("allianceId", allianceId)
-            .get()
-            .continueWith(task -> {
-                List<AllianceMessage> messages = toList(task.getResult());
-                messages.sort((m1, m2) -> Long.compare(m1.timestamp, m2.timestamp));
-                return messages;
-            });
+            .orderBy("timestamp", Query.Direction.DESCENDING)
+            .limit(pageSize);
+        if (before != null) {
+            query = query.startAfter(before);
+        }
+
+        return query.get().continueWith(AppExecutors.background(), task -> {
+            QuerySnapshot snapshot = task.getResult();
+            List<DocumentSnapshot> documents = snapshot.getDocuments();
+            List<AllianceMessage> messages = toList(snapshot);
+            // Za prikaz: od starije ka novijoj
+            Collections.reverse(messages);
+
+            DocumentSnapshot oldest = documents.isEmpty() ? before : documents.get(documents.size() - 1);
+            DocumentSnapshot newest = documents.isEmpty() ? null : documents.get(0);
+            return new MessagePage(messages, oldest, newest, documents.size() == pageSize);
+        });
     }
 
+    /**
+     * Sluša samo poruke novije od after (ili sve, ako je after null), i javlja samo dodate poruke.
+     */
+    public ListenerRegistration listenToNewMessages(String allianceId, DocumentSnapshot after, NewMessagesListener listener) {
+        Query query = getCollectionReference()
+            .whereEqualTo("allianceId", allianceId)
+            .orderBy("timestamp", Query.Direction.ASCENDING);
+        if (after != null) {
+            query = query.startAfter(after);
+        }
+
+        return query.addSnapshotListener((snapshot, e) -> {
+            if (e != null) {
+                listener.onError(e.getMessage());
+                return;
+            }
+            if (snapshot == null) {
+                return;
+            }
+
+            List<AllianceMessage> added = new ArrayList<>();
+            for (DocumentChange change : snapshot.getDocumentChanges()) {
+                if (change.getType() == DocumentChange.Type.ADDED) {
+                    AllianceMessage message = toObject(change.getDocument());
+                    if (message != null) {
+                        added.add(message);
+                    }
+                }
+            }
+            if (!added.isEmpty()) {
+                listener.onNewMessages(added);
+            }
+        });
+    }
 }
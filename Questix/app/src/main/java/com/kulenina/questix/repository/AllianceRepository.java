@@ -2,15 +2,44 @@ package com.kulenina.questix.repository;
 
 import com.google.android.gms.tasks.Task;
 import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.Transaction;
+import com.google.firebase.firestore.WriteBatch;
 import com.kulenina.questix.model.Alliance;
 import com.kulenina.questix.model.User;
+import com.kulenina.questix.util.AppExecutors;
 
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class AllianceRepository extends Repository<Alliance> {
+    // Koliko dugo se već učitani članovi ne čitaju ponovo (npr. start misije pa nagrade)
+    private static final long MEMBER_CACHE_MS = 30_000;
+
+    // Šteta nanesena bosu misije se deli na više dokumenata (alliances/{id}/damage_shards/{0..N-1}),
+    // da upisi članova ne bi čekali jedan na drugog na dokumentu saveza
+    public static final int DAMAGE_SHARDS = 10;
+    private static final String DAMAGE_SHARDS_COLLECTION = "damage_shards";
+    private static final String DAMAGE_FIELD = "damage";
+    // Pomoćni dokument (alliances/{id}/clock/server) za čitanje vremena servera
+    private static final String CLOCK_COLLECTION = "clock";
+    private static final String CLOCK_DOCUMENT = "server";
+
+    public interface BossDamageListener {
+        void onDamageChanged(int totalDamage);
+        void onError(String message);
+    }
+
     private final UserRepository userRepository;
     public AllianceRepository() {
         super("alliances", Alliance.class);
@@ -19,31 +48,106 @@ public class AllianceRepository extends Repository<Alliance> {
 
     public Task<List<User>> getAllianceMembers(String allianceId) {
         // 1. Čitanje Alliance dokumenta radi dobijanja liste članova (memberIds)
-        return read(allianceId).continueWithTask(task -> {
+        return read(allianceId).continueWithTask(AppExecutors.background(), task -> {
             Alliance alliance = task.getResult();
             if (alliance == null || alliance.memberIds == null || alliance.memberIds.isEmpty()) {
                 return Tasks.forResult(Collections.emptyList());
             }
 
-            // 2. Kreiranje liste Task-ova za čitanje svakog User-a pojedinačno
-            List<Task<User>> userTasks = alliance.memberIds.stream()
-                    // userRepository::read mora da vraća Task<User>
-                    .map(userRepository::read)
-                    .collect(Collectors.toList());
-
-            // 3. Čekanje na sve Task-ove i prikupljanje rezultata
-            return Tasks.whenAllSuccess(userTasks)
-                    .continueWith(t -> {
-                        // Sigurno kastovanje, jer Tasks.whenAllSuccess kombinuje rezultate u List<Object>
-                        @SuppressWarnings("unchecked")
-                        List<Object> results = (List<Object>) t.getResult();
-
-                        // Konvertujemo nazad u List<User> i filtriramo null vrednosti (ako je user obrisan)
-                        return results.stream()
-                                .filter(Objects::nonNull)
-                                .map(obj -> (User) obj)
-                                .collect(Collectors.toList());
-                    });
+            // 2. Čitanje svih članova u nekoliko whereIn upita (obrisani korisnici se izostavljaju)
+            return userRepository.readMany(alliance.memberIds, MEMBER_CACHE_MS);
+        });
+    }
+
+    /**
+     * Nasumičan šard u koji se upisuje nova šteta.
+     */
+    public DocumentReference getRandomDamageShard(String allianceId) {
+        return getRandomDamageShard(allianceId, DAMAGE_SHARDS);
+    }
+
+    /**
+     * Nasumičan šard među prvih shards (test opterećenja poredi broj šardova).
+     */
+    DocumentReference getRandomDamageShard(String allianceId, int shards) {
+        return getDamageShards(allianceId).document(String.valueOf(ThreadLocalRandom.current().nextInt(shards)));
+    }
+
+    /**
+     * Dodaje u batch postavljanje svih šardova na 0 (na početku i kraju misije).
+     */
+    public void resetDamageShards(WriteBatch batch, String allianceId) {
+        for (int shard = 0; shard < DAMAGE_SHARDS; shard++) {
+            Map<String, Object> data = new HashMap<>();
+            data.put(DAMAGE_FIELD, 0);
+            batch.set(getDamageShards(allianceId).document(String.valueOf(shard)), data);
+        }
+    }
+
+    /**
+     * Isto kao resetDamageShards(WriteBatch, String), unutar transakcije.
+     */
+    public void resetDamageShards(Transaction transaction, String allianceId) {
+        for (int shard = 0; shard < DAMAGE_SHARDS; shard++) {
+            Map<String, Object> data = new HashMap<>();
+            data.put(DAMAGE_FIELD, 0);
+            transaction.set(getDamageShards(allianceId).document(String.valueOf(shard)), data);
+        }
+    }
+
+    /**
+     * Trenutno vreme servera u milisekundama: upis serverTimestamp u pomoćni dokument saveza
+     * i čitanje sa servera. Ne zavisi od sata uređaja, pa ga klijenti mogu međusobno porediti.
+     */
+    public Task<Long> getServerTime(String allianceId) {
+        DocumentReference clock = getDocumentReference(allianceId).collection(CLOCK_COLLECTION).document(CLOCK_DOCUMENT);
+        Map<String, Object> data = new HashMap<>();
+        data.put("now", FieldValue.serverTimestamp());
+        return clock.set(data).continueWithTask(AppExecutors.background(), writeTask -> {
+            writeTask.getResult();
+            return clock.get(Source.SERVER);
+        }).continueWith(AppExecutors.background(), readTask -> {
+            Date now = readTask.getResult().getDate("now");
+            if (now == null) {
+                throw new RuntimeException("Server time is not available.");
+            }
+            return now.getTime();
+        });
+    }
+
+    /**
+     * @return Zbir štete iz svih šardova saveza.
+     */
+    public Task<Integer> getTotalDamage(String allianceId) {
+        return getDamageShards(allianceId).get().continueWith(AppExecutors.background(), task -> sumDamage(task.getResult()));
+    }
+
+    public ListenerRegistration listenToTotalDamage(String allianceId, BossDamageListener listener) {
+        return getDamageShards(allianceId).addSnapshotListener((snapshot, e) -> {
+            if (e != null) {
+                listener.onError(e.getMessage());
+                return;
+            }
+            if (snapshot != null) {
+                listener.onDamageChanged(sumDamage(snapshot));
+            }
         });
     }
+
+    private CollectionReference getDamageShards(String allianceId) {
+        return getDocumentReference(allianceId).collection(DAMAGE_SHARDS_COLLECTION);
+    }
+
+    private static int sumDamage(QuerySnapshot snapshot) {
+        int total = 0;
+        if (snapshot != null) {
+            for (DocumentSnapshot shard : snapshot.getDocuments()) {
+                Long damage = shard.getLong(DAMAGE_FIELD);
+                if (damage != null) {
+                    total += damage.intValue();
+                }
+            }
+        }
+        return total;
+    }
 }
\ No newline at end of file
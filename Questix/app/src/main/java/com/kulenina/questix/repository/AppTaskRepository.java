@@ -1,38 +1,334 @@
 package com.kulenina.questix.repository;
 
 import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentChange;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.Transaction;
 import com.google.firebase.firestore.WriteBatch;
 import com.kulenina.questix.model.AppTask;
+import com.kulenina.questix.util.AppExecutors;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Zadaci se čitaju iz lokalne baze (LocalTaskStore) kada je korisnik već sinhronizovan,
+ * a Firestore se koristi za upis i za sinhronizaciju u pozadini (syncUser).
+ */
 public class AppTaskRepository extends Repository<AppTask> {
 
+    // Korisnici za koje je u ovom pokretanju aplikacije urađena puna sinhronizacija
+    private static final Set<String> fullySyncedUsers = ConcurrentHashMap.newKeySet();
+
+    // Firestore dozvoljava najviše 500 operacija po WriteBatch-u
+    private static final int MAX_BATCH_OPERATIONS = 450;
+
+    private final LocalTaskStore localStore;
+
     public AppTaskRepository() {
         super("tasks", AppTask.class);
+        this.localStore = LocalTaskStore.getInstance();
+    }
+
+    // --- Upis (Firestore + lokalna baza) ---
+    // Lokalni upis je odmah vidljiv (i van mreže); ako Firestore odbije upis, lokalni zapis
+    // se vraća na kopiju sa servera (restoreLocal).
+
+    @Override
+    public Task<Void> createWithId(AppTask object) {
+        Task<Void> remote = super.createWithId(object);
+        writeLocal(object);
+        return restoreLocalOnFailure(remote, object.getId());
+    }
+
+    @Override
+    public Task<Void> update(AppTask object) {
+        // updatedAt je verzija zapisa za sinhronizaciju
+        object.updatedAt = System.currentTimeMillis();
+        Task<Void> remote = super.update(object);
+        writeLocal(object);
+        return restoreLocalOnFailure(remote, object.getId());
+    }
+
+    /**
+     * Čitanje zadatka unutar transakcije (null ako ne postoji).
+     */
+    public AppTask read(Transaction transaction, String id) throws FirebaseFirestoreException {
+        return toObject(transaction.get(getDocumentReference(id)));
+    }
+
+    /**
+     * Upis statusa zadatka unutar transakcije. Lokalna baza se ažurira tek posle
+     * potvrde transakcije (saveLocal), jer se transakcija može ponoviti ili odbiti.
+     */
+    public void updateStatus(Transaction transaction, AppTask task) {
+        transaction.update(getDocumentReference(task.getId()),
+                "status", task.status,
+                "completedAt", task.completedAt,
+                "updatedAt", task.updatedAt);
+    }
+
+    /**
+     * Upis statusa jednog ponavljanja unutar transakcije (occurrenceStatuses.<vreme>);
+     * status niza i ostala ponavljanja ostaju nepromenjeni.
+     */
+    public void updateOccurrenceStatus(Transaction transaction, AppTask task, long occurrenceTime) {
+        transaction.update(getDocumentReference(task.getId()),
+                "occurrenceStatuses." + occurrenceTime, task.getOccurrenceStatus(occurrenceTime),
+                "updatedAt", task.updatedAt);
+    }
+
+    public void saveLocal(AppTask task) {
+        writeLocal(task);
+    }
+
+    @Override
+    public Task<Void> delete(AppTask object) {
+        return delete(object.getId());
+    }
+
+    @Override
+    public Task<Void> delete(String id) {
+        Task<Void> remote = super.delete(id);
+        if (localStore != null) {
+            localStore.delete(id);
+        }
+        return restoreLocalOnFailure(remote, id);
+    }
+
+    private Task<Void> restoreLocalOnFailure(Task<Void> remote, String id) {
+        if (localStore == null) {
+            return remote;
+        }
+        return remote.addOnFailureListener(AppExecutors.background(), e -> restoreLocal(id));
+    }
+
+    /**
+     * Vraća lokalni zapis na kopiju sa servera (ili ga briše ako dokument ne postoji).
+     * Ako ni to ne uspe, zapis ispravlja sledeća puna sinhronizacija.
+     */
+    private void restoreLocal(String id) {
+        getDocumentReference(id).get(Source.SERVER)
+                .addOnSuccessListener(AppExecutors.background(), snapshot -> {
+                    AppTask task = toObject(snapshot);
+                    if (task != null) {
+                        localStore.replace(task);
+                    } else {
+                        localStore.delete(id);
+                    }
+                });
+    }
+
+    // --- Praćenje promena ---
+
+    public interface TaskChangeListener {
+        /**
+         * @param upserted Dodati ili izmenjeni zadaci.
+         * @param removedIds ID-jevi obrisanih zadataka.
+         */
+        void onTasksChanged(List<AppTask> upserted, List<String> removedIds);
+        void onError(String message);
     }
 
+    /**
+     * Real-time listener na zadatke korisnika koji prosleđuje samo promenjene dokumente.
+     * Prvi snapshot sadrži sve zadatke (kao dodate), a svaki sledeći samo razlike.
+     * Promene se upisuju i u lokalnu bazu. Listener se poziva na AppExecutors.background().
+     * @return ListenerRegistration za ručno uklanjanje listenera.
+     */
+    public ListenerRegistration listenToUserTasks(String userId, TaskChangeListener listener) {
+        return getCollectionReference()
+                .whereEqualTo("userId", userId)
+                .addSnapshotListener(AppExecutors.background(), (snapshot, e) -> {
+                    if (e != null) {
+                        listener.onError(e.getMessage());
+                        return;
+                    }
+                    if (snapshot == null) {
+                        return;
+                    }
+
+                    List<AppTask> upserted = new ArrayList<>();
+                    List<String> removedIds = new ArrayList<>();
+                    for (DocumentChange change : snapshot.getDocumentChanges()) {
+                        if (change.getType() == DocumentChange.Type.REMOVED) {
+                            removedIds.add(change.getDocument().getId());
+                        } else {
+                            AppTask task = toObject(change.getDocument());
+                            if (task != null) {
+                                upserted.add(task);
+                            }
+                        }
+                    }
+                    if (upserted.isEmpty() && removedIds.isEmpty()) {
+                        return;
+                    }
+
+                    if (localStore != null) {
+                        localStore.upsertAll(upserted);
+                        for (String id : removedIds) {
+                            localStore.delete(id);
+                        }
+                    }
+                    listener.onTasksChanged(upserted, removedIds);
+                });
+    }
+
+    // --- Sinhronizacija ---
+
+    /**
+     * Preuzima izmene zadataka korisnika sa servera u lokalnu bazu.
+     * Prva sinhronizacija u pokretanju aplikacije je puna (uklanja i zadatke obrisane na drugom
+     * uređaju i zamenjuje lokalne zapise kopijama sa servera, bez obzira na updatedAt), a svaka sledeća preuzima samo zadatke
+     * sa updatedAt većim od poslednjeg preuzetog.
+     * @return Broj lokalno promenjenih zadataka.
+     */
+    public Task<Integer> syncUser(String userId) {
+        if (localStore == null) {
+            return Tasks.forResult(0);
+        }
+
+        return localStore.getLastSyncedAt(userId)
+                .continueWithTask(AppExecutors.background(), lastTask -> {
+                    long lastSyncedAt = lastTask.getResult();
+
+                    if (lastSyncedAt < 0 || !fullySyncedUsers.contains(userId)) {
+                        return findAllByUserRemote(userId)
+                                .continueWithTask(AppExecutors.background(), remoteTask -> {
+                                    List<AppTask> tasks = remoteTask.getResult();
+                                    return localStore.replaceAllForUser(userId, tasks, maxUpdatedAt(tasks, 0))
+                                            .addOnSuccessListener(AppExecutors.background(), changed -> fullySyncedUsers.add(userId));
+                                });
+                    }
+
+                    return getCollectionReference()
+                            .whereEqualTo("userId", userId)
+                            .whereGreaterThan("updatedAt", lastSyncedAt)
+                            .get()
+                            .continueWithTask(AppExecutors.background(), remoteTask -> {
+                                List<AppTask> tasks = toList(remoteTask.getResult());
+                                if (tasks.isEmpty()) {
+                                    return Tasks.forResult(0);
+                                }
+                                return localStore.upsertAll(tasks)
+                                        .continueWithTask(AppExecutors.background(), upsertTask -> localStore
+                                                .setLastSyncedAt(userId, maxUpdatedAt(tasks, lastSyncedAt))
+                                                .continueWith(AppExecutors.background(), t -> upsertTask.getResult()));
+                            });
+                });
+    }
+
+    // --- Upiti ---
+
     public Task<List<AppTask>> findTasksByCategoryAndStatus(String categoryId, String status) {
         return getCollectionReference()
                 .whereEqualTo("categoryId", categoryId)
                 .whereEqualTo("status", status)
                 .get()
-                .continueWith(t -> toList(t.getResult()));
+                .continueWith(AppExecutors.background(), t -> toList(t.getResult()));
     }
 
     public Task<List<AppTask>> findTasksByCategoryId(String categoryId) {
         return getCollectionReference()
                 .whereEqualTo("categoryId", categoryId)
                 .get()
-                .continueWith(t -> toList(t.getResult()));
+                .continueWith(AppExecutors.background(), t -> toList(t.getResult()));
     }
 
     public Task<List<AppTask>> findAllByUser(String userId) {
+        return queryLocalFirst(userId,
+                () -> localStore.findAllByUser(userId),
+                () -> findAllByUserRemote(userId));
+    }
+
+    private Task<List<AppTask>> findAllByUserRemote(String userId) {
+        return getCollectionReference()
+                .whereEqualTo("userId", userId)
+                .get()
+                .continueWith(AppExecutors.background(), task -> toList(task.getResult()));
+    }
+
+    /**
+     * Jednokratni zadaci korisnika čije je vreme izvršenja u opsegu [fromTime, toTime].
+     * Indeks: userId, isRecurring, executionTime (firestore.indexes.json).
+     */
+    public Task<List<AppTask>> findOneTimeByUserInRange(String userId, long fromTime, long toTime) {
+        return queryLocalFirst(userId,
+                () -> localStore.findOneTimeByUserInRange(userId, fromTime, toTime),
+                () -> findOneTimeByUserInRangeRemote(userId, fromTime, toTime));
+    }
+
+    private Task<List<AppTask>> findOneTimeByUserInRangeRemote(String userId, long fromTime, long toTime) {
         return getCollectionReference()
                 .whereEqualTo("userId", userId)
+                .whereEqualTo("isRecurring", false)
+                .whereGreaterThanOrEqualTo("executionTime", fromTime)
+                .whereLessThanOrEqualTo("executionTime", toTime)
                 .get()
-                .continueWith(task -> toList(task.getResult()));
+                .continueWith(AppExecutors.background(), task -> toList(task.getResult()));
+    }
+
+    /**
+     * Ponavljajući zadaci korisnika koji počinju najkasnije u toTime.
+     * Indeks: userId, isRecurring, executionTime (firestore.indexes.json).
+     */
+    public Task<List<AppTask>> findRecurringByUserStartingBefore(String userId, long toTime) {
+        return queryLocalFirst(userId,
+                () -> localStore.findRecurringByUserStartingBefore(userId, toTime),
+                () -> findRecurringByUserStartingBeforeRemote(userId, toTime));
+    }
+
+    private Task<List<AppTask>> findRecurringByUserStartingBeforeRemote(String userId, long toTime) {
+        return getCollectionReference()
+                .whereEqualTo("userId", userId)
+                .whereEqualTo("isRecurring", true)
+                .whereLessThanOrEqualTo("executionTime", toTime)
+                .get()
+                .continueWith(AppExecutors.background(), task -> toList(task.getResult()));
+    }
+
+    /**
+     * Zadaci korisnika sa jednim od datih statusa.
+     * Indeks: userId, status (firestore.indexes.json).
+     */
+    public Task<List<AppTask>> findByUserAndStatuses(String userId, String... statuses) {
+        return queryLocalFirst(userId,
+                () -> localStore.findByUserAndStatuses(userId, statuses),
+                () -> findByUserAndStatusesRemote(userId, statuses));
+    }
+
+    private Task<List<AppTask>> findByUserAndStatusesRemote(String userId, String... statuses) {
+        return getCollectionReference()
+                .whereEqualTo("userId", userId)
+                .whereIn("status", Arrays.asList(statuses))
+                .get()
+                .continueWith(AppExecutors.background(), task -> toList(task.getResult()));
+    }
+
+    /**
+     * Zadaci korisnika sa jednim od datih statusa čije je vreme izvršenja pre beforeTime.
+     * Indeks: userId, status, executionTime (firestore.indexes.json).
+     */
+    public Task<List<AppTask>> findByUserAndStatusesBefore(String userId, long beforeTime, String... statuses) {
+        return queryLocalFirst(userId,
+                () -> localStore.findByUserAndStatusesBefore(userId, beforeTime, statuses),
+                () -> findByUserAndStatusesBeforeRemote(userId, beforeTime, statuses));
+    }
+
+    private Task<List<AppTask>> findByUserAndStatusesBeforeRemote(String userId, long beforeTime, String... statuses) {
+        return getCollectionReference()
+                .whereEqualTo("userId", userId)
+                .whereIn("status", Arrays.asList(statuses))
+                .whereLessThan("executionTime", beforeTime)
+                .get()
+                .continueWith(AppExecutors.background(), task -> toList(task.getResult()));
     }
 
     public Task<Void> batchUpdateTaskColors(List<AppTask> tasksToUpdate, String newColorHex) {
@@ -45,9 +341,113 @@ public class AppTaskRepository extends Repository<AppTask> {
         CollectionReference tasksRef = getCollectionReference();
 
         for (AppTask appTask : tasksToUpdate) {
-            batch.update(tasksRef.document(appTask.getId()), "colorHex", newColorHex);
+            appTask.setColorHex(newColorHex);
+            batch.update(tasksRef.document(appTask.getId()),
+                    "colorHex", newColorHex,
+                    "updatedAt", appTask.updatedAt);
+        }
+
+        Task<Void> remote = batch.commit();
+        if (localStore != null) {
+            localStore.upsertAll(tasksToUpdate);
         }
+        return remote;
+    }
+
+    /**
+     * Dodatni upis u svaki deo batchUpdateStatuses (npr. statistika za zadatke tog dela).
+     */
+    public interface BatchAddition {
+        void addTo(WriteBatch batch, List<AppTask> tasks);
+    }
 
-        return batch.commit();
+    /**
+     * Upisuje status (i updatedAt) datih zadataka u WriteBatch delovima ispod limita od 500 operacija.
+     */
+    public Task<Void> batchUpdateStatuses(List<AppTask> tasksToUpdate) {
+        return batchUpdateStatuses(tasksToUpdate, null);
+    }
+
+    /**
+     * Kao batchUpdateStatuses(tasks), a addition se upisuje u isti batch kao i zadaci kojih se tiče.
+     */
+    public Task<Void> batchUpdateStatuses(List<AppTask> tasksToUpdate, BatchAddition addition) {
+        if (tasksToUpdate.isEmpty()) {
+            return Tasks.forResult(null);
+        }
+
+        CollectionReference tasksRef = getCollectionReference();
+        List<Task<Void>> commits = new ArrayList<>();
+
+        for (int start = 0; start < tasksToUpdate.size(); start += MAX_BATCH_OPERATIONS) {
+            int end = Math.min(start + MAX_BATCH_OPERATIONS, tasksToUpdate.size());
+            WriteBatch batch = db.batch();
+            List<AppTask> chunk = tasksToUpdate.subList(start, end);
+            for (AppTask appTask : chunk) {
+                batch.update(tasksRef.document(appTask.getId()),
+                        "status", appTask.status,
+                        "updatedAt", appTask.updatedAt);
+            }
+            if (addition != null) {
+                addition.addTo(batch, chunk);
+            }
+            Task<Void> commit = batch.commit();
+            if (localStore != null) {
+                // Lokalno se upisuje samo deo čiji je batch uspešno potvrđen
+                List<AppTask> committedChunk = new ArrayList<>(chunk);
+                commit = commit.continueWithTask(AppExecutors.background(), commitTask -> {
+                    if (!commitTask.isSuccessful()) {
+                        return commitTask;
+                    }
+                    return localStore.upsertAll(committedChunk)
+                            .continueWith(AppExecutors.background(), upsertTask -> (Void) null);
+                });
+            }
+            commits.add(commit);
+        }
+
+        return Tasks.whenAll(commits);
+    }
+
+    // --- Pomoćne metode ---
+
+    private interface QuerySource {
+        Task<List<AppTask>> run();
+    }
+
+    /**
+     * Ako je korisnik već sinhronizovan, upit se izvršava nad lokalnom bazom.
+     * U suprotnom ide na Firestore, a rezultat se upisuje lokalno.
+     */
+    private Task<List<AppTask>> queryLocalFirst(String userId, QuerySource local, QuerySource remote) {
+        if (localStore == null) {
+            return remote.run();
+        }
+
+        return localStore.getLastSyncedAt(userId)
+                .continueWithTask(AppExecutors.background(), lastTask -> {
+                    if (lastTask.isSuccessful() && lastTask.getResult() >= 0) {
+                        return local.run();
+                    }
+                    return remote.run()
+                            .continueWithTask(AppExecutors.background(), remoteTask -> {
+                                List<AppTask> tasks = remoteTask.getResult();
+                                return localStore.upsertAll(tasks).continueWith(AppExecutors.background(), t -> tasks);
+                            });
+                });
+    }
+
+    private void writeLocal(AppTask task) {
+        if (localStore != null) {
+            localStore.upsert(task);
+        }
+    }
+
+    private static long maxUpdatedAt(List<AppTask> tasks, long initial) {
+        long max = initial;
+        for (AppTask task : tasks) {
+            max = Math.max(max, task.updatedAt);
+        }
+        return max;
     }
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+package com.kulenina.questix.repository;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Lokalni snimak bitke sa bosom u toku, po korisniku (SharedPreferences).
+ * Bitka se u Firestore upisuje tek na kraju, pa snimak posle svakog napada čuva stanje
+ * ako se aplikacija zatvori ili padne usred bitke. Sadržaj (JSON) pravi BattleSession.
+ */
+public class BattleCheckpointStore {
+
+    private static final String PREFERENCES_NAME = "questix_battle_checkpoints";
+
+    private static volatile BattleCheckpointStore instance;
+
+    private final SharedPreferences preferences;
+
+    private BattleCheckpointStore(Context context) {
+        this.preferences = context.getApplicationContext()
+                .getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Poziva se jednom iz QuestixApplication.onCreate().
+     */
+    public static void init(Context context) {
+        if (instance == null) {
+            synchronized (BattleCheckpointStore.class) {
+                if (instance == null) {
+                    instance = new BattleCheckpointStore(context);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Skladište ili null ako init() nije pozvan.
+     */
+    public static BattleCheckpointStore getInstance() {
+        return instance;
+    }
+
+    /**
+     * Upis u memoriju je odmah, a na disk u pozadini (apply), pa ne usporava napad.
+     */
+    public void save(String userId, String checkpoint) {
+        preferences.edit().putString(userId, checkpoint).apply();
+    }
+
+    public String load(String userId) {
+        return preferences.getString(userId, null);
+    }
+
+    public void clear(String userId) {
+        preferences.edit().remove(userId).apply();
+    }
+}
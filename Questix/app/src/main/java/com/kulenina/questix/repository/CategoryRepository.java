@@ -2,6 +2,7 @@ package com.kulenina.questix.repository;
 
 import com.google.android.gms.tasks.Task;
 import com.kulenina.questix.model.Category;
+import com.kulenina.questix.util.AppExecutors;
 import java.util.List;
 
 public class CategoryRepository extends Repository<Category> {
@@ -15,7 +16,7 @@ public class CategoryRepository extends Repository<Category> {
         return getCollectionReference()
                 .whereEqualTo("userId", userId)
                 .get()
-                .continueWith(task -> toList(task.getResult()));
+                .continueWith(AppExecutors.background(), task -> toList(task.getResult()));
     }
 
     public Task<List<Category>> findCategoriesByColor(String colorHex, String userId) {
@@ -23,6 +24,6 @@ public class CategoryRepository extends Repository<Category> {
                 .whereEqualTo("colorHex", colorHex)
                 .whereEqualTo("userId", userId)
                 .get()
-                .continueWith(task -> toList(task.getResult()));
+                .continueWith(AppExecutors.background(), task -> toList(task.getResult()));
     }
 }
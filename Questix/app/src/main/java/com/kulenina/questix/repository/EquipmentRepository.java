@@ -4,26 +4,30 @@ import com.google.android.gms.tasks.Task;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.QuerySnapshot;
-import com.kulenina.questix.mapper.Mapper;
+import com.google.firebase.firestore.Transaction;
+import com.google.firebase.firestore.WriteBatch;
+import com.kulenina.questix.mapper.IMapper;
+import com.kulenina.questix.mapper.Mappers;
 import com.kulenina.questix.model.Clothing;
 import com.kulenina.questix.model.Equipment;
 import com.kulenina.questix.model.Potion;
 import com.kulenina.questix.model.Weapon;
+import com.kulenina.questix.util.AppExecutors;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 public class EquipmentRepository extends Repository<Equipment> {
-    private final Mapper<Potion> potionMapper;
-    private final Mapper<Weapon> weaponMapper;
-    private final Mapper<Clothing> clothingMapper;
+    private final IMapper<Potion> potionMapper;
+    private final IMapper<Weapon> weaponMapper;
+    private final IMapper<Clothing> clothingMapper;
 
     public EquipmentRepository() {
         super("equipment", Equipment.class);
-        this.potionMapper = new Mapper<>(Potion.class);
-        this.weaponMapper = new Mapper<>(Weapon.class);
-        this.clothingMapper = new Mapper<>(Clothing.class);
+        this.potionMapper = Mappers.get(Potion.class);
+        this.weaponMapper = Mappers.get(Weapon.class);
+        this.clothingMapper = Mappers.get(Clothing.class);
     }
 
     @Override
@@ -44,6 +48,25 @@ public class EquipmentRepository extends Repository<Equipment> {
         return db.collection("equipment").document(object.getId()).update(data);
     }
 
+    /**
+     * Dodaje upis opreme u batch; oprema bez ID-a dobija novi dokument (i ID).
+     */
+    public void set(WriteBatch batch, Equipment object) {
+        DocumentReference reference = object.getId() != null
+                ? getCollectionReference().document(object.getId())
+                : getCollectionReference().document();
+        object.setId(reference.getId());
+        batch.set(reference, toMap(object));
+    }
+
+    public void set(Transaction transaction, Equipment object) {
+        DocumentReference reference = object.getId() != null
+                ? getCollectionReference().document(object.getId())
+                : getCollectionReference().document();
+        object.setId(reference.getId());
+        transaction.set(reference, toMap(object));
+    }
+
     private Map<String, Object> toMap(Equipment object) {
         if (object instanceof Potion) {
             return potionMapper.toMap((Potion) object);
@@ -111,7 +134,15 @@ public class EquipmentRepository extends Repository<Equipment> {
         return getCollectionReference()
                 .whereEqualTo("userId", userId)
                 .get()
-                .continueWith(task -> toList(task.getResult()));
+                .continueWith(AppExecutors.background(), task -> toList(task.getResult()));
+    }
+
+    public Task<List<Equipment>> findByUserIdAndType(String userId, Equipment.EquipmentType type) {
+        return getCollectionReference()
+                .whereEqualTo("userId", userId)
+                .whereEqualTo("type", type.name())
+                .get()
+                .continueWith(AppExecutors.background(), task -> toList(task.getResult()));
     }
 
     public Task<List<Equipment>> findActiveByUserId(String userId) {
@@ -119,6 +150,6 @@ public class EquipmentRepository extends Repository<Equipment> {
                 .whereEqualTo("userId", userId)
                 .whereEqualTo("isActive", true)
                 .get()
-                .continueWith(task -> toList(task.getResult()));
+                .continueWith(AppExecutors.background(), task -> toList(task.getResult()));
     }
 }
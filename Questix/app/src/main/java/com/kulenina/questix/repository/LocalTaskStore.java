@@ -0,0 +1,339 @@
+package com.kulenina.questix.repository;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.kulenina.questix.mapper.IMapper;
+import com.kulenina.questix.mapper.Mappers;
+import com.kulenina.questix.model.AppTask;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Lokalna (SQLite) kopija zadataka korisnika.
+ * Indeksirana je po korisniku, vremenu izvršenja i statusu, tako da AppTaskRepository
+ * može da odgovori na upite odmah, bez čekanja na Firestore.
+ * Verzija zapisa je updatedAt: stariji zapis nikad ne prepisuje noviji, osim kada je
+ * kopija sa servera merodavna (puna sinhronizacija i vraćanje odbijenog upisa).
+ */
+public class LocalTaskStore extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "questix_tasks.db";
+    private static final int DATABASE_VERSION = 1;
+
+    private static final String TABLE_TASKS = "tasks";
+    private static final String TABLE_SYNC_STATE = "sync_state";
+
+    private static volatile LocalTaskStore instance;
+
+    private final IMapper<AppTask> mapper = Mappers.get(AppTask.class);
+    // Svi upisi i čitanja idu redom, van glavne niti
+    private final ExecutorService dbExecutor = Executors.newSingleThreadExecutor();
+
+    private LocalTaskStore(Context context) {
+        super(context.getApplicationContext(), DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    /**
+     * Poziva se jednom iz QuestixApplication.onCreate().
+     */
+    public static void init(Context context) {
+        if (instance == null) {
+            synchronized (LocalTaskStore.class) {
+                if (instance == null) {
+                    instance = new LocalTaskStore(context);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Lokalna baza ili null ako init() nije pozvan.
+     */
+    public static LocalTaskStore getInstance() {
+        return instance;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_TASKS + " ("
+                + "id TEXT PRIMARY KEY, "
+                + "userId TEXT NOT NULL, "
+                + "executionTime INTEGER NOT NULL, "
+                + "status TEXT, "
+                + "isRecurring INTEGER NOT NULL, "
+                + "updatedAt INTEGER NOT NULL, "
+                + "data TEXT NOT NULL)");
+        db.execSQL("CREATE INDEX idx_tasks_user_recurring_time ON " + TABLE_TASKS + " (userId, isRecurring, executionTime)");
+        db.execSQL("CREATE INDEX idx_tasks_user_status_time ON " + TABLE_TASKS + " (userId, status, executionTime)");
+
+        db.execSQL("CREATE TABLE " + TABLE_SYNC_STATE + " ("
+                + "userId TEXT PRIMARY KEY, "
+                + "lastSyncedAt INTEGER NOT NULL)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Lokalna baza je samo keš; posle promene šeme se ponovo puni iz Firestore-a
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_TASKS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_SYNC_STATE);
+        onCreate(db);
+    }
+
+    // --- Upiti (isti kao u AppTaskRepository) ---
+
+    public Task<List<AppTask>> findAllByUser(String userId) {
+        return query("userId = ?", new String[] { userId });
+    }
+
+    public Task<List<AppTask>> findOneTimeByUserInRange(String userId, long fromTime, long toTime) {
+        return query("userId = ? AND isRecurring = 0 AND executionTime >= ? AND executionTime <= ?",
+                new String[] { userId, String.valueOf(fromTime), String.valueOf(toTime) });
+    }
+
+    public Task<List<AppTask>> findRecurringByUserStartingBefore(String userId, long toTime) {
+        return query("userId = ? AND isRecurring = 1 AND executionTime <= ?",
+                new String[] { userId, String.valueOf(toTime) });
+    }
+
+    public Task<List<AppTask>> findByUserAndStatuses(String userId, String... statuses) {
+        return query("userId = ? AND status IN (" + placeholders(statuses.length) + ")",
+                concat(new String[] { userId }, statuses));
+    }
+
+    public Task<List<AppTask>> findByUserAndStatusesBefore(String userId, long beforeTime, String... statuses) {
+        return query("userId = ? AND status IN (" + placeholders(statuses.length) + ") AND executionTime < ?",
+                concat(concat(new String[] { userId }, statuses), new String[] { String.valueOf(beforeTime) }));
+    }
+
+    // --- Upis ---
+
+    public Task<Void> upsert(AppTask task) {
+        return Tasks.call(dbExecutor, () -> {
+            upsertInternal(getWritableDatabase(), task, false);
+            return null;
+        });
+    }
+
+    /**
+     * Upisuje kopiju sa servera bez obzira na updatedAt lokalnog zapisa.
+     */
+    public Task<Void> replace(AppTask task) {
+        return Tasks.call(dbExecutor, () -> {
+            upsertInternal(getWritableDatabase(), task, true);
+            return null;
+        });
+    }
+
+    /**
+     * Upisuje zadatke sa servera. Zapis se menja samo ako je updatedAt sa servera
+     * noviji od lokalnog.
+     * @return Broj zapisa koji su stvarno promenjeni.
+     */
+    public Task<Integer> upsertAll(List<AppTask> tasks) {
+        return Tasks.call(dbExecutor, () -> {
+            SQLiteDatabase db = getWritableDatabase();
+            int changed = 0;
+            db.beginTransaction();
+            try {
+                for (AppTask task : tasks) {
+                    if (upsertInternal(db, task, false)) {
+                        changed++;
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            return changed;
+        });
+    }
+
+    /**
+     * Zamenjuje sve lokalne zadatke korisnika punim skupom sa servera
+     * (uklanja i zadatke obrisane na drugom uređaju). Kopija sa servera se upisuje bez obzira
+     * na lokalni updatedAt, jer updatedAt potiče sa satova različitih uređaja.
+     * @return Broj dodatih, izmenjenih ili uklonjenih zapisa.
+     */
+    public Task<Integer> replaceAllForUser(String userId, List<AppTask> tasks, long syncedAt) {
+        return Tasks.call(dbExecutor, () -> {
+            SQLiteDatabase db = getWritableDatabase();
+            int changed = 0;
+            db.beginTransaction();
+            try {
+                Set<String> remoteIds = new HashSet<>();
+                for (AppTask task : tasks) {
+                    remoteIds.add(task.getId());
+                    if (upsertInternal(db, task, true)) {
+                        changed++;
+                    }
+                }
+
+                List<String> staleIds = new ArrayList<>();
+                try (Cursor cursor = db.query(TABLE_TASKS, new String[] { "id" }, "userId = ?",
+                        new String[] { userId }, null, null, null)) {
+                    while (cursor.moveToNext()) {
+                        String id = cursor.getString(0);
+                        if (!remoteIds.contains(id)) {
+                            staleIds.add(id);
+                        }
+                    }
+                }
+                for (String id : staleIds) {
+                    db.delete(TABLE_TASKS, "id = ?", new String[] { id });
+                    changed++;
+                }
+
+                writeLastSyncedAt(db, userId, syncedAt);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            return changed;
+        });
+    }
+
+    public Task<Void> delete(String id) {
+        return Tasks.call(dbExecutor, () -> {
+            getWritableDatabase().delete(TABLE_TASKS, "id = ?", new String[] { id });
+            return null;
+        });
+    }
+
+    // --- Stanje sinhronizacije ---
+
+    /**
+     * @return Najveći updatedAt preuzet sa servera za korisnika, ili -1 ako korisnik još nije sinhronizovan.
+     */
+    public Task<Long> getLastSyncedAt(String userId) {
+        return Tasks.call(dbExecutor, () -> {
+            try (Cursor cursor = getReadableDatabase().query(TABLE_SYNC_STATE, new String[] { "lastSyncedAt" },
+                    "userId = ?", new String[] { userId }, null, null, null)) {
+                return cursor.moveToFirst() ? cursor.getLong(0) : -1L;
+            }
+        });
+    }
+
+    public Task<Void> setLastSyncedAt(String userId, long lastSyncedAt) {
+        return Tasks.call(dbExecutor, () -> {
+            writeLastSyncedAt(getWritableDatabase(), userId, lastSyncedAt);
+            return null;
+        });
+    }
+
+    // --- Pomoćne metode ---
+
+    private Task<List<AppTask>> query(String selection, String[] args) {
+        return Tasks.call(dbExecutor, () -> {
+            List<AppTask> tasks = new ArrayList<>();
+            try (Cursor cursor = getReadableDatabase().query(TABLE_TASKS, new String[] { "id", "data" },
+                    selection, args, null, null, null)) {
+                while (cursor.moveToNext()) {
+                    AppTask task = fromJson(cursor.getString(1), cursor.getString(0));
+                    if (task != null) {
+                        tasks.add(task);
+                    }
+                }
+            }
+            return tasks;
+        });
+    }
+
+    /**
+     * @param force Upisuje i kada lokalni zapis ima isti ili noviji updatedAt.
+     * @return Da li je zapis upisan.
+     */
+    private boolean upsertInternal(SQLiteDatabase db, AppTask task, boolean force) throws JSONException {
+        if (!force) {
+            try (Cursor cursor = db.query(TABLE_TASKS, new String[] { "updatedAt" }, "id = ?",
+                    new String[] { task.getId() }, null, null, null)) {
+                if (cursor.moveToFirst() && cursor.getLong(0) >= task.updatedAt) {
+                    // Lokalni zapis je iste ili novije verzije
+                    return false;
+                }
+            }
+        }
+
+        ContentValues values = new ContentValues();
+        values.put("id", task.getId());
+        values.put("userId", task.userId);
+        values.put("executionTime", task.executionTime);
+        values.put("status", task.status);
+        values.put("isRecurring", task.isRecurring ? 1 : 0);
+        values.put("updatedAt", task.updatedAt);
+        values.put("data", toJson(task));
+        db.insertWithOnConflict(TABLE_TASKS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        return true;
+    }
+
+    private void writeLastSyncedAt(SQLiteDatabase db, String userId, long lastSyncedAt) {
+        ContentValues values = new ContentValues();
+        values.put("userId", userId);
+        values.put("lastSyncedAt", lastSyncedAt);
+        db.insertWithOnConflict(TABLE_SYNC_STATE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    private String toJson(AppTask task) throws JSONException {
+        JSONObject json = new JSONObject();
+        for (Map.Entry<String, Object> entry : mapper.toMap(task).entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof Map) {
+                // Ugnežđena mapa (npr. occurrenceStatuses) mora biti JSONObject, inače se upisuje kao toString()
+                json.put(entry.getKey(), new JSONObject((Map<?, ?>) value));
+            } else if (value != null) {
+                json.put(entry.getKey(), value);
+            }
+        }
+        return json.toString();
+    }
+
+    private AppTask fromJson(String data, String id) throws JSONException {
+        JSONObject json = new JSONObject(data);
+        Map<String, Object> map = new HashMap<>();
+        Iterator<String> keys = json.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            Object value = json.get(key);
+            map.put(key, value instanceof JSONObject ? toMap((JSONObject) value) : value);
+        }
+        return mapper.fromMap(map, id);
+    }
+
+    private static Map<String, Object> toMap(JSONObject json) throws JSONException {
+        Map<String, Object> map = new HashMap<>();
+        Iterator<String> keys = json.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            map.put(key, json.get(key));
+        }
+        return map;
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(i == 0 ? "?" : ", ?");
+        }
+        return builder.toString();
+    }
+
+    private static String[] concat(String[] first, String[] second) {
+        String[] result = new String[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
@@ -0,0 +1,70 @@
+package com.kulenina.questix.repository;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lokalna kopija akcija misije koje čekaju upis (SharedPreferences), po ID-u slanja.
+ * Akcije se skupljaju u memoriji pre jedne transakcije, pa kopija čuva one koje bi se
+ * izgubile ako se aplikacija zatvori pre upisa. Sadržaj (JSON) pravi MissionProgressBuffer.
+ */
+public class MissionActionStore {
+
+    private static final String PREFERENCES_NAME = "questix_mission_actions";
+
+    private static volatile MissionActionStore instance;
+
+    private final SharedPreferences preferences;
+
+    private MissionActionStore(Context context) {
+        this.preferences = context.getApplicationContext()
+                .getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Poziva se jednom iz QuestixApplication.onCreate().
+     */
+    public static void init(Context context) {
+        if (instance == null) {
+            synchronized (MissionActionStore.class) {
+                if (instance == null) {
+                    instance = new MissionActionStore(context);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Skladište ili null ako init() nije pozvan.
+     */
+    public static MissionActionStore getInstance() {
+        return instance;
+    }
+
+    /**
+     * Upis u memoriju je odmah, a na disk u pozadini (apply), pa ne usporava akciju.
+     */
+    public void save(String flushId, String actions) {
+        preferences.edit().putString(flushId, actions).apply();
+    }
+
+    /**
+     * @return Sve sačuvane grupe akcija (flushId -> JSON).
+     */
+    public Map<String, String> loadAll() {
+        Map<String, String> actions = new HashMap<>();
+        for (Map.Entry<String, ?> entry : preferences.getAll().entrySet()) {
+            if (entry.getValue() instanceof String) {
+                actions.put(entry.getKey(), (String) entry.getValue());
+            }
+        }
+        return actions;
+    }
+
+    public void remove(String flushId) {
+        preferences.edit().remove(flushId).apply();
+    }
+}
@@ -3,6 +3,7 @@ package com.kulenina.questix.repository;
 import com.google.android.gms.tasks.Task;
 import com.google.firebase.firestore.Query;
 import com.kulenina.questix.model.MissionProgress;
+import com.kulenina.questix.util.AppExecutors;
 
 import java.util.List;
 
@@ -23,6 +24,6 @@ public class MissionProgressRepository extends Repository<MissionProgress> {
     public Task<List<MissionProgress>> getAllProgressesByAllianceId(String allianceId) {
         Query query = getCollectionReference().whereEqualTo("allianceId", allianceId);
 
-        return query.get().continueWith(task -> toList(task.getResult()));
+        return query.get().continueWith(AppExecutors.background(), task -> toList(task.getResult()));
     }
 }
\ No newline at end of file
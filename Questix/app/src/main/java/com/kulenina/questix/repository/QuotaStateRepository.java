@@ -2,9 +2,9 @@ package com.kulenina.questix.repository;
 
 import com.google.android.gms.tasks.Task;
 import com.kulenina.questix.model.QuotaState;
-import com.google.firebase.firestore.CollectionReference;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.WriteBatch;
+import com.kulenina.questix.util.AppExecutors;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.Transaction;
 
 public class QuotaStateRepository extends Repository<QuotaState> {
 
@@ -20,53 +20,17 @@ public class QuotaStateRepository extends Repository<QuotaState> {
     }
 
     /**
-     * Ključna metoda: Atomsko ažuriranje kvote unutar Firestore transakcije.
-     * Koristi Firestore transakciju da obezbedi da se kvota uveća za samo 1
-     * i da ne pređe maksimum, čak i ako dva klijenta pristupe istovremeno.
-     * * @param state QuotaState objekat
-     * @return Task koji vraća ažurirani QuotaState ili null ako je kvota ispunjena.
+     * Čitanje stanja kvote unutar transakcije (null ako dokument ne postoji).
      */
-    public Task<QuotaState> runQuotaTransaction(QuotaState state, String quotaType, int maxCount) {
-        FirebaseFirestore db = FirebaseFirestore.getInstance();
-        return db.runTransaction(transaction -> {
-            // 1. Čitanje trenutnog stanja
-            QuotaState current = transaction.get(getCollectionReference().document(state.getId()))
-                    .toObject(QuotaState.class);
-
-            if (current == null) {
-                // Ako ne postoji, kreiramo novi sa trenutnom kvotom na 1
-                current = state;
-                transaction.set(getCollectionReference().document(state.getId()), current);
-                return current;
-            }
-
-            // 2. Provera i povećanje kvote
-            int currentCount = 0;
-            switch (quotaType) {
-                case "VE_N": currentCount = current.veryEasyNormalCount; break;
-                case "E_I": currentCount = current.easyImportantCount; break;
-                case "H_EI": currentCount = current.hardExtremelyImportantCount; break;
-                case "EH": currentCount = current.extremelyHardCount; break;
-                case "S": currentCount = current.specialCount; break;
-            }
-
-            if (currentCount >= maxCount) {
-                // Kvota je ispunjena, vraćamo null što signalizira servisu da XP nije dodeljen
-                return null;
-            }
-
-            // 3. Ažuriranje i upis
-            switch (quotaType) {
-                case "VE_N": current.veryEasyNormalCount++; break;
-                case "E_I": current.easyImportantCount++; break;
-                case "H_EI": current.hardExtremelyImportantCount++; break;
-                case "EH": current.extremelyHardCount++; break;
-                case "S": current.specialCount++; break;
-            }
+    public QuotaState read(Transaction transaction, String id) throws FirebaseFirestoreException {
+        return toObject(transaction.get(getCollectionReference().document(id)));
+    }
 
-            transaction.set(getCollectionReference().document(current.getId()), current);
-            return current;
-        });
+    /**
+     * Upis stanja kvote unutar transakcije.
+     */
+    public void set(Transaction transaction, QuotaState state) {
+        transaction.set(getCollectionReference().document(state.getId()), mapper.toMap(state));
     }
 
     /**
@@ -74,6 +38,6 @@ public class QuotaStateRepository extends Repository<QuotaState> {
      */
     public Task<QuotaState> read(String id) {
         return getCollectionReference().document(id).get()
-                .continueWith(task -> toObject(task.getResult()));
+                .continueWith(AppExecutors.background(), task -> toObject(task.getResult()));
     }
 }
\ No newline at end of file
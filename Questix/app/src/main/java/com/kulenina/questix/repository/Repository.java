@@ -1,29 +1,51 @@
 package com.kulenina.questix.repository;
 
 import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.firestore.CollectionReference;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QuerySnapshot;
 import com.google.firebase.firestore.WriteBatch;
 import com.kulenina.questix.model.IIdentifiable;
-import com.kulenina.questix.mapper.Mapper;
+import com.kulenina.questix.mapper.IMapper;
+import com.kulenina.questix.mapper.Mappers;
+import com.kulenina.questix.util.AppExecutors;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Repository<T extends IIdentifiable> {
+    // Najviše vrednosti u jednom whereIn upitu (ograničenje Firestore-a)
+    private static final int WHERE_IN_LIMIT = 30;
+
     protected final FirebaseFirestore db;
     private final String collectionName;
-    protected final Mapper<T> mapper;
+    protected final IMapper<T> mapper;
+    // Identitetski keš: poslednji objekat učitan preko readMany, po ID-u dokumenta
+    private final Map<String, CachedObject<T>> identityCache = new ConcurrentHashMap<>();
+
+    private static final class CachedObject<T> {
+      final T object;
+      final long loadedAt;
+
+      CachedObject(T object, long loadedAt) {
+        this.object = object;
+        this.loadedAt = loadedAt;
+      }
+    }
 
     public Repository(String collectionName, Class<T> clazz) {
 			this.db = FirebaseFirestore.getInstance();
 			this.collectionName = collectionName;
-			this.mapper = new Mapper<T>(clazz);
+			this.mapper = Mappers.get(clazz);
     }
 
     public Task<DocumentReference> create(T object) {
@@ -40,7 +62,7 @@ public class Repository<T extends IIdentifiable> {
       return db.collection(collectionName)
         .document(id)
         .get()
-        .continueWith(task ->
+        .continueWith(AppExecutors.background(), task ->
           toObject(task.getResult())
         );
     }
@@ -49,10 +71,71 @@ public class Repository<T extends IIdentifiable> {
       return read(object.getId());
     }
 
+    /**
+     * Čita više dokumenata po ID-u: ID-evi se dele u whereIn(documentId) upite od najviše
+     * WHERE_IN_LIMIT vrednosti, koji se izvršavaju paralelno.
+     * @return Pronađeni objekti redom kao u ids (bez duplikata); nepostojeći dokumenti se izostavljaju.
+     */
+    public Task<List<T>> readMany(Collection<String> ids) {
+      return readMany(ids, 0);
+    }
+
+    /**
+     * Kao readMany(ids), ali se objekti iz identitetskog keša mlađi od maxCacheAgeMs ne čitaju ponovo.
+     */
+    public Task<List<T>> readMany(Collection<String> ids, long maxCacheAgeMs) {
+      List<String> uniqueIds = new ArrayList<>();
+      for (String id : new LinkedHashSet<>(ids)) {
+        if (id != null && !id.isEmpty()) {
+          uniqueIds.add(id);
+        }
+      }
+
+      long now = System.currentTimeMillis();
+      Map<String, T> found = new HashMap<>();
+      List<String> missingIds = new ArrayList<>();
+      for (String id : uniqueIds) {
+        CachedObject<T> cached = identityCache.get(id);
+        if (cached != null && maxCacheAgeMs > 0 && now - cached.loadedAt <= maxCacheAgeMs) {
+          found.put(id, cached.object);
+        } else {
+          missingIds.add(id);
+        }
+      }
+
+      List<Task<QuerySnapshot>> chunkTasks = new ArrayList<>();
+      for (int start = 0; start < missingIds.size(); start += WHERE_IN_LIMIT) {
+        List<String> chunk = new ArrayList<>(missingIds.subList(start, Math.min(start + WHERE_IN_LIMIT, missingIds.size())));
+        chunkTasks.add(getCollectionReference().whereIn(FieldPath.documentId(), chunk).get());
+      }
+
+      return Tasks.whenAllSuccess(chunkTasks).continueWith(AppExecutors.background(), task -> {
+        long loadedAt = System.currentTimeMillis();
+        for (Object snapshot : task.getResult()) {
+          for (T object : toList((QuerySnapshot) snapshot)) {
+            found.put(object.getId(), object);
+            identityCache.put(object.getId(), new CachedObject<>(object, loadedAt));
+          }
+        }
+
+        List<T> objects = new ArrayList<>(uniqueIds.size());
+        for (String id : uniqueIds) {
+          T object = found.get(id);
+          if (object != null) {
+            objects.add(object);
+          } else {
+            // Dokument je obrisan
+            identityCache.remove(id);
+          }
+        }
+        return objects;
+      });
+    }
+
     public Task<List<T>> readAll() {
       return db.collection(collectionName)
         .get()
-        .continueWith(task -> toList(task.getResult()));
+        .continueWith(AppExecutors.background(), task -> toList(task.getResult()));
     }
 
     public Task<Void> update(T object) {
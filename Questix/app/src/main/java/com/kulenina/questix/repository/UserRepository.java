@@ -1,9 +1,129 @@
 package com.kulenina.questix.repository;
 
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Transaction;
 import com.kulenina.questix.model.User;
+import com.kulenina.questix.util.AppExecutors;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 public class UserRepository extends Repository<User> {
+	// Gornja granica opsega: svi stringovi koji počinju datim prefiksom su manji od prefix + PREFIX_END
+	private static final String PREFIX_END = "\uf8ff";
+
 	public UserRepository() {
 		super("users", User.class);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Jedna strana rezultata prefiks pretrage.
+	 * lastDocument je kursor za sledeću stranu.
+	 */
+	public static class SearchPage {
+		public final List<User> users;
+		public final DocumentSnapshot lastDocument;
+		public final boolean hasMore;
+
+		public SearchPage(List<User> users, DocumentSnapshot lastDocument, boolean hasMore) {
+			this.users = users;
+			this.lastDocument = lastDocument;
+			this.hasMore = hasMore;
+		}
+	}
+
+	@Override
+	public Task<Void> createWithId(User user) {
+		user.usernameLower = User.normalizeUsername(user.username);
+		return super.createWithId(user);
+	}
+
+	@Override
+	public Task<Void> update(User user) {
+		user.usernameLower = User.normalizeUsername(user.username);
+		return super.update(user);
+	}
+
+	/**
+	 * Upisuje usernameLower prijavljenom korisniku ako mu nedostaje (nalog kreiran pre prefiks pretrage).
+	 * Klijent menja samo sopstveni dokument; ostale naloge popunjava migracija iz notification-server/migrations.
+	 */
+	public Task<Void> ensureOwnUsernameLower(String currentUserId) {
+		return read(currentUserId).continueWithTask(AppExecutors.background(), task -> {
+			User user = task.getResult();
+			if (user == null || user.username == null
+				|| User.normalizeUsername(user.username).equals(user.usernameLower)) {
+				return Tasks.forResult(null);
+			}
+			return getDocumentReference(currentUserId).update("usernameLower", User.normalizeUsername(user.username));
+		});
+	}
+
+	/**
+	 * Čitanje korisnika unutar transakcije (null ako ne postoji).
+	 */
+	public User read(Transaction transaction, String id) throws FirebaseFirestoreException {
+		return toObject(transaction.get(getDocumentReference(id)));
+	}
+
+	/**
+	 * Upis napretka unutar transakcije: xp se uvećava za xpGained (FieldValue.increment),
+	 * a level i powerPoints se upisuju samo ako se nivo promenio. Ostala polja se ne diraju.
+	 */
+	public void updateProgress(Transaction transaction, User user, int xpGained, boolean leveledUp) {
+		Map<String, Object> changes = new HashMap<>();
+		changes.put("xp", FieldValue.increment(xpGained));
+		if (leveledUp) {
+			changes.put("level", user.level);
+			changes.put("powerPoints", user.powerPoints);
+		}
+		transaction.update(getDocumentReference(user.id), changes);
+	}
+
+	/**
+	 * Troši novčiće unutar transakcije: proverava stanje i upisuje samo polje coins,
+	 * pa se istovremene izmene drugih polja (npr. xp posle rešenog zadatka) ne gube.
+	 */
+	public void spendCoins(Transaction transaction, String id, int amount) throws FirebaseFirestoreException {
+		DocumentSnapshot snapshot = transaction.get(getDocumentReference(id));
+		if (!snapshot.exists()) {
+			throw new RuntimeException("User not found");
+		}
+		Long coins = snapshot.getLong("coins");
+		if (coins == null || coins < amount) {
+			throw new RuntimeException("Insufficient coins");
+		}
+		transaction.update(getDocumentReference(id), "coins", FieldValue.increment(-amount));
+	}
+
+	/**
+	 * Korisnici čije korisničko ime počinje datim prefiksom, sortirani po imenu.
+	 * @param prefix Već normalizovan prefiks (User.normalizeUsername).
+	 * @param startAfter Poslednji dokument prethodne strane ili null za prvu stranu.
+	 * @param executor Gde se dokumenti pretvaraju u korisnike (van glavne niti).
+	 */
+	public Task<SearchPage> searchByUsernamePrefix(String prefix, int pageSize, DocumentSnapshot startAfter, Executor executor) {
+		Query query = getCollectionReference()
+			.whereGreaterThanOrEqualTo("usernameLower", prefix)
+			.whereLessThan("usernameLower", prefix + PREFIX_END)
+			.orderBy("usernameLower")
+			.limit(pageSize);
+		if (startAfter != null) {
+			query = query.startAfter(startAfter);
+		}
+
+		return query.get().continueWith(executor, task -> {
+			QuerySnapshot snapshot = task.getResult();
+			List<DocumentSnapshot> documents = snapshot.getDocuments();
+			DocumentSnapshot last = documents.isEmpty() ? startAfter : documents.get(documents.size() - 1);
+			return new SearchPage(toList(snapshot), last, documents.size() == pageSize);
+		});
+	}
+}
@@ -0,0 +1,97 @@
+package com.kulenina.questix.repository;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Transaction;
+import com.google.firebase.firestore.WriteBatch;
+import com.kulenina.questix.model.AppTask;
+import com.kulenina.questix.model.UserStatistics;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class UserStatisticsRepository extends Repository<UserStatistics> {
+
+    private static final String COLLECTION_NAME = "user_statistics";
+
+    public interface StatisticsUpdate {
+        void apply(UserStatistics statistics);
+    }
+
+    public UserStatisticsRepository() {
+        super(COLLECTION_NAME, UserStatistics.class);
+    }
+
+    /**
+     * Dokument koji je napravio samo upis propuštenih zadataka (recordMissed) nema userId;
+     * takva statistika nije potpuna i pravi se ponovo iz svih zadataka (backfill).
+     */
+    public static boolean isComplete(UserStatistics statistics) {
+        return statistics != null && statistics.userId != null;
+    }
+
+    /**
+     * Atomsko ažuriranje zbirne statistike korisnika unutar Firestore transakcije.
+     * Ako potpun dokument još ne postoji, ništa se ne menja: pravi ga backfill iz svih zadataka
+     * (UserStatisticsService.rebuildStatistics), koji uključuje i ovu izmenu.
+     */
+    public Task<Void> applyUpdate(String userId, StatisticsUpdate update) {
+        return db.runTransaction(transaction -> {
+            UserStatistics statistics = read(transaction, userId);
+            if (statistics != null) {
+                applyUpdate(transaction, statistics, update);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Čitanje zbirne statistike unutar transakcije; null ako potpun dokument ne postoji.
+     */
+    public UserStatistics read(Transaction transaction, String userId) throws FirebaseFirestoreException {
+        UserStatistics statistics = toObject(transaction.get(getDocumentReference(userId)));
+        return isComplete(statistics) ? statistics : null;
+    }
+
+    /**
+     * Primena izmene i upis statistike unutar transakcije (statistika je pročitana pre svih upisa).
+     */
+    public void applyUpdate(Transaction transaction, UserStatistics statistics, StatisticsUpdate update) {
+        long now = System.currentTimeMillis();
+        update.apply(statistics);
+        statistics.normalizeStreak();
+        statistics.pruneDailyXp(now);
+        statistics.updatedAt = now;
+
+        transaction.set(getDocumentReference(statistics.getId()), mapper.toMap(statistics));
+    }
+
+    /**
+     * Dodaje propuštene zadatke u isti batch kao i njihov novi status, serverskim uvećanjem
+     * (bez čitanja), pa se upis ne gubi ni offline. Niz dana se usklađuje sa missedDays
+     * pri sledećoj izmeni ili čitanju (UserStatistics.normalizeStreak).
+     */
+    public void recordMissed(WriteBatch batch, String userId, List<AppTask> missedTasks) {
+        Map<String, Long> countsByDay = new HashMap<>();
+        for (AppTask task : missedTasks) {
+            String day = UserStatistics.dayKey(task.executionTime);
+            Long count = countsByDay.get(day);
+            countsByDay.put(day, (count != null ? count : 0L) + 1);
+        }
+
+        Map<String, Object> missedDays = new HashMap<>();
+        for (Map.Entry<String, Long> entry : countsByDay.entrySet()) {
+            missedDays.put(entry.getKey(), FieldValue.increment(entry.getValue()));
+        }
+        Map<String, Object> changes = new HashMap<>();
+        changes.put("missedCount", FieldValue.increment(missedTasks.size()));
+        changes.put("missedDays", missedDays);
+
+        DocumentReference reference = getDocumentReference(userId);
+        batch.set(reference, changes, SetOptions.merge());
+    }
+}
@@ -10,6 +10,7 @@ import com.kulenina.questix.model.User;
 import com.kulenina.questix.repository.AllianceInvitationRepository;
 import com.kulenina.questix.repository.AllianceRepository;
 import com.kulenina.questix.repository.UserRepository;
+import com.kulenina.questix.util.AppExecutors;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -35,7 +36,7 @@ public class AllianceInvitationService {
             allianceRepository.read(allianceId),
             userRepository.read(inviterId),
             userRepository.read(inviteeId)
-        ).continueWithTask(task -> {
+        ).continueWithTask(AppExecutors.background(), task -> {
             List<Object> results = task.getResult();
             Alliance alliance = (Alliance) results.get(0);
             User inviter = (User) results.get(1);
@@ -77,13 +78,13 @@ public class AllianceInvitationService {
             batch.update(userRepository.getDocumentReference(inviteeId),
                        "allianceInvitations", invitee.allianceInvitations);
 
-            return batch.commit().continueWith(commitTask -> {
+            return batch.commit().continueWith(AppExecutors.background(), commitTask -> {
                 // Send notification to invitee
                 notificationService.sendAllianceInvitationNotification(
                     inviteeId, alliance.name, inviter.username)
-                    .addOnSuccessListener(aVoid ->
+                    .addOnSuccessListener(AppExecutors.background(), aVoid ->
                         android.util.Log.d("AllianceInvitationService", "Notification sent successfully for invitation: " + invitationId))
-                    .addOnFailureListener(e ->
+                    .addOnFailureListener(AppExecutors.background(), e ->
                         android.util.Log.e("AllianceInvitationService", "Failed to send notification for invitation: " + invitationId, e));
                 return invitationId;
             });
@@ -94,7 +95,7 @@ public class AllianceInvitationService {
         return Tasks.whenAllSuccess(
             invitationRepository.read(invitationId),
             userRepository.read(userId)
-        ).continueWithTask(task -> {
+        ).continueWithTask(AppExecutors.background(), task -> {
             List<Object> results = task.getResult();
             AllianceInvitation invitation = (AllianceInvitation) results.get(0);
             User user = (User) results.get(1);
@@ -116,7 +117,7 @@ public class AllianceInvitationService {
 
             // Get the new alliance and check if it still exists
             return allianceRepository.read(invitation.allianceId)
-                .continueWithTask(allianceTask -> {
+                .continueWithTask(AppExecutors.background(), allianceTask -> {
                     Alliance newAlliance = allianceTask.getResult();
                     if (newAlliance == null) {
                         throw new RuntimeException("Alliance no longer exists");
@@ -130,7 +131,7 @@ public class AllianceInvitationService {
                         oldAllianceTask = Tasks.forResult(null);
                     }
 
-                    return oldAllianceTask.continueWithTask(oldAllianceTaskResult -> {
+                    return oldAllianceTask.continueWithTask(AppExecutors.background(), oldAllianceTaskResult -> {
                         Alliance oldAlliance = oldAllianceTaskResult.getResult();
 
                         // Accept invitation
@@ -163,7 +164,7 @@ public class AllianceInvitationService {
                                        "memberIds", oldAlliance.memberIds);
                         }
 
-                        return batch.commit().continueWithTask(batchTask -> {
+                        return batch.commit().continueWithTask(AppExecutors.background(), batchTask -> {
                             // Send notification to alliance leader about acceptance
                             notificationService.sendInvitationAcceptedNotification(
                                 newAlliance.leaderId, user.username, newAlliance.name);
@@ -179,7 +180,7 @@ public class AllianceInvitationService {
         return Tasks.whenAllSuccess(
             invitationRepository.read(invitationId),
             userRepository.read(userId)
-        ).continueWithTask(task -> {
+        ).continueWithTask(AppExecutors.background(), task -> {
             List<Object> results = task.getResult();
             AllianceInvitation invitation = (AllianceInvitation) results.get(0);
             User user = (User) results.get(1);
@@ -216,7 +217,7 @@ public class AllianceInvitationService {
 
     public Task<List<AllianceInvitation>> getUserPendingInvitations(String userId) {
         return userRepository.read(userId)
-            .continueWithTask(task -> {
+            .continueWithTask(AppExecutors.background(), task -> {
                 User user = task.getResult();
                 if (user == null || user.allianceInvitations == null || user.allianceInvitations.isEmpty()) {
                     return Tasks.forResult(new ArrayList<>());
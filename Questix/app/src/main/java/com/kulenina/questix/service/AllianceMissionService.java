@@ -4,8 +4,10 @@ import com.google.android.gms.tasks.Task;
 import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.ListenerRegistration; // DODATO: Uvoz za ListenerRegistration
+import com.google.firebase.firestore.SetOptions;
 import com.google.firebase.firestore.WriteBatch;
 import com.kulenina.questix.model.Alliance;
 import com.kulenina.questix.model.BossBattle;
@@ -19,14 +21,22 @@ import com.kulenina.questix.repository.AllianceRepository;
 import com.kulenina.questix.repository.EquipmentRepository;
 import com.kulenina.questix.repository.MissionProgressRepository;
 import com.kulenina.questix.repository.UserRepository;
+import com.kulenina.questix.util.AppExecutors;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class AllianceMissionService {
     private final FirebaseFirestore db;
@@ -50,6 +60,24 @@ public class AllianceMissionService {
     private static final int HP_MESSAGE_DAY = 4; // max 14 (1 po danu)
     private static final int HP_PERFECT_TASK = 10; // 10 HP na kraju misije
 
+    // Akcije člana iz ovog prozora se upisuju zajedno (deli se između svih instanci servisa)
+    private static final long PROGRESS_WINDOW_MS = 1000;
+    private static final MissionProgressBuffer progressBuffer = new MissionProgressBuffer(PROGRESS_WINDOW_MS);
+    private static final AtomicLong progressTransactionAttempts = new AtomicLong();
+    private static final AtomicLong progressTransactions = new AtomicLong();
+
+    // Provera poraza bosa čita svih DAMAGE_SHARDS šardova, pa se radi najviše jednom u ovom intervalu po savezu
+    static final long BOSS_CHECK_INTERVAL_MS = 2000;
+    private static final ScheduledExecutorService bossCheckScheduler = Executors.newSingleThreadScheduledExecutor();
+    // allianceId -> početni HP bosa, za proveru koja je zakazana a još nije pokrenuta
+    private static final Map<String, Integer> scheduledBossChecks = new HashMap<>();
+    private static final AtomicLong bossDefeatChecks = new AtomicLong();
+
+    // Finalizacija: zakup preuzete finalizacije, meren vremenom servera (AllianceRepository.getServerTime)
+    private static final long FINALIZATION_LEASE_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final AtomicLong finalizationClaims = new AtomicLong();
+    private static final AtomicLong finalizationTriggersSkipped = new AtomicLong();
+
     public AllianceMissionService() {
         this.db = FirebaseFirestore.getInstance();
         this.auth = FirebaseAuth.getInstance();
@@ -75,7 +103,7 @@ public class AllianceMissionService {
                 allianceRepository.read(allianceId),
                 // 2. Čitanje svih članova saveza
                 allianceRepository.getAllianceMembers(allianceId)
-        ).continueWithTask(task -> {
+        ).continueWithTask(AppExecutors.background(), task -> {
             List<Object> results = task.getResult();
             Alliance alliance = (Alliance) results.get(0);
             @SuppressWarnings("unchecked")
@@ -112,8 +140,14 @@ public class AllianceMissionService {
                     "bossCurrentHp", totalBossHp,
                     "bossMaxHp", totalBossHp,
                     "missionStartedAt", startTime,
+                    "bossDefeatedAt", 0,
+                    "missionState", Alliance.MISSION_ACTIVE,
+                    "finalizationClaimedAt", 0,
+                    "missionSucceeded", false,
                     "updatedAt", startTime // Dodavanje updatedAt
             );
+            // Šteta se broji od nule u šardovima
+            allianceRepository.resetDamageShards(batch, allianceId);
 
             // 2. Kreiranje MissionProgress dokumenta za svakog člana
             for (User member : members) {
@@ -128,10 +162,10 @@ public class AllianceMissionService {
             // 3. Izvršavanje svih operacija
             System.out.println("Committing batch with " + members.size() + " MissionProgress documents");
             return batch.commit()
-                .addOnSuccessListener(aVoid -> {
+                .addOnSuccessListener(AppExecutors.background(), aVoid -> {
                     System.out.println("Mission started successfully! MissionProgress documents should be created.");
                 })
-                .addOnFailureListener(e -> {
+                .addOnFailureListener(AppExecutors.background(), e -> {
                     System.out.println("Failed to start mission: " + e.getMessage());
                 });
         });
@@ -139,164 +173,278 @@ public class AllianceMissionService {
 
     /**
      * OPŠTA METODA ZA AŽURIRANJE PROGRESA I HP BOSA
-     * KORISTI FIREBASE TRANSACTION za atomsko smanjenje HP-a Bosa, rešavajući problem sinhronizacije.
+     * Akcija se ne upisuje odmah: akcije istog člana iz kratkog prozora (PROGRESS_WINDOW_MS)
+     * primenjuju se zajedno u jednoj FIREBASE TRANSAKCIJI (applyProgressActions), uz iste kvote.
      * @param allianceId ID saveza
      * @param userId ID korisnika koji je izvršio akciju
      * @param actionType Tip akcije (npr. "PURCHASE", "HIT", "LIGHT_TASK", "HEAVY_TASK", "MESSAGE")
-     * @return Task<Boolean> - True ako je HP bosa umanjen
+     * @return Task<Boolean> - True ako je ova akcija umanjila HP bosa (završava se posle transakcije)
      */
     public Task<Boolean> updateMissionProgress(String allianceId, String userId, String actionType) {
+        System.out.println("DEBUG: updateMissionProgress() called for allianceId: " + allianceId + ", userId: " + userId + ", actionType: " + actionType);
+
+        return progressBuffer.add(allianceId, userId, actionType, DATE_FORMAT.format(new Date()), this::applyProgressActions)
+            .continueWith(AppExecutors.background(), task -> {
+                if (!task.isSuccessful()) {
+                    System.out.println("DEBUG: updateMissionProgress failed: " +
+                        (task.getException() != null ? task.getException().getMessage() : "Unknown error"));
+                    if (task.getException() != null) {
+                        task.getException().printStackTrace();
+                    }
+                    return false; // Return false instead of crashing
+                }
+                return task.getResult();
+            });
+    }
+
+    /**
+     * Šalje akcije misije koje nisu upisane pre zatvaranja aplikacije (MissionProgressBuffer.restore).
+     * Poziva se jednom iz QuestixApplication.onCreate(), posle MissionActionStore.init().
+     */
+    public void resumePendingProgress() {
+        progressBuffer.restore(this::applyProgressActions);
+    }
+
+    /**
+     * Primenjuje sve akcije jednog člana u jednoj transakciji: jedno čitanje saveza i napretka,
+     * jedan upis napretka i jedno smanjenje HP-a bosa za zbir svih akcija.
+     * Grupa čiji je flushId već upisan u napredak (ponovo poslata posle pada) se preskače.
+     */
+    Task<List<Boolean>> applyProgressActions(String flushId, String allianceId, String userId, List<MissionProgressBuffer.PendingAction> actions) {
         String progressId = allianceId + "_" + userId;
         DocumentReference allianceRef = allianceRepository.getDocumentReference(allianceId);
         DocumentReference progressRef = missionProgressRepository.getDocumentReference(progressId);
+        // Šteta ide u nasumičan šard, pa transakcije članova ne menjaju isti dokument
+        DocumentReference shardRef = allianceRepository.getRandomDamageShard(allianceId);
+        // Transakcija se može ponoviti, pa se vrednosti postavljaju u svakom pokušaju
+        boolean[] damaged = { false };
+        int[] bossBaseHp = { 0 };
 
-        System.out.println("DEBUG: updateMissionProgress() called for allianceId: " + allianceId + ", userId: " + userId + ", actionType: " + actionType);
-
-        // Vraća Task<Boolean> koji je rezultat transakcije
         return db.runTransaction(transaction -> {
+            progressTransactionAttempts.incrementAndGet();
+            damaged[0] = false;
+
             // 1. Čitanje dokumenata unutar transakcije
             Alliance alliance = transaction.get(allianceRef).toObject(Alliance.class);
             MissionProgress progress = transaction.get(progressRef).toObject(MissionProgress.class);
 
-            System.out.println("DEBUG: Transaction - alliance: " + (alliance != null ? "found" : "null") + 
-                    ", missionActive: " + (alliance != null ? alliance.isMissionActive() : "N/A") +
-                    ", progress: " + (progress != null ? "found" : "null"));
+            List<Boolean> results = new ArrayList<>(actions.size());
 
             // Provera: Misija mora biti aktivna i Progress mora postojati
-            if (alliance == null || !alliance.isMissionActive() || progress == null || alliance.getBossCurrentHp() <= 0) {
-                System.out.println("DEBUG: Transaction failed validation - alliance: " + (alliance != null) + 
+            if (alliance == null || !alliance.isMissionActive() || progress == null
+                    || alliance.getBossCurrentHp() <= 0 || alliance.bossDefeatedAt > 0 || alliance.isFinalizing()) {
+                System.out.println("DEBUG: Transaction failed validation - alliance: " + (alliance != null) +
                         ", missionActive: " + (alliance != null ? alliance.isMissionActive() : false) +
                         ", progress: " + (progress != null) +
                         ", bossHp: " + (alliance != null ? alliance.getBossCurrentHp() : "N/A"));
-                return false; // Nema promene
+                for (int i = 0; i < actions.size(); i++) {
+                    results.add(false); // Nema promene
+                }
+                return results;
             }
 
-            int hpChange = 0;
+            if (progress.hasAppliedFlush(flushId)) {
+                for (int i = 0; i < actions.size(); i++) {
+                    results.add(false);
+                }
+                return results;
+            }
 
-            // 2. Provera kvota i obračun HP za korisnika
-            switch (actionType) {
-                case "PURCHASE":
-                    if (progress.purchasesCount < 5) {
-                        progress.purchasesCount++;
-                        hpChange = HP_PURCHASE;
-                    }
-                    break;
-                case "SUCCESSFUL_HIT":
-                    if (progress.successfulHitsCount < 10) {
-                        progress.successfulHitsCount++;
-                        hpChange = HP_SUCCESSFUL_HIT;
-                    }
-                    break;
-                case "LIGHT_TASK": // VL, L, N, V (računa se kao 1 put)
-                    if (progress.lightTasksCount < 10) {
-                        progress.lightTasksCount++;
-                        hpChange = HP_LIGHT_TASK;
-                    }
-                    break;
-                case "LIGHT_TASK_DOUBLE": // LAK + NORMALAN (računa se kao 2 puta)
-                    if (progress.lightTasksCount <= 8) {
-                        progress.lightTasksCount += 2;
-                        hpChange = HP_LIGHT_TASK * 2;
-                    } else if (progress.lightTasksCount == 9) {
-                        // Može da se poveća samo za 1
-                        progress.lightTasksCount++;
-                        hpChange = HP_LIGHT_TASK;
-                    }
-                    break;
-                case "HEAVY_TASK": // T, ET, EV, S
-                    if (progress.heavyTasksCount < 6) {
-                        progress.heavyTasksCount++;
-                        hpChange = HP_HEAVY_TASK;
-                    }
-                    break;
-                case "MESSAGE":
-                    String today = DATE_FORMAT.format(new Date());
-                    // Provera da li je kvota dana dostignuta (max 14 dana je limit misije)
-                    if (progress.getMessageDays().size() < 14 && !progress.getMessageDays().contains(today)) {
-                        // Pretpostavljamo da je messageDays List<String>
-                        progress.getMessageDays().add(today);
-                        hpChange = HP_MESSAGE_DAY;
-                    }
-                    break;
+            // 2. Provera kvota i obračun HP za svaku akciju, redom
+            int hpChange = 0;
+            for (MissionProgressBuffer.PendingAction action : actions) {
+                int actionHp = applyAction(progress, action.actionType, action.day);
+                results.add(actionHp > 0);
+                hpChange += actionHp;
             }
 
             // 3. Ažuriranje dokumenata
             if (hpChange > 0) {
-                System.out.println("DEBUG: Updating progress - hpChange: " + hpChange + 
-                        ", current totalHpContribution: " + progress.totalHpContribution);
-                
-                // Ažuriraj Progress
                 progress.totalHpContribution += hpChange;
+                progress.addAppliedFlush(flushId);
                 transaction.set(progressRef, progress); // Postavi ceo objekat sa ažuriranim brojačima
 
-                // Ažuriraj Alliance HP (atomski unutar transakcije)
-                int newHp = Math.max(0, alliance.getBossCurrentHp() - hpChange);
-                alliance.setBossCurrentHp(newHp);
-                transaction.update(allianceRef, "bossCurrentHp", newHp, "updatedAt", System.currentTimeMillis());
-
-                System.out.println("DEBUG: Progress updated successfully - new totalHpContribution: " + progress.totalHpContribution + 
-                        ", new bossHp: " + newHp);
-                
-                // Check if boss is defeated after this update
-                if (newHp <= 0) {
-                    System.out.println("DEBUG: Boss defeated! Triggering mission finalization...");
-                    // Trigger mission finalization asynchronously with error handling
-                    checkAndFinalizeMission(allianceId).addOnCompleteListener(finalizeTask -> {
-                        if (finalizeTask.isSuccessful()) {
-                            System.out.println("DEBUG: Mission finalization completed successfully");
-                        } else {
-                            System.out.println("DEBUG: Mission finalization failed: " + 
-                                (finalizeTask.getException() != null ? finalizeTask.getException().getMessage() : "Unknown error"));
-                            // Don't crash the app if finalization fails - just log the error
-                            if (finalizeTask.getException() != null) {
-                                finalizeTask.getException().printStackTrace();
-                            }
-                        }
-                    });
-                }
-                
-                return true; // HP bosa umanjen
+                // Šteta se dodaje u šard (atomski inkrement, bez čitanja šarda)
+                Map<String, Object> damage = new HashMap<>();
+                damage.put("damage", FieldValue.increment(hpChange));
+                transaction.set(shardRef, damage, SetOptions.merge());
+                damaged[0] = true;
+                bossBaseHp[0] = alliance.getBossCurrentHp();
+
+                System.out.println("DEBUG: Progress updated for " + actions.size() + " actions - hpChange: " + hpChange +
+                        ", new totalHpContribution: " + progress.totalHpContribution + ", shard: " + shardRef.getId());
+            } else {
+                System.out.println("DEBUG: No HP change - quota reached or invalid action");
+            }
+            return results;
+        }).continueWith(AppExecutors.background(), task -> {
+            progressTransactions.incrementAndGet();
+            if (task.isSuccessful() && damaged[0]) {
+                checkBossDefeated(allianceId, bossBaseHp[0]);
             }
+            return task.getResult();
+        });
+    }
 
-            // Ako je kvota dostignuta ili nema promene
-            System.out.println("DEBUG: No HP change - quota reached or invalid action");
-            return false;
-        }).continueWith(task -> {
-            if (!task.isSuccessful()) {
-                System.out.println("DEBUG: updateMissionProgress failed: " + 
-                    (task.getException() != null ? task.getException().getMessage() : "Unknown error"));
-                
-                if (task.getException() != null) {
-                    String errorMsg = task.getException().getMessage();
-                    task.getException().printStackTrace();
-                    
-                    // Check if it's a network error
-                    if (errorMsg != null && (errorMsg.contains("Broken pipe") || 
-                        errorMsg.contains("Connection") || errorMsg.contains("Network") ||
-                        errorMsg.contains("SSL") || errorMsg.contains("I/O"))) {
-                        System.out.println("DEBUG: Network error detected in updateMissionProgress, returning false");
-                    }
+    /**
+     * Posle upisa štete zakazuje proveru poraza bosa. Provera čita sve šardove (DAMAGE_SHARDS čitanja),
+     * pa se upisi iz jednog intervala (BOSS_CHECK_INTERVAL_MS) spajaju u jednu proveru na kraju intervala:
+     * najviše DAMAGE_SHARDS čitanja po intervalu po savezu, a poraz se primećuje najkasnije posle intervala.
+     */
+    private void checkBossDefeated(String allianceId, int bossBaseHp) {
+        synchronized (scheduledBossChecks) {
+            if (scheduledBossChecks.put(allianceId, bossBaseHp) != null) {
+                return;
+            }
+        }
+        bossCheckScheduler.schedule(() -> {
+            Integer baseHp;
+            synchronized (scheduledBossChecks) {
+                baseHp = scheduledBossChecks.remove(allianceId);
+            }
+            if (baseHp != null) {
+                runBossDefeatCheck(allianceId, baseHp);
+            }
+        }, BOSS_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sabira šardove; ako je bos poražen, samo klijent koji prvi
+     * postavi bossDefeatedAt pokreće finalizaciju misije.
+     */
+    private void runBossDefeatCheck(String allianceId, int bossBaseHp) {
+        bossDefeatChecks.incrementAndGet();
+        allianceRepository.getTotalDamage(allianceId)
+            .continueWithTask(AppExecutors.background(), damageTask -> {
+                if (bossBaseHp - damageTask.getResult() > 0) {
+                    return Tasks.forResult(false);
                 }
-                return false; // Return false instead of crashing
+                return claimBossDefeat(allianceId);
+            })
+            .addOnCompleteListener(AppExecutors.background(), claimTask -> {
+                if (!claimTask.isSuccessful()) {
+                    System.out.println("DEBUG: Boss defeat check failed: " +
+                        (claimTask.getException() != null ? claimTask.getException().getMessage() : "Unknown error"));
+                    return;
+                }
+                if (!claimTask.getResult()) {
+                    return;
+                }
+
+                System.out.println("DEBUG: Boss defeated! Triggering mission finalization...");
+                checkAndFinalizeMission(allianceId).addOnCompleteListener(AppExecutors.background(), finalizeTask -> {
+                    if (!finalizeTask.isSuccessful()) {
+                        // Don't crash the app if finalization fails - just log the error
+                        System.out.println("DEBUG: Mission finalization failed: " +
+                            (finalizeTask.getException() != null ? finalizeTask.getException().getMessage() : "Unknown error"));
+                    }
+                });
+            });
+    }
+
+    /**
+     * @return True samo za jednog klijenta: onog koji je prvi upisao bossDefeatedAt.
+     */
+    private Task<Boolean> claimBossDefeat(String allianceId) {
+        DocumentReference allianceRef = allianceRepository.getDocumentReference(allianceId);
+        return db.runTransaction(transaction -> {
+            Alliance alliance = transaction.get(allianceRef).toObject(Alliance.class);
+            if (alliance == null || !alliance.isMissionActive() || alliance.bossDefeatedAt > 0) {
+                return false;
             }
-            return task.getResult();
+            long now = System.currentTimeMillis();
+            transaction.update(allianceRef, "bossDefeatedAt", now, "updatedAt", now);
+            return true;
         });
     }
 
+    /**
+     * Provera kvote i HP jedne akcije; menja brojače u progress.
+     * @return Za koliko akcija umanjuje HP bosa (0 ako je kvota dostignuta).
+     */
+    static int applyAction(MissionProgress progress, String actionType, String day) {
+        switch (actionType) {
+            case "PURCHASE":
+                if (progress.purchasesCount < 5) {
+                    progress.purchasesCount++;
+                    return HP_PURCHASE;
+                }
+                return 0;
+            case "SUCCESSFUL_HIT":
+                if (progress.successfulHitsCount < 10) {
+                    progress.successfulHitsCount++;
+                    return HP_SUCCESSFUL_HIT;
+                }
+                return 0;
+            case "LIGHT_TASK": // VL, L, N, V (računa se kao 1 put)
+                if (progress.lightTasksCount < 10) {
+                    progress.lightTasksCount++;
+                    return HP_LIGHT_TASK;
+                }
+                return 0;
+            case "LIGHT_TASK_DOUBLE": // LAK + NORMALAN (računa se kao 2 puta)
+                if (progress.lightTasksCount <= 8) {
+                    progress.lightTasksCount += 2;
+                    return HP_LIGHT_TASK * 2;
+                } else if (progress.lightTasksCount == 9) {
+                    // Može da se poveća samo za 1
+                    progress.lightTasksCount++;
+                    return HP_LIGHT_TASK;
+                }
+                return 0;
+            case "HEAVY_TASK": // T, ET, EV, S
+                if (progress.heavyTasksCount < 6) {
+                    progress.heavyTasksCount++;
+                    return HP_HEAVY_TASK;
+                }
+                return 0;
+            case "MESSAGE":
+                // Provera da li je kvota dana dostignuta (max 14 dana je limit misije)
+                if (progress.getMessageDays().size() < 14 && !progress.getMessageDays().contains(day)) {
+                    progress.getMessageDays().add(day);
+                    return HP_MESSAGE_DAY;
+                }
+                return 0;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Broj izvršenih transakcija napretka misije (od pokretanja aplikacije).
+     */
+    public static long getProgressTransactionCount() {
+        return progressTransactions.get();
+    }
+
+    /**
+     * Broj provera poraza bosa (svaka čita sve šardove štete) od pokretanja aplikacije.
+     */
+    public static long getBossDefeatCheckCount() {
+        return bossDefeatChecks.get();
+    }
+
+    /**
+     * Koliko puta je Firestore ponovio transakciju napretka zbog konflikta (npr. više članova istovremeno).
+     */
+    public static long getProgressTransactionRetries() {
+        return Math.max(0, progressTransactionAttempts.get() - progressTransactions.get());
+    }
+
     /**
      * Poziva se kada se zadatak označi kao NEURAĐEN (sekcija 2.4 - checkAndMarkMissedTasks)
      */
     public Task<Void> setMissedTaskFlag(String userId) {
         // Pronađi aktivan savez korisnika
         return userRepository.read(userId)
-                .continueWithTask(userTask -> {
+                .continueWithTask(AppExecutors.background(), userTask -> {
                     User user = userTask.getResult();
                     if (user == null || !user.isInAlliance()) return Tasks.forResult(null);
 
                     String progressId = user.currentAllianceId + "_" + userId;
 
                     return missionProgressRepository.read(progressId)
-                            .continueWithTask(progressTask -> {
+                            .continueWithTask(AppExecutors.background(), progressTask -> {
                                 MissionProgress progress = progressTask.getResult();
                                 if (progress != null && !progress.hasMissedTask) {
                                     progress.hasMissedTask = true;
@@ -309,324 +457,376 @@ public class AllianceMissionService {
     }
 
     /**
-     * PROVERA ZAVRŠETKA MISIJE (Poziva se npr. pri ulasku u Alliance fragment)
+     * PROVERA ZAVRŠETKA MISIJE (Poziva se npr. pri ulasku u Alliance fragment i posle poraza bosa)
+     * Finalizacija je mašina stanja na dokumentu saveza: ACTIVE -> FINALIZING -> FINALIZED.
+     * Nagrade dodeljuje samo klijent čija transakcija preuzme misiju (claimFinalization), i to
+     * svakom članu najviše jednom (finalizeMember); ostali pozivi se završavaju bez upisa.
      */
     public Task<Void> checkAndFinalizeMission(String allianceId) {
         System.out.println("DEBUG: checkAndFinalizeMission() called for alliance: " + allianceId);
-        
-        try {
-        return Tasks.whenAllSuccess(
-                allianceRepository.read(allianceId),
-                missionProgressRepository.getAllProgressesByAllianceId(allianceId)
-        ).continueWithTask(task -> {
-                try {
-                    System.out.println("DEBUG: Tasks.whenAllSuccess completed");
-                    
-                    if (!task.isSuccessful()) {
-                        System.out.println("DEBUG: Tasks.whenAllSuccess failed: " + 
-                            (task.getException() != null ? task.getException().getMessage() : "Unknown error"));
-                        return Tasks.forException(task.getException());
-                    }
-                    
-            List<Object> results = task.getResult();
-            Alliance alliance = (Alliance) results.get(0);
-            @SuppressWarnings("unchecked")
-            List<MissionProgress> allProgresses = (List<MissionProgress>) results.get(1);
 
-                    System.out.println("DEBUG: checkAndFinalizeMission - alliance: " + (alliance != null ? "found" : "null") + 
-                            ", missionActive: " + (alliance != null ? alliance.isMissionActive() : "N/A") +
-                            ", progressCount: " + (allProgresses != null ? allProgresses.size() : 0));
+        return allianceRepository.read(allianceId).continueWithTask(AppExecutors.background(), allianceTask -> {
+            Alliance alliance = allianceTask.getResult();
+            // Zakup prekinute finalizacije se proverava u claimFinalization, sa vremenom servera
+            if (alliance == null || !alliance.awaitsFinalization()) {
+                finalizationTriggersSkipped.incrementAndGet();
+                System.out.println("DEBUG: Mission not active or already being finalized, skipping");
+                return Tasks.forResult((FinalizationClaim) null);
+            }
+
+            // Prekinuta finalizacija već ima zabeležen ishod
+            Task<Boolean> outcomeTask = alliance.isFinalizing()
+                    ? Tasks.forResult(alliance.missionSucceeded)
+                    : evaluateMissionOutcome(alliance);
 
-            if (alliance == null || !alliance.isMissionActive()) {
-                        System.out.println("DEBUG: Mission not active or alliance not found, returning early");
-                return Tasks.forResult(null);
+            return outcomeTask.continueWithTask(AppExecutors.background(), outcome -> {
+                if (outcome.getResult() == null) {
+                    System.out.println("DEBUG: Mission still active, returning early");
+                    return Tasks.forResult((FinalizationClaim) null);
+                }
+                return claimFinalization(allianceId, outcome.getResult());
+            });
+        }).continueWithTask(AppExecutors.background(), claimTask -> {
+            FinalizationClaim claim = claimTask.getResult();
+            if (claim == null) {
+                return Tasks.forResult((Void) null);
             }
 
-            long currentTime = System.currentTimeMillis();
+            finalizationClaims.incrementAndGet();
+            return finalizeMission(allianceId, claim);
+        }).addOnFailureListener(AppExecutors.background(), e -> {
+            System.out.println("DEBUG: Mission finalization failed: " + e.getMessage());
+        });
+    }
+
+    /**
+     * @return Ishod misije (true ako je bos poražen) ili null ako misija još traje.
+     */
+    private Task<Boolean> evaluateMissionOutcome(Alliance alliance) {
+        if (alliance.bossDefeatedAt > 0) {
+            return Tasks.forResult(true);
+        }
+
+        return allianceRepository.getTotalDamage(alliance.getId()).continueWithTask(AppExecutors.background(), damageTask -> {
+            int bossHp = alliance.getBossHpAfterDamage(damageTask.getResult());
             long missionEndTime = alliance.getMissionStartedAt() + MISSION_DURATION_MILLIS;
 
-                    System.out.println("DEBUG: Current time: " + currentTime + ", Mission end time: " + missionEndTime + 
-                            ", Boss HP: " + alliance.getBossCurrentHp());
+            System.out.println("DEBUG: Current time: " + System.currentTimeMillis() + ", Mission end time: " + missionEndTime +
+                    ", Boss HP: " + bossHp);
 
-            // Provera: Da li je misija završena (vreme isteklo ILI bos poražen)
-            if (alliance.getBossCurrentHp() > 0 && currentTime < missionEndTime) {
-                        System.out.println("DEBUG: Mission still active, returning early");
-                return Tasks.forResult(null); // Misija je i dalje aktivna
+            if (bossHp <= 0) {
+                return Tasks.forResult(true);
+            }
+            if (System.currentTimeMillis() < missionEndTime) {
+                return Tasks.forResult((Boolean) null);
             }
 
-                    System.out.println("DEBUG: Mission should be finalized - boss defeated or time expired");
+            // Vreme isteklo, bos živ: bonus za članove bez nerešenih zadataka može da ga dokrajči
+            return missionProgressRepository.getAllProgressesByAllianceId(alliance.getId()).continueWith(AppExecutors.background(), progressTask -> {
+                int hp = applyPerfectTaskBonus(bossHp, progressTask.getResult(), new HashSet<>());
+                System.out.println("DEBUG: Time expired, boss HP after perfect task bonus: " + hp);
+                return hp <= 0;
+            });
+        });
+    }
 
-            WriteBatch batch = db.batch();
+    /**
+     * Bonus "bez nerešenih zadataka": svaki takav član skida HP_PERFECT_TASK dok bos ima HP-a.
+     * @param credited Dopunjuje se userId članova čiji bonus je skinuo HP (računa im se kao doprinos).
+     * @return HP bosa posle bonusa.
+     */
+    private static int applyPerfectTaskBonus(int bossHp, List<MissionProgress> progresses, Set<String> credited) {
+        int hp = bossHp;
+        for (MissionProgress progress : progresses) {
+            if (!progress.hasMissedTask && hp > 0) {
+                hp = Math.max(0, hp - HP_PERFECT_TASK);
+                credited.add(progress.userId);
+            }
+        }
+        return hp;
+    }
 
-            // 1. Obračun bonusa za "Bez nerešenih zadataka" (samo ako vreme isteklo i bos živ)
-            if (alliance.getBossCurrentHp() > 0 && currentTime >= missionEndTime) {
-                        System.out.println("DEBUG: Time expired but boss alive - applying perfect task bonus");
-                // Pošto je ovo Batch, moramo ažurirati lokalni Alliance objekat pre ažuriranja batch-a
-                boolean allianceUpdated = false;
-                for (MissionProgress progress : allProgresses) {
-                    if (!progress.hasMissedTask) {
-                        int newHp = Math.max(0, alliance.getBossCurrentHp() - HP_PERFECT_TASK);
-
-                        // Samo ako imamo još HP-a za oduzimanje
-                        if (newHp < alliance.getBossCurrentHp()) {
-                            alliance.setBossCurrentHp(newHp);
-                            progress.totalHpContribution += HP_PERFECT_TASK;
-                            batch.update(missionProgressRepository.getDocumentReference(progress.getId()),
-                                    "totalHpContribution", progress.totalHpContribution
-                            );
-                            allianceUpdated = true;
-                        }
+    /**
+     * Članovi kojima se bonus "bez nerešenih zadataka" računa kao doprinos: samo ako je vreme isteklo
+     * dok je bos bio živ (isto kao u evaluateMissionOutcome).
+     */
+    private Task<Set<String>> getPerfectTaskContributors(String allianceId, List<MissionProgress> progresses) {
+        return Tasks.whenAllSuccess(allianceRepository.read(allianceId), allianceRepository.getTotalDamage(allianceId))
+                .continueWith(AppExecutors.background(), task -> {
+                    Alliance alliance = (Alliance) task.getResult().get(0);
+                    int totalDamage = (Integer) task.getResult().get(1);
+                    Set<String> credited = new HashSet<>();
+                    if (alliance == null || alliance.bossDefeatedAt > 0) {
+                        return credited;
                     }
+                    int bossHp = alliance.getBossHpAfterDamage(totalDamage);
+                    if (bossHp > 0) {
+                        applyPerfectTaskBonus(bossHp, progresses, credited);
+                    }
+                    return credited;
+                });
+    }
+
+    /**
+     * Preuzeta finalizacija: vreme preuzimanja (vreme servera) i ishod misije.
+     */
+    private static final class FinalizationClaim {
+        final long claimedAt;
+        final boolean succeeded;
+
+        FinalizationClaim(long claimedAt, boolean succeeded) {
+            this.claimedAt = claimedAt;
+            this.succeeded = succeeded;
+        }
+    }
+
+    /**
+     * Prelaz ACTIVE -> FINALIZING u transakciji; ishod se beleži u savez.
+     * Zakup (FINALIZATION_LEASE_MS) omogućava da drugi klijent nastavi finalizaciju koja je prekinuta.
+     * Vreme preuzimanja i provera zakupa koriste vreme servera, pa sat uređaja ne može da skrati zakup.
+     * @return Preuzimanje za klijenta koji je preuzeo finalizaciju, null za sve ostale.
+     */
+    private Task<FinalizationClaim> claimFinalization(String allianceId, boolean succeeded) {
+        DocumentReference allianceRef = allianceRepository.getDocumentReference(allianceId);
+        return allianceRepository.getServerTime(allianceId).continueWithTask(AppExecutors.background(), timeTask -> {
+            long now = timeTask.getResult();
+            return db.runTransaction(transaction -> {
+                Alliance alliance = transaction.get(allianceRef).toObject(Alliance.class);
+                if (alliance == null || !alliance.canClaimFinalization(now, FINALIZATION_LEASE_MS)) {
+                    return null;
                 }
-                // Ažuriranje HP-a saveza sa izmenjenom vrednošću
-                if(allianceUpdated) {
-                    batch.update(allianceRepository.getDocumentReference(allianceId),
-                            "bossCurrentHp", alliance.getBossCurrentHp()
-                    );
-                }
-            }
 
+                boolean outcome = alliance.isFinalizing() ? alliance.missionSucceeded : succeeded;
+                transaction.update(allianceRef,
+                        "missionState", Alliance.MISSION_FINALIZING,
+                        "finalizationClaimedAt", now,
+                        "missionSucceeded", outcome,
+                        "updatedAt", now);
+                return new FinalizationClaim(now, outcome);
+            });
+        }).continueWith(AppExecutors.background(), task -> {
+            if (task.getResult() == null) {
+                finalizationTriggersSkipped.incrementAndGet();
+            }
+            return task.getResult();
+        });
+    }
 
-            // 2. Provera ishoda i dodela nagrada - ponovo proveravamo stanje HP-a nakon bonusa
-            boolean bossDefeated = alliance.getBossCurrentHp() <= 0;
-                    
-                    System.out.println("DEBUG: Boss defeated: " + bossDefeated + ", Final boss HP: " + alliance.getBossCurrentHp());
-
-            if (bossDefeated) {
-                        System.out.println("DEBUG: Boss defeated - awarding rewards");
-                // DODELA NAGRADA
-                        // Prvo izvršavamo sve batch operacije koje su se možda nagomilale (npr. bonus HP za Perfect Task)
-                        return batch.commit().continueWithTask(commitTask -> {
-                            System.out.println("DEBUG: Batch committed, now awarding mission rewards");
-                            // Zatim dodeljujemo nagrade, koje uključuju asinhrono ažuriranje opreme
-                            return awardMissionRewards(alliance, allProgresses);
-                        }).continueWithTask(awardTask -> {
-                            System.out.println("DEBUG: Rewards awarded, now resetting mission state");
-                    // Resetovanje misije
-                            // Moramo kreirati NOVI batch jer je prethodni commit-ovan
-                            return resetMissionState(allianceId, db.batch());
-                });
-            } else {
-                        System.out.println("DEBUG: Mission failed - resetting mission state");
-                // MISIJA NEUSPEŠNA
-                        // Prvo izvršavamo sve batch operacije (npr. bonus HP za Perfect Task)
-                        return batch.commit().continueWithTask(commitTask -> {
-                            System.out.println("DEBUG: Batch committed, now resetting mission state");
-                            // Zatim resetujemo stanje
-                            return resetMissionState(allianceId, db.batch());
-                        });
+    /**
+     * Dodela nagrada i reset misije. Spisak napretka može biti zastareo (npr. prekinuta finalizacija je
+     * delimično upisana); finalizeMember zato za svakog člana ponovo proverava napredak u transakciji.
+     */
+    private Task<Void> finalizeMission(String allianceId, FinalizationClaim claim) {
+        boolean succeeded = claim.succeeded;
+        return missionProgressRepository.getAllProgressesByAllianceId(allianceId).continueWithTask(AppExecutors.background(), progressTask -> {
+            List<MissionProgress> progresses = progressTask.getResult();
+            Task<Set<String>> perfectTask = succeeded
+                    ? getPerfectTaskContributors(allianceId, progresses)
+                    : Tasks.<Set<String>>forResult(new HashSet<>());
+            return perfectTask.continueWithTask(AppExecutors.background(), perfect -> {
+                Set<String> perfectContributors = perfect.getResult();
+                List<MissionProgress> contributors = new ArrayList<>();
+                if (succeeded) {
+                    for (MissionProgress progress : progresses) {
+                        // Bonus na kraju misije se računa kao doprinos, kao da je dodat u totalHpContribution
+                        if (progress.totalHpContribution > 0 || perfectContributors.contains(progress.userId)) {
+                            contributors.add(progress);
+                        }
                     }
-                } catch (Exception e) {
-                    System.out.println("DEBUG: Exception in checkAndFinalizeMission task: " + e.getMessage());
-                    e.printStackTrace();
-                    return Tasks.forException(e);
                 }
+                return rewardContributors(allianceId, claim, progresses, contributors);
             });
-        } catch (Exception e) {
-            System.out.println("DEBUG: Exception in checkAndFinalizeMission: " + e.getMessage());
-            e.printStackTrace();
-            return Tasks.forException(e);
+        });
+    }
+
+    /**
+     * Nagrade za contributors (prazna lista: misija neuspešna ili bez doprinosa) i reset misije.
+     */
+    private Task<Void> rewardContributors(String allianceId, FinalizationClaim claim, List<MissionProgress> progresses,
+                                          List<MissionProgress> contributors) {
+        if (contributors.isEmpty()) {
+            return commitFinalization(allianceId, claim, progresses, 0, new HashMap<>());
         }
+
+        // Nagrada zavisi od najvećeg nivoa u savezu; oprema se čita samo za nagrađene članove
+        List<Task<?>> reads = new ArrayList<>();
+        reads.add(allianceRepository.getAllianceMembers(allianceId));
+        for (MissionProgress progress : contributors) {
+            reads.add(equipmentRepository.findByUserId(progress.userId));
+        }
+
+        return Tasks.whenAllSuccess(reads).continueWithTask(AppExecutors.background(), readTask -> {
+            List<Object> results = readTask.getResult();
+            @SuppressWarnings("unchecked")
+            List<User> members = (List<User>) results.get(0);
+            Map<String, List<Equipment>> equipmentByUser = new HashMap<>();
+            for (int i = 0; i < contributors.size(); i++) {
+                @SuppressWarnings("unchecked")
+                List<Equipment> equipment = (List<Equipment>) results.get(i + 1);
+                equipmentByUser.put(contributors.get(i).userId, equipment);
+            }
+            return commitFinalization(allianceId, claim, progresses, calculateMissionCoinsReward(members), equipmentByUser);
+        });
     }
 
-    private Task<Void> resetMissionState(String allianceId, WriteBatch batch) {
-        try {
-            System.out.println("DEBUG: resetMissionState() called for alliance: " + allianceId);
-            
-        // Resetovanje stanja misije u Savezu
-        batch.update(allianceRepository.getDocumentReference(allianceId),
-                    "isMissionActive", false,
-                "bossCurrentHp", 0,
-                "bossMaxHp", 0,
-                "missionStartedAt", 0
-        );
-        // Brisanje svih MissionProgress dokumenata
-        return missionProgressRepository.getAllProgressesByAllianceId(allianceId)
-                .continueWithTask(task -> {
-                        try {
-                            if (!task.isSuccessful()) {
-                                System.out.println("DEBUG: Failed to get mission progresses for cleanup: " + 
-                                    (task.getException() != null ? task.getException().getMessage() : "Unknown error"));
-                                return Tasks.forException(task.getException());
-                            }
-                            
-                            List<MissionProgress> progresses = task.getResult();
-                            if (progresses != null) {
-                                for (MissionProgress progress : progresses) {
-                        batch.delete(missionProgressRepository.getDocumentReference(progress.getId()));
-                    }
-                            }
-                            
-                            System.out.println("DEBUG: Committing mission state reset batch...");
-                            return batch.commit().continueWith(commitTask -> {
-                                if (!commitTask.isSuccessful()) {
-                                    System.out.println("DEBUG: Failed to commit mission state reset: " + 
-                                        (commitTask.getException() != null ? commitTask.getException().getMessage() : "Unknown error"));
-                                    if (commitTask.getException() != null) {
-                                        commitTask.getException().printStackTrace();
-                                    }
-                                    return null; // Don't fail the entire operation
-                                }
-                                System.out.println("DEBUG: Mission state reset completed successfully");
-                                return null;
-                            });
-                        } catch (Exception e) {
-                            System.out.println("DEBUG: Exception in resetMissionState: " + e.getMessage());
-                            e.printStackTrace();
-                            return Tasks.forException(e);
-                        }
-                    });
-        } catch (Exception e) {
-            System.out.println("DEBUG: Exception in resetMissionState: " + e.getMessage());
-            e.printStackTrace();
-            return Tasks.forException(e);
+    /**
+     * Nagrada u novčićima za misiju: 50% nagrade narednog regularnog bosa za najveći nivo u savezu.
+     */
+    private static int calculateMissionCoinsReward(List<User> members) {
+        int maxLevel = 1;
+        if (members != null) {
+            for (User member : members) {
+                maxLevel = Math.max(maxLevel, member.level != null ? member.level : 1);
+            }
         }
+        int nextBossReward = BossBattle.calculateCoinsReward(maxLevel + 1);
+        System.out.println("DEBUG: Max level among members: " + maxLevel + ", mission coins reward: " + (int) (nextBossReward * 0.5));
+        return (int) (nextBossReward * 0.5);
     }
 
-    private Task<Void> awardMissionRewards(Alliance alliance, List<MissionProgress> allProgresses) {
-        System.out.println("DEBUG: awardMissionRewards() called for alliance: " + alliance.getId());
-        
-        try {
-        // Pronađi najveći nivo među članovima saveza
-        return allianceRepository.getAllianceMembers(alliance.getId())
-                .continueWithTask(membersTask -> {
-                        try {
-                            if (!membersTask.isSuccessful()) {
-                                System.out.println("DEBUG: Failed to get alliance members: " + 
-                                    (membersTask.getException() != null ? membersTask.getException().getMessage() : "Unknown error"));
-                                return Tasks.forException(membersTask.getException());
-                            }
-                            
-                    List<User> members = membersTask.getResult();
-                            System.out.println("DEBUG: Found " + (members != null ? members.size() : 0) + " alliance members");
-                            
-                            if (members == null || members.isEmpty()) {
-                                System.out.println("DEBUG: No members found, returning early");
-                                return Tasks.forResult((Void) null);
-                            }
-                            
-                    int maxLevel = members.stream()
-                                    .mapToInt(u -> u.level != null ? u.level : 1)
-                            .max()
-                            .orElse(1);
-                            
-                            System.out.println("DEBUG: Max level among members: " + maxLevel);
-
-                    // Izračunaj nagradu za pobedu nad narednim regularnim bosom (za taj max level)
-                    int nextLevel = maxLevel + 1;
-                    int nextBossReward = BossBattle.calculateCoinsReward(nextLevel);
-                            
-                            System.out.println("DEBUG: Next level: " + nextLevel + ", Next boss reward: " + nextBossReward);
-
-                    // Nagrada u novčićima za misiju je 50%
-                    int missionCoinsReward = (int) (nextBossReward * 0.5);
-                            
-                            System.out.println("DEBUG: Mission coins reward per member: " + missionCoinsReward);
-
-                    WriteBatch batch = db.batch();
-                    List<Task<?>> equipmentTasks = new ArrayList<>();
-
-                            for (User member : members) {
-                                System.out.println("DEBUG: Processing rewards for member: " + member.username);
-                                
-                                // Find this member's progress to check if they contributed
-                                MissionProgress memberProgress = allProgresses.stream()
-                                        .filter(progress -> progress.userId.equals(member.getId()))
-                                        .findFirst()
-                                        .orElse(null);
-                                
-                                boolean memberContributed = memberProgress != null && memberProgress.totalHpContribution > 0;
-                                
-                                System.out.println("DEBUG: Member " + member.username + " contributed: " + 
-                                    (memberProgress != null ? memberProgress.totalHpContribution : 0) + " HP");
-                                
-                                // 1. Dodeljivanje novčića (only to contributors)
-                                if (memberContributed) {
-                                    member.coins = (member.coins != null ? member.coins : 0) + missionCoinsReward;
-                                    System.out.println("DEBUG: Member " + member.username + " coins updated to: " + member.coins);
-                                } else {
-                                    System.out.println("DEBUG: Member " + member.username + " did not contribute - no coins awarded");
-                                }
+    /**
+     * Obrada svih članova (finalizeMember), pa reset misije (resetMission) kada su svi obrađeni.
+     * @param equipmentByUser Postojeća oprema nagrađenih članova (po userId); ostali članovi se ne nagrađuju.
+     */
+    private Task<Void> commitFinalization(String allianceId, FinalizationClaim claim, List<MissionProgress> progresses,
+                                          int coinsReward, Map<String, List<Equipment>> equipmentByUser) {
+        List<Task<Boolean>> members = new ArrayList<>();
+        for (MissionProgress progress : progresses) {
+            members.add(finalizeMember(allianceId, claim, progress, coinsReward, equipmentByUser.get(progress.userId)));
+        }
 
-                                // 2. Dodeljivanje bedževa (only to contributors)
-                                if (memberContributed) {
-                                    member.badgesCount = (member.badgesCount != null ? member.badgesCount : 0) + 1;
-                                    System.out.println("DEBUG: Member " + member.username + " badges updated to: " + member.badgesCount);
-                                } else {
-                                    System.out.println("DEBUG: Member " + member.username + " did not contribute - no badge awarded");
-                                }
+        // Savez prelazi u FINALIZED tek kada su obrađeni svi članovi
+        return Tasks.whenAll(members)
+                .continueWithTask(AppExecutors.background(), membersTask -> {
+                    if (!membersTask.isSuccessful()) {
+                        return membersTask;
+                    }
+                    return resetMission(allianceId, claim);
+                })
+                .addOnCompleteListener(AppExecutors.background(), task -> {
+                    // Nagrađeni članovi imaju novu opremu
+                    for (String userId : equipmentByUser.keySet()) {
+                        EquipmentInventoryCache.invalidate(userId);
+                    }
+                });
+    }
 
-                                // Update user with coins and badges (only if they contributed)
-                                if (memberContributed) {
-                                    batch.update(userRepository.getDocumentReference(member.getId()),
-                                            "coins", member.coins,
-                                            "badgesCount", member.badgesCount
-                                    );
-                                }
+    /**
+     * Nagrada jednog člana (ako je userEquipment zadat) i brisanje njegovog MissionProgress dokumenta
+     * u jednoj transakciji. Transakcija ne menja ništa ako napredak više ne postoji (član je već obrađen)
+     * ili ako je finalizaciju posle isteka zakupa preuzeo drugi klijent, pa je član nagrađen najviše jednom.
+     * @return True ako je ova transakcija obradila člana.
+     */
+    private Task<Boolean> finalizeMember(String allianceId, FinalizationClaim claim, MissionProgress progress,
+                                         int coinsReward, List<Equipment> userEquipment) {
+        DocumentReference allianceRef = allianceRepository.getDocumentReference(allianceId);
+        DocumentReference progressRef = missionProgressRepository.getDocumentReference(progress.getId());
+        // Oprema se spaja jednom, pre transakcije (transakcija se može ponoviti)
+        List<Equipment> rewards = new ArrayList<>();
+        if (userEquipment != null) {
+            // 1 napitak i 1 odeća, spaja se sa postojećom istog tipa
+            rewards.add(stackEquipment(userEquipment, new Potion(progress.userId, Potion.PotionType.PERMANENT_POWER_5)));
+            rewards.add(stackEquipment(userEquipment, new Clothing(progress.userId, Clothing.ClothingType.GLOVES)));
+        }
 
-                                // 3. Dodeljivanje opreme (1 napitak, 1 odeća) - only to contributors
-                                if (memberContributed) {
-                                    // Napitak (proizvoljno, npr. PotionType.PERMANENT_5_PERCENT)
-                                    Potion potion = new Potion(member.getId(), Potion.PotionType.PERMANENT_POWER_5);
-                                    // Odeća (proizvoljno, npr. ClothingType.GLOVES)
-                                    Clothing clothing = new Clothing(member.getId(), Clothing.ClothingType.GLOVES);
-                                    
-                                    System.out.println("DEBUG: Created potion and clothing for member: " + member.username);
-
-                                    // POZIV ASINHRONE METODE registerEquipmentDrop with error handling
-                                    equipmentTasks.add(registerEquipmentDrop(potion)
-                                        .addOnFailureListener(e -> {
-                                            System.out.println("DEBUG: Failed to register potion drop for " + member.username + ": " + e.getMessage());
-                                        }));
-                                    equipmentTasks.add(registerEquipmentDrop(clothing)
-                                        .addOnFailureListener(e -> {
-                                            System.out.println("DEBUG: Failed to register clothing drop for " + member.username + ": " + e.getMessage());
-                                        }));
-                                } else {
-                                    System.out.println("DEBUG: Member " + member.username + " did not contribute - no equipment awarded");
-                                }
-                            }
+        return db.runTransaction(transaction -> {
+            Alliance alliance = transaction.get(allianceRef).toObject(Alliance.class);
+            if (alliance == null || !alliance.holdsFinalizationClaim(claim.claimedAt)
+                    || !transaction.get(progressRef).exists()) {
+                return false;
+            }
 
-                            System.out.println("DEBUG: Committing user updates batch...");
-                            // Prvo izvršavamo sve operacije na User
-                            return batch.commit().continueWithTask(commitTask -> {
-                                if (!commitTask.isSuccessful()) {
-                                    System.out.println("DEBUG: Failed to commit user updates: " + 
-                                        (commitTask.getException() != null ? commitTask.getException().getMessage() : "Unknown error"));
-                                    return Tasks.forException(commitTask.getException());
-                                }
-                                
-                                System.out.println("DEBUG: User updates committed successfully, now processing equipment drops...");
-                                // Nakon uspešnog commit-a, čekamo da se svi asinhroni zadaci za opremu završe
-                                return Tasks.whenAll(equipmentTasks).continueWith(equipmentTask -> {
-                                    if (!equipmentTask.isSuccessful()) {
-                                        System.out.println("DEBUG: Failed to process equipment drops: " + 
-                                            (equipmentTask.getException() != null ? equipmentTask.getException().getMessage() : "Unknown error"));
-                                        if (equipmentTask.getException() != null) {
-                                            equipmentTask.getException().printStackTrace();
-                                        }
-                                        // Don't fail the entire mission completion for equipment issues
-                                        System.out.println("DEBUG: Mission rewards completed despite equipment drop failures");
-                                        return (Void) null;
-                                    }
-                                        System.out.println("DEBUG: All equipment drops processed successfully");
-                                        return (Void) null;
-                                }).addOnFailureListener(e -> {
-                                    System.out.println("DEBUG: Critical error in equipment processing: " + e.getMessage());
-                                    e.printStackTrace();
-                                });
-                            });
-                        } catch (Exception e) {
-                            System.out.println("DEBUG: Exception in awardMissionRewards task: " + e.getMessage());
-                            e.printStackTrace();
-                            return Tasks.forException(e);
-                        }
-                    });
-        } catch (Exception e) {
-            System.out.println("DEBUG: Exception in awardMissionRewards: " + e.getMessage());
-            e.printStackTrace();
-            return Tasks.forException(e);
+            if (userEquipment != null) {
+                // Novčići i bedž se dodaju inkrementom, bez čitanja korisnika
+                transaction.update(userRepository.getDocumentReference(progress.userId),
+                        "coins", FieldValue.increment(coinsReward),
+                        "badgesCount", FieldValue.increment(1));
+                for (Equipment reward : rewards) {
+                    equipmentRepository.set(transaction, reward);
+                }
+            }
+            transaction.delete(progressRef);
+            return true;
+        });
+    }
+
+    /**
+     * Vraća savez u stanje FINALIZED i resetuje šardove štete, samo ako finalizaciju i dalje drži ovaj klijent.
+     */
+    private Task<Void> resetMission(String allianceId, FinalizationClaim claim) {
+        DocumentReference allianceRef = allianceRepository.getDocumentReference(allianceId);
+        return db.runTransaction(transaction -> {
+            Alliance alliance = transaction.get(allianceRef).toObject(Alliance.class);
+            if (alliance == null || !alliance.holdsFinalizationClaim(claim.claimedAt)) {
+                return null;
+            }
+
+            long now = System.currentTimeMillis();
+            Map<String, Object> reset = new HashMap<>();
+            reset.put("isMissionActive", false);
+            reset.put("missionState", Alliance.MISSION_FINALIZED);
+            reset.put("bossCurrentHp", 0);
+            reset.put("bossMaxHp", 0);
+            reset.put("missionStartedAt", 0);
+            reset.put("bossDefeatedAt", 0);
+            reset.put("finalizationClaimedAt", 0);
+            reset.put("updatedAt", now);
+            transaction.update(allianceRef, reset);
+            allianceRepository.resetDamageShards(transaction, allianceId);
+            return null;
+        });
+    }
+
+    /**
+     * Postojeća oprema korisnika istog tipa (neistekla odeća, napitak) uvećana za novu, ili nova oprema.
+     */
+    private static Equipment stackEquipment(List<Equipment> userEquipment, Equipment droppedEquipment) {
+        Equipment existingEquipment = findStackableEquipment(userEquipment, droppedEquipment);
+        if (existingEquipment instanceof Clothing) {
+            ((Clothing) existingEquipment).combineWith((Clothing) droppedEquipment);
+            return existingEquipment;
+        } else if (existingEquipment instanceof Potion) {
+            ((Potion) existingEquipment).combineWith((Potion) droppedEquipment);
+            return existingEquipment;
         }
+        userEquipment.add(droppedEquipment);
+        return droppedEquipment;
+    }
+
+    private static Equipment findStackableEquipment(List<Equipment> userEquipment, Equipment droppedEquipment) {
+        if (droppedEquipment instanceof Clothing) {
+            Clothing droppedClothing = (Clothing) droppedEquipment;
+            for (Equipment eq : userEquipment) {
+                // Proverava da li je isti tip odeće i da nije istekla
+                if (eq instanceof Clothing && ((Clothing) eq).getClothingType() == droppedClothing.getClothingType()
+                        && !((Clothing) eq).isExpired()) {
+                    return eq;
+                }
+            }
+        } else if (droppedEquipment instanceof Potion) {
+            Potion droppedPotion = (Potion) droppedEquipment;
+            for (Equipment eq : userEquipment) {
+                // Napitci istog tipa se spajaju (Potion.combineWith)
+                if (eq instanceof Potion && ((Potion) eq).getPotionType() == droppedPotion.getPotionType()) {
+                    return eq;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Broj finalizacija misija koje je ovaj klijent preuzeo (od pokretanja aplikacije).
+     */
+    public static long getFinalizationCount() {
+        return finalizationClaims.get();
+    }
+
+    /**
+     * Koliko poziva finalizacije je završeno bez upisa jer misiju nije bilo moguće preuzeti.
+     */
+    public static long getSkippedFinalizationTriggers() {
+        return finalizationTriggersSkipped.get();
     }
 
     // --- Metode za pregled napretka ---
@@ -657,6 +857,13 @@ public class AllianceMissionService {
                 });
     }
 
+    /**
+     * Real-time zbir štete iz šardova; stvarni HP bosa je alliance.getBossHpAfterDamage(totalDamage).
+     */
+    public ListenerRegistration getBossDamageListener(String allianceId, AllianceRepository.BossDamageListener listener) {
+        return allianceRepository.listenToTotalDamage(allianceId, listener);
+    }
+
     public Task<Alliance> getAlliance(String allianceId) {
         return allianceRepository.read(allianceId);
     }
@@ -666,7 +873,7 @@ public class AllianceMissionService {
         System.out.println("DEBUG: getUserProgressSafe() called for progressId: " + progressId);
         
         return missionProgressRepository.read(progressId)
-            .continueWith(task -> {
+            .continueWith(AppExecutors.background(), task -> {
                 if (task.isSuccessful()) {
                     MissionProgress progress = task.getResult();
                     if (progress == null) {
@@ -688,7 +895,7 @@ public class AllianceMissionService {
         System.out.println("DEBUG: getUserProgress() called for progressId: " + progressId);
         
         return missionProgressRepository.read(progressId)
-            .continueWith(task -> {
+            .continueWith(AppExecutors.background(), task -> {
                 try {
                     if (task.isSuccessful()) {
                         MissionProgress progress = task.getResult();
@@ -740,7 +947,7 @@ public class AllianceMissionService {
         
         return missionProgressRepository.getDocumentReference(progressId)
             .set(testProgress)
-            .continueWithTask(task -> {
+            .continueWithTask(AppExecutors.background(), task -> {
                 if (task.isSuccessful()) {
                     System.out.println("TEST: Document created successfully, now trying to read it back");
                     return missionProgressRepository.read(progressId);
@@ -748,7 +955,7 @@ public class AllianceMissionService {
                     throw new RuntimeException("Failed to create test document: " + task.getException().getMessage());
                 }
             })
-            .continueWith(readTask -> {
+            .continueWith(AppExecutors.background(), readTask -> {
                 if (readTask.isSuccessful()) {
                     MissionProgress readProgress = readTask.getResult();
                     if (readProgress != null) {
@@ -774,9 +981,9 @@ public class AllianceMissionService {
         System.out.println("DEBUG: registerEquipmentDrop - processing equipment for user: " + userId + 
                 ", type: " + droppedEquipment.getClass().getSimpleName());
 
-        // Logika za dobijanje trenutne opreme korisnika i proveru postojanja
-        return equipmentRepository.readAll()
-                .continueWithTask(task -> {
+        // Čita se samo oprema korisnika istog tipa kao nova
+        return equipmentRepository.findByUserIdAndType(userId, droppedEquipment.getType())
+                .continueWithTask(AppExecutors.background(), task -> {
                     if (!task.isSuccessful()) {
                         System.out.println("DEBUG: registerEquipmentDrop - failed to read equipment: " + 
                             (task.getException() != null ? task.getException().getMessage() : "Unknown error"));
@@ -786,10 +993,10 @@ public class AllianceMissionService {
                         return Tasks.forResult(false);
                     }
                     
-                    List<Equipment> allEquipment = task.getResult();
-                    if (allEquipment == null) {
+                    List<Equipment> userEquipment = task.getResult();
+                    if (userEquipment == null) {
                         System.out.println("DEBUG: registerEquipmentDrop - no equipment found, creating new");
-                        return equipmentRepository.create(droppedEquipment).continueWith(createTask -> {
+                        return equipmentRepository.create(droppedEquipment).continueWith(AppExecutors.background(), createTask -> {
                             if (createTask.isSuccessful()) {
                                 System.out.println("DEBUG: registerEquipmentDrop - equipment created successfully");
                                 return true;
@@ -801,43 +1008,7 @@ public class AllianceMissionService {
                         });
                     }
                     
-                    // Filtrirajte opremu za trenutnog korisnika
-                    List<Equipment> userEquipment = allEquipment.stream()
-                            .filter(equipment -> userId.equals(equipment.getUserId()))
-                            .collect(Collectors.toList());
-
-                    Equipment existingEquipment = null;
-
-                    // Provera za Clothing
-                    if (droppedEquipment instanceof Clothing) {
-                        Clothing droppedClothing = (Clothing) droppedEquipment;
-                        for (Equipment eq : userEquipment) {
-                            if (eq instanceof Clothing) {
-                                Clothing clothing = (Clothing) eq;
-                                // Proverava da li je isti tip odeće i da nije istekla
-                                if (clothing.getClothingType() == droppedClothing.getClothingType() && !clothing.isExpired()) {
-                                    existingEquipment = clothing;
-                                    break;
-                                }
-                            }
-                        }
-                        // Provera za Weapon (Ne radimo proveru za Weapon jer smo ovde hardkodovali samo Potion i Clothing)
-                    } else if (droppedEquipment instanceof Potion) {
-                        Potion droppedPotion = (Potion) droppedEquipment;
-                        for (Equipment eq : userEquipment) {
-                            if (eq instanceof Potion) {
-                                Potion potion = (Potion) eq;
-                                // Napitak je unique, tako da ga uvek dodajemo kao novu instancu.
-                                // Međutim, ako je to Permanent Potion, treba ga spojiti. Pretpostavljamo da je Potion.combineWith već implementiran za to.
-                                // Za potrebe ovog koda, pretpostavljamo da se Potioni spajaju (npr. povećava se kvantitet ili procenat).
-                                if (potion.getPotionType() == droppedPotion.getPotionType()) {
-                                    existingEquipment = potion;
-                                    break;
-                                }
-                            }
-                        }
-                    }
-
+                    Equipment existingEquipment = findStackableEquipment(userEquipment, droppedEquipment);
 
                     // Ako postojeća oprema pronađena, spoji je (combineWith)
                     if (existingEquipment != null) {
@@ -851,7 +1022,7 @@ public class AllianceMissionService {
 
                         // Ažuriraj postojeću opremu
                         return equipmentRepository.update(existingEquipment)
-                                .continueWith(updateTask -> {
+                                .continueWith(AppExecutors.background(), updateTask -> {
                                     if (updateTask.isSuccessful()) {
                                         System.out.println("DEBUG: registerEquipmentDrop - equipment updated successfully");
                                         return true;
@@ -865,7 +1036,7 @@ public class AllianceMissionService {
                         System.out.println("DEBUG: registerEquipmentDrop - creating new equipment");
                         // Kreiraj novu opremu
                         return equipmentRepository.create(droppedEquipment)
-                                .continueWith(createTask -> {
+                                .continueWith(AppExecutors.background(), createTask -> {
                                     if (createTask.isSuccessful()) {
                                         System.out.println("DEBUG: registerEquipmentDrop - equipment created successfully");
                                         return true;
@@ -876,7 +1047,8 @@ public class AllianceMissionService {
                                     }
                                 });
                     }
-                });
+                })
+                .addOnCompleteListener(AppExecutors.background(), task -> EquipmentInventoryCache.invalidate(userId));
     }
 
     /**
@@ -885,97 +1057,56 @@ public class AllianceMissionService {
      */
     public Task<Void> createMissingMissionProgress(String allianceId) {
         System.out.println("DEBUG: createMissingMissionProgress() called for allianceId: " + allianceId);
-        
-        return allianceRepository.getAllianceMembers(allianceId)
-                .continueWithTask(membersTask -> {
-                    System.out.println("DEBUG: getAllianceMembers task completed, success: " + membersTask.isSuccessful());
-                    
-                    if (!membersTask.isSuccessful()) {
-                        System.out.println("DEBUG: Failed to get alliance members: " + membersTask.getException().getMessage());
-                        return Tasks.forResult(null);
-                    }
-                    
-                    List<User> members = membersTask.getResult();
-                    System.out.println("DEBUG: Got members from task: " + (members != null ? members.size() : 0));
-                    
-                    if (members == null || members.isEmpty()) {
+
+        return allianceRepository.read(allianceId)
+                .continueWithTask(AppExecutors.background(), allianceTask -> {
+                    Alliance alliance = allianceTask.isSuccessful() ? allianceTask.getResult() : null;
+                    if (alliance == null || alliance.memberIds == null || alliance.memberIds.isEmpty()) {
                         System.out.println("DEBUG: No members found for alliance: " + allianceId);
                         return Tasks.forResult(null);
                     }
 
-                    System.out.println("DEBUG: Found " + members.size() + " members, checking for missing progress documents");
-                    
-                    // Log all member details
-                    for (User member : members) {
-                        System.out.println("DEBUG: Member - ID: " + member.getId() + ", Username: " + member.username);
-                    }
-
-                    // Check which members are missing progress documents
-                    List<Task<MissionProgress>> checkTasks = new ArrayList<>();
-                    for (User member : members) {
-                        System.out.println("DEBUG: Creating check task for member: " + member.username);
-                        checkTasks.add(getUserProgressSafe(allianceId, member.getId()));
-                    }
-
-                    System.out.println("DEBUG: Created " + checkTasks.size() + " check tasks, waiting for completion...");
-                    
-                    return Tasks.whenAllComplete(checkTasks)
-                            .continueWithTask(checkTask -> {
-                                System.out.println("DEBUG: All check tasks completed, success: " + checkTask.isSuccessful());
-                                
-                                if (!checkTask.isSuccessful()) {
-                                    System.out.println("DEBUG: Check tasks failed: " + checkTask.getException().getMessage());
+                    List<String> memberIds = alliance.memberIds;
+                    // Svi progress dokumenti u nekoliko whereIn upita umesto jednog čitanja po članu
+                    return missionProgressRepository.readMany(progressIdsFor(allianceId, memberIds))
+                            .continueWithTask(AppExecutors.background(), progressTask -> {
+                                if (!progressTask.isSuccessful()) {
+                                    // Bez provere se ne upisuje ništa, da se postojeći napredak ne bi prepisao
+                                    System.out.println("DEBUG: Failed to check MissionProgress documents: " +
+                                            (progressTask.getException() != null ? progressTask.getException().getMessage() : "Unknown error"));
                                     return Tasks.forResult(null);
                                 }
-                                
-                                List<User> membersNeedingProgress = new ArrayList<>();
-                                
-                                for (int i = 0; i < checkTasks.size(); i++) {
-                                    Task<MissionProgress> task = checkTasks.get(i);
-                                    User member = members.get(i);
-                                    
-                                    System.out.println("DEBUG: Checking task " + i + " for member " + member.username + 
-                                            " - success: " + task.isSuccessful() + 
-                                            ", result: " + (task.getResult() != null ? "found" : "null"));
-                                    
-                                    if (!task.isSuccessful() || task.getResult() == null) {
-                                        membersNeedingProgress.add(member);
-                                        System.out.println("DEBUG: Member " + member.username + " needs MissionProgress document");
-                                    } else {
-                                        System.out.println("DEBUG: Member " + member.username + " already has MissionProgress document");
+
+                                Set<String> membersWithProgress = new HashSet<>();
+                                for (MissionProgress progress : progressTask.getResult()) {
+                                    membersWithProgress.add(progress.userId);
+                                }
+
+                                WriteBatch batch = db.batch();
+                                int created = 0;
+                                for (String memberId : memberIds) {
+                                    if (!membersWithProgress.contains(memberId)) {
+                                        String progressId = allianceId + "_" + memberId;
+                                        System.out.println("DEBUG: Creating MissionProgress document with ID: " + progressId);
+                                        batch.set(missionProgressRepository.getDocumentReference(progressId),
+                                                new MissionProgress(allianceId, memberId));
+                                        created++;
                                     }
                                 }
 
-                                if (membersNeedingProgress.isEmpty()) {
+                                if (created == 0) {
                                     System.out.println("DEBUG: All members already have MissionProgress documents");
                                     return Tasks.forResult(null);
                                 }
 
-                                System.out.println("DEBUG: Creating MissionProgress documents for " + membersNeedingProgress.size() + " members");
-
-                                // Create missing MissionProgress documents
-                                WriteBatch batch = db.batch();
-                                for (User member : membersNeedingProgress) {
-                                    MissionProgress progress = new MissionProgress(allianceId, member.getId());
-                                    String progressId = allianceId + "_" + member.getId();
-                                    System.out.println("DEBUG: Creating MissionProgress document for " + member.username + " with ID: " + progressId);
-                                    batch.set(missionProgressRepository.getDocumentReference(progressId), progress);
-                                }
-
-                                System.out.println("DEBUG: Committing batch with " + membersNeedingProgress.size() + " documents...");
-                                
+                                int createdCount = created;
                                 return batch.commit()
-                                        .continueWith(commitTask -> {
-                                            System.out.println("DEBUG: Batch commit completed, success: " + commitTask.isSuccessful());
-                                            
+                                        .continueWith(AppExecutors.background(), commitTask -> {
                                             if (commitTask.isSuccessful()) {
-                                                System.out.println("DEBUG: Successfully created " + membersNeedingProgress.size() + " MissionProgress documents");
+                                                System.out.println("DEBUG: Successfully created " + createdCount + " MissionProgress documents");
                                             } else {
-                                                System.out.println("DEBUG: Failed to create MissionProgress documents: " + 
+                                                System.out.println("DEBUG: Failed to create MissionProgress documents: " +
                                                         (commitTask.getException() != null ? commitTask.getException().getMessage() : "Unknown error"));
-                                                if (commitTask.getException() != null) {
-                                                    commitTask.getException().printStackTrace();
-                                                }
                                             }
                                             return null;
                                         });
@@ -988,58 +1119,49 @@ public class AllianceMissionService {
      */
     public Task<List<MissionProgress>> getAllMembersProgress(String allianceId) {
         System.out.println("DEBUG: AllianceMissionService.getAllMembersProgress() called for allianceId: " + allianceId);
-        
-        return allianceRepository.getAllianceMembers(allianceId)
-                .continueWithTask(membersTask -> {
-                    List<User> members = membersTask.getResult();
-                    System.out.println("DEBUG: AllianceMissionService got " + (members != null ? members.size() : 0) + " members from repository");
-                    
-                    if (members == null || members.isEmpty()) {
+
+        return allianceRepository.read(allianceId)
+                .continueWithTask(AppExecutors.background(), allianceTask -> {
+                    Alliance alliance = allianceTask.getResult();
+                    if (alliance == null || alliance.memberIds == null || alliance.memberIds.isEmpty()) {
                         System.out.println("DEBUG: No members found, returning empty list");
                         return Tasks.forResult(new ArrayList<>());
                     }
 
-                    // Create tasks to get progress for each member
-                    List<Task<MissionProgress>> progressTasks = new ArrayList<>();
-                    for (User member : members) {
-                        System.out.println("DEBUG: Creating progress task for member: " + member.username + " (ID: " + member.getId() + ")");
-                        progressTasks.add(getUserProgressSafe(allianceId, member.getId()));
-                    }
+                    List<String> memberIds = alliance.memberIds;
+                    return missionProgressRepository.readMany(progressIdsFor(allianceId, memberIds))
+                            .continueWith(AppExecutors.background(), progressTask -> {
+                                Map<String, MissionProgress> progressByUser = new HashMap<>();
+                                if (progressTask.isSuccessful()) {
+                                    for (MissionProgress progress : progressTask.getResult()) {
+                                        progressByUser.put(progress.userId, progress);
+                                    }
+                                } else {
+                                    System.out.println("DEBUG: Failed to read MissionProgress documents: " +
+                                            (progressTask.getException() != null ? progressTask.getException().getMessage() : "Unknown error"));
+                                }
 
-                    System.out.println("DEBUG: Created " + progressTasks.size() + " progress tasks, waiting for completion...");
-                    
-                    // Wait for all progress tasks to complete
-                    return Tasks.whenAllComplete(progressTasks)
-                            .continueWith(allProgressTask -> {
                                 List<MissionProgress> allProgress = new ArrayList<>();
-                                
-                                System.out.println("DEBUG: Got " + progressTasks.size() + " task results");
-                                
-                                for (int i = 0; i < progressTasks.size(); i++) {
-                                    Task<MissionProgress> task = progressTasks.get(i);
-                                    User member = members.get(i);
-                                    
-                                    if (task.isSuccessful() && task.getResult() != null) {
-                                        MissionProgress progress = task.getResult();
-                                        allProgress.add(progress);
-                                        System.out.println("DEBUG: Added progress for user " + progress.userId + " with " + progress.totalHpContribution + " HP contribution");
-                                    } else {
-                                        System.out.println("DEBUG: Failed to get progress for user " + member.username + " (ID: " + member.getId() + "): " + 
-                                                (task.getException() != null ? task.getException().getMessage() : "Unknown error"));
-                                        
-                                        // Create a default progress entry for this member
-                                        MissionProgress defaultProgress = new MissionProgress(allianceId, member.getId());
-                                        allProgress.add(defaultProgress);
-                                        System.out.println("DEBUG: Created default progress for user " + member.username);
-                                    }
+                                for (String memberId : new LinkedHashSet<>(memberIds)) {
+                                    MissionProgress progress = progressByUser.get(memberId);
+                                    // Član bez dokumenta dobija podrazumevani napredak
+                                    allProgress.add(progress != null ? progress : new MissionProgress(allianceId, memberId));
                                 }
-                                
+
                                 System.out.println("DEBUG: Returning " + allProgress.size() + " progress items");
                                 return allProgress;
                             });
                 });
     }
 
+    private static List<String> progressIdsFor(String allianceId, List<String> memberIds) {
+        List<String> progressIds = new ArrayList<>(memberIds.size());
+        for (String memberId : memberIds) {
+            progressIds.add(allianceId + "_" + memberId);
+        }
+        return progressIds;
+    }
+
     /**
      * INTERFEJS za ListenerRegistration, trebaće nam u Fragmentu.
      * Dodat ovde jer je Servis jedino mesto koje zna kako da dohvati podatke.
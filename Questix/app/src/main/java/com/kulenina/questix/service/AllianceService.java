@@ -2,7 +2,9 @@ package com.kulenina.questix.service;
 
 import com.google.android.gms.tasks.Task;
 import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.WriteBatch;
 import com.kulenina.questix.model.Alliance;
 import com.kulenina.questix.model.AllianceMessage;
@@ -10,12 +12,16 @@ import com.kulenina.questix.model.User;
 import com.kulenina.questix.repository.AllianceRepository;
 import com.kulenina.questix.repository.AllianceMessageRepository;
 import com.kulenina.questix.repository.UserRepository;
+import com.kulenina.questix.util.AppExecutors;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
 public class AllianceService {
+    // Koliko poruka se učitava odjednom (pri otvaranju četa i pri skrolovanju nagore)
+    public static final int MESSAGE_PAGE_SIZE = 50;
+
     private final FirebaseFirestore db;
     private final AllianceRepository allianceRepository;
     private final AllianceMessageRepository messageRepository;
@@ -34,7 +40,7 @@ public class AllianceService {
 
     public Task<String> createAlliance(String name, String leaderId) {
         return userRepository.read(leaderId)
-            .continueWithTask(task -> {
+            .continueWithTask(AppExecutors.background(), task -> {
                 User leader = task.getResult();
                 if (leader == null) {
                     throw new RuntimeException("User not found");
@@ -56,7 +62,7 @@ public class AllianceService {
                 batch.set(allianceRepository.getDocumentReference(allianceId), alliance);
                 batch.update(userRepository.getDocumentReference(leaderId), "currentAllianceId", allianceId);
 
-                return batch.commit().continueWith(commitTask -> allianceId);
+                return batch.commit().continueWith(AppExecutors.background(), commitTask -> allianceId);
             });
     }
 
@@ -65,7 +71,7 @@ public class AllianceService {
             allianceRepository.read(allianceId),
             userRepository.read(inviterId),
             userRepository.read(inviteeId)
-        ).continueWithTask(task -> {
+        ).continueWithTask(AppExecutors.background(), task -> {
             List<Object> results = task.getResult();
             Alliance alliance = (Alliance) results.get(0);
             User inviter = (User) results.get(1);
@@ -110,7 +116,7 @@ public class AllianceService {
         // This will be handled by AllianceInvitationService
         // For now, just remove from user's pending invitations
         return userRepository.read(userId)
-            .continueWithTask(task -> {
+            .continueWithTask(AppExecutors.background(), task -> {
                 User user = task.getResult();
                 if (user == null) {
                     throw new RuntimeException("User not found");
@@ -130,7 +136,7 @@ public class AllianceService {
         return Tasks.whenAllSuccess(
             allianceRepository.read(allianceId),
             userRepository.read(userId)
-        ).continueWithTask(task -> {
+        ).continueWithTask(AppExecutors.background(), task -> {
             List<Object> results = task.getResult();
             Alliance alliance = (Alliance) results.get(0);
             User user = (User) results.get(1);
@@ -165,7 +171,7 @@ public class AllianceService {
         return Tasks.whenAllSuccess(
             allianceRepository.read(allianceId),
             userRepository.read(leaderId)
-        ).continueWithTask(task -> {
+        ).continueWithTask(AppExecutors.background(), task -> {
             List<Object> results = task.getResult();
             Alliance alliance = (Alliance) results.get(0);
             User leader = (User) results.get(1);
@@ -187,7 +193,7 @@ public class AllianceService {
             for (String memberId : alliance.memberIds) {
                 memberTasks.add(
                     userRepository.read(memberId)
-                        .continueWithTask(memberTask -> {
+                        .continueWithTask(AppExecutors.background(), memberTask -> {
                             User member = memberTask.getResult();
                             if (member != null) {
                                 member.leaveAlliance();
@@ -200,7 +206,7 @@ public class AllianceService {
 
             // Delete alliance and update all members
             return Tasks.whenAllSuccess(memberTasks)
-                .continueWithTask(updateTask -> allianceRepository.delete(alliance));
+                .continueWithTask(AppExecutors.background(), updateTask -> allianceRepository.delete(alliance));
         });
     }
 
@@ -210,7 +216,7 @@ public class AllianceService {
 
     public Task<Alliance> getUserAlliance(String userId) {
         return userRepository.read(userId)
-            .continueWithTask(task -> {
+            .continueWithTask(AppExecutors.background(), task -> {
                 User user = task.getResult();
                 if (user == null || !user.isInAlliance()) {
                     return Tasks.forResult(null);
@@ -221,7 +227,7 @@ public class AllianceService {
 
     public Task<List<User>> getAllianceMembers(String allianceId) {
         return allianceRepository.read(allianceId)
-            .continueWithTask(task -> {
+            .continueWithTask(AppExecutors.background(), task -> {
                 Alliance alliance = task.getResult();
                 if (alliance == null || alliance.memberIds.isEmpty()) {
                     return Tasks.forResult(new ArrayList<>());
@@ -238,7 +244,7 @@ public class AllianceService {
 
     public Task<Void> setMissionActive(String allianceId, boolean active) {
         return allianceRepository.read(allianceId)
-            .continueWithTask(task -> {
+            .continueWithTask(AppExecutors.background(), task -> {
                 Alliance alliance = task.getResult();
                 if (alliance == null) {
                     throw new RuntimeException("Alliance not found");
@@ -253,7 +259,7 @@ public class AllianceService {
         return Tasks.whenAllSuccess(
             allianceRepository.read(allianceId),
             userRepository.read(senderId)
-        ).continueWithTask(task -> {
+        ).continueWithTask(AppExecutors.background(), task -> {
             List<Object> results = task.getResult();
             Alliance alliance = (Alliance) results.get(0);
             User sender = (User) results.get(1);
@@ -274,25 +280,32 @@ public class AllianceService {
                 sender.username, messageText);
 
             return messageRepository.createWithId(message)
-                    .continueWithTask(createTask -> {
+                    .continueWithTask(AppExecutors.background(), createTask -> {
                         return allianceMissionService.updateMissionProgress(
                                 allianceId, senderId, "MESSAGE"
                         );
                     })
-                    .continueWith(missionTask -> messageId);
+                    .continueWith(AppExecutors.background(), missionTask -> messageId);
         });
     }
 
-    public Task<List<AllianceMessage>> getAllianceMessages(String allianceId) {
-        return allianceRepository.read(allianceId)
-            .continueWithTask(task -> {
-                Alliance alliance = task.getResult();
-                if (alliance == null) {
-                    throw new RuntimeException("Alliance not found");
-                }
+    /**
+     * Poslednja strana poruka saveza (pozivalac već ima učitan savez).
+     */
+    public Task<AllianceMessageRepository.MessagePage> getLatestMessages(String allianceId) {
+        return messageRepository.getLatestMessages(allianceId, MESSAGE_PAGE_SIZE);
+    }
 
-                return messageRepository.getMessagesByAllianceId(allianceId);
-            });
+    public Task<AllianceMessageRepository.MessagePage> getOlderMessages(String allianceId, DocumentSnapshot before) {
+        return messageRepository.getMessagesBefore(allianceId, before, MESSAGE_PAGE_SIZE);
+    }
+
+    /**
+     * Sluša samo poruke poslate posle after (najnovije već učitane poruke).
+     */
+    public ListenerRegistration listenToNewMessages(String allianceId, DocumentSnapshot after,
+                                                    AllianceMessageRepository.NewMessagesListener listener) {
+        return messageRepository.listenToNewMessages(allianceId, after, listener);
     }
 
     public Task<Void> startSpecialMission(String allianceId, String leaderId) {
@@ -3,20 +3,29 @@ package com.kulenina.questix.service;
 import com.google.android.gms.tasks.Task;
 import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.auth.FirebaseAuth; // Dodao sam ga ovde jer ga CategoryService koristi
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
 import com.kulenina.questix.model.Category;
 import com.kulenina.questix.model.AppTask;
+import com.kulenina.questix.model.CalendarDensity;
 import com.kulenina.questix.model.QuotaState;
+import com.kulenina.questix.model.TaskOccurrence;
 import com.kulenina.questix.model.User;
+import com.kulenina.questix.model.UserStatistics;
 import com.kulenina.questix.repository.CategoryRepository;
 import com.kulenina.questix.repository.AppTaskRepository;
 import com.kulenina.questix.repository.UserRepository;
 import com.kulenina.questix.repository.QuotaStateRepository; // NOVO
+import com.kulenina.questix.repository.UserStatisticsRepository;
 import com.kulenina.questix.service.TaskGeneratorService;
+import com.kulenina.questix.util.AppExecutors;
 
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -28,8 +37,11 @@ public class AppTaskService {
     private final LevelProgressionService levelService;
     private final QuotaStateRepository quotaRepository; // NOVO
     private final TaskGeneratorService taskGeneratorService; // NOVO
+    private final UserStatisticsRepository statisticsRepository;
+    private final UserStatisticsService statisticsService;
 
     private final FirebaseAuth auth; // Dodao
+    private final FirebaseFirestore db;
 
     // Fiksne XP Vrednosti po Specifikaciji 2.1
     private static final int XP_VERY_EASY = 1;
@@ -50,6 +62,8 @@ public class AppTaskService {
 
     // Ograničenje: Koliko dana unazad se može rešiti zadatak
     private static final long MAX_RESOLUTION_TIME_MILLIS = TimeUnit.DAYS.toMillis(3);
+    // ID-jevi zadataka čiji je upis statusa "undone" u toku
+    private static final Set<String> sweepingTaskIds = ConcurrentHashMap.newKeySet();
     private final AllianceMissionService missionService;
 
     public AppTaskService() {
@@ -58,9 +72,12 @@ public class AppTaskService {
         this.userRepository = new UserRepository();
         this.levelService = new LevelProgressionService();
         this.auth = FirebaseAuth.getInstance(); // Inicijalizacija
+        this.db = FirebaseFirestore.getInstance();
         this.quotaRepository = new QuotaStateRepository(); // NOVO
         this.taskGeneratorService = new TaskGeneratorService(); // NOVO
         this.missionService = new AllianceMissionService();
+        this.statisticsRepository = new UserStatisticsRepository();
+        this.statisticsService = new UserStatisticsService();
     }
 
     private String getCurrentUserId() {
@@ -95,7 +112,7 @@ public class AppTaskService {
 
     public Task<Boolean> hasActiveTasksForCategory(String categoryId) {
         return taskRepository.findTasksByCategoryAndStatus(categoryId, AppTask.STATUS_ACTIVE)
-                .continueWith(task -> {
+                .continueWith(AppExecutors.background(), task -> {
                     List<AppTask> activeTasks = task.getResult();
                     // Dodajemo i filtriranje po userId da budemo sigurni
                     String userId = getCurrentUserId();
@@ -105,7 +122,7 @@ public class AppTaskService {
 
     public Task<Void> updateTasksColorByCategory(String categoryId, String newColorHex) {
         return taskRepository.findTasksByCategoryId(categoryId)
-                .continueWithTask(task -> {
+                .continueWithTask(AppExecutors.background(), task -> {
                     List<AppTask> tasksToUpdate = task.getResult();
                     String userId = getCurrentUserId();
 
@@ -134,7 +151,7 @@ public class AppTaskService {
         int totalXp = difficultyXp + importanceXp;
 
         return categoryRepository.read(categoryId)
-                .continueWithTask(task -> {
+                .continueWithTask(AppExecutors.background(), task -> {
                     Category category = task.getResult();
 
                     if (category == null || !userId.equals(category.getUserId())) {
@@ -154,7 +171,15 @@ public class AppTaskService {
                     }
 
                     return taskRepository.createWithId(newTask)
-                            .continueWith(createTask -> newTask.getId());
+                            .continueWith(AppExecutors.background(), createTask -> {
+                                recordStatistics(userId, statistics -> {
+                                    statistics.recordCreated(newTask);
+                                    if (newTask.isUndone()) {
+                                        statistics.recordMissed(newTask.executionTime);
+                                    }
+                                });
+                                return newTask.getId();
+                            });
                 });
     }
 
@@ -163,34 +188,38 @@ public class AppTaskService {
 
     // --- 2.2. Pregled zadataka (korigovana logika za kalendar) ---
 
-    public Task<List<AppTask>> getTaskOccurrencesByDateRange(String userId, long fromTime, long toTime) {
+    /**
+     * Sinhronizuje lokalnu kopiju zadataka korisnika sa Firestore-om.
+     * @return Broj lokalno promenjenih zadataka (0 znači da prikaz ne treba osvežavati).
+     */
+    public Task<Integer> syncTasks(String userId) {
+        return taskRepository.syncUser(userId);
+    }
 
-        return taskRepository.readAll()
-                .continueWith(task -> {
-                    List<AppTask> allTasks = task.getResult();
-                    List<AppTask> userTasks = allTasks.stream()
-                            .filter(t -> userId.equals(t.userId))
-                            .collect(Collectors.toList());
+    public Task<List<TaskOccurrence>> getTaskOccurrencesByDateRange(String userId, long fromTime, long toTime) {
+
+        // Filtriranje po korisniku i vremenu izvršenja radi server (firestore.indexes.json)
+        Task<List<AppTask>> oneTimeTask = taskRepository.findOneTimeByUserInRange(userId, fromTime, toTime);
+        Task<List<AppTask>> recurringTask = taskRepository.findRecurringByUserStartingBefore(userId, toTime);
+
+        return Tasks.whenAllSuccess(oneTimeTask, recurringTask)
+                .continueWith(AppExecutors.background(), task -> {
+                    List<AppTask> userTasks = new ArrayList<>(oneTimeTask.getResult());
+                    userTasks.addAll(recurringTask.getResult());
 
-                    List<AppTask> finalTaskList = new ArrayList<>();
+                    List<TaskOccurrence> finalTaskList = new ArrayList<>();
+
+                    // Zadaci aktivni duže od 3 dana posle izvršenja se označavaju kao "undone" jednim batch upisom
+                    sweepStaleTasks(userId, userTasks, System.currentTimeMillis());
 
                     for (AppTask t : userTasks) {
-                        // Check if task is older than 3 days past execution time and still active - mark as undone
-                        long now = System.currentTimeMillis();
-                        long threeDaysAfterExecution = t.executionTime + MAX_RESOLUTION_TIME_MILLIS;
-                        if (t.isActive() && now > threeDaysAfterExecution) {
-                            t.setStatus(AppTask.STATUS_UNDONE);
-                            // Update the task in database
-                            taskRepository.update(t);
-                        }
-                        
                         if (t.isRecurring) {
                             // Generišemo sve instance u traženom opsegu
-                            finalTaskList.addAll(taskGeneratorService.generateRecurringInstances(t, fromTime, toTime));
+                            finalTaskList.addAll(taskGeneratorService.generateRecurringOccurrences(t, fromTime, toTime));
                         } else {
                             // Jednokratni zadaci: Dodajemo ih samo ako su u opsegu datuma
                             if (t.executionTime >= fromTime && t.executionTime <= toTime) {
-                                finalTaskList.add(t);
+                                finalTaskList.add(TaskOccurrence.of(t));
                             }
                         }
                     }
@@ -200,68 +229,131 @@ public class AppTaskService {
                 });
     }
 
-    public Task<List<AppTask>> getTasksForList(String userId) {
-        long now = System.currentTimeMillis();
-        // Generišemo zadatke za period od 3 meseca unapred
-        long toTime = now + TimeUnit.DAYS.toMillis(90);
-
-        return taskRepository.readAll()
-                .continueWith(task -> {
-                    List<AppTask> allTasks = task.getResult();
-                    List<AppTask> finalTaskList = new ArrayList<>();
+    /**
+     * Broj zadataka po danu i po statusu za opseg (npr. mesec ili godina u kalendaru).
+     * Računa se u jednom prolazu kroz indekse ponavljanja (TaskGeneratorService.countRecurringOccurrences),
+     * bez pravljenja TaskOccurrence objekata. Ponavljanja se računaju kroz ceo opseg, i posle 90 dana
+     * do kojih ih generiše lista.
+     */
+    public Task<CalendarDensity> getCalendarDensity(String userId, long fromTime, long toTime) {
+        CalendarDensity density = CalendarDensity.forRange(fromTime, toTime);
+        long rangeStart = density.getRangeStart();
+        long rangeEnd = density.getRangeEnd();
+
+        Task<List<AppTask>> oneTimeTask = taskRepository.findOneTimeByUserInRange(userId, rangeStart, rangeEnd);
+        Task<List<AppTask>> recurringTask = taskRepository.findRecurringByUserStartingBefore(userId, rangeEnd);
+
+        return Tasks.whenAllSuccess(oneTimeTask, recurringTask)
+                .continueWith(AppExecutors.background(), task -> {
+                    for (AppTask t : oneTimeTask.getResult()) {
+                        density.add(t.executionTime, t.status);
+                    }
+                    for (AppTask t : recurringTask.getResult()) {
+                        taskGeneratorService.countRecurringOccurrences(t, rangeStart, rangeEnd, density);
+                    }
+                    return density;
+                });
+    }
 
-                    // 1. Prikupljamo samo zadatke ulogovanog korisnika
-                    List<AppTask> userTasks = allTasks.stream()
-                            .filter(t -> userId.equals(t.userId))
-                            .collect(Collectors.toList());
+    /**
+     * Ponavljanja jednog zadatka u opsegu; prazna lista ako zadatak više ne postoji.
+     * Kalendar posle izmene zadatka ovim osvežava samo dane tog zadatka (CalendarOccurrenceCache).
+     */
+    public Task<List<TaskOccurrence>> getTaskOccurrencesForTask(String userId, String taskId, long fromTime, long toTime) {
+        return taskRepository.read(taskId)
+                .continueWith(AppExecutors.background(), task -> {
+                    AppTask t = task.getResult();
+                    List<TaskOccurrence> occurrences = new ArrayList<>();
+                    if (t == null || !userId.equals(t.getUserId())) {
+                        return occurrences;
+                    }
 
-                    for (AppTask t : userTasks) {
-                        // Check if task is older than 3 days past execution time and still active - mark as undone
-                        long threeDaysAfterExecution = t.executionTime + MAX_RESOLUTION_TIME_MILLIS;
-                        if (t.isActive() && now > threeDaysAfterExecution) {
-                            t.setStatus(AppTask.STATUS_UNDONE);
-                            // Update the task in database
-                            taskRepository.update(t);
-                        }
-                        
-                        if (t.isRecurring) {
-                            // Generišemo instance (including past ones that might be undone)
-                            finalTaskList.addAll(taskGeneratorService.generateRecurringInstances(t, now - TimeUnit.DAYS.toMillis(30), toTime));
-                        } else {
-                            // Jednokratni zadaci: Dodajemo aktivne i pauzirane zadatke
-                            if (t.isActive() || t.isPaused()) {
-                                finalTaskList.add(t);
-                            }
-                        }
+                    if (t.isRecurring) {
+                        occurrences.addAll(taskGeneratorService.generateRecurringOccurrences(t, fromTime, toTime));
+                    } else if (t.executionTime >= fromTime && t.executionTime <= toTime) {
+                        occurrences.add(TaskOccurrence.of(t));
                     }
+                    return occurrences;
+                });
+    }
 
-                    // 2. Show active, paused, and canceled tasks (canceled only if execution time hasn't passed)
-                    return finalTaskList.stream()
-                            .filter(appTask -> {
-                                System.out.println("DEBUG: Filtering task - ID: " + appTask.id + ", Status: " + appTask.status + ", ExecutionTime: " + appTask.executionTime);
-                                
-                                // Always show active and paused tasks
-                                if (appTask.isActive() || appTask.isPaused()) {
-                                    System.out.println("DEBUG: Task is active or paused - SHOWING");
-                                    return true;
-                                }
-                                
-                                // Show canceled tasks only if execution time hasn't passed yet
-                                if (appTask.status.equals(AppTask.STATUS_CANCELED)) {
-                                    long currentTime = System.currentTimeMillis();
-                                    boolean shouldShow = appTask.executionTime >= currentTime;
-                                    System.out.println("DEBUG: Canceled task - CurrentTime: " + currentTime + ", ShouldShow: " + shouldShow);
-                                    return shouldShow;
-                                }
-                                
-                                // Don't show other statuses (done, missed, undone)
-                                System.out.println("DEBUG: Task has other status - HIDING");
-                                return false;
-                            })
-                            .collect(Collectors.toList());
+    public Task<List<TaskOccurrence>> getTasksForList(String userId) {
+        // 1. Prikupljamo samo zadatke ulogovanog korisnika sa statusima koji se prikazuju u listi
+        return taskRepository.findByUserAndStatuses(userId,
+                        AppTask.STATUS_ACTIVE, AppTask.STATUS_PAUSED, AppTask.STATUS_CANCELED)
+                .continueWith(AppExecutors.background(), task -> {
+                    long now = System.currentTimeMillis();
+                    sweepStaleTasks(userId, task.getResult(), now);
+
+                    List<TaskOccurrence> finalTaskList = new ArrayList<>();
+                    for (AppTask t : task.getResult()) {
+                        finalTaskList.addAll(getListOccurrences(t, now));
+                    }
+                    return finalTaskList;
                 });
     }
 
+    public interface TaskListListener {
+        void onTasksForList(List<TaskOccurrence> tasks);
+        void onError(String message);
+    }
+
+    /**
+     * Real-time lista zadataka. Posle prvog učitavanja, za svaku promenu se ponovo
+     * računaju samo ponavljanja izmenjenih zadataka (TaskListModel).
+     * Listener se poziva na pozadinskoj niti (AppExecutors.background()).
+     * @return ListenerRegistration za ručno uklanjanje listenera.
+     */
+    public ListenerRegistration listenToTasksForList(String userId, TaskListListener listener) {
+        TaskListModel model = new TaskListModel(this::getListOccurrences);
+        return taskRepository.listenToUserTasks(userId, new AppTaskRepository.TaskChangeListener() {
+            @Override
+            public void onTasksChanged(List<AppTask> upserted, List<String> removedIds) {
+                long now = System.currentTimeMillis();
+                sweepStaleTasks(userId, upserted, now);
+                model.apply(upserted, removedIds, now);
+                listener.onTasksForList(model.getOccurrences());
+            }
+
+            @Override
+            public void onError(String message) {
+                listener.onError(message);
+            }
+        });
+    }
+
+    /**
+     * Ponavljanja jednog zadatka koja se prikazuju u listi.
+     * Zastareli zadaci se pre toga označe kao "undone" (sweepStaleTasks).
+     */
+    List<TaskOccurrence> getListOccurrences(AppTask t, long now) {
+        List<TaskOccurrence> shown = new ArrayList<>();
+
+        // U listi su samo aktivni, pauzirani i otkazani zadaci
+        if (!t.isActive() && !AppTask.STATUS_CANCELED.equals(t.status)) {
+            return shown;
+        }
+
+        List<TaskOccurrence> occurrences = new ArrayList<>();
+        if (t.isRecurring) {
+            // Generišemo instance za period od 3 meseca unapred (including past ones that might be undone)
+            long toTime = now + TimeUnit.DAYS.toMillis(90);
+            occurrences.addAll(taskGeneratorService.generateRecurringOccurrences(t, now - TimeUnit.DAYS.toMillis(30), toTime));
+        } else if (t.isActive() || t.isPaused()) {
+            // Jednokratni zadaci: Dodajemo aktivne i pauzirane zadatke
+            occurrences.add(TaskOccurrence.of(t));
+        }
+
+        // 2. Show active, paused, and canceled tasks (canceled only if execution time hasn't passed)
+        for (TaskOccurrence occurrence : occurrences) {
+            if (occurrence.isActive() || (occurrence.isCanceled() && occurrence.executionTime >= now)) {
+                shown.add(occurrence);
+            }
+            // Don't show other statuses (done, missed, undone)
+        }
+        return shown;
+    }
+
     // --- 2.3. Izmena i brisanje zadataka (Vaš kod je bio dobar, minimalno dopunjen) ---
 
     public Task<Void> deleteTask(String taskId) {
@@ -278,7 +370,7 @@ public class AppTaskService {
         }
 
         return taskRepository.read(originalTaskId)
-                .continueWithTask(task -> {
+                .continueWithTask(AppExecutors.background(), task -> {
                     AppTask appTask = task.getResult();
 
                     if (appTask == null || !userId.equals(appTask.getUserId())) {
@@ -326,9 +418,12 @@ public class AppTaskService {
                         // For recurring tasks, mark as canceled instead of deleting
                         // This stops future instance generation but preserves completed instances
                         appTask.setStatus(AppTask.STATUS_CANCELED);
+                        recordStatistics(userId, statistics -> statistics.recordCanceled());
                         return taskRepository.update(appTask);
                     } else {
                         // For non-recurring tasks, delete the specific task
+                        recordStatistics(userId, statistics -> statistics.recordDeleted(appTask));
+                        taskGeneratorService.evictOccurrenceIndex(originalTaskId);
                         return taskRepository.delete(originalTaskId);
                     }
                 });
@@ -360,7 +455,7 @@ public class AppTaskService {
         System.out.println("DEBUG: originalTaskId: " + originalTaskId);
 
         return taskRepository.read(originalTaskId)
-                .continueWithTask(task -> {
+                .continueWithTask(AppExecutors.background(), task -> {
                     System.out.println("DEBUG: Task read completed, success: " + task.isSuccessful());
                     AppTask appTask = task.getResult();
 
@@ -436,12 +531,30 @@ public class AppTaskService {
 
     // --- 2.4. Rešavanje zadataka (Potpuna Implementacija) ---
 
+    /**
+     * Ishod transakcije rešavanja zadatka; ostatak posla (statistika, misija) ide posle potvrde.
+     */
+    private static class ResolveResult {
+        AppTask task;
+        User user;
+        boolean tooOld;
+        boolean xpAwarded;
+        // Zbirna statistika još ne postoji; pravi se iz zadataka posle potvrde
+        boolean statisticsMissing;
+    }
+
+    /**
+     * Rešava zadatak jednom transakcijom: zadatak, kvota i korisnik se čitaju jednom, a status,
+     * kvota, XP, nivo i power points se upisuju zajedno. Doprinos misiji saveza ide posle potvrde,
+     * asinhrono, i ne utiče na ishod.
+     */
     public Task<Void> resolveTask(String taskId, String newStatus) {
         String userId = getCurrentUserId();
 
         // Check if this is a recurring task instance (has timestamp suffix)
         final String originalTaskId;
-        if (taskId.contains("_") && taskId.length() > 20) {
+        final boolean isInstanceId = taskId.contains("_") && taskId.length() > 20;
+        if (isInstanceId) {
             // This is likely a generated instance ID, extract the original task ID
             int lastUnderscoreIndex = taskId.lastIndexOf("_");
             originalTaskId = taskId.substring(0, lastUnderscoreIndex);
@@ -449,9 +562,8 @@ public class AppTaskService {
             originalTaskId = taskId;
         }
 
-        return taskRepository.read(originalTaskId)
-                .continueWithTask(task -> {
-                    AppTask appTask = task.getResult();
+        return db.runTransaction(transaction -> {
+                    AppTask appTask = taskRepository.read(transaction, originalTaskId);
 
                     // Provera 1: Postojanje i autorizacija
                     if (appTask == null || !userId.equals(appTask.getUserId())) {
@@ -470,11 +582,11 @@ public class AppTaskService {
 
                     // Provera 2.6: Tasks that are more than 3 days past execution time cannot be modified
                     long now = System.currentTimeMillis();
-                    
+
                     // For recurring tasks, check the specific instance execution time
                     // For non-recurring tasks, check the task's execution time
                     long executionTimeToCheck;
-                    if (appTask.isRecurring && taskId.contains("_") && taskId.length() > 20) {
+                    if (appTask.isRecurring && isInstanceId) {
                         // This is a recurring task instance, extract the execution time from the ID
                         try {
                             String[] parts = taskId.split("_");
@@ -490,7 +602,8 @@ public class AppTaskService {
                         // Non-recurring task or original recurring task
                         executionTimeToCheck = appTask.executionTime;
                     }
-                    
+                    final long occurrenceTime = executionTimeToCheck;
+
                     long threeDaysAfterExecution = executionTimeToCheck + MAX_RESOLUTION_TIME_MILLIS;
                     if (now > threeDaysAfterExecution) {
                         throw new RuntimeException("Cannot modify tasks that are more than 3 days past their execution time.");
@@ -502,116 +615,217 @@ public class AppTaskService {
                     }
 
                     // Provera 4: Vreme izvršenja (Ne može se uraditi zadatak u budućnosti)
-                    if (newStatus.equals(AppTask.STATUS_DONE) && appTask.executionTime > System.currentTimeMillis()) {
+                    if (newStatus.equals(AppTask.STATUS_DONE) && occurrenceTime > now) {
                         throw new RuntimeException("Cannot mark future tasks as done.");
                     }
 
+                    ResolveResult result = new ResolveResult();
+                    result.task = appTask;
+
+                    boolean isDone = newStatus.equals(AppTask.STATUS_DONE);
+                    boolean isCanceled = newStatus.equals(AppTask.STATUS_CANCELED);
+
+                    // Urađeno/otkazano ponavljanje se pamti samo za to ponavljanje (occurrenceStatuses);
+                    // pauziranje i dalje važi za ceo niz
+                    boolean resolvesOccurrence = (isDone || isCanceled) && appTask.isRecurring && isInstanceId
+                            && occurrenceTime != appTask.executionTime;
+                    if (resolvesOccurrence && appTask.getOccurrenceStatus(occurrenceTime) != null) {
+                        throw new RuntimeException("Only active tasks can be resolved/paused.");
+                    }
+
+                    // Statistika se menja u istoj transakciji; čita se pre prvog upisa
+                    UserStatistics statistics = isDone || isCanceled
+                            ? statisticsRepository.read(transaction, userId)
+                            : null;
+                    result.statisticsMissing = (isDone || isCanceled) && statistics == null;
+
                     // Provera 5: Vreme izvršenja (Ne može se rešiti zadatak stariji od 3 dana)
-                    if (newStatus.equals(AppTask.STATUS_DONE) || newStatus.equals(AppTask.STATUS_CANCELED)) {
-                        long threeDaysAgo = System.currentTimeMillis() - MAX_RESOLUTION_TIME_MILLIS;
-                        if (appTask.executionTime < threeDaysAgo) {
-                            // Zadatak je previše star, već je trebao da pređe u "Undone"
-                            appTask.setStatus(AppTask.STATUS_UNDONE);
-                            return taskRepository.update(appTask)
-                                    .continueWith(t -> {
-                                        throw new RuntimeException("The task is too old and has been marked as undone.");
-                                    });
+                    if (isDone || isCanceled) {
+                        long resolvedTime = resolvesOccurrence ? occurrenceTime : appTask.executionTime;
+                        if (isTooOldToResolve(resolvedTime, now)) {
+                            // Zadatak je previše star, već je trebao da pređe u "Undone";
+                            // status se upisuje, a greška se baca tek posle potvrde transakcije
+                            if (resolvesOccurrence) {
+                                appTask.setOccurrenceStatus(occurrenceTime, AppTask.STATUS_UNDONE);
+                                taskRepository.updateOccurrenceStatus(transaction, appTask, occurrenceTime);
+                            } else {
+                                appTask.setStatus(AppTask.STATUS_UNDONE);
+                                taskRepository.updateStatus(transaction, appTask);
+                            }
+                            if (statistics != null) {
+                                statisticsRepository.applyUpdate(transaction, statistics,
+                                        stats -> stats.recordMissed(resolvedTime));
+                            }
+                            result.tooOld = true;
+                            return result;
                         }
                     }
 
-                    // Ažuriranje statusa i snimanje
-                    appTask.setStatus(newStatus);
-                    Task<Void> updateTask = taskRepository.update(appTask);
+                    // Sva čitanja moraju biti pre prvog upisa u transakciji
+                    String quotaType = isDone ? getQuotaType(appTask.difficulty, appTask.importance) : null;
+                    String quotaId = quotaType != null ? getQuotaPeriodUnit(quotaType).toLowerCase() + "_" + userId : null;
+                    QuotaState quota = quotaId != null ? quotaRepository.read(transaction, quotaId) : null;
+                    User user = isDone ? userRepository.read(transaction, userId) : null;
+                    if (isDone && user == null) {
+                        throw new RuntimeException("User not found");
+                    }
+
+                    // Ažuriranje statusa
+                    if (resolvesOccurrence) {
+                        appTask.setOccurrenceStatus(occurrenceTime, newStatus);
+                        taskRepository.updateOccurrenceStatus(transaction, appTask, occurrenceTime);
+                    } else {
+                        appTask.setStatus(newStatus);
+                        taskRepository.updateStatus(transaction, appTask);
+                    }
+                    long completedAt = resolvesOccurrence ? appTask.updatedAt : appTask.completedAt;
+
+                    // Dodeljivanje XP-a (u okviru kvote, ako zadatak spada u neku)
+                    if (isDone) {
+                        long periodStart = quotaType != null ? getPeriodTimestamp(getQuotaPeriodUnit(quotaType)) : 0;
+                        QuotaDecision decision = decideQuota(quotaType, quota, quotaId, userId, periodStart);
+                        if (decision.updatedQuota != null) {
+                            quotaRepository.set(transaction, decision.updatedQuota);
+                        }
+
+                        boolean awardXp = decision.awardXp;
+                        if (awardXp) {
+                            int levelsGained = levelService.applyXp(user, appTask.totalXpValue);
+                            userRepository.updateProgress(transaction, user, appTask.totalXpValue, levelsGained > 0);
+                        }
+                        result.user = user;
+                        result.xpAwarded = awardXp;
+                    }
+
+                    if (statistics != null && isDone) {
+                        statisticsRepository.applyUpdate(transaction, statistics,
+                                stats -> stats.recordCompleted(appTask, completedAt));
+                    } else if (statistics != null && isCanceled) {
+                        statisticsRepository.applyUpdate(transaction, statistics, stats -> stats.recordCanceled());
+                    }
+                    return result;
+                })
+                .continueWith(AppExecutors.background(), task -> {
+                    ResolveResult result = task.getResult();
+                    AppTask appTask = result.task;
+                    taskRepository.saveLocal(appTask);
+                    if (result.statisticsMissing) {
+                        // Backfill iz zadataka uključuje i ovu izmenu
+                        statisticsService.rebuildStatistics(userId)
+                                .addOnFailureListener(AppExecutors.background(), e -> System.out.println("DEBUG: Failed to build user statistics: " + e.getMessage()));
+                    }
+
+                    if (result.tooOld) {
+                        throw new RuntimeException("The task is too old and has been marked as undone.");
+                    }
 
-                    // Dodeljivanje XP-a
                     if (newStatus.equals(AppTask.STATUS_DONE)) {
-                        return handleXpAward(appTask).continueWithTask(xpTask -> {
-                            // --- POZIV ZA SPECIJALNU MISIJU ---
-                            return userRepository.read(appTask.userId).continueWithTask(userTask -> {
-                                User user = userTask.getResult();
-                                System.out.println("DEBUG: AppTaskService.resolveTask() - User: " + (user != null ? user.username : "null") + 
-                                        ", isInAlliance: " + (user != null ? user.isInAlliance() : "N/A"));
-                                
-                                if (user != null && user.isInAlliance()) {
-                                    String actionType = getMissionTaskActionType(appTask.difficulty, appTask.importance);
-                                    System.out.println("DEBUG: AppTaskService.resolveTask() - Task difficulty: " + appTask.difficulty + 
-                                            ", importance: " + appTask.importance + ", actionType: " + actionType);
-                                    
-                                    if (actionType != null) {
-                                        System.out.println("DEBUG: AppTaskService.resolveTask() - Calling updateMissionProgress with actionType: " + actionType);
-                                        return missionService.updateMissionProgress(user.currentAllianceId, appTask.userId, actionType)
-                                                .continueWith(missionUpdateTask -> {
-                                                    if (missionUpdateTask.isSuccessful() && missionUpdateTask.getResult()) {
-                                                        System.out.println("DEBUG: AppTaskService.resolveTask() - Mission progress updated successfully for task completion");
-                                                    } else {
-                                                        System.out.println("DEBUG: AppTaskService.resolveTask() - Failed to update mission progress for task completion: " + 
-                                                                (missionUpdateTask.getException() != null ? missionUpdateTask.getException().getMessage() : "Unknown error"));
-                                                    }
-                                                    return null;
-                                                });
-                                    } else {
-                                        System.out.println("DEBUG: AppTaskService.resolveTask() - Task does not contribute to mission (actionType is null)");
-                                    }
-                                } else {
-                                    System.out.println("DEBUG: AppTaskService.resolveTask() - User not in alliance or user is null");
-                                }
-                                return Tasks.forResult(null);
-                            }).continueWithTask(missionTask -> updateTask);
-                            // ---------------------------------
-                        });
+                        System.out.println("DEBUG: AppTaskService.resolveTask() - XP awarded: " + result.xpAwarded);
+                        contributeToMission(appTask, result.user);
                     }
+                    return null;
+                });
+    }
+
+    /**
+     * Doprinos specijalnoj misiji saveza za urađen zadatak. Ne čeka se; greške se samo beleže.
+     */
+    private void contributeToMission(AppTask appTask, User user) {
+        System.out.println("DEBUG: AppTaskService.resolveTask() - User: " + (user != null ? user.username : "null") +
+                ", isInAlliance: " + (user != null ? user.isInAlliance() : "N/A"));
+
+        if (user == null || !user.isInAlliance()) {
+            System.out.println("DEBUG: AppTaskService.resolveTask() - User not in alliance or user is null");
+            return;
+        }
+
+        String actionType = getMissionTaskActionType(appTask.difficulty, appTask.importance);
+        System.out.println("DEBUG: AppTaskService.resolveTask() - Task difficulty: " + appTask.difficulty +
+                ", importance: " + appTask.importance + ", actionType: " + actionType);
+        if (actionType == null) {
+            System.out.println("DEBUG: AppTaskService.resolveTask() - Task does not contribute to mission (actionType is null)");
+            return;
+        }
 
-                    return updateTask;
+        System.out.println("DEBUG: AppTaskService.resolveTask() - Calling updateMissionProgress with actionType: " + actionType);
+        missionService.updateMissionProgress(user.currentAllianceId, appTask.userId, actionType)
+                .addOnCompleteListener(AppExecutors.background(), missionUpdateTask -> {
+                    if (missionUpdateTask.isSuccessful() && missionUpdateTask.getResult()) {
+                        System.out.println("DEBUG: AppTaskService.resolveTask() - Mission progress updated successfully for task completion");
+                    } else {
+                        System.out.println("DEBUG: AppTaskService.resolveTask() - Failed to update mission progress for task completion: " +
+                                (missionUpdateTask.getException() != null ? missionUpdateTask.getException().getMessage() : "Unknown error"));
+                    }
                 });
     }
 
-    private Task<Void> handleXpAward(AppTask appTask) {
-        String quotaType = getQuotaType(appTask.difficulty, appTask.importance);
-        String periodUnit;
-        int maxCount;
+    /**
+     * Odluka o XP-u za urađen zadatak: da li se XP dodeljuje i koja kvota se upisuje.
+     */
+    static final class QuotaDecision {
+        final boolean awardXp;
+        final QuotaState updatedQuota; // null ako se kvota ne menja
 
+        QuotaDecision(boolean awardXp, QuotaState updatedQuota) {
+            this.awardXp = awardXp;
+            this.updatedQuota = updatedQuota;
+        }
+    }
+
+    /**
+     * Primena kvote na urađen zadatak, bez čitanja i upisa (resolveTask upisuje updatedQuota u transakciji).
+     * @param quotaType Tip kvote zadatka, ili null ako zadatak ne spada ni u jednu kvotu (XP se dodeljuje).
+     * @param quota Sačuvano stanje kvote (null ako ga nema); uvećava se samo ako je iz tekućeg perioda.
+     * @param periodStart Početak tekućeg perioda kvote; brojači iz ranijeg perioda kreću od nule.
+     */
+    static QuotaDecision decideQuota(String quotaType, QuotaState quota, String quotaId, String userId, long periodStart) {
+        if (quotaType == null) {
+            return new QuotaDecision(true, null);
+        }
+
+        QuotaState current = quota;
+        if (current == null || current.timestamp != periodStart) {
+            // Prvi zadatak u novom periodu: brojači kreću od nule
+            current = new QuotaState(quotaId, userId, periodStart);
+        }
+        if (current.getCount(quotaType) >= getQuotaMax(quotaType)) {
+            return new QuotaDecision(false, null);
+        }
+        current.increment(quotaType);
+        return new QuotaDecision(true, current);
+    }
+
+    /**
+     * Da li je zadatak (ili ponavljanje) stariji od MAX_RESOLUTION_TIME_MILLIS: takav se ne rešava,
+     * već prelazi u "undone".
+     */
+    static boolean isTooOldToResolve(long resolvedTime, long now) {
+        return resolvedTime < now - MAX_RESOLUTION_TIME_MILLIS;
+    }
+
+    private static String getQuotaPeriodUnit(String quotaType) {
         switch (quotaType) {
-            case "VE_N":
-            case "E_I":
-            case "H_EI":
-                periodUnit = "Day";
-                maxCount = (quotaType.equals("H_EI")) ? QUOTA_HARD_EXTREMELY_IMPORTANT_DAILY : QUOTA_VERY_EASY_NORMAL_DAILY;
-                break;
             case "EH":
-                periodUnit = "Week";
-                maxCount = QUOTA_EXTREMELY_HARD_WEEKLY;
-                break;
+                return "Week";
             case "S":
-                periodUnit = "Month";
-                maxCount = QUOTA_SPECIAL_MONTHLY;
-                break;
+                return "Month";
             default:
-                // Zadatak ne spada ni u jednu kvotu (npr. Lak + Normalan se ne kvotira)
-                return Tasks.forResult(null);
+                return "Day";
         }
+    }
 
-        long periodStart = getPeriodTimestamp(periodUnit);
-        String quotaId = periodUnit.toLowerCase() + "_" + appTask.userId;
-
-        // 1. Provera i povećanje kvote putem transakcije
-        return quotaRepository.runQuotaTransaction(
-                        new QuotaState(quotaId, appTask.userId, periodStart),
-                        quotaType, maxCount)
-                .continueWithTask(transactionTask -> {
-                    QuotaState updatedState = transactionTask.getResult();
-
-                    if (updatedState == null) {
-                        // Transakcija je vratila null -> Kvota ispunjena. XP se ne dodeljuje.
-                        return Tasks.forResult(null);
-                    }
-
-                    // 2. Ako je transakcija uspešna (kvota povećana), dodeli XP
-                    return levelService.awardXpAndCheckLevelUp(appTask.userId, appTask.totalXpValue)
-                            .continueWith(task -> null);
-                });
+    private static int getQuotaMax(String quotaType) {
+        switch (quotaType) {
+            case "VE_N": return QUOTA_VERY_EASY_NORMAL_DAILY;
+            case "E_I": return QUOTA_EASY_IMPORTANT_DAILY;
+            case "H_EI": return QUOTA_HARD_EXTREMELY_IMPORTANT_DAILY;
+            case "EH": return QUOTA_EXTREMELY_HARD_WEEKLY;
+            case "S": return QUOTA_SPECIAL_MONTHLY;
+            default: throw new IllegalArgumentException("Invalid quota type: " + quotaType);
+        }
     }
 
-    private String getQuotaType(String difficulty, String importance) {
+    static String getQuotaType(String difficulty, String importance) {
         if (difficulty.equals("Very Easy") && importance.equals("Normal")) {
             return "VE_N";
         }
@@ -633,37 +847,69 @@ public class AppTaskService {
     }
 
     /**
-     * Proverava sve aktivne zadatke starije od 3 dana i automatski ih označava kao Missed.
+     * Označava kao "undone" sve aktivne/pauzirane zadatke korisnika starije od 3 dana.
+     * @return Broj zadataka kojima je promenjen status.
      */
-    public Task<Void> checkAndMarkMissedTasks(String userId) {
-        long threeDaysAgo = System.currentTimeMillis() - MAX_RESOLUTION_TIME_MILLIS;
+    public Task<Integer> checkAndMarkMissedTasks(String userId) {
+        long now = System.currentTimeMillis();
+        long threeDaysAgo = now - MAX_RESOLUTION_TIME_MILLIS;
 
-        // Treba nam nova metoda u AppTaskRepository: findActiveTasksOlderThan()
-        // Pretpostavljamo da taskRepository.readAll() vraća sve zadatke.
+        return taskRepository.findByUserAndStatusesBefore(userId, threeDaysAgo,
+                        AppTask.STATUS_ACTIVE, AppTask.STATUS_PAUSED)
+                .continueWithTask(AppExecutors.background(), task -> {
+                    List<AppTask> missedTasks = task.getResult();
+                    if (missedTasks == null) return Tasks.forResult(0);
 
-        return taskRepository.readAll()
-                .continueWithTask(task -> {
-                    List<AppTask> allTasks = task.getResult();
-                    List<Task<Void>> updateTasks = new ArrayList<>();
+                    return sweepStaleTasks(userId, missedTasks, now);
+                });
+    }
 
-                    if (allTasks == null) return Tasks.forResult(null);
+    /**
+     * Zadatke koji su aktivni (ili pauzirani) duže od 3 dana posle vremena izvršenja označava
+     * kao "undone": status se menja odmah u memoriji, upis ide u WriteBatch delovima,
+     * a flag propuštenog zadatka u misiji se postavlja najviše jednom po prolazu.
+     * @return Broj zadataka kojima je promenjen status.
+     */
+    Task<Integer> sweepStaleTasks(String userId, List<AppTask> tasks, long now) {
+        List<AppTask> staleTasks = new ArrayList<>();
+        for (AppTask t : tasks) {
+            if (t.isActive() && now > t.executionTime + MAX_RESOLUTION_TIME_MILLIS) {
+                t.setStatus(AppTask.STATUS_UNDONE);
+                // Zadatak koji je već u upisu (npr. istovremeno čitanje liste i kalendara) se preskače
+                if (sweepingTaskIds.add(t.getId())) {
+                    staleTasks.add(t);
+                }
+            }
+        }
 
-                    List<AppTask> missedTasks = allTasks.stream()
-                            .filter(t -> userId.equals(t.userId))
-                            .filter(AppTask::isActive)
-                            .filter(t -> t.executionTime < threeDaysAgo)
-                            .collect(Collectors.toList());
+        if (staleTasks.isEmpty()) {
+            return Tasks.forResult(0);
+        }
 
-                    for (AppTask t : missedTasks) {
-                        t.setStatus(AppTask.STATUS_UNDONE);
-                        updateTasks.add(taskRepository.update(t));
-                        updateTasks.add(missionService.setMissedTaskFlag(userId));
+        // Propušteni zadaci ulaze u statistiku u istom batch-u kao i njihov status
+        return taskRepository.batchUpdateStatuses(staleTasks,
+                        (batch, chunk) -> statisticsRepository.recordMissed(batch, userId, chunk))
+                .continueWithTask(AppExecutors.background(), batchTask -> {
+                    for (AppTask t : staleTasks) {
+                        sweepingTaskIds.remove(t.getId());
                     }
-
-                    return Tasks.whenAll(updateTasks);
+                    if (!batchTask.isSuccessful()) {
+                        return Tasks.forException(batchTask.getException());
+                    }
+                    return missionService.setMissedTaskFlag(userId)
+                            .continueWith(AppExecutors.background(), flagTask -> staleTasks.size());
                 });
     }
 
+    /**
+     * Ažurira zbirnu statistiku korisnika (transakcija). Greška ne prekida akciju nad zadatkom,
+     * jer se statistika uvek može ponovo izračunati iz zadataka (UserStatisticsService.rebuildStatistics).
+     */
+    private void recordStatistics(String userId, UserStatisticsRepository.StatisticsUpdate update) {
+        statisticsRepository.applyUpdate(userId, update)
+                .addOnFailureListener(AppExecutors.background(), e -> System.out.println("DEBUG: Failed to update user statistics: " + e.getMessage()));
+    }
+
     private long getPeriodTimestamp(String periodUnit) {
         Calendar cal = Calendar.getInstance();
         if ("Day".equals(periodUnit)) {
@@ -711,7 +957,7 @@ public class AppTaskService {
         final long requestedExecutionTime = tempRequestedExecutionTime;
 
         return taskRepository.read(originalTaskId)
-                .continueWith(task -> {
+                .continueWith(AppExecutors.background(), task -> {
                     AppTask appTask = task.getResult();
 
                     if (appTask == null) {
@@ -6,6 +6,7 @@ import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.kulenina.questix.repository.UserRepository;
 import com.kulenina.questix.model.User;
+import com.kulenina.questix.util.AppExecutors;
 
 public class AuthService {
 	private final FirebaseAuth mAuth;
@@ -31,7 +32,7 @@ public class AuthService {
 
 	public Task<AuthResult> signupUser(String email, String password, String username, String avatar) {
 		return mAuth.createUserWithEmailAndPassword(email, password)
-			.continueWithTask(authTask -> {
+			.continueWithTask(AppExecutors.background(), authTask -> {
 				if (authTask.isSuccessful()) {
 					return createUserProfile(authTask, username, avatar);
 				} else {
@@ -54,7 +55,7 @@ public class AuthService {
 		userObj.avatar = avatar;
 
 		return userRepository.createWithId(userObj)
-			.continueWithTask(repoTask -> {
+			.continueWithTask(AppExecutors.background(), repoTask -> {
 				if (repoTask.isSuccessful()) {
 					return authTask;
 				} else {
@@ -97,7 +98,7 @@ public class AuthService {
 		}
 
 		return mAuth.signInWithEmailAndPassword(email, currentPassword)
-			.continueWithTask(authTask -> {
+			.continueWithTask(AppExecutors.background(), authTask -> {
 				if (authTask.isSuccessful()) {
 					// Re-authentication successful, now update password
 					return user.updatePassword(newPassword);
@@ -0,0 +1,283 @@
+package com.kulenina.questix.service;
+
+import com.kulenina.questix.mapper.IMapper;
+import com.kulenina.questix.mapper.Mappers;
+import com.kulenina.questix.model.BossBattle;
+import com.kulenina.questix.model.Clothing;
+import com.kulenina.questix.model.CombatStats;
+import com.kulenina.questix.model.Equipment;
+import com.kulenina.questix.model.User;
+import com.kulenina.questix.model.Weapon;
+import com.kulenina.questix.repository.BattleCheckpointStore;
+import com.kulenina.questix.util.AppExecutors;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Jedna bitka sa bosom u memoriji. Napadi se računaju odmah iz CombatStats, bez čitanja
+ * i upisa u Firestore; konačan ishod upisuje BossBattleService.finishSession jednom transakcijom.
+ * Posle svakog napada stanje se snima lokalno (BattleCheckpointStore), pa se bitka posle
+ * pada aplikacije nastavlja od poslednjeg napada, a neupisan ishod se upisuje pri sledećem ulasku.
+ */
+public class BattleSession {
+
+    private static final IMapper<BossBattle> battleMapper = Mappers.get(BossBattle.class);
+
+    private final User user;
+    private final BossBattle bossBattle;
+    private final CombatStats combatStats;
+    // revision bitke u bazi kada je sesija počela; završni upis važi samo ako se nije promenila
+    private final long startRevision;
+    private final AllianceMissionService allianceMissionService;
+    private final BattleCheckpointStore checkpointStore;
+    private final Random random = new Random();
+
+    private BossBattleService.BattleResult finalResult;
+    // Stanje bitke u trenutku završetka; upisuje ga finishSession, nezavisno od kasnijih izmena modela
+    private Map<String, Object> finalBattleState;
+
+    BattleSession(User user, BossBattle bossBattle, CombatStats combatStats,
+                  AllianceMissionService allianceMissionService, BattleCheckpointStore checkpointStore) {
+        this(user, bossBattle, combatStats, bossBattle.revision, allianceMissionService, checkpointStore);
+    }
+
+    private BattleSession(User user, BossBattle bossBattle, CombatStats combatStats, long startRevision,
+                          AllianceMissionService allianceMissionService, BattleCheckpointStore checkpointStore) {
+        if (!user.getId().equals(bossBattle.getUserId())) {
+            throw new RuntimeException("Permission denied");
+        }
+        this.user = user;
+        this.bossBattle = bossBattle;
+        this.combatStats = combatStats;
+        this.startRevision = startRevision;
+        this.allianceMissionService = allianceMissionService;
+        this.checkpointStore = checkpointStore;
+    }
+
+    public BossBattle getBossBattle() {
+        return bossBattle;
+    }
+
+    /**
+     * Kopija trenutnog stanja bitke za prikaz; izmene kopije ne utiču na sesiju.
+     */
+    public BossBattle copyBossBattle() {
+        return battleMapper.fromMap(battleMapper.toMap(bossBattle), bossBattle.getId());
+    }
+
+    public CombatStats getCombatStats() {
+        return combatStats;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    long getStartRevision() {
+        return startRevision;
+    }
+
+    /**
+     * Snimak važi samo za istu bitku koja u bazi nije menjana od početka sesije.
+     */
+    boolean matches(BossBattle stored) {
+        return stored != null && bossBattle.getId().equals(stored.getId()) && stored.revision == startRevision;
+    }
+
+    public boolean isFinished() {
+        return finalResult != null;
+    }
+
+    /**
+     * @return Ishod bitke za završni upis, ili null dok bitka traje.
+     */
+    public BossBattleService.BattleResult getFinalResult() {
+        return finalResult;
+    }
+
+    /**
+     * @return Stanje bitke (mapa polja) zabeleženo pri završetku, ili null dok bitka traje.
+     */
+    Map<String, Object> getFinalBattleState() {
+        return finalBattleState != null ? new HashMap<>(finalBattleState) : null;
+    }
+
+    /**
+     * Jedan napad, sinhrono i samo u memoriji.
+     */
+    public BossBattleService.BattleResult attack() {
+        if (finalResult != null) {
+            throw new RuntimeException("Battle is already finished");
+        }
+
+        int totalPowerPoints = combatStats.getPowerPoints();
+        boolean attackHit = bossBattle.attack(totalPowerPoints, combatStats.getHitChance(bossBattle.getSuccessRate()));
+
+        BossBattleService.BattleResult result = new BossBattleService.BattleResult();
+        result.attackHit = attackHit;
+        result.damageDealt = attackHit ? totalPowerPoints : 0;
+        result.bossCurrentHp = bossBattle.getCurrentHp();
+        result.bossMaxHp = bossBattle.getMaxHp();
+        result.attacksRemaining = bossBattle.getAttacksRemaining();
+        result.battleFinished = bossBattle.isBattleFinished();
+        result.bossDefeated = bossBattle.isDefeated();
+        if (attackHit && user.isInAlliance()) {
+            allianceMissionService.updateMissionProgress(user.currentAllianceId, user.getId(), "SUCCESSFUL_HIT")
+                    .addOnCompleteListener(AppExecutors.background(), missionTask -> {
+                        if (missionTask.isSuccessful() && missionTask.getResult()) {
+                            System.out.println("Mission progress updated for successful hit by user: " + user.getId());
+                        } else {
+                            System.out.println("Failed to update mission progress for successful hit: " +
+                                (missionTask.getException() != null ? missionTask.getException().getMessage() : "Unknown error"));
+                        }
+                    });
+        }
+
+        if (bossBattle.isDefeated()) {
+            result.coinsReward = combatStats.applyCoinBonus(bossBattle.getCoinsReward());
+            result.equipmentDropped = rollForEquipmentDrop();
+        } else if (bossBattle.isBattleFinished()) {
+            if (bossBattle.getHpPercentage() < 0.5) {
+                bossBattle.reduceEquipmentDropChance();
+                bossBattle.reduceCoinsReward();
+            }
+
+            bossBattle.restartBattle();
+            rollExtraAttack(bossBattle, combatStats, random);
+        }
+
+        if (result.battleFinished) {
+            finalResult = result;
+            finalBattleState = battleMapper.toMap(bossBattle);
+        }
+        checkpoint();
+        return result;
+    }
+
+    // Roll for equipment drop based on boss battle outcome
+    private Equipment rollForEquipmentDrop() {
+        double dropChance = bossBattle.getEquipmentDropChance();
+        if (random.nextDouble() > dropChance) {
+            return null; // No equipment dropped
+        }
+
+        // 95% chance for clothing, 5% chance for weapon
+        if (random.nextDouble() < 0.95) {
+            Clothing.ClothingType[] clothingTypes = Clothing.ClothingType.values();
+            return new Clothing(user.getId(), clothingTypes[random.nextInt(clothingTypes.length)]);
+        } else {
+            Weapon.WeaponType[] weaponTypes = Weapon.WeaponType.values();
+            return new Weapon(user.getId(), weaponTypes[random.nextInt(weaponTypes.length)]);
+        }
+    }
+
+    /**
+     * Čizme: šansa za jedan dodatni napad u novoj bitci.
+     */
+    static void rollExtraAttack(BossBattle bossBattle, CombatStats combatStats, Random random) {
+        if (combatStats != null && random.nextDouble() * 100 < combatStats.extraAttackChancePercent) {
+            bossBattle.setAttacksRemaining(bossBattle.getAttacksRemaining() + 1);
+        }
+    }
+
+    // --- Lokalni snimak ---
+
+    private void checkpoint() {
+        if (checkpointStore == null) {
+            return;
+        }
+        try {
+            JSONObject json = new JSONObject();
+            json.put("startRevision", startRevision);
+            json.put("battleId", bossBattle.getId());
+            json.put("battle", toJson(bossBattle));
+            if (finalResult != null) {
+                json.put("finished", true);
+                json.put("bossDefeated", finalResult.bossDefeated);
+                json.put("coinsReward", finalResult.coinsReward);
+                if (finalResult.equipmentDropped instanceof Clothing) {
+                    json.put("droppedClothing", ((Clothing) finalResult.equipmentDropped).getClothingType().name());
+                } else if (finalResult.equipmentDropped instanceof Weapon) {
+                    json.put("droppedWeapon", ((Weapon) finalResult.equipmentDropped).getWeaponType().name());
+                }
+            }
+            checkpointStore.save(user.getId(), json.toString());
+        } catch (JSONException e) {
+            System.out.println("DEBUG: Failed to checkpoint boss battle: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return Sesija iz lokalnog snimka korisnika, ili null ako snimka nema (ili je neispravan).
+     */
+    static BattleSession restore(BattleCheckpointStore checkpointStore, User user, CombatStats combatStats,
+                                 AllianceMissionService allianceMissionService) {
+        String data = checkpointStore != null ? checkpointStore.load(user.getId()) : null;
+        if (data == null) {
+            return null;
+        }
+
+        try {
+            JSONObject json = new JSONObject(data);
+            BossBattle bossBattle = fromJson(json.getJSONObject("battle"), json.getString("battleId"));
+            BattleSession session = new BattleSession(user, bossBattle, combatStats, json.getLong("startRevision"),
+                    allianceMissionService, checkpointStore);
+
+            if (json.optBoolean("finished", false)) {
+                BossBattleService.BattleResult result = new BossBattleService.BattleResult();
+                result.battleFinished = true;
+                result.bossDefeated = json.getBoolean("bossDefeated");
+                result.coinsReward = json.getInt("coinsReward");
+                result.bossCurrentHp = bossBattle.getCurrentHp();
+                result.bossMaxHp = bossBattle.getMaxHp();
+                result.attacksRemaining = bossBattle.getAttacksRemaining();
+                if (json.has("droppedClothing")) {
+                    result.equipmentDropped = new Clothing(user.getId(),
+                            Clothing.ClothingType.valueOf(json.getString("droppedClothing")));
+                } else if (json.has("droppedWeapon")) {
+                    result.equipmentDropped = new Weapon(user.getId(),
+                            Weapon.WeaponType.valueOf(json.getString("droppedWeapon")));
+                }
+                session.finalResult = result;
+                session.finalBattleState = battleMapper.toMap(bossBattle);
+            }
+            return session;
+        } catch (JSONException | RuntimeException e) {
+            System.out.println("DEBUG: Discarding invalid boss battle checkpoint: " + e.getMessage());
+            checkpointStore.clear(user.getId());
+            return null;
+        }
+    }
+
+    void clearCheckpoint() {
+        if (checkpointStore != null) {
+            checkpointStore.clear(user.getId());
+        }
+    }
+
+    private static JSONObject toJson(BossBattle bossBattle) throws JSONException {
+        JSONObject json = new JSONObject();
+        for (Map.Entry<String, Object> entry : battleMapper.toMap(bossBattle).entrySet()) {
+            if (entry.getValue() != null) {
+                json.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return json;
+    }
+
+    private static BossBattle fromJson(JSONObject json, String id) throws JSONException {
+        Map<String, Object> map = new HashMap<>();
+        Iterator<String> keys = json.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            map.put(key, json.get(key));
+        }
+        return battleMapper.fromMap(map, id);
+    }
+}
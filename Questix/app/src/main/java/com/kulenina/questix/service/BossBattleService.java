@@ -3,15 +3,27 @@ package com.kulenina.questix.service;
 import com.google.android.gms.tasks.Task;
 import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
 import com.kulenina.questix.model.*;
+import com.kulenina.questix.repository.BattleCheckpointStore;
+import com.kulenina.questix.repository.EquipmentRepository;
 import com.kulenina.questix.repository.UserRepository;
 import com.kulenina.questix.repository.BossBattleRepository;
+import com.kulenina.questix.util.AppExecutors;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 public class BossBattleService {
+    private final FirebaseFirestore db;
     private final UserRepository userRepository;
     private final BossBattleRepository bossBattleRepository;
+    private final EquipmentRepository equipmentRepository;
+    private final BattleCheckpointStore checkpointStore;
     private final EquipmentService equipmentService;
     private final LevelProgressionService levelProgressionService;
     private final FirebaseAuth auth;
@@ -19,9 +31,15 @@ public class BossBattleService {
 
     private final AllianceMissionService allianceMissionService;
 
+    // Završni upisi bitaka koji su u toku, po korisniku (isti ishod se ne šalje dvaput)
+    private static final Map<String, Task<Void>> finishing = new HashMap<>();
+
     public BossBattleService() {
+        this.db = FirebaseFirestore.getInstance();
         this.userRepository = new UserRepository();
         this.bossBattleRepository = new BossBattleRepository();
+        this.equipmentRepository = new EquipmentRepository();
+        this.checkpointStore = BattleCheckpointStore.getInstance();
         this.equipmentService = new EquipmentService();
         this.levelProgressionService = new LevelProgressionService();
         this.auth = FirebaseAuth.getInstance();
@@ -34,7 +52,13 @@ public class BossBattleService {
     }
 
     // Create a new boss battle for the current user's boss level
-    public Task<BossBattle> createBossBattle(int bossLevel) {
+    // combatStats: bonusi opreme za novu bitku (čizme), može biti null
+    public Task<BossBattle> createBossBattle(int bossLevel, CombatStats combatStats) {
+        return createBossBattle(bossLevel, combatStats, 0);
+    }
+
+    // revision: nova bitka nastavlja brojač prethodne (isti dokument), pa stari lokalni snimak ne važi
+    private Task<BossBattle> createBossBattle(int bossLevel, CombatStats combatStats, long revision) {
         String userId = getCurrentUserId();
         if (userId == null) {
             return Tasks.forException(new RuntimeException("User not authenticated"));
@@ -45,10 +69,12 @@ public class BossBattleService {
 
         // For now, use hardcoded success rate of 67%
         bossBattle.setSuccessRate(0.67);
+        bossBattle.revision = revision;
+        BattleSession.rollExtraAttack(bossBattle, combatStats, random);
 
         // Save to Firebase
         return bossBattleRepository.createWithId(bossBattle)
-            .continueWith(task -> {
+            .continueWith(AppExecutors.background(), task -> {
                 if (task.isSuccessful()) {
                     return bossBattle;
                 } else {
@@ -58,167 +84,166 @@ public class BossBattleService {
     }
 
     // Get current active boss battle for user
-    public Task<BossBattle> getCurrentBossBattle() {
+    public Task<BossBattle> getCurrentBossBattle(CombatStats combatStats) {
         String userId = getCurrentUserId();
         if (userId == null) {
             return Tasks.forException(new RuntimeException("User not authenticated"));
         }
 
         return userRepository.read(userId)
-            .continueWithTask(task -> {
+            .continueWithTask(AppExecutors.background(), task -> {
                 User user = task.getResult();
                 if (user == null) {
                     throw new RuntimeException("User not found");
                 }
+                return loadBossBattle(user, combatStats);
+            });
+    }
 
-                int bossLevel = user.bossLevel != null ? user.bossLevel : 1;
-                String bossBattleId = "boss_" + userId;
+    private Task<BossBattle> loadBossBattle(User user, CombatStats combatStats) {
+        int bossLevel = user.bossLevel != null ? user.bossLevel : 1;
+        String bossBattleId = "boss_" + user.getId();
 
-                // Try to load existing boss battle from Firebase
-                return bossBattleRepository.read(bossBattleId)
-                    .continueWithTask(readTask -> {
-                        BossBattle existingBattle = readTask.getResult();
+        // Try to load existing boss battle from Firebase
+        return bossBattleRepository.read(bossBattleId)
+            .continueWithTask(AppExecutors.background(), readTask -> {
+                BossBattle existingBattle = readTask.getResult();
 
-                        // If boss battle exists and is not finished, return it
-                        if (existingBattle != null && !existingBattle.isDefeated()) {
-                            return Tasks.forResult(existingBattle);
-                        }
+                // If boss battle exists and is not finished, return it
+                if (existingBattle != null && !existingBattle.isDefeated()) {
+                    return Tasks.forResult(existingBattle);
+                }
 
-                        // Otherwise, create a new boss battle
-                        return createBossBattle(bossLevel);
-                    });
+                // Otherwise, create a new boss battle
+                return createBossBattle(bossLevel, combatStats,
+                    existingBattle != null ? existingBattle.revision + 1 : 0);
             });
     }
 
-    // Perform an attack on the boss
-    public Task<BattleResult> performAttack(BossBattle bossBattle) {
+    /**
+     * Pravi sesiju bitke: korisnik i bonusi opreme se čitaju jednom, a napadi posle toga rade
+     * samo u memoriji (BattleSession.attack). Nezavršena bitka iz lokalnog snimka se nastavlja;
+     * ishod završene bitke koji nije stigao da se upiše prvo se upisuje.
+     */
+    public Task<BattleSession> startSession() {
         String userId = getCurrentUserId();
         if (userId == null) {
             return Tasks.forException(new RuntimeException("User not authenticated"));
         }
 
-        if (!userId.equals(bossBattle.getUserId())) {
-            return Tasks.forException(new RuntimeException("Permission denied"));
+        // Snimak se čita tek kada se završi upis prethodne bitke (ako je u toku)
+        Task<Void> pendingFinish;
+        synchronized (finishing) {
+            pendingFinish = finishing.get(userId);
         }
-
-        return userRepository.read(userId)
-            .continueWithTask(task -> {
-                User user = task.getResult();
-                if (user == null) {
-                    throw new RuntimeException("User not found");
+        Task<Void> ready = pendingFinish != null
+            ? pendingFinish.continueWith(AppExecutors.background(), task -> (Void) null)
+            : Tasks.forResult(null);
+
+        return ready.continueWithTask(AppExecutors.background(), readyTask -> Tasks.whenAllSuccess(
+            userRepository.read(userId),
+            equipmentService.getEquipmentCombatStats(userId)
+        )).continueWithTask(AppExecutors.background(), task -> {
+            List<Object> results = task.getResult();
+            User user = (User) results.get(0);
+            if (user == null) {
+                throw new RuntimeException("User not found");
+            }
+            CombatStats combatStats = ((CombatStats) results.get(1))
+                .withBasePowerPoints(user.powerPoints != null ? user.powerPoints : 0);
+
+            BattleSession restored = BattleSession.restore(checkpointStore, user, combatStats, allianceMissionService);
+            if (restored != null && restored.isFinished()) {
+                System.out.println("DEBUG: Saving boss battle result from checkpoint");
+                return finishSession(restored).continueWithTask(AppExecutors.background(), finishTask -> {
+                    finishTask.getResult();
+                    return startSession();
+                });
+            }
+
+            return loadBossBattle(user, combatStats).continueWith(AppExecutors.background(), battleTask -> {
+                BossBattle bossBattle = battleTask.getResult();
+                if (restored != null && restored.matches(bossBattle)) {
+                    System.out.println("DEBUG: Resuming boss battle from checkpoint");
+                    return restored;
                 }
-
-                // Calculate total power points (base PP + equipment bonuses)
-                return equipmentService.getActiveEquipment(userId)
-                    .continueWith(equipmentTask -> {
-                        int totalPowerPoints = user.powerPoints != null ? user.powerPoints : 0;
-
-                        // Add equipment bonuses (simplified for now)
-                        // In a full implementation, you'd calculate actual equipment bonuses
-
-                        boolean attackHit = bossBattle.attack(totalPowerPoints);
-
-                        BattleResult result = new BattleResult();
-                        result.attackHit = attackHit;
-                        result.damageDealt = attackHit ? totalPowerPoints : 0;
-                        result.bossCurrentHp = bossBattle.getCurrentHp();
-                        result.bossMaxHp = bossBattle.getMaxHp();
-                        result.attacksRemaining = bossBattle.getAttacksRemaining();
-                        result.battleFinished = bossBattle.isBattleFinished();
-                        result.bossDefeated = bossBattle.isDefeated();
-                        if (attackHit && user.isInAlliance()) {
-                            // Update alliance mission progress and wait for completion
-                            allianceMissionService.updateMissionProgress(
-                                    user.currentAllianceId, userId, "SUCCESSFUL_HIT")
-                                    .addOnCompleteListener(missionTask -> {
-                                        if (missionTask.isSuccessful() && missionTask.getResult()) {
-                                            System.out.println("Mission progress updated for successful hit by user: " + userId);
-                                        } else {
-                                            System.out.println("Failed to update mission progress for successful hit: " + 
-                                                (missionTask.getException() != null ? missionTask.getException().getMessage() : "Unknown error"));
-                                        }
-                                    });
-                        }
-
-                        if (bossBattle.isDefeated()) {
-                            result.coinsReward = bossBattle.getCoinsReward();
-                            result.equipmentDropped = rollForEquipmentDrop(bossBattle);
-                        }
-                        else if (bossBattle.isBattleFinished()) {
-                            if (bossBattle.getHpPercentage() < 0.5) {
-                                bossBattle.reduceEquipmentDropChance();
-                                bossBattle.reduceCoinsReward();
-                            }
-
-                            bossBattle.restartBattle();
-                        }
-
-                        // Save updated boss battle state to Firebase
-                        bossBattleRepository.update(bossBattle);
-
-                        return result;
-                    });
+                if (restored != null) {
+                    restored.clearCheckpoint();
+                }
+                return new BattleSession(user, bossBattle, combatStats, allianceMissionService, checkpointStore);
             });
+        });
     }
 
-    // Award battle rewards to the user
-    public Task<Boolean> awardBattleRewards(BattleResult battleResult) {
-        String userId = getCurrentUserId();
-        if (userId == null) {
-            return Tasks.forException(new RuntimeException("User not authenticated"));
+    /**
+     * Upisuje ishod završene bitke u jednoj transakciji: stanje bitke (HP, šansa za opremu, nagrada),
+     * novčiće i nivo bosa korisnika i dobijenu opremu. Ako je ishod već upisan (revision bitke
+     * više nije isti), transakcija ništa ne menja, pa je ponovni upis posle pada bezbedan.
+     */
+    public Task<Void> finishSession(BattleSession session) {
+        BattleResult result = session.getFinalResult();
+        if (result == null) {
+            return Tasks.forException(new RuntimeException("Battle is not finished"));
         }
+        String userId = session.getUser().getId();
 
-        return userRepository.read(userId)
-            .continueWithTask(task -> {
-                User user = task.getResult();
-                if (user == null) {
-                    throw new RuntimeException("User not found");
-                }
-
-                // Award coins
-                user.coins = (user.coins != null ? user.coins : 0) + battleResult.coinsReward;
+        synchronized (finishing) {
+            Task<Void> pending = finishing.get(userId);
+            if (pending != null) {
+                return pending;
+            }
+        }
 
-                // If boss was defeated, increment boss level for next battle
-                if (battleResult.bossDefeated) {
-                    user.bossLevel = (user.bossLevel != null ? user.bossLevel : 1) + 1;
+        Task<Equipment> dropTask = result.equipmentDropped != null
+            ? equipmentService.prepareEquipmentDrop(userId, result.equipmentDropped)
+            : Tasks.forResult(null);
+
+        Task<Void> finish = dropTask.continueWithTask(AppExecutors.background(), task -> {
+            Equipment drop = task.getResult();
+            BossBattle bossBattle = session.getBossBattle();
+            Map<String, Object> battleState = session.getFinalBattleState();
+            User user = session.getUser();
+            DocumentReference battleRef = bossBattleRepository.getDocumentReference(bossBattle.getId());
+            DocumentReference userRef = userRepository.getDocumentReference(userId);
+
+            return db.runTransaction(transaction -> {
+                Long storedRevision = transaction.get(battleRef).getLong("revision");
+                if ((storedRevision != null ? storedRevision : 0) != session.getStartRevision()) {
+                    System.out.println("DEBUG: Boss battle result already saved, skipping");
+                    return false;
                 }
 
-                Task<Void> updateUserTask = userRepository.update(user);
-
-                // Register equipment drop if any
-                if (battleResult.equipmentDropped != null) {
-                    return updateUserTask.continueWithTask(updateTask ->
-                        equipmentService.registerEquipmentDrop(battleResult.equipmentDropped)
-                    );
-                } else {
-                    return updateUserTask.continueWith(updateTask -> true);
+                battleState.put("revision", session.getStartRevision() + 1);
+                transaction.set(battleRef, battleState);
+                if (result.bossDefeated) {
+                    transaction.update(userRef,
+                        "coins", FieldValue.increment(result.coinsReward),
+                        "bossLevel", user.bossLevel != null ? (Object) FieldValue.increment(1) : 2);
+                }
+                if (drop != null) {
+                    equipmentRepository.set(transaction, drop);
                 }
+                return true;
             });
-    }
-
-    // Roll for equipment drop based on boss battle outcome
-    private Equipment rollForEquipmentDrop(BossBattle bossBattle) {
-        double dropChance = bossBattle.getEquipmentDropChance();
-        if (random.nextDouble() > dropChance) {
-            return null; // No equipment dropped
-        }
-
-        String userId = getCurrentUserId();
-
-        // 95% chance for clothing, 5% chance for weapon
-        boolean isClothing = random.nextDouble() < 0.95;
-
-        if (isClothing) {
-            // Create random clothing
-            Clothing.ClothingType[] clothingTypes = Clothing.ClothingType.values();
-            Clothing.ClothingType randomType = clothingTypes[random.nextInt(clothingTypes.length)];
-            return new Clothing(userId, randomType);
-        } else {
-            // Create random weapon
-            Weapon.WeaponType[] weaponTypes = Weapon.WeaponType.values();
-            Weapon.WeaponType randomType = weaponTypes[random.nextInt(weaponTypes.length)];
-            return new Weapon(userId, randomType);
+        }).continueWith(AppExecutors.background(), task -> {
+            boolean saved = task.getResult();
+            System.out.println("DEBUG: Boss battle result saved: " + saved);
+            session.clearCheckpoint();
+            if (result.equipmentDropped != null) {
+                EquipmentInventoryCache.invalidate(userId);
+            }
+            return (Void) null;
+        });
+
+        synchronized (finishing) {
+            finishing.put(userId, finish);
         }
+        finish.addOnCompleteListener(AppExecutors.background(), task -> {
+            synchronized (finishing) {
+                finishing.remove(userId);
+            }
+        });
+        return finish;
     }
 
     // Battle result class to encapsulate attack results
@@ -0,0 +1,216 @@
+package com.kulenina.questix.service;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.kulenina.questix.model.TaskOccurrence;
+import com.kulenina.questix.util.AppExecutors;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Ponavljanja zadataka po danima za kalendar. Mesec se učitava jednim upitom i jednim
+ * generisanjem ponavljanja i razlaže po danima, a susedni meseci se učitavaju unapred,
+ * pa izbor dana ne čita bazu i ne prolazi kroz ponavljanja.
+ * Posle izmene zadatka ponovo se računaju samo dani u kojima se taj zadatak pojavljuje (invalidateTask).
+ * Koristi se samo sa glavne niti.
+ */
+public class CalendarOccurrenceCache {
+
+    private final AppTaskService taskService;
+    private final String userId;
+
+    // Početak dana -> ponavljanja tog dana; postoje samo dani učitanih meseci
+    private final Map<Long, List<TaskOccurrence>> occurrencesByDay = new HashMap<>();
+    private final Set<Long> loadedMonths = new HashSet<>();
+    private final Map<Long, Task<Void>> loadingMonths = new HashMap<>();
+    // Poslednje osvežavanje po zadatku; stariji odgovori se odbacuju
+    private final Map<String, Integer> taskRefreshes = new HashMap<>();
+    // Menja se pri svakoj izmeni; mesec učitan pre izmene se odbacuje i učitava ponovo
+    private int version;
+
+    public CalendarOccurrenceCache(AppTaskService taskService, String userId) {
+        this.taskService = taskService;
+        this.userId = userId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * @return Ponavljanja dana iz memorije, ili null ako njegov mesec još nije učitan.
+     */
+    public List<TaskOccurrence> peekDay(long timeInMillis) {
+        List<TaskOccurrence> occurrences = occurrencesByDay.get(startOfDay(timeInMillis));
+        return occurrences != null ? Collections.unmodifiableList(new ArrayList<>(occurrences)) : null;
+    }
+
+    /**
+     * Ponavljanja dana; mesec se učitava samo ako još nije u memoriji.
+     * Susedni meseci se učitavaju unapred.
+     */
+    public Task<List<TaskOccurrence>> getDay(long timeInMillis) {
+        long month = startOfMonth(timeInMillis);
+        prefetchAround(timeInMillis);
+        return loadMonth(month).continueWithTask(AppExecutors.main(), task -> {
+            task.getResult();
+            if (!loadedMonths.contains(month)) {
+                // Odbačeno zbog izmene tokom učitavanja
+                return getDay(timeInMillis);
+            }
+            return Tasks.forResult(peekDay(timeInMillis));
+        });
+    }
+
+    /**
+     * Učitava mesec pre i posle datog dana, ako već nisu učitani. Greške se samo beleže.
+     */
+    public void prefetchAround(long timeInMillis) {
+        long month = startOfMonth(timeInMillis);
+        for (long neighbour : new long[] { addMonths(month, -1), addMonths(month, 1) }) {
+            loadMonth(neighbour).addOnFailureListener(AppExecutors.main(), e ->
+                    System.out.println("DEBUG: Calendar month prefetch failed: " + e.getMessage()));
+        }
+    }
+
+    private Task<Void> loadMonth(long monthStart) {
+        if (loadedMonths.contains(monthStart)) {
+            return Tasks.forResult(null);
+        }
+        Task<Void> pending = loadingMonths.get(monthStart);
+        if (pending != null) {
+            return pending;
+        }
+
+        int loadVersion = version;
+        long monthEnd = addMonths(monthStart, 1) - 1;
+        Task<Void> load = taskService.getTaskOccurrencesByDateRange(userId, monthStart, monthEnd)
+                .continueWith(AppExecutors.main(), task -> {
+                    loadingMonths.remove(monthStart);
+                    List<TaskOccurrence> occurrences = task.getResult();
+                    if (loadVersion != version) {
+                        return null;
+                    }
+
+                    Calendar day = Calendar.getInstance();
+                    day.setTimeInMillis(monthStart);
+                    while (day.getTimeInMillis() <= monthEnd) {
+                        occurrencesByDay.put(day.getTimeInMillis(), new ArrayList<>());
+                        day.add(Calendar.DAY_OF_MONTH, 1);
+                    }
+                    addOccurrences(occurrences);
+                    loadedMonths.add(monthStart);
+                    System.out.println("DEBUG: Calendar month loaded with " + occurrences.size() + " occurrences");
+                    return null;
+                });
+        loadingMonths.put(monthStart, load);
+        return load;
+    }
+
+    /**
+     * Ponovo računa ponavljanja jednog zadatka u učitanim mesecima, posle njegove izmene.
+     * Menjaju se samo dani u kojima je zadatak bio ili sada jeste.
+     * @param occurrenceId ID zadatka ili ponavljanja ("ORIGINAL_ID_executionTime").
+     */
+    public Task<Void> invalidateTask(String occurrenceId) {
+        version++;
+        String taskId = findTaskId(occurrenceId);
+        if (loadedMonths.isEmpty()) {
+            return Tasks.forResult(null);
+        }
+
+        long from = Collections.min(loadedMonths);
+        long to = addMonths(Collections.max(loadedMonths), 1) - 1;
+        int refresh = taskRefreshes.containsKey(taskId) ? taskRefreshes.get(taskId) + 1 : 1;
+        taskRefreshes.put(taskId, refresh);
+
+        return taskService.getTaskOccurrencesForTask(userId, taskId, from, to)
+                .continueWith(AppExecutors.main(), task -> {
+                    List<TaskOccurrence> occurrences = task.getResult();
+                    Integer latest = taskRefreshes.get(taskId);
+                    if (latest == null || latest != refresh) {
+                        return null;
+                    }
+                    taskRefreshes.remove(taskId);
+
+                    int touchedDays = 0;
+                    for (List<TaskOccurrence> dayOccurrences : occurrencesByDay.values()) {
+                        if (dayOccurrences.removeIf(o -> taskId.equals(o.task.id))) {
+                            touchedDays++;
+                        }
+                    }
+                    touchedDays += addOccurrences(occurrences);
+                    System.out.println("DEBUG: Calendar refreshed task " + taskId + " (" + touchedDays + " day updates)");
+                    return null;
+                });
+    }
+
+    /**
+     * Briše sve učitane mesece (npr. posle sinhronizacije koja je promenila zadatke).
+     */
+    public void invalidateAll() {
+        version++;
+        occurrencesByDay.clear();
+        loadedMonths.clear();
+        taskRefreshes.clear();
+    }
+
+    /**
+     * @return Broj dana u koje je dodato bar jedno ponavljanje.
+     */
+    private int addOccurrences(List<TaskOccurrence> occurrences) {
+        Set<Long> days = new HashSet<>();
+        for (TaskOccurrence occurrence : occurrences) {
+            long day = startOfDay(occurrence.executionTime);
+            List<TaskOccurrence> dayOccurrences = occurrencesByDay.get(day);
+            // Dani van učitanih meseci se ne čuvaju
+            if (dayOccurrences != null && !dayOccurrences.contains(occurrence)) {
+                dayOccurrences.add(occurrence);
+                days.add(day);
+            }
+        }
+        return days.size();
+    }
+
+    private String findTaskId(String occurrenceId) {
+        for (List<TaskOccurrence> dayOccurrences : occurrencesByDay.values()) {
+            for (TaskOccurrence occurrence : dayOccurrences) {
+                if (occurrenceId.equals(occurrence.getId())) {
+                    return occurrence.task.id;
+                }
+            }
+        }
+        return occurrenceId;
+    }
+
+    private static long startOfDay(long timeInMillis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(timeInMillis);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    private static long startOfMonth(long timeInMillis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(startOfDay(timeInMillis));
+        calendar.set(Calendar.DAY_OF_MONTH, 1);
+        return calendar.getTimeInMillis();
+    }
+
+    private static long addMonths(long monthStart, int months) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(monthStart);
+        calendar.add(Calendar.MONTH, months);
+        return calendar.getTimeInMillis();
+    }
+}
@@ -5,6 +5,7 @@ import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.auth.FirebaseAuth;
 import com.kulenina.questix.model.Category;
 import com.kulenina.questix.repository.CategoryRepository;
+import com.kulenina.questix.util.AppExecutors;
 
 import java.util.List;
 import java.util.UUID;
@@ -31,7 +32,7 @@ public class CategoryService {
         String userId = getCurrentUserId();
 
         return categoryRepository.findCategoriesByColor(colorHex, userId)
-                .continueWithTask(task -> {
+                .continueWithTask(AppExecutors.background(), task -> {
                     List<Category> existingCategories = task.getResult();
                     if (existingCategories != null && !existingCategories.isEmpty()) {
                         throw new RuntimeException("A category with the selected color already exists.");
@@ -41,7 +42,7 @@ public class CategoryService {
                     Category newCategory = new Category(id, name, colorHex, userId);
 
                     return categoryRepository.createWithId(newCategory)
-                            .continueWith(createTask -> newCategory.getId());
+                            .continueWith(AppExecutors.background(), createTask -> newCategory.getId());
                 });
     }
 
@@ -49,7 +50,7 @@ public class CategoryService {
         String userId = getCurrentUserId();
 
         return categoryRepository.findCategoriesByColor(newColorHex, userId)
-                .continueWithTask(task -> {
+                .continueWithTask(AppExecutors.background(), task -> {
                     List<Category> existingCategories = task.getResult();
                     boolean colorInUse = existingCategories.stream()
                             .anyMatch(c -> !c.getId().equals(categoryId));
@@ -59,7 +60,7 @@ public class CategoryService {
                     }
 
                     return categoryRepository.read(categoryId)
-                            .continueWithTask(readTask -> {
+                            .continueWithTask(AppExecutors.background(), readTask -> {
                                 Category categoryToUpdate = readTask.getResult();
                                 if (categoryToUpdate == null || !userId.equals(categoryToUpdate.getUserId())) {
                                     throw new RuntimeException("You do not have permission to modify this category.");
@@ -76,14 +77,14 @@ public class CategoryService {
         String userId = getCurrentUserId();
 
         return categoryRepository.read(categoryId)
-                .continueWithTask(readTask -> {
+                .continueWithTask(AppExecutors.background(), readTask -> {
                     Category category = readTask.getResult();
                     if (category == null || !userId.equals(category.getUserId())) {
                         throw new RuntimeException("You do not have permission to delete this category.");
                     }
 
                     return taskService.hasActiveTasksForCategory(categoryId)
-                            .continueWithTask(task -> {
+                            .continueWithTask(AppExecutors.background(), task -> {
                                 boolean hasActiveTasks = task.getResult();
                                 if (hasActiveTasks) {
                                     throw new RuntimeException("The category cannot be deleted because it has active tasks assigned to it.");
@@ -101,7 +102,7 @@ public class CategoryService {
         String userId = getCurrentUserId();
 
         return categoryRepository.read(categoryId)
-                .continueWith(task -> {
+                .continueWith(AppExecutors.background(), task -> {
                     Category category = task.getResult();
 
                     if (category == null || !userId.equals(category.getUserId())) {
@@ -0,0 +1,156 @@
+package com.kulenina.questix.service;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.kulenina.questix.mapper.IMapper;
+import com.kulenina.questix.mapper.Mappers;
+import com.kulenina.questix.model.Clothing;
+import com.kulenina.questix.model.CombatStats;
+import com.kulenina.questix.model.Equipment;
+import com.kulenina.questix.model.Potion;
+import com.kulenina.questix.model.Weapon;
+import com.kulenina.questix.util.AppExecutors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Oprema korisnika u memoriji, po userId. Prodavnica, inventar i borba čitaju odavde,
+ * pa se upit po korisniku izvršava samo kada keš nije svež. Posle svake izmene opreme
+ * (kupovina, aktivacija, nadogradnja, dodela) korisnik se poništava u kešu.
+ * Uz opremu se čuvaju i iz nje izračunati CombatStats, pa se poništavaju zajedno.
+ * Pozivaoci dobijaju kopije, jer opremu menjaju pre upisa (npr. spajanje odeće); neuspeo
+ * upis tako ne ostavlja neupisane vrednosti u kešu.
+ * Deli se između instanci servisa.
+ */
+class EquipmentInventoryCache {
+
+    interface Loader {
+        Task<List<Equipment>> load(String userId);
+    }
+
+    // Oprema se menja i sa drugih uređaja (npr. nagrade misije saveza), pa keš kratko važi
+    private static final long TTL_MS = 60_000;
+
+    private static final class Entry {
+        List<Equipment> equipment;
+        CombatStats combatStats;
+        long loadedAt;
+        Task<List<Equipment>> pending;
+    }
+
+    private static final Map<String, Entry> entries = new HashMap<>();
+
+    private static final IMapper<Potion> potionMapper = Mappers.get(Potion.class);
+    private static final IMapper<Weapon> weaponMapper = Mappers.get(Weapon.class);
+    private static final IMapper<Clothing> clothingMapper = Mappers.get(Clothing.class);
+
+    private EquipmentInventoryCache() {
+    }
+
+    /**
+     * @return Kopija opreme korisnika; istovremeni pozivi dele isto čitanje.
+     */
+    static Task<List<Equipment>> get(String userId, Loader loader) {
+        return getShared(userId, loader).continueWith(AppExecutors.background(), task -> {
+            List<Equipment> copies = new ArrayList<>();
+            for (Equipment equipment : task.getResult()) {
+                copies.add(copy(equipment));
+            }
+            return copies;
+        });
+    }
+
+    /**
+     * Spisak iz keša, bez kopiranja; samo za čitanje (npr. CombatStats).
+     */
+    private static Task<List<Equipment>> getShared(String userId, Loader loader) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(userId);
+            if (entry != null && entry.pending != null) {
+                return entry.pending;
+            }
+            if (entry != null && System.currentTimeMillis() - entry.loadedAt < TTL_MS) {
+                return Tasks.forResult(entry.equipment);
+            }
+            entry = new Entry();
+            entries.put(userId, entry);
+        }
+
+        Entry loading = entry;
+        Task<List<Equipment>> pending = loader.load(userId).continueWith(AppExecutors.background(), task -> {
+            synchronized (entries) {
+                loading.pending = null;
+                if (!task.isSuccessful()) {
+                    if (entries.get(userId) == loading) {
+                        entries.remove(userId);
+                    }
+                    throw task.getException();
+                }
+                loading.equipment = Collections.unmodifiableList(new ArrayList<>(task.getResult()));
+                loading.loadedAt = System.currentTimeMillis();
+                return loading.equipment;
+            }
+        });
+        synchronized (entries) {
+            // Čitanje je moglo da se završi pre ove linije
+            if (!pending.isComplete()) {
+                loading.pending = pending;
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Bonusi aktivne opreme korisnika; računaju se jednom po učitanoj opremi.
+     */
+    static Task<CombatStats> getCombatStats(String userId, Loader loader) {
+        synchronized (entries) {
+            Entry entry = entries.get(userId);
+            if (entry != null && entry.pending == null && entry.combatStats != null
+                    && System.currentTimeMillis() - entry.loadedAt < TTL_MS) {
+                return Tasks.forResult(entry.combatStats);
+            }
+        }
+
+        return getShared(userId, loader).continueWith(AppExecutors.background(), task -> {
+            List<Equipment> equipment = task.getResult();
+            CombatStats stats = CombatStats.fromEquipment(equipment);
+            synchronized (entries) {
+                Entry entry = entries.get(userId);
+                // Samo ako keš i dalje drži istu opremu
+                if (entry != null && entry.equipment == equipment) {
+                    entry.combatStats = stats;
+                }
+            }
+            return stats;
+        });
+    }
+
+    private static Equipment copy(Equipment equipment) {
+        if (equipment instanceof Potion) {
+            return potionMapper.fromMap(potionMapper.toMap((Potion) equipment), equipment.getId());
+        } else if (equipment instanceof Weapon) {
+            return weaponMapper.fromMap(weaponMapper.toMap((Weapon) equipment), equipment.getId());
+        } else if (equipment instanceof Clothing) {
+            return clothingMapper.fromMap(clothingMapper.toMap((Clothing) equipment), equipment.getId());
+        }
+        return equipment;
+    }
+
+    /**
+     * Poništava opremu korisnika; čitanje koje je u toku se ne kešira.
+     */
+    static void invalidate(String userId) {
+        if (userId == null) {
+            return;
+        }
+        synchronized (entries) {
+            entries.remove(userId);
+        }
+    }
+}
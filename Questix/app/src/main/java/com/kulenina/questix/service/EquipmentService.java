@@ -3,10 +3,12 @@ package com.kulenina.questix.service;
 import com.google.android.gms.tasks.Task;
 import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.FirebaseFirestore;
 import com.kulenina.questix.model.*;
 import com.kulenina.questix.repository.EquipmentRepository;
 import com.kulenina.questix.repository.UserRepository;
 import com.kulenina.questix.service.AllianceMissionService;
+import com.kulenina.questix.util.AppExecutors;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -16,12 +18,14 @@ public class EquipmentService {
     private final EquipmentRepository equipmentRepository;
     private final UserRepository userRepository;
     private final FirebaseAuth auth;
+    private final FirebaseFirestore db;
     private final AllianceMissionService allianceMissionService;
 
     public EquipmentService() {
         this.equipmentRepository = new EquipmentRepository();
         this.userRepository = new UserRepository();
         this.auth = FirebaseAuth.getInstance();
+        this.db = FirebaseFirestore.getInstance();
         this.allianceMissionService = new AllianceMissionService();
     }
 
@@ -56,7 +60,7 @@ public class EquipmentService {
         return Tasks.whenAllSuccess(
             userRepository.read(userId),
             getUserEquipment(userId)
-        ).continueWithTask(task -> {
+        ).continueWithTask(AppExecutors.background(), task -> {
             List<Object> results = task.getResult();
             User user = (User) results.get(0);
             @SuppressWarnings("unchecked")
@@ -95,17 +99,16 @@ public class EquipmentService {
                         throw new RuntimeException("Insufficient coins");
                     }
 
-                    user.coins -= price;
                     existingClothing.combineWith((Clothing) equipment);
 
-                    return Tasks.whenAll(
-                        equipmentRepository.update(existingClothing),
-                        userRepository.update(user)
-                    ).continueWithTask(updateTask -> {
+                    return payForEquipment(userId, price, existingClothing)
+                    .continueWithTask(AppExecutors.background(), updateTask -> {
+                        updateTask.getResult();
+                        EquipmentInventoryCache.invalidate(userId);
                         // Update alliance mission progress if user is in an active mission
                         if (user.isInAlliance()) {
                             return allianceMissionService.updateMissionProgress(user.currentAllianceId, userId, "PURCHASE")
-                                .continueWith(missionTask -> {
+                                .continueWith(AppExecutors.background(), missionTask -> {
                                     if (missionTask.isSuccessful() && missionTask.getResult()) {
                                         System.out.println("Mission progress updated for clothing upgrade by user: " + userId);
                                     } else {
@@ -117,7 +120,7 @@ public class EquipmentService {
                         }
                         return Tasks.forResult(true);
                     })
-                    .continueWith(finalTask -> true);
+                    .continueWith(AppExecutors.background(), finalTask -> true);
                 }
             }
 
@@ -129,15 +132,14 @@ public class EquipmentService {
                 throw new RuntimeException("Insufficient coins");
             }
 
-            user.coins -= price;
-
-            return equipmentRepository.create(equipment)
-                .continueWithTask(createTask -> userRepository.update(user))
-                .continueWithTask(updateTask -> {
+            return payForEquipment(userId, price, equipment)
+                .continueWithTask(AppExecutors.background(), updateTask -> {
+                    updateTask.getResult();
+                    EquipmentInventoryCache.invalidate(userId);
                     // Update alliance mission progress if user is in an active mission
                     if (user.isInAlliance()) {
                         return allianceMissionService.updateMissionProgress(user.currentAllianceId, userId, "PURCHASE")
-                            .continueWith(missionTask -> {
+                            .continueWith(AppExecutors.background(), missionTask -> {
                                 if (missionTask.isSuccessful() && missionTask.getResult()) {
                                     System.out.println("Mission progress updated for purchase by user: " + userId);
                                 } else {
@@ -149,33 +151,53 @@ public class EquipmentService {
                     }
                     return Tasks.forResult(true);
                 })
-                .continueWith(finalTask -> true);
+                .continueWith(AppExecutors.background(), finalTask -> true);
         });
     }
 
+    /**
+     * Naplata i upis opreme u jednoj transakciji. Stanje novčića se proverava u transakciji,
+     * a kod korisnika se upisuje samo coins (ne ceo dokument).
+     */
+    private Task<Void> payForEquipment(String userId, int price, Equipment equipment) {
+        return db.runTransaction(transaction -> {
+            userRepository.spendCoins(transaction, userId, price);
+            equipmentRepository.set(transaction, equipment);
+            return null;
+        });
+    }
+
+    /**
+     * Oprema korisnika iz keša (EquipmentInventoryCache); na promašaj jedan upit po userId.
+     */
     public Task<List<Equipment>> getUserEquipment(String userId) {
-        return equipmentRepository.readAll()
-            .continueWith(task -> {
-                List<Equipment> allEquipment = task.getResult();
-                return allEquipment.stream()
-                    .filter(equipment -> userId.equals(equipment.getUserId()))
-                    .collect(Collectors.toList());
-            });
+        return EquipmentInventoryCache.get(userId, equipmentRepository::findByUserId);
+    }
+
+    public Task<List<Equipment>> getUserEquipment(String userId, Equipment.EquipmentType type) {
+        return getUserEquipment(userId)
+            .continueWith(AppExecutors.background(), task -> task.getResult().stream()
+                .filter(equipment -> equipment.getType() == type)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Bonusi aktivne opreme (bez osnovnih PP); poništavaju se sa opremom korisnika.
+     */
+    public Task<CombatStats> getEquipmentCombatStats(String userId) {
+        return EquipmentInventoryCache.getCombatStats(userId, equipmentRepository::findByUserId);
     }
 
     public Task<List<Equipment>> getActiveEquipment(String userId) {
         return getUserEquipment(userId)
-            .continueWith(task -> {
-                List<Equipment> userEquipment = task.getResult();
-                return userEquipment.stream()
-                    .filter(Equipment::isActive)
-                    .collect(Collectors.toList());
-            });
+            .continueWith(AppExecutors.background(), task -> task.getResult().stream()
+                .filter(Equipment::isActive)
+                .collect(Collectors.toList()));
     }
 
     public Task<Boolean> activateEquipment(String equipmentId) {
         return equipmentRepository.read(equipmentId)
-            .continueWithTask(task -> {
+            .continueWithTask(AppExecutors.background(), task -> {
                 Equipment equipment = task.getResult();
                 if (equipment == null) {
                     throw new RuntimeException("Equipment not found");
@@ -193,13 +215,16 @@ public class EquipmentService {
                 }
 
                 return equipmentRepository.update(equipment)
-                    .continueWith(updateTask -> true);
+                    .continueWith(AppExecutors.background(), updateTask -> {
+                        EquipmentInventoryCache.invalidate(equipment.getUserId());
+                        return true;
+                    });
             });
     }
 
     public Task<Boolean> deactivateEquipment(String equipmentId) {
         return equipmentRepository.read(equipmentId)
-            .continueWithTask(task -> {
+            .continueWithTask(AppExecutors.background(), task -> {
                 Equipment equipment = task.getResult();
                 if (equipment == null) {
                     throw new RuntimeException("Equipment not found");
@@ -211,7 +236,10 @@ public class EquipmentService {
 
                 equipment.setActive(false);
                 return equipmentRepository.update(equipment)
-                    .continueWith(updateTask -> true);
+                    .continueWith(AppExecutors.background(), updateTask -> {
+                        EquipmentInventoryCache.invalidate(equipment.getUserId());
+                        return true;
+                    });
             });
     }
 
@@ -224,7 +252,7 @@ public class EquipmentService {
         return Tasks.whenAllSuccess(
             equipmentRepository.read(weaponId),
             userRepository.read(userId)
-        ).continueWithTask(task -> {
+        ).continueWithTask(AppExecutors.background(), task -> {
             List<Object> results = task.getResult();
             Equipment equipment = (Equipment) results.get(0);
             User user = (User) results.get(1);
@@ -245,17 +273,16 @@ public class EquipmentService {
                 throw new RuntimeException("Insufficient coins");
             }
 
-            user.coins -= upgradePrice;
             weapon.upgrade();
 
-            return Tasks.whenAll(
-                equipmentRepository.update(weapon),
-                userRepository.update(user)
-            ).continueWithTask(updateTask -> {
+            return payForEquipment(userId, upgradePrice, weapon)
+            .continueWithTask(AppExecutors.background(), updateTask -> {
+                updateTask.getResult();
+                EquipmentInventoryCache.invalidate(userId);
                 // Update alliance mission progress if user is in an active mission
                 if (user.isInAlliance()) {
                     return allianceMissionService.updateMissionProgress(user.currentAllianceId, userId, "PURCHASE")
-                        .continueWith(missionTask -> {
+                        .continueWith(AppExecutors.background(), missionTask -> {
                             if (missionTask.isSuccessful() && missionTask.getResult()) {
                                 System.out.println("Mission progress updated for weapon upgrade by user: " + userId);
                             } else {
@@ -267,7 +294,7 @@ public class EquipmentService {
                 }
                 return Tasks.forResult(true);
             })
-            .continueWith(finalTask -> true);
+            .continueWith(AppExecutors.background(), finalTask -> true);
         });
     }
 
@@ -282,8 +309,29 @@ public class EquipmentService {
             return Tasks.forResult(true); // No equipment dropped
         }
 
-        return getUserEquipment(userId)
-            .continueWithTask(task -> {
+        return prepareEquipmentDrop(userId, droppedEquipment)
+            .continueWithTask(AppExecutors.background(), task -> {
+                Equipment equipment = task.getResult();
+                // Oprema spojena sa postojećom se ažurira, nova se pravi
+                Task<?> writeTask = equipment == droppedEquipment
+                    ? equipmentRepository.create(equipment)
+                    : equipmentRepository.update(equipment);
+                return writeTask.continueWith(AppExecutors.background(), writeResult -> {
+                    writeResult.getResult();
+                    EquipmentInventoryCache.invalidate(userId);
+                    return true;
+                });
+            });
+    }
+
+    /**
+     * Spaja dobijenu opremu sa postojećom istog tipa, bez upisa.
+     * @return Postojeća oprema sa dodatim efektom, ili sama dobijena oprema ako nema postojeće.
+     * Pozivalac upisuje rezultat (npr. u transakciji završetka bitke).
+     */
+    public Task<Equipment> prepareEquipmentDrop(String userId, Equipment droppedEquipment) {
+        return getUserEquipment(userId, droppedEquipment.getType())
+            .continueWith(AppExecutors.background(), task -> {
                 List<Equipment> userEquipment = task.getResult();
 
                 // Check for existing equipment of the same type
@@ -314,21 +362,14 @@ public class EquipmentService {
                 }
 
                 // If existing equipment found, combine with it
-                if (existingEquipment != null) {
-                    if (existingEquipment instanceof Clothing && droppedEquipment instanceof Clothing) {
-                        ((Clothing) existingEquipment).combineWith((Clothing) droppedEquipment);
-                    } else if (existingEquipment instanceof Weapon && droppedEquipment instanceof Weapon) {
-                        ((Weapon) existingEquipment).combineWith((Weapon) droppedEquipment);
-                    }
-
-                    // Update the existing equipment
-                    return equipmentRepository.update(existingEquipment)
-                        .continueWith(updateTask -> true);
-                } else {
-                    // Create new equipment
-                    return equipmentRepository.create(droppedEquipment)
-                        .continueWith(createTask -> true);
+                if (existingEquipment instanceof Clothing && droppedEquipment instanceof Clothing) {
+                    ((Clothing) existingEquipment).combineWith((Clothing) droppedEquipment);
+                    return existingEquipment;
+                } else if (existingEquipment instanceof Weapon && droppedEquipment instanceof Weapon) {
+                    ((Weapon) existingEquipment).combineWith((Weapon) droppedEquipment);
+                    return existingEquipment;
                 }
+                return droppedEquipment;
             });
     }
 }
@@ -6,6 +6,7 @@ import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.WriteBatch;
 import com.kulenina.questix.model.User;
 import com.kulenina.questix.repository.UserRepository;
+import com.kulenina.questix.util.AppExecutors;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -23,7 +24,7 @@ public class FriendshipService {
         return Tasks.whenAllSuccess(
             userRepository.read(currentUserId),
             userRepository.read(friendId)
-        ).continueWithTask(task -> {
+        ).continueWithTask(AppExecutors.background(), task -> {
             List<Object> results = task.getResult();
             User currentUser = (User) results.get(0);
             User friendUser = (User) results.get(1);
@@ -54,7 +55,7 @@ public class FriendshipService {
         return Tasks.whenAllSuccess(
             userRepository.read(currentUserId),
             userRepository.read(friendId)
-        ).continueWithTask(task -> {
+        ).continueWithTask(AppExecutors.background(), task -> {
             List<Object> results = task.getResult();
             User currentUser = (User) results.get(0);
             User friendUser = (User) results.get(1);
@@ -77,30 +78,21 @@ public class FriendshipService {
 
     public Task<List<User>> getFriends(String userId) {
         return userRepository.read(userId)
-            .continueWithTask(task -> {
+            .continueWithTask(AppExecutors.background(), task -> {
                 User user = task.getResult();
-                if (user == null || user.friends.isEmpty()) {
+                if (user == null || user.friends == null || user.friends.isEmpty()) {
                     return Tasks.forResult(new ArrayList<>());
                 }
 
-                List<Task<User>> friendTasks = new ArrayList<>();
-                for (String friendId : user.friends) {
-                    friendTasks.add(userRepository.read(friendId));
-                }
-
-                return Tasks.whenAllSuccess(friendTasks);
+                return userRepository.readMany(user.friends);
             });
     }
 
     public Task<Boolean> areFriends(String userId1, String userId2) {
         return userRepository.read(userId1)
-            .continueWith(task -> {
+            .continueWith(AppExecutors.background(), task -> {
                 User user = task.getResult();
                 return user != null && user.isFriend(userId2);
             });
     }
-
-    public Task<List<User>> getAllUsers() {
-        return userRepository.readAll();
-    }
 }
@@ -3,6 +3,7 @@ package com.kulenina.questix.service;
 import com.google.android.gms.tasks.Task;
 import com.kulenina.questix.model.User;
 import com.kulenina.questix.repository.UserRepository;
+import com.kulenina.questix.util.AppExecutors;
 
 public class LevelProgressionService {
     private final UserRepository userRepository;
@@ -11,23 +12,20 @@ public class LevelProgressionService {
         this.userRepository = new UserRepository();
     }
 
-    public Task<User> awardXpAndCheckLevelUp(String userId, int xpAmount) {
-        return userRepository.read(userId)
-            .continueWithTask(task -> {
-                User user = task.getResult();
-                if (user == null) {
-                    throw new RuntimeException("User not found");
-                }
-
-                user.xp += xpAmount;
-
-                while (canLevelUp(user)) {
-                    levelUpUser(user);
-                }
-
-                return userRepository.update(user)
-                    .continueWith(updateTask -> user);
-            });
+    /**
+     * Dodaje XP korisniku u memoriji i podiže nivo (uz power points) dok god je moguće.
+     * Upis radi pozivalac, u transakciji (UserRepository.updateProgress).
+     * @return Broj pređenih nivoa.
+     */
+    public int applyXp(User user, int xpAmount) {
+        user.xp += xpAmount;
+
+        int levelsGained = 0;
+        while (canLevelUp(user)) {
+            levelUpUser(user);
+            levelsGained++;
+        }
+        return levelsGained;
     }
 
     public int getXpRequiredForLevel(int level) {
@@ -93,7 +91,7 @@ public class LevelProgressionService {
 
     public Task<Integer> getCurrentLevel(String userId) {
         return userRepository.read(userId)
-                .continueWith(task -> {
+                .continueWith(AppExecutors.background(), task -> {
                     User user = task.getResult();
                     if (user == null) {
                         throw new RuntimeException("User not found");
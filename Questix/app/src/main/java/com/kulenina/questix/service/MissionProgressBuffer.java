@@ -0,0 +1,203 @@
+package com.kulenina.questix.service;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.kulenina.questix.repository.MissionActionStore;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Skuplja akcije jednog člana (po savezu) tokom kratkog prozora i predaje ih zajedno,
+ * tako da se za više akcija izvrši jedna transakcija nad savezom umesto po jedna za svaku.
+ * Svaka akcija dobija svoj Task koji se završava kada se transakcija izvrši.
+ * Grupa koja čeka se čuva i u MissionActionStore; ako se aplikacija zatvori pre upisa,
+ * restore() je šalje pri sledećem pokretanju sa istim flushId, pa se ne primenjuje dvaput.
+ */
+class MissionProgressBuffer {
+
+    static final class PendingAction {
+        final String actionType;
+        final String day; // "yyyy-MM-dd" trenutka akcije (za poruke)
+        final TaskCompletionSource<Boolean> result = new TaskCompletionSource<>();
+
+        PendingAction(String actionType, String day) {
+            this.actionType = actionType;
+            this.day = day;
+        }
+    }
+
+    interface Flusher {
+        /**
+         * Primenjuje sve akcije člana u jednoj transakciji.
+         * @param flushId ID grupe; grupa sa istim ID-om se primenjuje najviše jednom.
+         * @return Za svaku akciju (istim redom) da li je umanjila HP bosa.
+         */
+        Task<List<Boolean>> flush(String flushId, String allianceId, String userId, List<PendingAction> actions);
+    }
+
+    private static final class PendingGroup {
+        final String flushId;
+        final String allianceId;
+        final String userId;
+        final Flusher flusher;
+        // Grupa iz prethodnog pokretanja se šalje samo jednom, bez obzira na ishod
+        final boolean restored;
+        final List<PendingAction> actions = new ArrayList<>();
+
+        PendingGroup(String flushId, String allianceId, String userId, Flusher flusher, boolean restored) {
+            this.flushId = flushId;
+            this.allianceId = allianceId;
+            this.userId = userId;
+            this.flusher = flusher;
+            this.restored = restored;
+        }
+    }
+
+    private final long windowMs;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    // allianceId_userId -> akcije koje čekaju
+    private final Map<String, PendingGroup> pending = new HashMap<>();
+    // flushId grupa ovog pokretanja koje još nisu upisane (restore ih preskače)
+    private final Set<String> activeFlushIds = new HashSet<>();
+
+    MissionProgressBuffer(long windowMs) {
+        this.windowMs = windowMs;
+    }
+
+    Task<Boolean> add(String allianceId, String userId, String actionType, String day, Flusher flusher) {
+        PendingAction action = new PendingAction(actionType, day);
+        String key = allianceId + "_" + userId;
+
+        synchronized (pending) {
+            PendingGroup group = pending.get(key);
+            if (group == null) {
+                group = new PendingGroup(UUID.randomUUID().toString(), allianceId, userId, flusher, false);
+                pending.put(key, group);
+                activeFlushIds.add(group.flushId);
+                // Prva akcija u prozoru zakazuje slanje
+                scheduler.schedule(() -> flush(key), windowMs, TimeUnit.MILLISECONDS);
+            }
+            group.actions.add(action);
+            persist(group);
+        }
+        return action.result.getTask();
+    }
+
+    /**
+     * Šalje grupe akcija sačuvane pre nego što je aplikacija zatvorena.
+     * Poziva se jednom po pokretanju, posle MissionActionStore.init().
+     * @return Broj poslatih grupa.
+     */
+    int restore(Flusher flusher) {
+        MissionActionStore store = MissionActionStore.getInstance();
+        if (store == null) {
+            return 0;
+        }
+
+        int restored = 0;
+        for (Map.Entry<String, String> entry : store.loadAll().entrySet()) {
+            synchronized (pending) {
+                if (activeFlushIds.contains(entry.getKey())) {
+                    continue;
+                }
+            }
+            PendingGroup group = fromJson(entry.getKey(), entry.getValue(), flusher);
+            if (group == null || group.actions.isEmpty()) {
+                // Neispravan zapis se odbacuje
+                store.remove(entry.getKey());
+                continue;
+            }
+            scheduler.execute(() -> flush(group));
+            restored++;
+        }
+        return restored;
+    }
+
+    private void flush(String key) {
+        PendingGroup group;
+        synchronized (pending) {
+            group = pending.remove(key);
+        }
+        if (group == null || group.actions.isEmpty()) {
+            return;
+        }
+        flush(group);
+    }
+
+    private void flush(PendingGroup group) {
+        List<PendingAction> actions = group.actions;
+        group.flusher.flush(group.flushId, group.allianceId, group.userId, actions).addOnCompleteListener(scheduler, task -> {
+            synchronized (pending) {
+                activeFlushIds.remove(group.flushId);
+            }
+            // Neuspela grupa ovog pokretanja ostaje sačuvana i šalje se još jednom pri sledećem pokretanju
+            MissionActionStore store = MissionActionStore.getInstance();
+            if (store != null && (task.isSuccessful() || group.restored)) {
+                store.remove(group.flushId);
+            }
+
+            List<Boolean> results = task.isSuccessful() ? task.getResult() : null;
+            for (int i = 0; i < actions.size(); i++) {
+                if (results != null) {
+                    actions.get(i).result.trySetResult(i < results.size() && results.get(i));
+                } else {
+                    actions.get(i).result.trySetException(task.getException() != null
+                            ? task.getException()
+                            : new RuntimeException("Mission progress update failed"));
+                }
+            }
+        });
+    }
+
+    private static void persist(PendingGroup group) {
+        MissionActionStore store = MissionActionStore.getInstance();
+        if (store == null) {
+            return;
+        }
+        try {
+            JSONArray actions = new JSONArray();
+            for (PendingAction action : group.actions) {
+                JSONObject json = new JSONObject();
+                json.put("actionType", action.actionType);
+                json.put("day", action.day);
+                actions.put(json);
+            }
+            JSONObject json = new JSONObject();
+            json.put("allianceId", group.allianceId);
+            json.put("userId", group.userId);
+            json.put("actions", actions);
+            store.save(group.flushId, json.toString());
+        } catch (JSONException e) {
+            // Grupa se i dalje šalje iz memorije, samo bez kopije
+        }
+    }
+
+    private static PendingGroup fromJson(String flushId, String data, Flusher flusher) {
+        try {
+            JSONObject json = new JSONObject(data);
+            PendingGroup group = new PendingGroup(flushId, json.getString("allianceId"), json.getString("userId"),
+                    flusher, true);
+            JSONArray actions = json.getJSONArray("actions");
+            for (int i = 0; i < actions.length(); i++) {
+                JSONObject action = actions.getJSONObject(i);
+                group.actions.add(new PendingAction(action.getString("actionType"), action.getString("day")));
+            }
+            return group;
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+}
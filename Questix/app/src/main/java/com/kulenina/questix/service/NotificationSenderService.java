@@ -10,6 +10,7 @@ import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.messaging.FirebaseMessaging;
 import com.kulenina.questix.model.User;
 import com.kulenina.questix.repository.UserRepository;
+import com.kulenina.questix.util.AppExecutors;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -45,7 +46,7 @@ public class NotificationSenderService {
 
     public void initializeFcmToken() {
     FirebaseMessaging.getInstance().getToken()
-        .addOnCompleteListener(task -> {
+        .addOnCompleteListener(AppExecutors.background(), task -> {
             if (!task.isSuccessful()) {
                 return;
             }
@@ -61,7 +62,7 @@ public class NotificationSenderService {
             String userId = currentUser.getUid();
 
             userRepository.read(userId)
-                    .addOnSuccessListener(user -> {
+                    .addOnSuccessListener(AppExecutors.background(), user -> {
                         if (user != null) {
                             user.setFcmToken(token);
                             userRepository.update(user);
@@ -73,7 +74,7 @@ public class NotificationSenderService {
 
     public Task<Void> sendAllianceInvitationNotification(String inviteeId, String allianceName, String inviterUsername) {
         return userRepository.read(inviteeId)
-                .continueWithTask(task -> {
+                .continueWithTask(AppExecutors.background(), task -> {
                     User invitee = task.getResult();
                     if (invitee == null) {
                         return Tasks.forResult(null);
@@ -97,7 +98,7 @@ public class NotificationSenderService {
 
     public Task<Void> sendInvitationAcceptedNotification(String leaderId, String accepterUsername, String allianceName) {
         return userRepository.read(leaderId)
-                .continueWithTask(task -> {
+                .continueWithTask(AppExecutors.background(), task -> {
                     User leader = task.getResult();
                     if (leader == null || !leader.hasFcmToken()) {
                         return Tasks.forResult(null);
@@ -121,7 +122,7 @@ public class NotificationSenderService {
             return Tasks.forException(new RuntimeException("User not authenticated"));
         }
 
-        return currentUser.getIdToken(false).continueWithTask(tokenTask -> {
+        return currentUser.getIdToken(false).continueWithTask(AppExecutors.background(), tokenTask -> {
             if (!tokenTask.isSuccessful()) {
                 return Tasks.forException(new RuntimeException("Failed to get ID token", tokenTask.getException()));
             }
@@ -0,0 +1,171 @@
+package com.kulenina.questix.service;
+
+import com.kulenina.questix.model.AppTask;
+import java.util.Calendar;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unapred izračunata ponavljanja jednog ponavljajućeg zadatka.
+ * Vremena ponavljanja se čuvaju kao sortiran long[],
+ * a statusi pojedinačnih ponavljanja kao retka mapa (vreme -> status).
+ * Indeks se pravi ponovo samo kada se promene polja ponavljanja zadatka.
+ */
+public class RecurrenceIndex {
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final long WEEK_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    // Polja zadatka od kojih zavisi raspored ponavljanja
+    private final long executionTime;
+    private final long startDate;
+    private final long endDate;
+    private final int interval;
+    private final String repetitionUnit;
+
+    private final long[] occurrences;
+    private final int size;
+    private final long approxStepMillis;
+    // Vreme do kojeg su ponavljanja izračunata
+    private final long horizon;
+    // Samo razrešena ponavljanja; ostala imaju status izveden iz zadatka
+    private final Map<Long, String> statusOverrides = new ConcurrentHashMap<>();
+
+    private RecurrenceIndex(AppTask task, long[] occurrences, int size, long horizon) {
+        this.executionTime = task.executionTime;
+        this.startDate = task.startDate;
+        this.endDate = task.endDate;
+        this.interval = task.repetitionInterval;
+        this.repetitionUnit = task.repetitionUnit;
+        this.occurrences = occurrences;
+        this.size = size;
+        this.horizon = horizon;
+        this.approxStepMillis = interval * (AppTask.UNIT_WEEK.equals(repetitionUnit) ? WEEK_MILLIS : DAY_MILLIS);
+    }
+
+    /**
+     * Računa sva ponavljanja zadatka od prvog izvršenja do min(endDate, horizon).
+     * @param task Ponavljajući zadatak (isRecurring i repetitionInterval moraju biti postavljeni).
+     * @param horizon Najkasnije vreme do kojeg se ponavljanja računaju.
+     */
+    public static RecurrenceIndex build(AppTask task, long horizon) {
+        int calendarUnit = getCalendarUnit(task.repetitionUnit);
+        int interval = task.repetitionInterval;
+        long endTime = Math.min(task.endDate, horizon);
+
+        // U slučaju da je startDate zadatka u budućnosti, počinjemo od njega.
+        long currentExecutionTime = Math.max(task.executionTime, task.startDate);
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(currentExecutionTime);
+
+        long[] occurrences = new long[16];
+        int size = 0;
+        while (currentExecutionTime <= endTime) {
+            if (size == occurrences.length) {
+                long[] grown = new long[size * 2];
+                System.arraycopy(occurrences, 0, grown, 0, size);
+                occurrences = grown;
+            }
+            occurrences[size++] = currentExecutionTime;
+
+            calendar.add(calendarUnit, interval);
+            currentExecutionTime = calendar.getTimeInMillis();
+        }
+
+        return new RecurrenceIndex(task, occurrences, size, horizon);
+    }
+
+    /**
+     * Da li se indeks i dalje poklapa sa poljima ponavljanja zadatka.
+     */
+    public boolean matches(AppTask task) {
+        return task.repetitionInterval != null
+                && executionTime == task.executionTime
+                && startDate == task.startDate
+                && endDate == task.endDate
+                && interval == task.repetitionInterval
+                && Objects.equals(repetitionUnit, task.repetitionUnit);
+    }
+
+    public void putStatusOverride(long occurrenceTime, String status) {
+        if (status == null) {
+            statusOverrides.remove(occurrenceTime);
+        } else {
+            statusOverrides.put(occurrenceTime, status);
+        }
+    }
+
+    /**
+     * Status zapamćen za konkretno ponavljanje, ili null ako ga nema.
+     */
+    public String getStatusOverride(long occurrenceTime) {
+        return statusOverrides.get(occurrenceTime);
+    }
+
+    /**
+     * Usklađuje statuse ponavljanja sa onima zapamćenim u zadatku (AppTask.occurrenceStatuses).
+     * Ponavljanja kojih nema u indeksu se preskaču.
+     */
+    public void syncStatusOverrides(Map<String, String> occurrenceStatuses) {
+        if (occurrenceStatuses == null || occurrenceStatuses.isEmpty()) {
+            statusOverrides.clear();
+            return;
+        }
+        statusOverrides.keySet().removeIf(time -> !occurrenceStatuses.containsKey(String.valueOf(time)));
+        for (Map.Entry<String, String> entry : occurrenceStatuses.entrySet()) {
+            try {
+                putStatusOverride(Long.parseLong(entry.getKey()), entry.getValue());
+            } catch (NumberFormatException e) {
+                // Ključ nije vreme ponavljanja; preskačemo ga.
+            }
+        }
+    }
+
+    public long getHorizon() {
+        return horizon;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long occurrenceAt(int index) {
+        return occurrences[index];
+    }
+
+    /**
+     * Indeks prvog ponavljanja u trenutku fromTimestamp ili kasnije (size() ako takvo ne postoji).
+     * Pozicija se procenjuje aritmetički iz koraka ponavljanja, a zatim se koriguje za
+     * najviše par mesta (pomeranje sata za letnje/zimsko računanje vremena),
+     * pa cena ne zavisi od toga koliko je zadatak star.
+     */
+    public int firstIndexAtOrAfter(long fromTimestamp) {
+        if (size == 0 || fromTimestamp <= occurrences[0]) {
+            return 0;
+        }
+
+        long estimate = (fromTimestamp - occurrences[0]) / approxStepMillis;
+        int index = (int) Math.min(estimate, size);
+
+        while (index > 0 && occurrences[index - 1] >= fromTimestamp) {
+            index--;
+        }
+        while (index < size && occurrences[index] < fromTimestamp) {
+            index++;
+        }
+        return index;
+    }
+
+    static int getCalendarUnit(String repetitionUnit) {
+        if (AppTask.UNIT_DAY.equals(repetitionUnit)) {
+            return Calendar.DAY_OF_YEAR;
+        } else if (AppTask.UNIT_WEEK.equals(repetitionUnit)) {
+            return Calendar.WEEK_OF_YEAR;
+        }
+        // Možete dodati i "Month" ako je potrebno
+        throw new IllegalArgumentException("Invalid repetition unit: " + repetitionUnit);
+    }
+}
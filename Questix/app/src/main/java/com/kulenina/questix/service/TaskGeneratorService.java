@@ -1,9 +1,12 @@
 package com.kulenina.questix.service;
 
 import com.kulenina.questix.model.AppTask;
+import com.kulenina.questix.model.CalendarDensity;
+import com.kulenina.questix.model.TaskOccurrence;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class TaskGeneratorService {
 
@@ -12,27 +15,25 @@ public class TaskGeneratorService {
     private static final long MAX_TIME_IN_FUTURE_MILLIS =
             System.currentTimeMillis() + (long)MAX_DAYS_IN_FUTURE * 24 * 60 * 60 * 1000;
 
+    // Indeksi ponavljanja po ID-u originalnog zadatka
+    private final Map<String, RecurrenceIndex> occurrenceIndexes = new ConcurrentHashMap<>();
+
     /**
      * Generiše sve instance ponavljajućeg zadatka koje se dešavaju između dva vremenska okvira.
      * @param originalTask Originalni ponavljajući zadatak (iz baze).
      * @param fromTimestamp Vreme od kojeg počinje generisanje.
      * @param toTimestamp Vreme do kojeg se generisanje zaustavlja.
-     * @return Lista generisanih instanci AppTask objekata.
+     * @return Lista ponavljanja koja referenciraju originalni zadatak.
      */
-    public List<AppTask> generateRecurringInstances(
+    public List<TaskOccurrence> generateRecurringOccurrences(
             AppTask originalTask,
             long fromTimestamp,
             long toTimestamp) {
 
-        List<AppTask> instances = new ArrayList<>();
-
-        if (!originalTask.isRecurring || originalTask.repetitionInterval == null) {
-            return instances;
-        }
+        List<TaskOccurrence> instances = new ArrayList<>();
 
-        // Don't generate instances for done/missed/undone recurring tasks
-        // But allow canceled tasks to generate instances (they can be shown if execution time hasn't passed)
-        if (originalTask.isFinished() && !originalTask.isPaused() && !originalTask.status.equals(AppTask.STATUS_CANCELED)) {
+        if (!generatesOccurrences(originalTask)) {
+            evictOccurrenceIndex(originalTask.id);
             return instances;
         }
 
@@ -41,99 +42,127 @@ public class TaskGeneratorService {
         long effectiveEndTimestamp = Math.min(originalTask.endDate, toTimestamp);
         effectiveEndTimestamp = Math.min(effectiveEndTimestamp, MAX_TIME_IN_FUTURE_MILLIS);
 
-        // 2. Pronalazimo prvu instancu
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTimeInMillis(originalTask.executionTime);
+        // 2. Pronalazimo prvu instancu u opsegu direktno iz indeksa ponavljanja
+        RecurrenceIndex index = getOccurrenceIndex(originalTask);
 
-        // Pomeramo kalendar napred dok ne dođemo do fromTimestamp (ili startDate)
-        long currentExecutionTime = originalTask.executionTime;
+        for (int i = index.firstIndexAtOrAfter(fromTimestamp); i < index.size(); i++) {
+            long currentExecutionTime = index.occurrenceAt(i);
+            if (currentExecutionTime > effectiveEndTimestamp) {
+                break;
+            }
 
-        // U slučaju da je startDate zadatka u budućnosti, počinjemo od njega.
-        if (originalTask.startDate > currentExecutionTime) {
-            currentExecutionTime = originalTask.startDate;
+            // 3. Generisanje instance
+            String status = resolveOccurrenceStatus(originalTask, currentExecutionTime,
+                    index.getStatusOverride(currentExecutionTime));
+            instances.add(new TaskOccurrence(originalTask, currentExecutionTime, status));
         }
 
-        // Postavljamo kalendar na vreme prve instance
-        calendar.setTimeInMillis(currentExecutionTime);
+        return instances;
+    }
 
-        // Određujemo jedinicu za ponavljanje
-        int calendarUnit = getCalendarUnit(originalTask.repetitionUnit);
-        int interval = originalTask.repetitionInterval;
+    /**
+     * Isto što i generateRecurringOccurrences, ali bez pravljenja TaskOccurrence objekata:
+     * svako ponavljanje u opsegu se samo broji u density (po danu i statusu).
+     * Za razliku od generisanja, nije ograničeno na MAX_DAYS_IN_FUTURE, pa pokriva i celu godinu.
+     */
+    public void countRecurringOccurrences(
+            AppTask originalTask,
+            long fromTimestamp,
+            long toTimestamp,
+            CalendarDensity density) {
 
-        // Iterativno generisanje
-        while (currentExecutionTime <= effectiveEndTimestamp) {
+        if (!generatesOccurrences(originalTask)) {
+            evictOccurrenceIndex(originalTask.id);
+            return;
+        }
 
-            // 3. Generisanje instance
-            if (currentExecutionTime >= fromTimestamp && currentExecutionTime <= effectiveEndTimestamp) {
-                AppTask instance = cloneTaskInstance(originalTask, currentExecutionTime);
-                instances.add(instance);
+        long effectiveEndTimestamp = Math.min(originalTask.endDate, toTimestamp);
+
+        RecurrenceIndex index = getOccurrenceIndex(originalTask, effectiveEndTimestamp);
+        for (int i = index.firstIndexAtOrAfter(fromTimestamp); i < index.size(); i++) {
+            long currentExecutionTime = index.occurrenceAt(i);
+            if (currentExecutionTime > effectiveEndTimestamp) {
+                break;
             }
+            density.add(currentExecutionTime, resolveOccurrenceStatus(originalTask, currentExecutionTime,
+                    index.getStatusOverride(currentExecutionTime)));
+        }
+    }
 
-            // 4. Pomeranje kalendara na sledeće ponavljanje
-            calendar.add(calendarUnit, interval);
-            currentExecutionTime = calendar.getTimeInMillis();
+    /**
+     * Vraća indeks ponavljanja za zadatak. Indeks se pravi ponovo samo ako su se
+     * promenila polja ponavljanja (executionTime, startDate, endDate, interval, jedinica).
+     * Statusi razrešenih ponavljanja se usklađuju sa zadatkom pri svakom pozivu.
+     */
+    public RecurrenceIndex getOccurrenceIndex(AppTask originalTask) {
+        return getOccurrenceIndex(originalTask, MAX_TIME_IN_FUTURE_MILLIS);
+    }
+
+    /**
+     * Kao getOccurrenceIndex(task), ali indeks pokriva ponavljanja bar do horizon;
+     * kraći indeks se pravi ponovo, a duži se koristi i za kraće opsege.
+     */
+    public RecurrenceIndex getOccurrenceIndex(AppTask originalTask, long horizon) {
+        horizon = Math.max(horizon, MAX_TIME_IN_FUTURE_MILLIS);
+        RecurrenceIndex index = occurrenceIndexes.get(originalTask.id);
+        if (index == null || !index.matches(originalTask) || index.getHorizon() < horizon) {
+            index = RecurrenceIndex.build(originalTask, horizon);
+            occurrenceIndexes.put(originalTask.id, index);
         }
+        index.syncStatusOverrides(originalTask.occurrenceStatuses);
+        return index;
+    }
 
-        return instances;
+    /**
+     * Uklanja indeks zadatka koji je obrisan ili više ne generiše ponavljanja.
+     */
+    public void evictOccurrenceIndex(String taskId) {
+        if (taskId != null) {
+            occurrenceIndexes.remove(taskId);
+        }
     }
 
     // --- Pomoćne Metode ---
 
+    private boolean generatesOccurrences(AppTask originalTask) {
+        if (!originalTask.isRecurring || originalTask.repetitionInterval == null) {
+            return false;
+        }
+        // Don't generate instances for done/missed/undone recurring tasks
+        // But allow canceled tasks to generate instances (they can be shown if execution time hasn't passed)
+        return !(originalTask.isFinished() && !originalTask.isPaused() && !originalTask.status.equals(AppTask.STATUS_CANCELED));
+    }
+
     /**
-     * Kreira kopiju AppTask, ali sa novim ID-om i postavljenim executionTime-om.
+     * Određuje status jednog ponavljanja.
      * Status originalnog zadatka se zadržava samo za prvu instancu.
-     * Za buduće instance, status je uvek "active".
+     * Razrešeno ponavljanje zadržava svoj zapamćeni status.
+     * Za buduće instance, status je "active" (ili "paused" ako je original pauziran).
      * @param originalTask Originalni zadatak.
-     * @param newExecutionTime Vreme novog ponavljanja.
-     * @return Klonirana instanca.
+     * @param occurrenceTime Vreme ponavljanja.
+     * @param statusOverride Status zapamćen za ovo ponavljanje, ili null.
+     * @return Status ponavljanja.
      */
-    private AppTask cloneTaskInstance(AppTask originalTask, long newExecutionTime) {
-        // Kreiranje novog objekta (ručni klon, da se izbegnu problemi sa ID-om)
-        AppTask instance = new AppTask(
-                originalTask.userId, originalTask.categoryId, originalTask.colorHex,
-                originalTask.name, originalTask.description, newExecutionTime,
-                originalTask.isRecurring, originalTask.repetitionInterval, originalTask.repetitionUnit,
-                originalTask.startDate, originalTask.endDate,
-                originalTask.difficulty, originalTask.difficultyXp, originalTask.importance, originalTask.importanceXp
-                // ID i status će se ponovo podesiti u konstruktoru, ali ćemo ga korigovati
-        );
-
+    private String resolveOccurrenceStatus(AppTask originalTask, long occurrenceTime, String statusOverride) {
         // Za ponavljajuće zadatke, status se prenosi samo ako se poklapa executionTime originalnog zadatka.
-        if (newExecutionTime == originalTask.executionTime) {
-            instance.status = originalTask.status;
-            instance.id = originalTask.id; // Zadržavamo ID za prvu instancu za rešavanje/izmenu
-            instance.completedAt = originalTask.completedAt;
-        } else {
-            // If the original task is paused, all generated instances should also be paused
-            if (originalTask.isPaused()) {
-                instance.status = AppTask.STATUS_PAUSED;
-            } else {
-                // Check if this instance is more than 3 days past execution time
-                long now = System.currentTimeMillis();
-                long threeDaysAfterExecution = newExecutionTime + (3 * 24 * 60 * 60 * 1000L);
-                if (now > threeDaysAfterExecution) {
-                    // Past instances older than 3 days after execution are marked as undone
-                    instance.status = AppTask.STATUS_UNDONE;
-                } else {
-                    // Future instances and recent past instances are active
-                    instance.status = AppTask.STATUS_ACTIVE;
-                }
-            }
-            // Dajemo joj jedinstveni ID za prikaz: "ORIGINAL_ID_YYYYMMDDTHHMM"
-            instance.id = originalTask.id + "_" + newExecutionTime;
+        if (occurrenceTime == originalTask.executionTime) {
+            return originalTask.status;
         }
-
-        instance.totalXpValue = originalTask.totalXpValue;
-        return instance;
-    }
-
-    private int getCalendarUnit(String repetitionUnit) {
-        if (AppTask.UNIT_DAY.equals(repetitionUnit)) {
-            return Calendar.DAY_OF_YEAR;
-        } else if (AppTask.UNIT_WEEK.equals(repetitionUnit)) {
-            return Calendar.WEEK_OF_YEAR;
+        if (statusOverride != null) {
+            return statusOverride;
+        }
+        // If the original task is paused, all generated instances should also be paused
+        if (originalTask.isPaused()) {
+            return AppTask.STATUS_PAUSED;
+        }
+        // Check if this instance is more than 3 days past execution time
+        long now = System.currentTimeMillis();
+        long threeDaysAfterExecution = occurrenceTime + (3 * 24 * 60 * 60 * 1000L);
+        if (now > threeDaysAfterExecution) {
+            // Past instances older than 3 days after execution are marked as undone
+            return AppTask.STATUS_UNDONE;
         }
-        // Možete dodati i "Month" ako je potrebno
-        throw new IllegalArgumentException("Invalid repetition unit: " + repetitionUnit);
+        // Future instances and recent past instances are active
+        return AppTask.STATUS_ACTIVE;
     }
-}
\ No newline at end of file
+}
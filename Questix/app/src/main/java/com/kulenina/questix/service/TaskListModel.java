@@ -0,0 +1,59 @@
+package com.kulenina.questix.service;
+
+import com.kulenina.questix.model.AppTask;
+import com.kulenina.questix.model.TaskOccurrence;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lista zadataka u memoriji, grupisana po ID-u originalnog zadatka.
+ * Na promenu iz snapshot listenera ponovo se računaju samo ponavljanja izmenjenih zadataka,
+ * dok ostali zadaci zadržavaju već izračunata ponavljanja.
+ */
+class TaskListModel {
+
+    interface OccurrenceBuilder {
+        List<TaskOccurrence> build(AppTask task, long now);
+    }
+
+    private final OccurrenceBuilder builder;
+    // Redosled dodavanja se čuva, pa izmenjen zadatak ostaje na istom mestu u listi
+    private final Map<String, List<TaskOccurrence>> occurrencesByTaskId = new LinkedHashMap<>();
+    private List<TaskOccurrence> flattened = Collections.emptyList();
+
+    TaskListModel(OccurrenceBuilder builder) {
+        this.builder = builder;
+    }
+
+    synchronized void apply(List<AppTask> upserted, List<String> removedIds, long now) {
+        for (String id : removedIds) {
+            occurrencesByTaskId.remove(id);
+        }
+        for (AppTask task : upserted) {
+            List<TaskOccurrence> occurrences = builder.build(task, now);
+            if (occurrences.isEmpty()) {
+                occurrencesByTaskId.remove(task.getId());
+            } else {
+                occurrencesByTaskId.put(task.getId(), occurrences);
+            }
+        }
+        flattened = null;
+    }
+
+    /**
+     * @return Nepromenljiv spisak svih ponavljanja; pravi se ponovo samo posle promene.
+     */
+    synchronized List<TaskOccurrence> getOccurrences() {
+        if (flattened == null) {
+            List<TaskOccurrence> all = new ArrayList<>();
+            for (List<TaskOccurrence> occurrences : occurrencesByTaskId.values()) {
+                all.addAll(occurrences);
+            }
+            flattened = Collections.unmodifiableList(all);
+        }
+        return flattened;
+    }
+}
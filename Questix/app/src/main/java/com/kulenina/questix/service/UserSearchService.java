@@ -0,0 +1,258 @@
+package com.kulenina.questix.service;
+
+import com.google.android.gms.tasks.CancellationToken;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.kulenina.questix.model.User;
+import com.kulenina.questix.repository.UserRepository;
+import com.kulenina.questix.util.LatencyTracker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Pretraga korisnika po prefiksu korisničkog imena, strana po strana.
+ * Rezultati se čuvaju u malom kešu po upitu, pa ponovljen upit (npr. posle brisanja slova)
+ * ne ide ponovo na server dok keš ne istekne. Ako je za kraći prefiks već učitan kompletan
+ * rezultat, duži upit se filtrira iz njega bez poziva servera.
+ * Pretvaranje i filtriranje rezultata radi se van glavne niti.
+ */
+public class UserSearchService {
+    public static final int PAGE_SIZE = 20;
+
+    private static final int CACHE_SIZE = 20;
+    private static final long CACHE_TTL_MS = 60_000;
+
+    private static final Executor SEARCH_EXECUTOR = Executors.newSingleThreadExecutor();
+    // Od unosa teksta do iscrtavanja rezultata (meri UserSearchFragment)
+    private static final LatencyTracker searchLatency = new LatencyTracker("user search");
+
+    public static class SearchResult {
+        public final String query;
+        public final List<User> users;
+        public final boolean hasMore;
+
+        SearchResult(String query, List<User> users, boolean hasMore) {
+            this.query = query;
+            this.users = users;
+            this.hasMore = hasMore;
+        }
+    }
+
+    /**
+     * Sve do sada učitane strane jednog upita.
+     */
+    private static final class CachedSearch {
+        final List<User> users = new ArrayList<>();
+        DocumentSnapshot lastDocument;
+        boolean hasMore = true;
+        long fetchedAt;
+        Task<SearchResult> pending;
+    }
+
+    // LRU keš, deljen između ekrana; pristupa mu se pod bravom same mape
+    private static final Map<String, CachedSearch> cache = new LinkedHashMap<String, CachedSearch>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedSearch> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private final UserRepository userRepository;
+
+    public UserSearchService() {
+        this.userRepository = new UserRepository();
+    }
+
+    public static LatencyTracker getSearchLatency() {
+        return searchLatency;
+    }
+
+    public Task<SearchResult> search(String query) {
+        return search(query, null, null);
+    }
+
+    /**
+     * Prva strana rezultata za upit (iz keša ako je sveža).
+     * @param excludeUserId Korisnik koji se izostavlja iz rezultata (obično trenutni), ili null.
+     * @param cancellationToken Kada se otkaže, vraćeni Task se odmah završava kao otkazan;
+     *                          započet upit se ipak završava i puni keš.
+     */
+    public Task<SearchResult> search(String query, String excludeUserId, CancellationToken cancellationToken) {
+        String prefix = User.normalizeUsername(query);
+        if (prefix == null || prefix.isEmpty()) {
+            return Tasks.forResult(new SearchResult(prefix, Collections.emptyList(), false));
+        }
+
+        Task<SearchResult> result;
+        synchronized (cache) {
+            CachedSearch cached = cache.get(prefix);
+            if (cached != null && cached.pending != null) {
+                result = cached.pending;
+            } else if (cached != null && isFresh(cached)) {
+                result = Tasks.forResult(toResult(prefix, cached));
+            } else {
+                CachedSearch complete = findCompletePrefix(prefix);
+                result = complete != null
+                        ? refineLocally(prefix, complete)
+                        : fetchNextPage(prefix, putNew(prefix));
+            }
+        }
+        return finish(result, excludeUserId, cancellationToken);
+    }
+
+    public Task<SearchResult> loadMore(String query) {
+        return loadMore(query, null, null);
+    }
+
+    /**
+     * Sledeća strana za upit koji je već pretražen. Vraća sve do sada učitane korisnike.
+     */
+    public Task<SearchResult> loadMore(String query, String excludeUserId, CancellationToken cancellationToken) {
+        String prefix = User.normalizeUsername(query);
+        if (prefix == null || prefix.isEmpty()) {
+            return search(query, excludeUserId, cancellationToken);
+        }
+
+        Task<SearchResult> result;
+        synchronized (cache) {
+            CachedSearch cached = cache.get(prefix);
+            if (cached == null) {
+                return search(query, excludeUserId, cancellationToken);
+            } else if (cached.pending != null) {
+                result = cached.pending;
+            } else if (!cached.hasMore) {
+                result = Tasks.forResult(toResult(prefix, cached));
+            } else {
+                result = fetchNextPage(prefix, cached);
+            }
+        }
+        return finish(result, excludeUserId, cancellationToken);
+    }
+
+    public static void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    private Task<SearchResult> fetchNextPage(String prefix, CachedSearch search) {
+        Task<SearchResult> pending = userRepository
+            .searchByUsernamePrefix(prefix, PAGE_SIZE, search.lastDocument, SEARCH_EXECUTOR)
+            .continueWith(SEARCH_EXECUTOR, task -> {
+                synchronized (cache) {
+                    search.pending = null;
+                    if (!task.isSuccessful()) {
+                        // Neuspela prva strana se ne kešira
+                        if (search.users.isEmpty() && cache.get(prefix) == search) {
+                            cache.remove(prefix);
+                        }
+                        throw task.getException();
+                    }
+
+                    UserRepository.SearchPage page = task.getResult();
+                    search.users.addAll(page.users);
+                    search.lastDocument = page.lastDocument;
+                    search.hasMore = page.hasMore;
+                    search.fetchedAt = System.currentTimeMillis();
+                    return toResult(prefix, search);
+                }
+            });
+        search.pending = pending;
+        return pending;
+    }
+
+    /**
+     * Najduži kraći prefiks čiji je rezultat svež i kompletan (nema više strana).
+     * Poziva se pod bravom keša.
+     */
+    private CachedSearch findCompletePrefix(String prefix) {
+        for (int length = prefix.length() - 1; length > 0; length--) {
+            CachedSearch cached = cache.get(prefix.substring(0, length));
+            if (cached != null && cached.pending == null && !cached.hasMore && isFresh(cached)) {
+                return cached;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Rezultat dužeg upita iz kompletnog rezultata kraćeg prefiksa. Poziva se pod bravom keša.
+     */
+    private Task<SearchResult> refineLocally(String prefix, CachedSearch source) {
+        List<User> sourceUsers = new ArrayList<>(source.users);
+        long sourceFetchedAt = source.fetchedAt;
+        CachedSearch refined = putNew(prefix);
+
+        Task<SearchResult> pending = Tasks.call(SEARCH_EXECUTOR, () -> {
+            List<User> matches = new ArrayList<>();
+            for (User user : sourceUsers) {
+                if (user.usernameLower != null && user.usernameLower.startsWith(prefix)) {
+                    matches.add(user);
+                }
+            }
+
+            synchronized (cache) {
+                refined.pending = null;
+                refined.users.addAll(matches);
+                refined.hasMore = false;
+                // Isti rezultat kao izvor, pa ističe zajedno sa njim
+                refined.fetchedAt = sourceFetchedAt;
+                return toResult(prefix, refined);
+            }
+        });
+        refined.pending = pending;
+        return pending;
+    }
+
+    private CachedSearch putNew(String prefix) {
+        CachedSearch search = new CachedSearch();
+        cache.put(prefix, search);
+        return search;
+    }
+
+    /**
+     * Izbacuje isključenog korisnika (van glavne niti) i vezuje rezultat za token otkazivanja.
+     */
+    private Task<SearchResult> finish(Task<SearchResult> result, String excludeUserId, CancellationToken cancellationToken) {
+        Task<SearchResult> filtered = excludeUserId == null ? result : result.continueWith(SEARCH_EXECUTOR, task -> {
+            SearchResult searchResult = task.getResult();
+            List<User> users = new ArrayList<>(searchResult.users.size());
+            for (User user : searchResult.users) {
+                if (user.id != null && !user.id.equals(excludeUserId)) {
+                    users.add(user);
+                }
+            }
+            return new SearchResult(searchResult.query, Collections.unmodifiableList(users), searchResult.hasMore);
+        });
+
+        if (cancellationToken == null) {
+            return filtered;
+        }
+
+        TaskCompletionSource<SearchResult> source = new TaskCompletionSource<>(cancellationToken);
+        filtered.addOnCompleteListener(SEARCH_EXECUTOR, task -> {
+            if (task.isSuccessful()) {
+                source.trySetResult(task.getResult());
+            } else if (task.getException() != null) {
+                source.trySetException(task.getException());
+            }
+        });
+        return source.getTask();
+    }
+
+    private static boolean isFresh(CachedSearch search) {
+        return System.currentTimeMillis() - search.fetchedAt < CACHE_TTL_MS;
+    }
+
+    private static SearchResult toResult(String prefix, CachedSearch search) {
+        return new SearchResult(prefix, Collections.unmodifiableList(new ArrayList<>(search.users)), search.hasMore);
+    }
+}
@@ -6,139 +6,109 @@ import com.google.firebase.auth.FirebaseAuth;
 import com.kulenina.questix.model.AppTask;
 import com.kulenina.questix.model.Category;
 import com.kulenina.questix.model.StatisticsData;
-import com.kulenina.questix.model.User;
+import com.kulenina.questix.model.UserStatistics;
 import com.kulenina.questix.repository.AppTaskRepository;
 import com.kulenina.questix.repository.CategoryRepository;
 import com.kulenina.questix.repository.UserRepository;
+import com.kulenina.questix.repository.UserStatisticsRepository;
+import com.kulenina.questix.util.AppExecutors;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 
 public class UserStatisticsService {
     private final AppTaskRepository taskRepository;
     private final CategoryRepository categoryRepository;
     private final UserRepository userRepository;
+    private final UserStatisticsRepository statisticsRepository;
     private final FirebaseAuth auth;
 
     public UserStatisticsService() {
         this.taskRepository = new AppTaskRepository();
         this.categoryRepository = new CategoryRepository();
         this.userRepository = new UserRepository();
+        this.statisticsRepository = new UserStatisticsRepository();
         this.auth = FirebaseAuth.getInstance();
     }
 
+    /**
+     * Čita zbirnu statistiku korisnika (jedan dokument) i kategorije za nazive.
+     * Ako zbirni dokument još ne postoji, pravi se iz svih zadataka (backfill).
+     */
     public Task<StatisticsData> getUserStatistics() {
         String userId = getCurrentUserId();
         if (userId == null) {
             return Tasks.forException(new RuntimeException("User not logged in"));
         }
 
-        return taskRepository.findAllByUser(userId)
-            .continueWithTask(task -> {
-                List<AppTask> taskResult = task.getResult();
-                final List<AppTask> allTasks = taskResult != null ? taskResult : new ArrayList<>();
+        return statisticsRepository.read(userId)
+            .continueWithTask(AppExecutors.background(), task -> {
+                UserStatistics statistics = task.getResult();
+                if (UserStatisticsRepository.isComplete(statistics)) {
+                    // Propuštanja iz sweep-a su upisana bez usklađivanja niza dana
+                    statistics.normalizeStreak();
+                    return Tasks.forResult(statistics);
+                }
+                return rebuildStatistics(userId);
+            })
+            .continueWithTask(AppExecutors.background(), task -> {
+                UserStatistics statistics = task.getResult();
 
                 return categoryRepository.findAllByUser(userId)
-                    .continueWith(categoryTask -> {
+                    .continueWith(AppExecutors.background(), categoryTask -> {
                         List<Category> categoryResult = categoryTask.getResult();
                         final List<Category> categories = categoryResult != null ? categoryResult : new ArrayList<>();
 
-                        return calculateStatistics(allTasks, categories);
+                        return toStatisticsData(statistics, categories);
                     });
             });
     }
 
-    private StatisticsData calculateStatistics(List<AppTask> allTasks, List<Category> categories) {
-        StatisticsData stats = new StatisticsData();
-
-        stats.activeDaysCount = calculateActiveDays(allTasks);
-
-        stats.totalCreatedTasks = allTasks.size();
-        stats.totalCompletedTasks = (int) allTasks.stream()
-            .filter(task -> AppTask.STATUS_DONE.equals(task.status))
-            .count();
-        stats.totalMissedTasks = (int) allTasks.stream()
-            .filter(task -> AppTask.STATUS_MISSED.equals(task.status))
-            .count();
-        stats.totalCanceledTasks = (int) allTasks.stream()
-            .filter(task -> AppTask.STATUS_CANCELED.equals(task.status))
-            .count();
-
-        stats.longestSuccessStreak = calculateLongestStreak(allTasks);
-
-        stats.completedTasksByCategory = calculateTasksByCategory(allTasks, categories);
-
-        stats.averageDifficultyData = calculateAverageDifficultyData(allTasks);
-
-        stats.last7DaysXp = calculateLast7DaysXp(allTasks);
-
-        calculateSpecialMissions(allTasks, stats);
+    /**
+     * Backfill: ponovo računa zbirnu statistiku iz svih zadataka korisnika i upisuje je.
+     */
+    public Task<UserStatistics> rebuildStatistics(String userId) {
+        return taskRepository.findAllByUser(userId)
+            .continueWithTask(AppExecutors.background(), task -> {
+                List<AppTask> taskResult = task.getResult();
+                final List<AppTask> allTasks = taskResult != null ? taskResult : new ArrayList<>();
 
-        return stats;
+                UserStatistics statistics = UserStatistics.fromTasks(userId, allTasks, System.currentTimeMillis());
+                return statisticsRepository.createWithId(statistics)
+                    .continueWith(AppExecutors.background(), saveTask -> statistics);
+            });
     }
 
-    private int calculateActiveDays(List<AppTask> allTasks) {
-        Map<String, Boolean> activeDays = new HashMap<>();
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-
-        for (AppTask task : allTasks) {
-            if (AppTask.STATUS_DONE.equals(task.status) && task.completedAt > 0) {
-                String dateKey = dateFormat.format(new Date(task.completedAt));
-                activeDays.put(dateKey, true);
-            }
-        }
-
-        return activeDays.size();
-    }
+    private StatisticsData toStatisticsData(UserStatistics statistics, List<Category> categories) {
+        StatisticsData stats = new StatisticsData();
 
-    private int calculateLongestStreak(List<AppTask> allTasks) {
-        Map<String, Boolean> dayHasCompletedTask = new HashMap<>();
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+        stats.activeDaysCount = (int) statistics.activeDaysCount;
 
-        for (AppTask task : allTasks) {
-            if (AppTask.STATUS_DONE.equals(task.status) && task.completedAt > 0) {
-                String dateKey = dateFormat.format(new Date(task.completedAt));
-                dayHasCompletedTask.put(dateKey, true);
-            }
-        }
+        stats.totalCreatedTasks = (int) statistics.createdCount;
+        stats.totalCompletedTasks = (int) statistics.completedCount;
+        stats.totalMissedTasks = (int) statistics.missedCount;
+        stats.totalCanceledTasks = (int) statistics.canceledCount;
 
-        int longestStreak = 0;
-        int currentStreak = 0;
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(new Date());
+        stats.longestSuccessStreak = (int) statistics.longestStreak;
 
-        for (int i = 0; i < 365; i++) {
-            String dateKey = dateFormat.format(calendar.getTime());
+        stats.completedTasksByCategory = calculateTasksByCategory(statistics, categories);
 
-            if (dayHasCompletedTask.containsKey(dateKey)) {
-                currentStreak++;
-                longestStreak = Math.max(longestStreak, currentStreak);
-            } else {
-                boolean hasTasksForDay = allTasks.stream()
-                    .anyMatch(task -> {
-                        String taskDate = dateFormat.format(new Date(task.executionTime));
-                        return taskDate.equals(dateKey);
-                    });
+        stats.averageDifficultyData = calculateAverageDifficultyData(statistics);
 
-                if (hasTasksForDay) {
-                    currentStreak = 0;
-                }
-            }
+        stats.last7DaysXp = calculateLast7DaysXp(statistics);
 
-            calendar.add(Calendar.DAY_OF_MONTH, -1);
-        }
+        stats.startedSpecialMissions = (int) statistics.specialStartedCount;
+        stats.completedSpecialMissions = (int) statistics.specialCompletedCount;
 
-        return longestStreak;
+        return stats;
     }
 
-    private Map<String, Integer> calculateTasksByCategory(List<AppTask> allTasks, List<Category> categories) {
+    private Map<String, Integer> calculateTasksByCategory(UserStatistics statistics, List<Category> categories) {
         Map<String, Integer> categoryMap = new HashMap<>();
         Map<String, String> categoryIdToName = new HashMap<>();
 
@@ -146,73 +116,48 @@ public class UserStatisticsService {
             categoryIdToName.put(category.getId(), category.name);
         }
 
-        for (AppTask task : allTasks) {
-            if (AppTask.STATUS_DONE.equals(task.status)) {
-                String categoryName = categoryIdToName.getOrDefault(task.categoryId, "Unknown");
-                categoryMap.put(categoryName, categoryMap.getOrDefault(categoryName, 0) + 1);
-            }
+        for (Map.Entry<String, Long> entry : statistics.completedByCategory.entrySet()) {
+            String categoryName = categoryIdToName.getOrDefault(entry.getKey(), "Unknown");
+            categoryMap.put(categoryName, categoryMap.getOrDefault(categoryName, 0) + entry.getValue().intValue());
         }
 
         return categoryMap;
     }
 
-    private List<StatisticsData.DifficultyXpData> calculateAverageDifficultyData(List<AppTask> allTasks) {
-        Map<String, List<Integer>> difficultyXpMap = new HashMap<>();
+    private List<StatisticsData.DifficultyXpData> calculateAverageDifficultyData(UserStatistics statistics) {
+        List<StatisticsData.DifficultyXpData> result = new ArrayList<>();
 
-        for (AppTask task : allTasks) {
-            if (AppTask.STATUS_DONE.equals(task.status)) {
-                difficultyXpMap.computeIfAbsent(task.difficulty, k -> new ArrayList<>())
-                    .add(task.totalXpValue);
+        for (Map.Entry<String, Long> entry : statistics.completedByDifficulty.entrySet()) {
+            long count = entry.getValue();
+            if (count <= 0) {
+                continue;
             }
-        }
-
-        List<StatisticsData.DifficultyXpData> result = new ArrayList<>();
-        for (Map.Entry<String, List<Integer>> entry : difficultyXpMap.entrySet()) {
-            List<Integer> xpValues = entry.getValue();
-            double average = xpValues.stream().mapToInt(Integer::intValue).average().orElse(0.0);
-            result.add(new StatisticsData.DifficultyXpData(entry.getKey(), average, xpValues.size()));
+            Long xpSum = statistics.xpByDifficulty.get(entry.getKey());
+            double average = xpSum != null ? (double) xpSum / count : 0.0;
+            result.add(new StatisticsData.DifficultyXpData(entry.getKey(), average, (int) count));
         }
 
         return result;
     }
 
-    private List<StatisticsData.XpProgressData> calculateLast7DaysXp(List<AppTask> allTasks) {
+    private List<StatisticsData.XpProgressData> calculateLast7DaysXp(UserStatistics statistics) {
         List<StatisticsData.XpProgressData> result = new ArrayList<>();
         SimpleDateFormat dateFormat = new SimpleDateFormat("MM/dd", Locale.getDefault());
         Calendar calendar = Calendar.getInstance();
 
         for (int i = 6; i >= 0; i--) {
-            calendar.setTime(new Date());
+            calendar.setTimeInMillis(System.currentTimeMillis());
             calendar.add(Calendar.DAY_OF_MONTH, -i);
 
             String dateKey = dateFormat.format(calendar.getTime());
-            long dayStart = calendar.getTimeInMillis();
-            calendar.add(Calendar.DAY_OF_MONTH, 1);
-            long dayEnd = calendar.getTimeInMillis();
-
-            int dayXp = allTasks.stream()
-                .filter(task -> AppTask.STATUS_DONE.equals(task.status))
-                .filter(task -> task.completedAt >= dayStart && task.completedAt < dayEnd)
-                .mapToInt(task -> task.totalXpValue)
-                .sum();
+            Long dayXp = statistics.dailyXp.get(UserStatistics.dayKey(calendar.getTimeInMillis()));
 
-            result.add(new StatisticsData.XpProgressData(dateKey, dayXp));
+            result.add(new StatisticsData.XpProgressData(dateKey, dayXp != null ? dayXp.intValue() : 0));
         }
 
         return result;
     }
 
-    private void calculateSpecialMissions(List<AppTask> allTasks, StatisticsData stats) {
-        stats.startedSpecialMissions = (int) allTasks.stream()
-            .filter(task -> "Special".equals(task.importance))
-            .count();
-
-        stats.completedSpecialMissions = (int) allTasks.stream()
-            .filter(task -> "Special".equals(task.importance))
-            .filter(task -> AppTask.STATUS_DONE.equals(task.status))
-            .count();
-    }
-
     private String getCurrentUserId() {
         return auth.getCurrentUser() != null ? auth.getCurrentUser().getUid() : null;
     }
@@ -0,0 +1,52 @@
+package com.kulenina.questix.util;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Izvršioci za Task lance. Nastavci servisa i repozitorijuma (continueWith, continueWithTask)
+ * rade na background(), a u glavnu nit se vraća tek u ViewModel-u, preko main().
+ *
+ * background() ima jednu nit: servisi su pisani za izvršavanje na jednoj niti (ranije glavnoj),
+ * pa se nastavci i dalje ne preklapaju, samo više ne blokiraju UI.
+ */
+public final class AppExecutors {
+
+    private static final ThreadPoolExecutor BACKGROUND = new ThreadPoolExecutor(
+            1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "questix-tasks");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+    private static final Executor MAIN = MAIN_HANDLER::post;
+
+    static {
+        BACKGROUND.allowCoreThreadTimeOut(true);
+    }
+
+    private AppExecutors() {
+    }
+
+    public static Executor background() {
+        return BACKGROUND;
+    }
+
+    public static Executor main() {
+        return MAIN;
+    }
+
+    /**
+     * @return Broj nastavaka koji čekaju na pozadinsku nit (za merenje zagušenja).
+     */
+    public static int getBackgroundQueueSize() {
+        return BACKGROUND.getQueue().size();
+    }
+}
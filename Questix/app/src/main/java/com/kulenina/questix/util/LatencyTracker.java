@@ -0,0 +1,73 @@
+package com.kulenina.questix.util;
+
+import java.util.Arrays;
+
+/**
+ * Pamti poslednjih nekoliko merenja trajanja (u ms) i daje prosek i percentile.
+ * Koristi se za merenje od unosa do prikaza rezultata pretrage.
+ */
+public class LatencyTracker {
+
+    private static final int MAX_SAMPLES = 50;
+
+    private final String name;
+    private final long[] samples = new long[MAX_SAMPLES];
+    private int count;
+    private int next;
+    private long lastMs = -1;
+
+    public LatencyTracker(String name) {
+        this.name = name;
+    }
+
+    public synchronized void record(long durationMs) {
+        samples[next] = durationMs;
+        next = (next + 1) % MAX_SAMPLES;
+        count = Math.min(count + 1, MAX_SAMPLES);
+        lastMs = durationMs;
+        System.out.println("DEBUG: " + name + " latency " + durationMs + " ms (avg " + getAverageMs()
+                + " ms, p95 " + getPercentileMs(95) + " ms, n=" + count + ")");
+    }
+
+    /**
+     * @return Poslednje merenje ili -1 ako merenja nema.
+     */
+    public synchronized long getLastMs() {
+        return lastMs;
+    }
+
+    public synchronized long getAverageMs() {
+        if (count == 0) {
+            return -1;
+        }
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += samples[i];
+        }
+        return sum / count;
+    }
+
+    /**
+     * @param percentile Od 0 do 100, npr. 95 za p95.
+     * @return Vrednost percentila među sačuvanim merenjima ili -1 ako merenja nema.
+     */
+    public synchronized long getPercentileMs(int percentile) {
+        if (count == 0) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        return sorted[Math.max(0, Math.min(index, count - 1))];
+    }
+
+    public synchronized int getSampleCount() {
+        return count;
+    }
+
+    public synchronized void reset() {
+        count = 0;
+        next = 0;
+        lastMs = -1;
+    }
+}
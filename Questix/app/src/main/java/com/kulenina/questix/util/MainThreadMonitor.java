@@ -0,0 +1,80 @@
+package com.kulenina.questix.util;
+
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Meri koliko je glavna nit zauzeta dok se ekran učitava: zbir trajanja poruka koje Looper
+ * obradi od beginScreen do endScreen. Rezultat se beleži u LatencyTracker po ekranu,
+ * pa se poređenjem proseka vidi koliko posla je skinuto sa glavne niti.
+ * Uključuje se samo u debug build-u (install); bez toga su pozivi bez efekta.
+ * Sve metode se pozivaju sa glavne niti.
+ */
+public final class MainThreadMonitor {
+
+    private static boolean installed;
+    private static boolean dispatching;
+    private static long dispatchStartNs;
+    private static long busyNs;
+
+    private static final Map<String, Long> screenStarts = new HashMap<>();
+    private static final Map<String, LatencyTracker> trackers = new HashMap<>();
+
+    private MainThreadMonitor() {
+    }
+
+    public static void install() {
+        if (installed) {
+            return;
+        }
+        installed = true;
+        // Looper ispisuje ">>>>> Dispatching" pre i "<<<<< Finished" posle svake poruke
+        Looper.getMainLooper().setMessageLogging(line -> {
+            if (line.startsWith(">>>>>")) {
+                dispatching = true;
+                dispatchStartNs = SystemClock.elapsedRealtimeNanos();
+            } else if (line.startsWith("<<<<<") && dispatching) {
+                dispatching = false;
+                busyNs += SystemClock.elapsedRealtimeNanos() - dispatchStartNs;
+            }
+        });
+    }
+
+    public static void beginScreen(String screen) {
+        if (!installed) {
+            return;
+        }
+        screenStarts.put(screen, currentBusyNs());
+    }
+
+    /**
+     * Završava merenje ekrana (npr. kada stignu prvi podaci); ponovni pozivi su bez efekta.
+     */
+    public static void endScreen(String screen) {
+        Long start = screenStarts.remove(screen);
+        if (start == null) {
+            return;
+        }
+        LatencyTracker tracker = trackers.get(screen);
+        if (tracker == null) {
+            tracker = new LatencyTracker("Main thread busy (" + screen + ")");
+            trackers.put(screen, tracker);
+        }
+        tracker.record((currentBusyNs() - start) / 1_000_000);
+    }
+
+    /**
+     * @return Merenja ekrana ili null ako ekran još nije izmeren.
+     */
+    public static LatencyTracker getTracker(String screen) {
+        return trackers.get(screen);
+    }
+
+    // Uključuje i deo poruke koja se trenutno obrađuje
+    private static long currentBusyNs() {
+        return busyNs + (dispatching ? SystemClock.elapsedRealtimeNanos() - dispatchStartNs : 0);
+    }
+}
@@ -2,8 +2,12 @@ package com.kulenina.questix.viewmodel;
 
 import com.google.android.gms.tasks.Task;
 import com.kulenina.questix.model.AppTask;
+import com.kulenina.questix.model.TaskOccurrence;
 import com.kulenina.questix.service.AppTaskService;
+import com.kulenina.questix.service.CalendarOccurrenceCache;
+import com.kulenina.questix.util.AppExecutors;
 import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.ListenerRegistration;
 
 import java.util.List;
 import androidx.lifecycle.LiveData;
@@ -17,15 +21,24 @@ public class AppTaskViewModel extends ViewModel {
 
     private final MutableLiveData<AppTask> _taskDetails = new MutableLiveData<>();
 
-    private final MutableLiveData<List<AppTask>> _tasksForSelectedDate = new MutableLiveData<>();
+    private final MutableLiveData<List<TaskOccurrence>> _tasksForSelectedDate = new MutableLiveData<>();
 
-    private final MutableLiveData<List<AppTask>> _listTasks = new MutableLiveData<>();
+    private final MutableLiveData<List<TaskOccurrence>> _listTasks = new MutableLiveData<>();
 
     private final MutableLiveData<String> _error = new MutableLiveData<>();
     private final MutableLiveData<Boolean> _isLoading = new MutableLiveData<>(false);
 
-    public LiveData<List<AppTask>> getTasksForSelectedDate() { return _tasksForSelectedDate; }
-    public LiveData<List<AppTask>> getTasksForList() { return _listTasks; }
+    // Real-time listener za listu zadataka; dok je aktivan, lista se ne učitava ponovo
+    private ListenerRegistration listRegistration;
+    private volatile boolean listenerDelivered;
+
+    // Kalendar: ponavljanja po danima učitanih meseci; koristi se samo sa glavne niti
+    private CalendarOccurrenceCache calendarCache;
+    private boolean calendarSynced;
+    private Long selectedCalendarDay;
+
+    public LiveData<List<TaskOccurrence>> getTasksForSelectedDate() { return _tasksForSelectedDate; }
+    public LiveData<List<TaskOccurrence>> getTasksForList() { return _listTasks; }
     public LiveData<String> getErrorLiveData() { return _error; }
     public LiveData<Boolean> isLoading() { return _isLoading; }
 
@@ -46,32 +59,128 @@ public class AppTaskViewModel extends ViewModel {
         return auth.getCurrentUser().getUid();
     }
 
-    public void loadTaskOccurrencesByDateRange(long dateStartInMillis, long dateEndInMillis) {
+    /**
+     * Zadaci za jedan dan kalendara. Dan se čita iz keša meseca (CalendarOccurrenceCache);
+     * baza se čita samo za mesec koji još nije učitan. Prvo učitavanje pokreće i sinhronizaciju,
+     * a keš se briše samo ako je sinhronizacija nešto promenila.
+     */
+    public void loadTasksForCalendarDay(long dayInMillis) {
         String userId = getCurrentUserId();
+        CalendarOccurrenceCache cache = getCalendarCache(userId);
+        selectedCalendarDay = dayInMillis;
+
+        List<TaskOccurrence> cached = cache.peekDay(dayInMillis);
+        if (cached != null) {
+            _tasksForSelectedDate.setValue(cached);
+            cache.prefetchAround(dayInMillis);
+            return;
+        }
+
         _isLoading.setValue(true);
-        taskService.getTaskOccurrencesByDateRange(userId, dateStartInMillis, dateEndInMillis)
-                .addOnCompleteListener(task -> {
+        cache.getDay(dayInMillis)
+                .addOnCompleteListener(AppExecutors.main(), task -> {
                     _isLoading.postValue(false);
+                    // Korisnik je u međuvremenu izabrao drugi dan
+                    if (selectedCalendarDay != dayInMillis) {
+                        return;
+                    }
                     if (task.isSuccessful()) {
                         _tasksForSelectedDate.postValue(task.getResult());
                     } else {
                         _error.postValue("Failed to load calendar tasks: " + task.getException().getMessage());
                     }
                 });
+
+        if (!calendarSynced) {
+            calendarSynced = true;
+            syncTasks(userId, () -> {
+                cache.invalidateAll();
+                loadTasksForCalendarDay(selectedCalendarDay);
+            });
+        }
+    }
+
+    private CalendarOccurrenceCache getCalendarCache(String userId) {
+        if (calendarCache == null || !userId.equals(calendarCache.getUserId())) {
+            calendarCache = new CalendarOccurrenceCache(taskService, userId);
+            calendarSynced = false;
+        }
+        return calendarCache;
+    }
+
+    /**
+     * Posle izmene zadatka osvežava samo njegove dane u kalendaru i ponovo prikazuje izabrani dan.
+     */
+    private void refreshCalendarTask(String taskId) {
+        if (calendarCache == null || taskId == null) {
+            return;
+        }
+        calendarCache.invalidateTask(taskId)
+                .addOnCompleteListener(AppExecutors.main(), task -> {
+                    if (!task.isSuccessful()) {
+                        // Keš se ne može delimično osvežiti, pa se briše
+                        calendarCache.invalidateAll();
+                    }
+                    if (selectedCalendarDay != null) {
+                        loadTasksForCalendarDay(selectedCalendarDay);
+                    }
+                });
     }
 
+    /**
+     * Prvi poziv prikazuje lokalne podatke i pokreće real-time listener.
+     * Posle toga listener sam šalje izmene, pa su ponovni pozivi bez efekta.
+     */
     public void loadTasksForList() {
+        if (listRegistration != null) {
+            return;
+        }
         String userId = getCurrentUserId();
         _isLoading.setValue(true);
         taskService.getTasksForList(userId)
-                .addOnCompleteListener(task -> {
+                .addOnCompleteListener(AppExecutors.main(), task -> {
                     _isLoading.postValue(false);
                     if (task.isSuccessful()) {
-                        _listTasks.postValue(task.getResult());
+                        // Listener je možda već poslao noviju listu
+                        if (!listenerDelivered) {
+                            _listTasks.postValue(task.getResult());
+                        }
                     } else {
                         _error.postValue("Failed to load list tasks: " + task.getException().getMessage());
                     }
                 });
+        listRegistration = taskService.listenToTasksForList(userId, new AppTaskService.TaskListListener() {
+            @Override
+            public void onTasksForList(List<TaskOccurrence> tasks) {
+                listenerDelivered = true;
+                _listTasks.postValue(tasks);
+            }
+
+            @Override
+            public void onError(String message) {
+                _error.postValue("Failed to load list tasks: " + message);
+            }
+        });
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        if (listRegistration != null) {
+            listRegistration.remove();
+            listRegistration = null;
+            listenerDelivered = false;
+        }
+    }
+
+    private void syncTasks(String userId, Runnable onChanged) {
+        taskService.syncTasks(userId)
+                .addOnCompleteListener(AppExecutors.main(), task -> {
+                    // Bez mreže sinhronizacija ne uspeva, a prikaz ostaje na lokalnim podacima
+                    if (task.isSuccessful() && task.getResult() > 0) {
+                        onChanged.run();
+                    }
+                });
     }
 
     public Task<String> createTask(
@@ -85,10 +194,11 @@ public class AppTaskViewModel extends ViewModel {
         return taskService.createTask(userId, categoryId, name, difficulty, importance,
                         isRecurring, executionTime, repetitionInterval,
                         repetitionUnit, startDate, endDate, description)
-                .addOnCompleteListener(task -> {
+                .addOnCompleteListener(AppExecutors.main(), task -> {
                     _isLoading.postValue(false);
                     if (task.isSuccessful()) {
                         loadTasksForList();
+                        refreshCalendarTask(task.getResult());
                     } else {
                         _error.postValue("Task creation failed: " + task.getException().getMessage());
                     }
@@ -98,10 +208,11 @@ public class AppTaskViewModel extends ViewModel {
     public Task<Void> deleteTask(String taskId) {
         _isLoading.setValue(true);
         return taskService.deleteTask(taskId)
-                .addOnCompleteListener(task -> {
+                .addOnCompleteListener(AppExecutors.main(), task -> {
                     _isLoading.postValue(false);
                     if (task.isSuccessful()) {
                         loadTasksForList();
+                        refreshCalendarTask(taskId);
                     } else {
                         _error.postValue("Task deletion failed: " + task.getException().getMessage());
                     }
@@ -114,10 +225,11 @@ public class AppTaskViewModel extends ViewModel {
 
         _isLoading.setValue(true);
         return taskService.updateTask(taskId, name, description, executionTime, difficulty, importance)
-                .addOnCompleteListener(task -> {
+                .addOnCompleteListener(AppExecutors.main(), task -> {
                     _isLoading.postValue(false);
                     if (task.isSuccessful()) {
                         loadTasksForList();
+                        refreshCalendarTask(taskId);
                     } else {
                         _error.postValue("Task update failed: " + task.getException().getMessage());
                     }
@@ -127,10 +239,11 @@ public class AppTaskViewModel extends ViewModel {
     public Task<Void> resolveTask(String taskId, String newStatus) {
         _isLoading.setValue(true);
         return taskService.resolveTask(taskId, newStatus)
-                .addOnCompleteListener(task -> {
+                .addOnCompleteListener(AppExecutors.main(), task -> {
                     _isLoading.postValue(false);
                     if (task.isSuccessful()) {
                         loadTasksForList();
+                        refreshCalendarTask(taskId);
                     } else {
                         _error.postValue("Task resolution failed: " + task.getException().getMessage());
                     }
@@ -166,7 +279,7 @@ public class AppTaskViewModel extends ViewModel {
     }
 
     // Dodatna sistemska provera (za background service/worker)
-    public Task<Void> checkMissedTasks() {
+    public Task<Integer> checkMissedTasks() {
         String userId = getCurrentUserId();
         return taskService.checkAndMarkMissedTasks(userId);
     }
@@ -178,7 +291,7 @@ public class AppTaskViewModel extends ViewModel {
     public void loadTaskDetails(String taskId) {
         _isLoading.setValue(true);
         taskService.getTaskById(taskId)
-                .addOnCompleteListener(task -> {
+                .addOnCompleteListener(AppExecutors.main(), task -> {
                     _isLoading.postValue(false);
                     if (task.isSuccessful()) {
                         AppTask appTask = task.getResult();
@@ -7,6 +7,7 @@ import androidx.lifecycle.ViewModel;
 import com.google.android.gms.tasks.Task;
 import com.kulenina.questix.model.Category;
 import com.kulenina.questix.service.CategoryService;
+import com.kulenina.questix.util.AppExecutors;
 
 import java.util.List;
 import java.util.Collections;
@@ -33,7 +34,7 @@ public class CategoryViewModel extends ViewModel {
         _errorMessage.setValue(null);
 
         categoryService.getAllCategories()
-                .addOnCompleteListener(task -> {
+                .addOnCompleteListener(AppExecutors.main(), task -> {
                     _isLoading.postValue(false);
                     if (task.isSuccessful()) {
                         _categories.postValue(task.getResult());
@@ -71,7 +72,7 @@ public class CategoryViewModel extends ViewModel {
         _errorMessage.setValue(null);
 
         return categoryService.deleteCategory(categoryId)
-                .addOnCompleteListener(task -> {
+                .addOnCompleteListener(AppExecutors.main(), task -> {
                     _isLoading.postValue(false);
                     if (task.isSuccessful()) {
                         loadCategories();
@@ -86,7 +87,7 @@ public class CategoryViewModel extends ViewModel {
         _errorMessage.setValue(null);
 
         return categoryService.updateCategoryColor(categoryId, newColorHex)
-                .addOnCompleteListener(task -> {
+                .addOnCompleteListener(AppExecutors.main(), task -> {
                     _isLoading.postValue(false);
                     if (task.isSuccessful()) {
                         loadCategories();
@@ -109,7 +110,7 @@ public class CategoryViewModel extends ViewModel {
         }
 
         categoryService.read(categoryId)
-                .addOnCompleteListener(task -> {
+                .addOnCompleteListener(AppExecutors.main(), task -> {
                     if (task.isSuccessful()) {
                         liveData.postValue(task.getResult());
                     } else {
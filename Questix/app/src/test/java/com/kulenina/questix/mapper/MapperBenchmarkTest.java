@@ -0,0 +1,68 @@
+package com.kulenina.questix.mapper;
+
+import static org.junit.Assert.assertEquals;
+
+import com.kulenina.questix.BenchmarkSupport;
+import com.kulenina.questix.model.AppTask;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ * Propusnost i alokacije pri mapiranju 10.000 dokumenata zadataka,
+ * generisanim maperom (AppTask_Mapper) i refleksivnim Mapper-om (Field.get/set i MethodHandle).
+ */
+public class MapperBenchmarkTest {
+
+    private static final int DOCUMENTS = 10_000;
+    private static final int ROUNDS = 10;
+
+    @Test
+    public void mapTenThousandDocuments() {
+        List<Map<String, Object>> documents = new ArrayList<>();
+        IMapper<AppTask> generated = Mappers.get(AppTask.class);
+        for (int i = 0; i < DOCUMENTS; i++) {
+            AppTask task = MapperConsistencyTest.sampleTask();
+            task.name = "Task " + i;
+            task.executionTime += i;
+            documents.add(generated.toMap(task));
+        }
+
+        report("generated", generated, documents);
+        report("reflective", new Mapper<>(AppTask.class), documents);
+        report("reflective+MethodHandle", new Mapper<>(AppTask.class, true), documents);
+    }
+
+    private static void report(String name, IMapper<AppTask> mapper, List<Map<String, Object>> documents) {
+        // Zagrevanje
+        run(mapper, documents);
+        run(mapper, documents);
+
+        long bytes = BenchmarkSupport.allocatedBytes();
+        long start = System.nanoTime();
+        long sink = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            sink += run(mapper, documents);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = bytes >= 0 ? BenchmarkSupport.allocatedBytes() - bytes : -1;
+
+        assertEquals((long) ROUNDS * DOCUMENTS, sink);
+        long operations = (long) ROUNDS * DOCUMENTS;
+        System.out.println(String.format("MapperBenchmark %s: %d docs, %.0f docs/s (fromMap + toMap), %d B/doc",
+                name, documents.size(), operations * 1e9 / elapsed,
+                allocated >= 0 ? allocated / operations : -1));
+    }
+
+    private static int run(IMapper<AppTask> mapper, List<Map<String, Object>> documents) {
+        int count = 0;
+        for (int i = 0; i < documents.size(); i++) {
+            AppTask task = mapper.fromMap(documents.get(i), "task-" + i);
+            if (mapper.toMap(task).size() == documents.get(i).size()) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,84 @@
+package com.kulenina.questix.mapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+
+import com.kulenina.questix.model.Alliance;
+import com.kulenina.questix.model.AllianceInvitation;
+import com.kulenina.questix.model.AllianceMessage;
+import com.kulenina.questix.model.AppTask;
+import com.kulenina.questix.model.BossBattle;
+import com.kulenina.questix.model.Category;
+import com.kulenina.questix.model.Clothing;
+import com.kulenina.questix.model.MissionProgress;
+import com.kulenina.questix.model.Potion;
+import com.kulenina.questix.model.QuotaState;
+import com.kulenina.questix.model.User;
+import com.kulenina.questix.model.UserStatistics;
+import com.kulenina.questix.model.Weapon;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ * Generisani i refleksivni maper moraju da upisuju i čitaju isti skup polja,
+ * da bi dokument zapisan jednim bio ispravno pročitan drugim.
+ */
+public class MapperConsistencyTest {
+
+    private static final List<Class<?>> MODELS = Arrays.asList(
+            Alliance.class, AllianceInvitation.class, AllianceMessage.class, AppTask.class,
+            BossBattle.class, Category.class, Clothing.class, MissionProgress.class, Potion.class,
+            QuotaState.class, User.class, UserStatistics.class, Weapon.class);
+
+    @Test
+    public void generatedMappersAreUsedForAnnotatedModels() {
+        for (Class<?> model : MODELS) {
+            assertNotEquals(model.getSimpleName(), Mapper.class, Mappers.get(model).getClass());
+        }
+    }
+
+    @Test
+    public void toMap_sameFieldsAndValues() throws ReflectiveOperationException {
+        for (Class<?> model : MODELS) {
+            assertSameMap(model);
+        }
+    }
+
+    @Test
+    public void toMap_skipsStaticFields() {
+        Map<String, Object> map = new Mapper<>(AppTask.class).toMap(sampleTask());
+
+        assertFalse(map.containsKey("STATUS_ACTIVE"));
+        assertFalse(map.containsKey("id"));
+    }
+
+    @Test
+    public void fromMap_roundTripMatches() {
+        AppTask task = sampleTask();
+        Map<String, Object> map = Mappers.get(AppTask.class).toMap(task);
+
+        AppTask generated = Mappers.get(AppTask.class).fromMap(map, task.id);
+        AppTask reflective = new Mapper<>(AppTask.class).fromMap(map, task.id);
+
+        assertEquals(Mappers.get(AppTask.class).toMap(generated), new Mapper<>(AppTask.class).toMap(reflective));
+        assertEquals(task.id, reflective.id);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void assertSameMap(Class<T> model) throws ReflectiveOperationException {
+        T object = model.getDeclaredConstructor().newInstance();
+        Map<String, Object> generated = Mappers.get(model).toMap(object);
+        Map<String, Object> reflective = new Mapper<>(model).toMap(object);
+        assertEquals(model.getSimpleName(), generated, reflective);
+    }
+
+    static AppTask sampleTask() {
+        AppTask task = new AppTask("user", "category", "#FF0000", "Task", "Description", 1_700_000_000_000L,
+                true, 2, AppTask.UNIT_WEEK, 1_700_000_000_000L, 1_800_000_000_000L, "Hard", 7, "Important", 3);
+        task.setOccurrenceStatus(1_701_209_600_000L, AppTask.STATUS_DONE);
+        return task;
+    }
+}
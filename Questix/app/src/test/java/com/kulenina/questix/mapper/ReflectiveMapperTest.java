@@ -0,0 +1,57 @@
+package com.kulenina.questix.mapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.kulenina.questix.model.AppTask;
+import com.kulenina.questix.model.User;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Test;
+
+public class ReflectiveMapperTest {
+
+    @After
+    public void tearDown() {
+        Mappers.setUseMethodHandles(false);
+    }
+
+    @Test
+    public void methodHandles_sameResultAsFieldAccess() {
+        AppTask task = MapperConsistencyTest.sampleTask();
+        Mapper<AppTask> fields = new Mapper<>(AppTask.class);
+        Mapper<AppTask> handles = new Mapper<>(AppTask.class, true);
+
+        Map<String, Object> map = fields.toMap(task);
+        assertEquals(map, handles.toMap(task));
+        assertEquals(fields.toMap(fields.fromMap(map, task.id)), handles.toMap(handles.fromMap(map, task.id)));
+        assertEquals(task.id, handles.fromMap(map, task.id).id);
+    }
+
+    @Test
+    public void methodHandles_convertFirestoreTypes() {
+        // Firestore vraća Long za cele brojeve, pa se konvertuju u int/Integer polja
+        Map<String, Object> map = new HashMap<>();
+        map.put("username", "Mika");
+        map.put("level", 3L);
+        map.put("xp", 120L);
+        map.put("coins", null);
+
+        User user = new Mapper<>(User.class, true).fromMap(map, "user-1");
+
+        assertEquals("user-1", user.id);
+        assertEquals(Integer.valueOf(3), user.level);
+        assertEquals(Integer.valueOf(120), user.xp);
+        assertEquals(Integer.valueOf(0), user.coins);
+        assertNull(user.email);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void methodHandles_failedConversionThrows() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("level", "not a number");
+
+        new Mapper<>(User.class, true).fromMap(map);
+    }
+}
@@ -0,0 +1,113 @@
+package com.kulenina.questix.model;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class AllianceTest {
+
+    private static final long LEASE_MS = 5 * 60 * 1000;
+    private static final long NOW = 1_000_000_000L;
+
+    private Alliance alliance;
+
+    @Before
+    public void setUp() {
+        alliance = new Alliance("alliance", "Savez", "leader");
+        alliance.isMissionActive = true;
+    }
+
+    @Test
+    public void canClaimFinalization_inactiveMission_false() {
+        alliance.isMissionActive = false;
+        alliance.missionState = Alliance.MISSION_ACTIVE;
+
+        assertFalse(alliance.canClaimFinalization(NOW, LEASE_MS));
+    }
+
+    @Test
+    public void canClaimFinalization_missionWithoutState_true() {
+        // Misije pokrenute pre uvođenja stanja
+        alliance.missionState = null;
+
+        assertTrue(alliance.canClaimFinalization(NOW, LEASE_MS));
+    }
+
+    @Test
+    public void canClaimFinalization_activeMission_true() {
+        alliance.missionState = Alliance.MISSION_ACTIVE;
+
+        assertTrue(alliance.canClaimFinalization(NOW, LEASE_MS));
+    }
+
+    @Test
+    public void canClaimFinalization_finalizingWithinLease_false() {
+        alliance.missionState = Alliance.MISSION_FINALIZING;
+        alliance.finalizationClaimedAt = NOW - LEASE_MS + 1;
+
+        assertFalse(alliance.canClaimFinalization(NOW, LEASE_MS));
+    }
+
+    @Test
+    public void canClaimFinalization_finalizingLeaseExpired_true() {
+        alliance.missionState = Alliance.MISSION_FINALIZING;
+        alliance.finalizationClaimedAt = NOW - LEASE_MS;
+
+        assertTrue(alliance.canClaimFinalization(NOW, LEASE_MS));
+    }
+
+    @Test
+    public void canClaimFinalization_finalized_false() {
+        alliance.missionState = Alliance.MISSION_FINALIZED;
+        alliance.finalizationClaimedAt = NOW - 2 * LEASE_MS;
+
+        assertFalse(alliance.canClaimFinalization(NOW, LEASE_MS));
+    }
+
+    @Test
+    public void awaitsFinalization_activeOrFinalizing_true() {
+        alliance.missionState = Alliance.MISSION_ACTIVE;
+        assertTrue(alliance.awaitsFinalization());
+
+        alliance.missionState = Alliance.MISSION_FINALIZING;
+        alliance.finalizationClaimedAt = NOW;
+        assertTrue(alliance.awaitsFinalization());
+    }
+
+    @Test
+    public void awaitsFinalization_finalizedOrInactive_false() {
+        alliance.missionState = Alliance.MISSION_FINALIZED;
+        assertFalse(alliance.awaitsFinalization());
+
+        alliance.missionState = Alliance.MISSION_ACTIVE;
+        alliance.isMissionActive = false;
+        assertFalse(alliance.awaitsFinalization());
+    }
+
+    @Test
+    public void holdsFinalizationClaim_sameClaim_true() {
+        alliance.missionState = Alliance.MISSION_FINALIZING;
+        alliance.finalizationClaimedAt = NOW;
+
+        assertTrue(alliance.holdsFinalizationClaim(NOW));
+    }
+
+    @Test
+    public void holdsFinalizationClaim_takenOverAfterLease_false() {
+        // Drugi klijent je preuzeo finalizaciju posle isteka zakupa
+        alliance.missionState = Alliance.MISSION_FINALIZING;
+        alliance.finalizationClaimedAt = NOW + LEASE_MS;
+
+        assertFalse(alliance.holdsFinalizationClaim(NOW));
+    }
+
+    @Test
+    public void holdsFinalizationClaim_finalized_false() {
+        alliance.missionState = Alliance.MISSION_FINALIZED;
+        alliance.finalizationClaimedAt = 0;
+
+        assertFalse(alliance.holdsFinalizationClaim(0));
+    }
+}
@@ -0,0 +1,92 @@
+package com.kulenina.questix.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.kulenina.questix.BenchmarkSupport;
+import com.kulenina.questix.service.TaskGeneratorService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Alokacije pri generisanju ponavljanja za prikaz: TaskOccurrence (referenca na zadatak,
+ * vreme i status) naspram kopije celog AppTask objekta po ponavljanju, kako se radilo ranije.
+ */
+public class TaskOccurrenceBenchmarkTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final int TASKS = 50;
+    private static final int ROUNDS = 20;
+
+    @Test
+    public void flyweight_allocatesLessThanCopies() {
+        Assume.assumeTrue(BenchmarkSupport.allocatedBytes() >= 0);
+
+        long now = System.currentTimeMillis();
+        List<AppTask> tasks = new ArrayList<>();
+        for (int i = 0; i < TASKS; i++) {
+            tasks.add(new AppTask("user", "category", "#FF0000", "Task " + i, "", now - 30 * DAY + i,
+                    true, 1, AppTask.UNIT_DAY, now - 30 * DAY, now + 365 * DAY, "Easy", 1, "Normal", 1));
+        }
+        long from = now - 7 * DAY;
+        long to = now + 60 * DAY;
+        TaskGeneratorService generator = new TaskGeneratorService();
+
+        // Zagrevanje; indeksi ponavljanja se grade jednom po zadatku
+        int occurrences = 0;
+        List<List<TaskOccurrence>> generated = new ArrayList<>();
+        for (AppTask task : tasks) {
+            List<TaskOccurrence> list = generator.generateRecurringOccurrences(task, from, to);
+            occurrences += list.size();
+            generated.add(list);
+            copy(task, list);
+        }
+
+        long before = BenchmarkSupport.allocatedBytes();
+        int sink = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            for (AppTask task : tasks) {
+                sink += generator.generateRecurringOccurrences(task, from, to).size();
+            }
+        }
+        long flyweightBytes = BenchmarkSupport.allocatedBytes() - before;
+
+        // Meri se samo kopiranje, bez generisanja, pa je razlika potcenjena
+        before = BenchmarkSupport.allocatedBytes();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < TASKS; i++) {
+                sink += copy(tasks.get(i), generated.get(i)).size();
+            }
+        }
+        long copyBytes = BenchmarkSupport.allocatedBytes() - before;
+
+        assertEquals(2L * ROUNDS * occurrences, sink);
+        long total = (long) ROUNDS * occurrences;
+        System.out.println(String.format("TaskOccurrenceBenchmark: %d occurrences/round, flyweight=%d B/occurrence, "
+                + "AppTask copy=%d B/occurrence", occurrences, flyweightBytes / total, copyBytes / total));
+        assertTrue("Flyweight allocates " + flyweightBytes + " B, copies " + copyBytes + " B",
+                flyweightBytes < copyBytes);
+    }
+
+    // Ranija varijanta: nova AppTask instanca (sa novim UUID-om) i ID za prikaz po ponavljanju
+    private static List<AppTask> copy(AppTask original, List<TaskOccurrence> occurrences) {
+        List<AppTask> instances = new ArrayList<>();
+        for (TaskOccurrence occurrence : occurrences) {
+            AppTask instance = new AppTask(
+                    original.userId, original.categoryId, original.colorHex,
+                    original.name, original.description, occurrence.executionTime,
+                    original.isRecurring, original.repetitionInterval, original.repetitionUnit,
+                    original.startDate, original.endDate,
+                    original.difficulty, original.difficultyXp, original.importance, original.importanceXp);
+            instance.status = occurrence.status;
+            instance.id = occurrence.executionTime == original.executionTime
+                    ? original.id
+                    : original.id + "_" + occurrence.executionTime;
+            instances.add(instance);
+        }
+        return instances;
+    }
+}
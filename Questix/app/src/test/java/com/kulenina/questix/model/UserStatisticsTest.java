@@ -0,0 +1,112 @@
+package com.kulenina.questix.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import org.junit.Test;
+
+public class UserStatisticsTest {
+
+    @Test
+    public void daysWithoutTasks_doNotBreakStreak() {
+        UserStatistics stats = new UserStatistics("user");
+
+        stats.recordCompleted(task(), at(2025, Calendar.MAY, 1));
+        stats.recordCompleted(task(), at(2025, Calendar.MAY, 2));
+        stats.recordCompleted(task(), at(2025, Calendar.MAY, 5));
+
+        assertEquals(3, stats.currentStreak);
+        assertEquals(3, stats.longestStreak);
+    }
+
+    @Test
+    public void missedTaskOnDayWithoutCompletion_breaksStreak() {
+        UserStatistics stats = new UserStatistics("user");
+        stats.recordCompleted(task(), at(2025, Calendar.MAY, 1));
+        stats.recordCompleted(task(), at(2025, Calendar.MAY, 2));
+
+        stats.recordMissed(at(2025, Calendar.MAY, 3));
+        assertEquals(0, stats.currentStreak);
+        assertNull(stats.streakStartDay);
+
+        stats.recordCompleted(task(), at(2025, Calendar.MAY, 6));
+        assertEquals(1, stats.currentStreak);
+        assertEquals(2, stats.longestStreak);
+    }
+
+    @Test
+    public void missedTaskOnDayWithCompletion_keepsStreak() {
+        UserStatistics stats = new UserStatistics("user");
+        stats.recordCompleted(task(), at(2025, Calendar.MAY, 1));
+        stats.recordCompleted(task(), at(2025, Calendar.MAY, 2));
+        stats.recordCompleted(task(), at(2025, Calendar.MAY, 3));
+
+        stats.recordMissed(at(2025, Calendar.MAY, 2));
+
+        assertEquals(3, stats.currentStreak);
+    }
+
+    @Test
+    public void lateMissInsideStreak_restartsAfterMissedDay() {
+        UserStatistics stats = new UserStatistics("user");
+        stats.recordCompleted(task(), at(2025, Calendar.MAY, 1));
+        stats.recordCompleted(task(), at(2025, Calendar.MAY, 2));
+        stats.recordCompleted(task(), at(2025, Calendar.MAY, 5));
+        stats.recordCompleted(task(), at(2025, Calendar.MAY, 6));
+
+        // Sweep upisuje propuštanje sa zakašnjenjem, za dan 4. maja bez urađenog zadatka
+        stats.recordMissed(at(2025, Calendar.MAY, 4));
+
+        assertEquals(2, stats.currentStreak);
+        assertEquals("2025-05-05", stats.streakStartDay);
+        assertEquals(4, stats.longestStreak);
+        assertEquals(1, stats.missedCount);
+    }
+
+    @Test
+    public void pruneDailyXp_keepsDaysOfCurrentStreak() {
+        UserStatistics stats = new UserStatistics("user");
+        for (int day = 1; day <= 28; day += 3) {
+            stats.recordCompleted(task(), at(2025, Calendar.MARCH, day));
+        }
+        stats.recordCompleted(task(), at(2025, Calendar.MAY, 10));
+
+        stats.pruneDailyXp(at(2025, Calendar.MAY, 11));
+        stats.recordMissed(at(2025, Calendar.MARCH, 5));
+
+        // Niz posle 5. marta: 7, 10, ..., 28. mart i 10. maj
+        assertEquals(9, stats.currentStreak);
+    }
+
+    @Test
+    public void fromTasks_countsUndoneAsMissed() {
+        AppTask done = task();
+        done.status = AppTask.STATUS_DONE;
+        done.completedAt = at(2025, Calendar.MAY, 1);
+        AppTask undone = task();
+        undone.status = AppTask.STATUS_UNDONE;
+        undone.executionTime = at(2025, Calendar.MAY, 2);
+        undone.completedAt = at(2025, Calendar.MAY, 5);
+
+        UserStatistics stats = UserStatistics.fromTasks("user", Arrays.asList(done, undone),
+                at(2025, Calendar.MAY, 6));
+
+        assertEquals(1, stats.missedCount);
+        assertEquals(0, stats.currentStreak);
+        assertEquals(1, stats.longestStreak);
+    }
+
+    private static AppTask task() {
+        return new AppTask("user", "category", "#FF0000", "Task", "", 0L,
+                false, null, null, 0L, 0L, "Easy", 1, "Normal", 1);
+    }
+
+    private static long at(int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, day, 12, 0);
+        return calendar.getTimeInMillis();
+    }
+}
@@ -0,0 +1,90 @@
+package com.kulenina.questix.service;
+
+import static org.junit.Assert.assertEquals;
+
+import com.kulenina.questix.model.MissionProgress;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AllianceMissionServiceTest {
+
+    private MissionProgress progress;
+
+    @Before
+    public void setUp() {
+        progress = new MissionProgress("alliance", "user");
+    }
+
+    @Test
+    public void applyAction_purchase_stopsAtQuota() {
+        assertEquals(10, applyTimes("PURCHASE", 7));
+        assertEquals(5, progress.purchasesCount);
+    }
+
+    @Test
+    public void applyAction_successfulHit_stopsAtQuota() {
+        assertEquals(20, applyTimes("SUCCESSFUL_HIT", 12));
+        assertEquals(10, progress.successfulHitsCount);
+    }
+
+    @Test
+    public void applyAction_heavyTask_stopsAtQuota() {
+        assertEquals(24, applyTimes("HEAVY_TASK", 8));
+        assertEquals(6, progress.heavyTasksCount);
+    }
+
+    @Test
+    public void applyAction_lightTask_stopsAtQuota() {
+        assertEquals(10, applyTimes("LIGHT_TASK", 11));
+        assertEquals(10, progress.lightTasksCount);
+    }
+
+    @Test
+    public void applyAction_lightTaskDouble_countsTwice() {
+        assertEquals(2, AllianceMissionService.applyAction(progress, "LIGHT_TASK_DOUBLE", "2025-05-01"));
+        assertEquals(2, progress.lightTasksCount);
+    }
+
+    @Test
+    public void applyAction_lightTaskDouble_oneBelowQuota_countsOnce() {
+        progress.lightTasksCount = 9;
+
+        assertEquals(1, AllianceMissionService.applyAction(progress, "LIGHT_TASK_DOUBLE", "2025-05-01"));
+        assertEquals(10, progress.lightTasksCount);
+        assertEquals(0, AllianceMissionService.applyAction(progress, "LIGHT_TASK_DOUBLE", "2025-05-01"));
+        assertEquals(10, progress.lightTasksCount);
+    }
+
+    @Test
+    public void applyAction_message_countsOncePerDay() {
+        assertEquals(4, AllianceMissionService.applyAction(progress, "MESSAGE", "2025-05-01"));
+        assertEquals(0, AllianceMissionService.applyAction(progress, "MESSAGE", "2025-05-01"));
+        assertEquals(4, AllianceMissionService.applyAction(progress, "MESSAGE", "2025-05-02"));
+        assertEquals(2, progress.getMessageDaysCount());
+    }
+
+    @Test
+    public void applyAction_message_stopsAtFourteenDays() {
+        for (int day = 1; day <= 14; day++) {
+            assertEquals(4, AllianceMissionService.applyAction(progress, "MESSAGE", String.format("2025-05-%02d", day)));
+        }
+
+        assertEquals(0, AllianceMissionService.applyAction(progress, "MESSAGE", "2025-05-15"));
+        assertEquals(14, progress.getMessageDaysCount());
+    }
+
+    @Test
+    public void applyAction_unknownAction_changesNothing() {
+        assertEquals(0, AllianceMissionService.applyAction(progress, "UNKNOWN", "2025-05-01"));
+        assertEquals(0, progress.purchasesCount + progress.successfulHitsCount
+                + progress.lightTasksCount + progress.heavyTasksCount);
+    }
+
+    private int applyTimes(String actionType, int times) {
+        int hp = 0;
+        for (int i = 0; i < times; i++) {
+            hp += AllianceMissionService.applyAction(progress, actionType, "2025-05-01");
+        }
+        return hp;
+    }
+}
@@ -0,0 +1,126 @@
+package com.kulenina.questix.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.kulenina.questix.model.QuotaState;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class AppTaskServiceQuotaTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long TODAY = 1_000 * DAY;
+    private static final String QUOTA_ID = "day_user";
+
+    @Test
+    public void decideQuota_noQuotaType_awardsXpWithoutQuotaWrite() {
+        AppTaskService.QuotaDecision decision = AppTaskService.decideQuota(null, null, null, "user", 0);
+
+        assertTrue(decision.awardXp);
+        assertNull(decision.updatedQuota);
+    }
+
+    @Test
+    public void decideQuota_missingQuota_startsPeriodAtOne() {
+        AppTaskService.QuotaDecision decision = AppTaskService.decideQuota("H_EI", null, QUOTA_ID, "user", TODAY);
+
+        assertTrue(decision.awardXp);
+        assertEquals(QUOTA_ID, decision.updatedQuota.id);
+        assertEquals(TODAY, decision.updatedQuota.timestamp);
+        assertEquals(1, decision.updatedQuota.getCount("H_EI"));
+    }
+
+    @Test
+    public void decideQuota_belowCap_increments() {
+        QuotaState quota = quota(TODAY);
+        quota.hardExtremelyImportantCount = 1;
+
+        AppTaskService.QuotaDecision decision = AppTaskService.decideQuota("H_EI", quota, QUOTA_ID, "user", TODAY);
+
+        assertTrue(decision.awardXp);
+        assertSame(quota, decision.updatedQuota);
+        assertEquals(2, quota.hardExtremelyImportantCount);
+    }
+
+    @Test
+    public void decideQuota_atCap_noXpAndNoWrite() {
+        QuotaState quota = quota(TODAY);
+        quota.hardExtremelyImportantCount = 2;
+
+        AppTaskService.QuotaDecision decision = AppTaskService.decideQuota("H_EI", quota, QUOTA_ID, "user", TODAY);
+
+        assertFalse(decision.awardXp);
+        assertNull(decision.updatedQuota);
+        assertEquals(2, quota.hardExtremelyImportantCount);
+    }
+
+    @Test
+    public void decideQuota_reachesCapExactly() {
+        QuotaState quota = quota(TODAY);
+        int awarded = 0;
+        for (int i = 0; i < 7; i++) {
+            AppTaskService.QuotaDecision decision = AppTaskService.decideQuota("VE_N", quota, QUOTA_ID, "user", TODAY);
+            if (decision.awardXp) {
+                awarded++;
+                quota = decision.updatedQuota;
+            }
+        }
+
+        assertEquals(5, awarded);
+        assertEquals(5, quota.veryEasyNormalCount);
+    }
+
+    @Test
+    public void decideQuota_newPeriod_resetsCounters() {
+        QuotaState yesterday = quota(TODAY - DAY);
+        yesterday.hardExtremelyImportantCount = 2;
+        yesterday.veryEasyNormalCount = 5;
+
+        AppTaskService.QuotaDecision decision = AppTaskService.decideQuota("H_EI", yesterday, QUOTA_ID, "user", TODAY);
+
+        assertTrue(decision.awardXp);
+        assertEquals(TODAY, decision.updatedQuota.timestamp);
+        assertEquals(1, decision.updatedQuota.hardExtremelyImportantCount);
+        assertEquals(0, decision.updatedQuota.veryEasyNormalCount);
+        // Stanje iz ranijeg perioda se ne menja
+        assertEquals(2, yesterday.hardExtremelyImportantCount);
+    }
+
+    @Test
+    public void decideQuota_weeklyAndMonthlyCapsAreOne() {
+        QuotaState weekly = quota(TODAY);
+        assertTrue(AppTaskService.decideQuota("EH", weekly, QUOTA_ID, "user", TODAY).awardXp);
+        assertFalse(AppTaskService.decideQuota("EH", weekly, QUOTA_ID, "user", TODAY).awardXp);
+
+        QuotaState monthly = quota(TODAY);
+        assertTrue(AppTaskService.decideQuota("S", monthly, QUOTA_ID, "user", TODAY).awardXp);
+        assertFalse(AppTaskService.decideQuota("S", monthly, QUOTA_ID, "user", TODAY).awardXp);
+    }
+
+    @Test
+    public void getQuotaType_mapsDifficultyAndImportance() {
+        assertEquals("VE_N", AppTaskService.getQuotaType("Very Easy", "Normal"));
+        assertEquals("E_I", AppTaskService.getQuotaType("Easy", "Important"));
+        assertEquals("H_EI", AppTaskService.getQuotaType("Hard", "Extremely Important"));
+        assertEquals("EH", AppTaskService.getQuotaType("Extremely Hard", "Special"));
+        assertEquals("S", AppTaskService.getQuotaType("Easy", "Special"));
+        assertNull(AppTaskService.getQuotaType("Easy", "Normal"));
+    }
+
+    @Test
+    public void isTooOldToResolve_boundaryIsThreeDays() {
+        long now = TODAY;
+
+        assertFalse(AppTaskService.isTooOldToResolve(now - 3 * DAY, now));
+        assertTrue(AppTaskService.isTooOldToResolve(now - 3 * DAY - 1, now));
+        assertFalse(AppTaskService.isTooOldToResolve(now, now));
+    }
+
+    private static QuotaState quota(long periodStart) {
+        return new QuotaState(QUOTA_ID, "user", periodStart);
+    }
+}
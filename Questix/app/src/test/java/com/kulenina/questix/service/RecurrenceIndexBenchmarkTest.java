@@ -0,0 +1,98 @@
+package com.kulenina.questix.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.kulenina.questix.model.AppTask;
+import com.kulenina.questix.model.TaskOccurrence;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+/**
+ * Mikrobenčmark: cena traženja ponavljanja u narednoj nedelji ne sme da zavisi od toga
+ * koliko je zadatak star. Poređenja radi meri se i hod kalendarom od prvog izvršenja
+ * (kako se radilo pre indeksa), čija cena raste sa starošću zadatka.
+ */
+public class RecurrenceIndexBenchmarkTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 50_000;
+
+    @Test
+    public void lookupCost_doesNotDependOnTaskAge() {
+        long now = System.currentTimeMillis();
+        AppTask oneYear = dailyTask(now - 365 * DAY, now + 60 * DAY);
+        AppTask tenYears = dailyTask(now - 3650 * DAY, now + 60 * DAY);
+        long from = now;
+        long to = now + 7 * DAY;
+
+        TaskGeneratorService generator = new TaskGeneratorService();
+        assertEquals(generator.generateRecurringOccurrences(oneYear, from, to).size(),
+                generator.generateRecurringOccurrences(tenYears, from, to).size());
+
+        double indexOneYear = measureIndex(generator, oneYear, from, to);
+        double indexTenYears = measureIndex(generator, tenYears, from, to);
+        double walkOneYear = measureWalk(oneYear, from, to);
+        double walkTenYears = measureWalk(tenYears, from, to);
+
+        System.out.println(String.format("RecurrenceIndexBenchmark: index 1y=%.0f ns/op, 10y=%.0f ns/op; "
+                + "calendar walk 1y=%.0f ns/op, 10y=%.0f ns/op",
+                indexOneYear, indexTenYears, walkOneYear, walkTenYears));
+
+        // Labava granica zbog šuma JIT-a i GC-a; hod kalendarom je ovde ~10x sporiji
+        assertTrue("Lookup cost grows with task age: " + indexOneYear + " vs " + indexTenYears,
+                indexTenYears < indexOneYear * 3 + 2_000);
+    }
+
+    private static double measureIndex(TaskGeneratorService generator, AppTask task, long from, long to) {
+        int sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += generator.generateRecurringOccurrences(task, from, to).size();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            List<TaskOccurrence> occurrences = generator.generateRecurringOccurrences(task, from, to);
+            sink += occurrences.size();
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue(sink > 0);
+        return (double) elapsed / ITERATIONS;
+    }
+
+    private static double measureWalk(AppTask task, long from, long to) {
+        int iterations = ITERATIONS / 50;
+        int sink = 0;
+        for (int i = 0; i < iterations / 4; i++) {
+            sink += walk(task, from, to);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += walk(task, from, to);
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue(sink > 0);
+        return (double) elapsed / iterations;
+    }
+
+    // Hod od prvog izvršenja do opsega, dan po dan
+    private static int walk(AppTask task, long from, long to) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(task.executionTime);
+        int count = 0;
+        while (calendar.getTimeInMillis() <= to) {
+            if (calendar.getTimeInMillis() >= from) {
+                count++;
+            }
+            calendar.add(Calendar.DAY_OF_YEAR, task.repetitionInterval);
+        }
+        return count;
+    }
+
+    private static AppTask dailyTask(long start, long end) {
+        return new AppTask("user", "category", "#FF0000", "Task", "", start,
+                true, 1, AppTask.UNIT_DAY, start, end, "Easy", 1, "Normal", 1);
+    }
+}
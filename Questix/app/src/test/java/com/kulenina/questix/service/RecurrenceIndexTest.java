@@ -0,0 +1,171 @@
+package com.kulenina.questix.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.kulenina.questix.model.AppTask;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RecurrenceIndexTest {
+
+    private TimeZone originalTimeZone;
+
+    @Before
+    public void setUp() {
+        // Zona sa letnjim računanjem vremena (30.3.2025. i 26.10.2025.)
+        originalTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Europe/Belgrade"));
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(originalTimeZone);
+    }
+
+    @Test
+    public void firstIndexAtOrAfter_dailyAcrossDstChanges_findsExactOccurrence() {
+        RecurrenceIndex index = build(at(2025, Calendar.JANUARY, 1, 9, 0), at(2025, Calendar.DECEMBER, 31, 23, 0),
+                1, AppTask.UNIT_DAY);
+
+        assertEquals(365, index.size());
+        assertEveryPositionFound(index);
+    }
+
+    @Test
+    public void firstIndexAtOrAfter_weeklyAcrossDstChanges_findsExactOccurrence() {
+        RecurrenceIndex index = build(at(2025, Calendar.JANUARY, 6, 0, 30), at(2025, Calendar.DECEMBER, 31, 23, 0),
+                2, AppTask.UNIT_WEEK);
+
+        assertEveryPositionFound(index);
+    }
+
+    @Test
+    public void firstIndexAtOrAfter_afterSpringForward_doesNotReturnEarlierOccurrence() {
+        // Dan posle prelaska na letnje vreme traje 23 sata, pa aritmetička procena zaostaje za jedno mesto
+        RecurrenceIndex index = build(at(2025, Calendar.MARCH, 1, 9, 0), at(2025, Calendar.APRIL, 30, 23, 0),
+                1, AppTask.UNIT_DAY);
+        long afterChange = at(2025, Calendar.MARCH, 31, 9, 0);
+
+        int position = index.firstIndexAtOrAfter(afterChange);
+
+        assertEquals(afterChange, index.occurrenceAt(position));
+        assertEquals(30, position);
+    }
+
+    @Test
+    public void build_keepsLocalTimeAcrossDstChanges() {
+        RecurrenceIndex index = build(at(2025, Calendar.MARCH, 25, 9, 0), at(2025, Calendar.NOVEMBER, 5, 23, 0),
+                1, AppTask.UNIT_DAY);
+
+        Calendar calendar = Calendar.getInstance();
+        for (int i = 0; i < index.size(); i++) {
+            calendar.setTimeInMillis(index.occurrenceAt(i));
+            assertEquals(9, calendar.get(Calendar.HOUR_OF_DAY));
+            assertEquals(0, calendar.get(Calendar.MINUTE));
+        }
+    }
+
+    @Test
+    public void firstIndexAtOrAfter_outsideRange() {
+        RecurrenceIndex index = build(at(2025, Calendar.MAY, 1, 9, 0), at(2025, Calendar.MAY, 10, 23, 0),
+                1, AppTask.UNIT_DAY);
+
+        assertEquals(10, index.size());
+        assertEquals(0, index.firstIndexAtOrAfter(at(2025, Calendar.APRIL, 1, 0, 0)));
+        assertEquals(index.size(), index.firstIndexAtOrAfter(at(2025, Calendar.MAY, 10, 9, 1)));
+        assertEquals(index.size(), index.firstIndexAtOrAfter(at(2026, Calendar.MAY, 1, 0, 0)));
+    }
+
+    @Test
+    public void firstIndexAtOrAfter_emptyIndex() {
+        RecurrenceIndex index = build(at(2025, Calendar.MAY, 10, 9, 0), at(2025, Calendar.MAY, 1, 0, 0),
+                1, AppTask.UNIT_DAY);
+
+        assertEquals(0, index.size());
+        assertEquals(0, index.firstIndexAtOrAfter(at(2025, Calendar.JUNE, 1, 0, 0)));
+    }
+
+    @Test
+    public void build_stopsAtHorizon() {
+        long horizon = at(2025, Calendar.MAY, 5, 12, 0);
+        AppTask task = recurringTask(at(2025, Calendar.MAY, 1, 9, 0), at(2025, Calendar.DECEMBER, 31, 23, 0),
+                1, AppTask.UNIT_DAY);
+
+        RecurrenceIndex index = RecurrenceIndex.build(task, horizon);
+
+        assertEquals(5, index.size());
+        assertEquals(horizon, index.getHorizon());
+        assertTrue(index.matches(task));
+    }
+
+    @Test
+    public void syncStatusOverrides_followsTaskOccurrenceStatuses() {
+        AppTask task = recurringTask(at(2025, Calendar.MAY, 1, 9, 0), at(2025, Calendar.MAY, 31, 23, 0),
+                1, AppTask.UNIT_DAY);
+        RecurrenceIndex index = RecurrenceIndex.build(task, task.endDate);
+        long second = index.occurrenceAt(1);
+        long third = index.occurrenceAt(2);
+
+        Map<String, String> statuses = new HashMap<>();
+        statuses.put(String.valueOf(second), AppTask.STATUS_DONE);
+        statuses.put(String.valueOf(third), AppTask.STATUS_CANCELED);
+        index.syncStatusOverrides(statuses);
+
+        assertEquals(AppTask.STATUS_DONE, index.getStatusOverride(second));
+        assertEquals(AppTask.STATUS_CANCELED, index.getStatusOverride(third));
+        assertNull(index.getStatusOverride(index.occurrenceAt(3)));
+
+        // Uklonjeno iz zadatka -> uklonjeno i iz indeksa
+        statuses.remove(String.valueOf(third));
+        index.syncStatusOverrides(statuses);
+        assertNull(index.getStatusOverride(third));
+
+        index.syncStatusOverrides(null);
+        assertNull(index.getStatusOverride(second));
+    }
+
+    @Test
+    public void putStatusOverride_nullRemovesOverride() {
+        RecurrenceIndex index = build(at(2025, Calendar.MAY, 1, 9, 0), at(2025, Calendar.MAY, 10, 23, 0),
+                1, AppTask.UNIT_DAY);
+        long occurrence = index.occurrenceAt(4);
+
+        index.putStatusOverride(occurrence, AppTask.STATUS_DONE);
+        assertEquals(AppTask.STATUS_DONE, index.getStatusOverride(occurrence));
+
+        index.putStatusOverride(occurrence, null);
+        assertNull(index.getStatusOverride(occurrence));
+    }
+
+    private static void assertEveryPositionFound(RecurrenceIndex index) {
+        for (int i = 0; i < index.size(); i++) {
+            long occurrence = index.occurrenceAt(i);
+            assertEquals(i, index.firstIndexAtOrAfter(occurrence));
+            assertEquals(i, index.firstIndexAtOrAfter(occurrence - 1));
+            assertEquals(i + 1, index.firstIndexAtOrAfter(occurrence + 1));
+        }
+    }
+
+    private static RecurrenceIndex build(long start, long end, int interval, String unit) {
+        return RecurrenceIndex.build(recurringTask(start, end, interval, unit), end);
+    }
+
+    private static AppTask recurringTask(long start, long end, int interval, String unit) {
+        return new AppTask("user", "category", "#FF0000", "Task", "", start,
+                true, interval, unit, start, end, "Easy", 1, "Normal", 1);
+    }
+
+    private static long at(int year, int month, int day, int hour, int minute) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, day, hour, minute);
+        return calendar.getTimeInMillis();
+    }
+}
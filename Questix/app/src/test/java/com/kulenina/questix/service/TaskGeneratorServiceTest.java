@@ -0,0 +1,61 @@
+package com.kulenina.questix.service;
+
+import static org.junit.Assert.assertEquals;
+
+import com.kulenina.questix.model.AppTask;
+import com.kulenina.questix.model.TaskOccurrence;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class TaskGeneratorServiceTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private final TaskGeneratorService generator = new TaskGeneratorService();
+
+    @Test
+    public void generateRecurringOccurrences_usesOccurrenceStatuses() {
+        long start = System.currentTimeMillis() - 2 * DAY;
+        AppTask task = dailyTask(start, start + 20 * DAY);
+        task.setOccurrenceStatus(start + DAY, AppTask.STATUS_DONE);
+        task.setOccurrenceStatus(start + 3 * DAY, AppTask.STATUS_CANCELED);
+
+        List<TaskOccurrence> occurrences = generator.generateRecurringOccurrences(task, start, start + 5 * DAY);
+
+        assertEquals(6, occurrences.size());
+        assertEquals(AppTask.STATUS_ACTIVE, occurrences.get(0).status);
+        assertEquals(AppTask.STATUS_DONE, occurrences.get(1).status);
+        assertEquals(AppTask.STATUS_ACTIVE, occurrences.get(2).status);
+        assertEquals(AppTask.STATUS_CANCELED, occurrences.get(3).status);
+        assertEquals(AppTask.STATUS_ACTIVE, occurrences.get(4).status);
+    }
+
+    @Test
+    public void generateRecurringOccurrences_picksUpStatusesAddedAfterIndexBuilt() {
+        long start = System.currentTimeMillis() - 2 * DAY;
+        AppTask task = dailyTask(start, start + 20 * DAY);
+        generator.generateRecurringOccurrences(task, start, start + 5 * DAY);
+
+        task.setOccurrenceStatus(start + 2 * DAY, AppTask.STATUS_DONE);
+        List<TaskOccurrence> occurrences = generator.generateRecurringOccurrences(task, start, start + 5 * DAY);
+
+        assertEquals(AppTask.STATUS_DONE, occurrences.get(2).status);
+    }
+
+    @Test
+    public void generateRecurringOccurrences_firstOccurrenceKeepsSeriesStatus() {
+        long start = System.currentTimeMillis() - 2 * DAY;
+        AppTask task = dailyTask(start, start + 20 * DAY);
+        task.setOccurrenceStatus(start, AppTask.STATUS_DONE);
+
+        List<TaskOccurrence> occurrences = generator.generateRecurringOccurrences(task, start, start + DAY);
+
+        assertEquals(AppTask.STATUS_ACTIVE, occurrences.get(0).status);
+    }
+
+    private static AppTask dailyTask(long start, long end) {
+        return new AppTask("user", "category", "#FF0000", "Task", "", start,
+                true, 1, AppTask.UNIT_DAY, start, end, "Easy", 1, "Normal", 1);
+    }
+}
@@ -0,0 +1,15 @@
+package com.kulenina.questix.mapper;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Označava model za koji se u vreme kompajliranja generiše IMapper implementacija
+ * (ImeKlase_Mapper u istom paketu) sa direktnim pristupom poljima.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateMapper {
+}
@@ -0,0 +1,222 @@
+package com.kulenina.questix.mapper.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generiše IMapper implementaciju za svaki model označen sa @GenerateMapper.
+ * Generisani kod čita i upisuje polja direktno, bez refleksije, a konverzije vrednosti
+ * prepušta MapperValues klasi, tako da se ponaša isto kao refleksivni Mapper.
+ */
+@SupportedAnnotationTypes("com.kulenina.questix.mapper.GenerateMapper")
+public class MapperProcessor extends AbstractProcessor {
+
+    private static final String MAPPER_PACKAGE = "com.kulenina.questix.mapper";
+    private static final String IDENTIFIABLE = "com.kulenina.questix.model.IIdentifiable";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS) {
+                    error(element, "@GenerateMapper can only be applied to classes");
+                    continue;
+                }
+                TypeElement type = (TypeElement) element;
+                if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+                    error(type, "@GenerateMapper cannot be applied to abstract classes");
+                    continue;
+                }
+                try {
+                    generate(type);
+                } catch (IOException e) {
+                    error(type, "Failed to generate mapper: " + e.getMessage());
+                }
+            }
+        }
+        return true;
+    }
+
+    private void generate(TypeElement type) throws IOException {
+        Map<String, VariableElement> fields = collectFields(type);
+        if (fields == null) {
+            return;
+        }
+
+        boolean hasIdField = fields.containsKey("id");
+        if (!hasIdField && isIdentifiable(type)) {
+            error(type, "Class " + type.getSimpleName()
+                    + " implements IIdentifiable but doesn't have an 'id' field in its hierarchy");
+            return;
+        }
+
+        String packageName = processingEnv.getElementUtils().getPackageOf(type)
+                .getQualifiedName().toString();
+        String modelName = type.getSimpleName().toString();
+        String mapperName = modelName + "_Mapper";
+
+        StringBuilder out = new StringBuilder();
+        out.append("package ").append(packageName).append(";\n\n");
+        out.append("import ").append(MAPPER_PACKAGE).append(".IMapper;\n");
+        out.append("import ").append(MAPPER_PACKAGE).append(".MapperValues;\n");
+        out.append("import java.util.HashMap;\n");
+        out.append("import java.util.Map;\n\n");
+        out.append("/**\n * Generated from ").append(modelName).append(" by MapperProcessor. Do not edit.\n */\n");
+        out.append("public final class ").append(mapperName)
+                .append(" implements IMapper<").append(modelName).append("> {\n\n");
+
+        // toMap
+        out.append("    @Override\n");
+        out.append("    public Map<String, Object> toMap(").append(modelName).append(" object) {\n");
+        out.append("        if (object == null) {\n            return null;\n        }\n\n");
+        out.append("        Map<String, Object> map = new HashMap<>(").append(capacityFor(fields.size())).append(");\n");
+        for (Map.Entry<String, VariableElement> entry : fields.entrySet()) {
+            if ("id".equals(entry.getKey())) {
+                continue;
+            }
+            out.append("        map.put(\"").append(entry.getKey()).append("\", object.")
+                    .append(entry.getKey()).append(");\n");
+        }
+        out.append("        return map;\n    }\n\n");
+
+        // fromMap(map)
+        out.append("    @Override\n");
+        out.append("    public ").append(modelName).append(" fromMap(Map<String, Object> map) {\n");
+        out.append("        return fromMap(map, null);\n    }\n\n");
+
+        // fromMap(map, id)
+        out.append("    @Override\n");
+        out.append("    @SuppressWarnings(\"unchecked\")\n");
+        out.append("    public ").append(modelName).append(" fromMap(Map<String, Object> map, String id) {\n");
+        out.append("        if (map == null) {\n            return null;\n        }\n\n");
+        out.append("        try {\n");
+        out.append("            ").append(modelName).append(" object = new ").append(modelName).append("();\n");
+        out.append("            Object value;\n");
+        for (Map.Entry<String, VariableElement> entry : fields.entrySet()) {
+            String name = entry.getKey();
+            String conversion = conversionFor(entry.getValue());
+            if (conversion == null) {
+                return;
+            }
+            out.append("\n            value = map.get(\"").append(name).append("\");\n");
+            out.append("            if (value != null) {\n");
+            out.append("                object.").append(name).append(" = ").append(conversion).append(";\n");
+            out.append("            }\n");
+        }
+        if (hasIdField) {
+            out.append("\n            if (id != null) {\n                object.id = id;\n            }\n");
+        }
+        out.append("            return object;\n");
+        out.append("        } catch (RuntimeException e) {\n");
+        out.append("            throw new RuntimeException(\"Failed to convert map to object\", e);\n");
+        out.append("        }\n    }\n}\n");
+
+        try (Writer writer = processingEnv.getFiler()
+                .createSourceFile(packageName + "." + mapperName, type).openWriter()) {
+            writer.write(out.toString());
+        }
+    }
+
+    /**
+     * Instance polja od klase ka roditeljima; polje potklase ima prednost nad istoimenim poljem roditelja.
+     */
+    private Map<String, VariableElement> collectFields(TypeElement type) {
+        Map<String, VariableElement> fields = new LinkedHashMap<>();
+        TypeElement current = type;
+
+        while (current != null && !current.getQualifiedName().contentEquals("java.lang.Object")) {
+            List<VariableElement> declared = new ArrayList<>(ElementFilter.fieldsIn(current.getEnclosedElements()));
+            for (VariableElement field : declared) {
+                Set<Modifier> modifiers = field.getModifiers();
+                if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+                    continue;
+                }
+                String name = field.getSimpleName().toString();
+                if (fields.containsKey(name)) {
+                    continue;
+                }
+                if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL)) {
+                    error(field, "@GenerateMapper requires non-private, non-final fields: " + name);
+                    return null;
+                }
+                fields.put(name, field);
+            }
+
+            TypeMirror superclass = current.getSuperclass();
+            current = superclass.getKind() == TypeKind.DECLARED
+                    ? (TypeElement) ((DeclaredType) superclass).asElement()
+                    : null;
+        }
+        return fields;
+    }
+
+    private String conversionFor(VariableElement field) {
+        TypeMirror type = field.asType();
+        switch (type.getKind()) {
+            case INT: return "MapperValues.asInteger(value)";
+            case LONG: return "MapperValues.asLong(value)";
+            case DOUBLE: return "MapperValues.asDouble(value)";
+            case FLOAT: return "MapperValues.asFloat(value)";
+            case BOOLEAN: return "MapperValues.asBoolean(value)";
+            case DECLARED: break;
+            default:
+                error(field, "Unsupported field type for @GenerateMapper: " + type);
+                return null;
+        }
+
+        TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+        String name = element.getQualifiedName().toString();
+        switch (name) {
+            case "java.lang.String": return "MapperValues.asString(value)";
+            case "java.lang.Integer": return "MapperValues.asInteger(value)";
+            case "java.lang.Long": return "MapperValues.asLong(value)";
+            case "java.lang.Double": return "MapperValues.asDouble(value)";
+            case "java.lang.Float": return "MapperValues.asFloat(value)";
+            case "java.lang.Boolean": return "MapperValues.asBoolean(value)";
+            default: break;
+        }
+        if (element.getKind() == ElementKind.ENUM) {
+            return "MapperValues.asEnum(" + name + ".class, value)";
+        }
+        // Liste, mape i ostali tipovi se prenose kakvi jesu, kao u refleksivnom Mapper-u
+        return "(" + type + ") value";
+    }
+
+    private boolean isIdentifiable(TypeElement type) {
+        TypeElement identifiable = processingEnv.getElementUtils().getTypeElement(IDENTIFIABLE);
+        return identifiable != null
+                && processingEnv.getTypeUtils().isAssignable(type.asType(), identifiable.asType());
+    }
+
+    private static int capacityFor(int size) {
+        return (int) (size / 0.75f) + 1;
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
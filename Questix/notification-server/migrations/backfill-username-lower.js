@@ -0,0 +1,67 @@
+// One-off migration: fills usernameLower for users created before prefix search.
+// The app writes the field for its own account only; this covers everyone else.
+// Run once with: npm run migrate:username-lower
+const admin = require('firebase-admin');
+
+const serviceAccount = require('../firebase-service-account.json');
+
+admin.initializeApp({
+  credential: admin.credential.cert(serviceAccount)
+});
+
+const db = admin.firestore();
+
+// One page is also one batch, which must stay under the 500-write limit
+const PAGE_SIZE = 450;
+
+// Same as User.normalizeUsername: Java trim() only strips characters up to U+0020
+const normalizeUsername = (username) =>
+  username.replace(/^[\u0000- ]+|[\u0000- ]+$/g, '').toLowerCase();
+
+const backfillUsernameLower = async () => {
+  let last = null;
+  let scanned = 0;
+  let updated = 0;
+
+  // Firestore cannot query for a missing field, so every user is read
+  for (;;) {
+    let query = db.collection('users')
+      .orderBy(admin.firestore.FieldPath.documentId())
+      .limit(PAGE_SIZE);
+    if (last) {
+      query = query.startAfter(last);
+    }
+
+    const snapshot = await query.get();
+    const batch = db.batch();
+    let pageUpdates = 0;
+
+    snapshot.docs.forEach((doc) => {
+      const { username, usernameLower } = doc.data();
+      if (typeof username === 'string' && usernameLower == null) {
+        batch.update(doc.ref, { usernameLower: normalizeUsername(username) });
+        pageUpdates++;
+      }
+    });
+
+    if (pageUpdates > 0) {
+      await batch.commit();
+    }
+    scanned += snapshot.size;
+    updated += pageUpdates;
+
+    if (snapshot.size < PAGE_SIZE) {
+      break;
+    }
+    last = snapshot.docs[snapshot.docs.length - 1];
+  }
+
+  console.log(`usernameLower backfill done: ${updated} of ${scanned} users updated`);
+};
+
+backfillUsernameLower()
+  .then(() => process.exit(0))
+  .catch((error) => {
+    console.error('usernameLower backfill failed:', error);
+    process.exit(1);
+  });
@@ -22,3 +22,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "Questix"
 include(":app")
+include(":mapper-processor")